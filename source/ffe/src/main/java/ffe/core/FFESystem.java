@@ -46,6 +46,9 @@ public class FFESystem extends MolecularAssembly {
 	// Archive
 	private Trajectory trajectory = null;
 
+	// Recent frames of a live Tinker job
+	private TrajectoryRecorder recorder = null;
+
 	// Simulation type
 	private int simulation = 0;
 
@@ -135,6 +138,10 @@ public class FFESystem extends MolecularAssembly {
 		return String.format("Time: %9.3f picoseconds", this.time);
 	}
 
+	public TrajectoryRecorder getRecorder() {
+		return recorder;
+	}
+
 	public Trajectory getTrajectory() {
 		return trajectory;
 	}
@@ -158,7 +165,7 @@ public class FFESystem extends MolecularAssembly {
 	}
 
 	public boolean isStale() {
-		for (Atom a : getAtomList()) {
+		for (Atom a : getAtomView()) {
 			if (a.isStale()) {
 				return true;
 			}
@@ -200,6 +207,10 @@ public class FFESystem extends MolecularAssembly {
 		logFile = f;
 	}
 
+	public void setRecorder(TrajectoryRecorder r) {
+		recorder = r;
+	}
+
 	public void setSimulation(int type) {
 		simulation = type;
 	}
@@ -36,6 +36,7 @@ import ffe.lang.Polymer;
 import ffe.lang.RendererCache;
 import ffe.lang.Residue;
 import ffe.lang.ValenceTerm;
+import ffe.lang.ValenceTermNode;
 
 /*
  * The GraphicsPicking class is used to make selections and measurements.
@@ -269,7 +270,7 @@ public class GraphicsPicking extends PickMouseBehavior {
 							.getIntersection(0);
 					int coords[] = pickIntersection
 							.getPrimitiveCoordinateIndices();
-					userData = sys.getAtomFromWireVertex(coords[0]);
+					userData = sys.getAtom(pickedShape3D, coords[0]);
 				} else {
 					return;
 				}
@@ -323,8 +324,10 @@ public class GraphicsPicking extends PickMouseBehavior {
 						if (pickLevel == PickLevel.PICKBOND) {
 							terms = a.getBonds();
 						} else if (pickLevel == PickLevel.PICKANGLE) {
+							ValenceTermNode.materialize(a);
 							terms = a.getAngles();
 						} else if (pickLevel == PickLevel.PICKDIHEDRAL) {
+							ValenceTermNode.materialize(a);
 							terms = a.getDihedrals();
 						}
 						if (terms == null) {
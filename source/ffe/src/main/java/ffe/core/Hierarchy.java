@@ -17,7 +17,9 @@ import java.util.ListIterator;
 import javax.swing.JLabel;
 import javax.swing.JTree;
 import javax.swing.event.TreeSelectionEvent;
+import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeSelectionListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.DefaultTreeModel;
@@ -29,13 +31,15 @@ import ffe.lang.MSNode;
 import ffe.lang.MSRoot;
 import ffe.lang.ROLSP;
 import ffe.lang.RendererCache;
+import ffe.lang.ValenceTermNode;
 
 /*
  * The Hierarchy Class creates and manages a JTree view of the data structure.
  * It is used for synchronization, handles the selection mechanism, and sets
  * the active system and nodes.
  */
-public final class Hierarchy extends JTree implements TreeSelectionListener {
+public final class Hierarchy extends JTree implements TreeSelectionListener,
+		TreeWillExpandListener {
 	/*
 	 * 
 	 */
@@ -237,6 +241,7 @@ public final class Hierarchy extends JTree implements TreeSelectionListener {
 	 */
 	public void initTree() {
 		addTreeSelectionListener(this);
+		addTreeWillExpandListener(this);
 		setExpandsSelectedPaths(true);
 		setScrollsOnExpand(true);
 		setLargeModel(true);
@@ -426,6 +431,27 @@ public final class Hierarchy extends JTree implements TreeSelectionListener {
 		return "Structural Hierarchy";
 	}
 
+	public void treeWillCollapse(TreeExpansionEvent e) {
+	}
+
+	/*
+	 * Angles and Dihedrals are created when their node is first expanded.
+	 */
+	public void treeWillExpand(TreeExpansionEvent e) {
+		Object node = e.getPath().getLastPathComponent();
+		if (node instanceof ValenceTermNode) {
+			ValenceTermNode terms = (ValenceTermNode) node;
+			if (!terms.isMaterialized()) {
+				terms.materialize();
+				int[] indices = new int[terms.getChildCount()];
+				for (int i = 0; i < indices.length; i++) {
+					indices[i] = i;
+				}
+				treeModel.nodesWereInserted(terms, indices);
+			}
+		}
+	}
+
 	public void updateStatus() {
 		if (activeSystem == null) {
 			status.setText("  ");
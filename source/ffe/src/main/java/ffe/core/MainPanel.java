@@ -85,7 +85,7 @@ import ffe.parsers.ARCFileFilter;
 import ffe.parsers.DYNFileFilter;
 import ffe.parsers.DYNFilter;
 import ffe.parsers.ForceFieldFileFilter;
-import ffe.parsers.ForceFieldFilter;
+import ffe.parsers.ForceFieldCache;
 import ffe.parsers.INTFileFilter;
 import ffe.parsers.INTFilter;
 import ffe.parsers.InducedFileFilter;
@@ -250,8 +250,6 @@ public final class MainPanel extends JPanel implements ActionListener,
 
 	private JLabel statusLabel;
 
-	private ForceFieldFilter forceFieldFilter;
-
 	private FFELocale locale = null;
 
 	private JDialog aboutDialog = null;
@@ -721,7 +719,8 @@ public final class MainPanel extends JPanel implements ActionListener,
 		if (system == null) {
 			return null;
 		}
-		if (system.getFileType() != FileType.ARC) {
+		if (system.getFileType() != FileType.ARC
+				&& system.getRecorder() == null) {
 			return null;
 		}
 		Trajectory trajectory = system.getTrajectory();
@@ -1129,9 +1128,8 @@ public final class MainPanel extends JPanel implements ActionListener,
 						}
 					}
 				}
-				forceFieldFilter = new ForceFieldFilter(parameterFile,
+				ForceField forceField = ForceFieldCache.get(parameterFile,
 						newSystem.getKeyFile());
-				ForceField forceField = forceFieldFilter.parse();
 				newSystem.setForceField(forceField);
 				systemFilter.setForceField(forceField);
 			}
@@ -24,7 +24,10 @@ import ffe.tinker.TinkerUpdate;
 
 /*
  * This TinkerSimulation class oversees loading information
- * from an executing Tinker program into Force Field Explorer
+ * from an executing Tinker program into Force Field Explorer.
+ * A Swing Timer polls until the simulation system is loaded; after
+ * that the FFEClient subscribes to pushed updates and the Timer is only
+ * used to retry an update that could not be applied immediately.
  */
 public class TinkerSimulation implements ActionListener {
 	// The client monitors a socket based connection to an
@@ -58,6 +61,11 @@ public class TinkerSimulation implements ActionListener {
 
 	private int delay = 10;
 
+	// Maximum number of pushed updates per second
+	private int frameRate = 30;
+
+	private boolean subscribed = false;
+
 	private double time = 0.0;
 
 	private int step = 0;
@@ -101,6 +109,9 @@ public class TinkerSimulation implements ActionListener {
 		}
 		// A Simulation System exists, attempt to Update
 		else {
+			if (!subscribed) {
+				subscribe();
+			}
 			if (tinkerUpdate == null || tinkerUpdate.read) {
 				tinkerUpdate = client.getUpdate();
 			}
@@ -108,6 +119,11 @@ public class TinkerSimulation implements ActionListener {
 					&& !mainPanel.getGraphics3D().isSceneRendering()) {
 				update();
 			}
+			// Pushed updates do not repeat, so retry one left unread
+			if (subscribed && tinkerUpdate != null && !tinkerUpdate.read) {
+				timer.setRepeats(false);
+				timer.restart();
+			}
 		}
 	}
 
@@ -142,6 +158,16 @@ public class TinkerSimulation implements ActionListener {
 		return false;
 	}
 
+	/*
+	 * Switches from polling to updates pushed by the Tinker server.
+	 */
+	private void subscribe() {
+		if (client.subscribe(frameRate, TinkerUpdate.ALL_FIELDS, this)) {
+			subscribed = true;
+			timer.stop();
+		}
+	}
+
 	public FFESystem getFSystem() {
 		return system;
 	}
@@ -186,6 +212,16 @@ public class TinkerSimulation implements ActionListener {
 	}
 
 	private void update() {
+		if (tinkerUpdate == null) {
+			return;
+		}
+		// A pushed update may be decoded into this object concurrently
+		synchronized (tinkerUpdate) {
+			applyUpdate();
+		}
+	}
+
+	private void applyUpdate() {
 		if (system.isStale()) {
 			return;
 		}
@@ -200,21 +236,37 @@ public class TinkerSimulation implements ActionListener {
 			return;
 		}
 		// This is either an MD Simulation or an Optimization
-		system.setEnergy(tinkerUpdate.energy);
 		if (tinkerUpdate.type == TinkerUpdate.SIMULATION) {
 			if (tinkerUpdate.time == time) {
 				tinkerUpdate.read = true;
 				return;
 			}
 			time = tinkerUpdate.time;
-			system.setTime(time);
-			system.setTemperature(tinkerUpdate.temperature);
 		} else if (tinkerUpdate.type == TinkerUpdate.OPTIMIZATION) {
 			if (tinkerUpdate.step == step) {
 				tinkerUpdate.read = true;
 				return;
 			}
 			step = tinkerUpdate.step;
+		}
+		// Keep the frame for the Trajectory controls
+		TrajectoryRecorder recorder = system.getRecorder();
+		if (recorder == null) {
+			recorder = new TrajectoryRecorder(n);
+			system.setRecorder(recorder);
+		}
+		recorder.record(tinkerUpdate);
+		// While an earlier frame is on display, only record
+		if (!recorder.isLive()) {
+			tinkerUpdate.read = true;
+			tinkerUpdate = client.getUpdate();
+			return;
+		}
+		system.setEnergy(tinkerUpdate.energy);
+		if (tinkerUpdate.type == TinkerUpdate.SIMULATION) {
+			system.setTime(time);
+			system.setTemperature(tinkerUpdate.temperature);
+		} else if (tinkerUpdate.type == TinkerUpdate.OPTIMIZATION) {
 			system.setStep(step);
 		}
 		// Reset the Maximum Magnitude Values, such they will be consistent
@@ -224,12 +276,16 @@ public class TinkerSimulation implements ActionListener {
 		Atom.setMaxVelocity(0.0);
 		Atom.setMaxInduced(0.0);
 		double d[] = new double[3];
+		// Delta encoded updates flag the atoms that actually moved
+		boolean moved[] = tinkerUpdate.moved;
 		for (Atom a : atoms) {
 			int index = a.getXYZIndex() - 1;
-			d[0] = tinkerUpdate.coordinates[0][index];
-			d[1] = tinkerUpdate.coordinates[1][index];
-			d[2] = tinkerUpdate.coordinates[2][index];
-			a.moveTo(d);
+			if (moved == null || moved[index]) {
+				d[0] = tinkerUpdate.coordinates[0][index];
+				d[1] = tinkerUpdate.coordinates[1][index];
+				d[2] = tinkerUpdate.coordinates[2][index];
+				a.moveTo(d);
+			}
 			if (tinkerUpdate.amoeba) {
 				// Flip the sign so Induced Dipoles point to more
 				// positive potentials
@@ -251,6 +307,7 @@ public class TinkerSimulation implements ActionListener {
 						* tinkerUpdate.gradients[2][index]);
 			}
 		}
+		system.rotateMultipoles();
 		if (firstUpdate) {
 			system.center();
 			firstUpdate = false;
@@ -17,7 +17,9 @@ import javax.swing.Timer;
 import ffe.lang.MolecularAssembly;
 
 /*
- * The Trajectory class controls playback of a Tinker trajectory
+ * The Trajectory class controls playback of a Tinker trajectory, either
+ * the frames of an archive file or the recent frames of a live Tinker
+ * job kept by a TrajectoryRecorder.
  */
 public class Trajectory implements ActionListener {
 	private MolecularAssembly molecularSystem;
@@ -55,22 +57,23 @@ public class Trajectory implements ActionListener {
 
 	private int advance(int adv) {
 		if (molecularSystem != null) {
-			cycle = molecularSystem.getCurrentCycle();
+			cycle = getFrame();
+			int cycles = getCycles();
 			int frame = cycle + adv;
 			if ((frame) <= 0) {
 				sign = 1;
 				if (oscillate) {
 					frame = -adv - cycle;
 				} else {
-					frame = molecularSystem.getCycles() + (adv + cycle);
+					frame = cycles + (adv + cycle);
 				}
-			} else if ((frame) > molecularSystem.getCycles()) {
+			} else if ((frame) > cycles) {
 				if (oscillate) {
-					frame = molecularSystem.getCycles() + (-adv + cycle);
+					frame = cycles + (-adv + cycle);
 					sign = -1;
 				} else {
 					sign = 1;
-					frame = cycle - molecularSystem.getCycles() + adv;
+					frame = cycle - cycles + adv;
 				}
 			}
 			return frame;
@@ -86,7 +89,19 @@ public class Trajectory implements ActionListener {
 		setFrame(getFrame() + 1);
 	}
 
+	private int getCycles() {
+		TrajectoryRecorder recorder = getRecorder();
+		if (recorder != null) {
+			return recorder.getFrames();
+		}
+		return molecularSystem.getCycles();
+	}
+
 	public int getFrame() {
+		TrajectoryRecorder recorder = getRecorder();
+		if (recorder != null) {
+			return recorder.getFrame();
+		}
 		return molecularSystem.getCurrentCycle();
 	}
 
@@ -94,6 +109,13 @@ public class Trajectory implements ActionListener {
 		return molecularSystem;
 	}
 
+	private TrajectoryRecorder getRecorder() {
+		if (molecularSystem instanceof FFESystem) {
+			return ((FFESystem) molecularSystem).getRecorder();
+		}
+		return null;
+	}
+
 	public boolean getOscillate() {
 		return oscillate;
 	}
@@ -112,7 +134,14 @@ public class Trajectory implements ActionListener {
 
 	public void setFrame(int f) {
 		if (molecularSystem != null) {
-			molecularSystem.setCurrentCycle(f);
+			TrajectoryRecorder recorder = getRecorder();
+			if (recorder != null) {
+				if (!recorder.setFrame(f, (FFESystem) molecularSystem)) {
+					return;
+				}
+			} else {
+				molecularSystem.setCurrentCycle(f);
+			}
 			mainPanel.getGraphics3D().updateScene(molecularSystem, true, false,
 					null, false, null);
 			mainPanel.getHierarchy().updateStatus();
@@ -135,7 +164,7 @@ public class Trajectory implements ActionListener {
 		if (s < 1) {
 			return;
 		}
-		skip = s % molecularSystem.getAtomList().size();
+		skip = s % molecularSystem.getAtomView().size();
 	}
 
 	public void start() {
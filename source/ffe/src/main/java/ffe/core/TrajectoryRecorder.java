@@ -0,0 +1,193 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.core;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import ffe.lang.Atom;
+import ffe.tinker.TinkerUpdate;
+
+/*
+ * The TrajectoryRecorder class keeps the most recent frames of a live
+ * Tinker job in a preallocated ring buffer, so that the Trajectory
+ * controls can step back through them. Coordinates are stored as floats
+ * in one array indexed by frame slot and Tinker atom number; recording a
+ * frame never allocates, so memory stays constant for the life of a job.
+ *
+ * Frames are numbered from 1 (the oldest kept) to getFrames() (the
+ * newest). While the newest frame is shown the recorder is "live" and
+ * the simulation moves the atoms as updates arrive; selecting an older
+ * frame freezes the display there while recording continues.
+ */
+public class TrajectoryRecorder {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	private static final int DEFAULT_FRAMES = 100;
+
+	// Upper bound on the memory used for coordinates
+	private static final long MAX_BYTES = 256L * 1024L * 1024L;
+
+	private final int numatoms;
+
+	private final int capacity;
+
+	private final float[] coordinates;
+
+	private final double[] time;
+
+	private final double[] energy;
+
+	private final double[] temperature;
+
+	private final int[] step;
+
+	private final int[] type;
+
+	// Sequence number of the next frame to be recorded
+	private long next = 0;
+
+	// Sequence number of the frame on display
+	private long current = -1;
+
+	private boolean live = true;
+
+	public TrajectoryRecorder(int n) {
+		this(n, getDefaultFrames());
+	}
+
+	public TrajectoryRecorder(int n, int frames) {
+		numatoms = n;
+		long limit = MAX_BYTES / (12L * Math.max(1, n));
+		capacity = (int) Math.max(2, Math.min(frames, limit));
+		coordinates = new float[capacity * 3 * n];
+		time = new double[capacity];
+		energy = new double[capacity];
+		temperature = new double[capacity];
+		step = new int[capacity];
+		type = new int[capacity];
+	}
+
+	/*
+	 * Returns the number of frames named by ffe.recorder.frames.
+	 */
+	private static int getDefaultFrames() {
+		String frames = System.getProperty("ffe.recorder.frames");
+		if (frames == null) {
+			return DEFAULT_FRAMES;
+		}
+		try {
+			return Integer.parseInt(frames.trim());
+		} catch (NumberFormatException e) {
+			logger.warning("Invalid ffe.recorder.frames \"" + frames
+					+ "\"; recording " + DEFAULT_FRAMES + " frames.");
+			return DEFAULT_FRAMES;
+		}
+	}
+
+	private long getFirst() {
+		return Math.max(0, next - capacity);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/*
+	 * Returns the frame on display, or 0 if nothing has been recorded.
+	 */
+	public int getFrame() {
+		if (next == 0) {
+			return 0;
+		}
+		if (live) {
+			return getFrames();
+		}
+		// The frame on display may since have been overwritten
+		return (int) (Math.max(current, getFirst()) - getFirst()) + 1;
+	}
+
+	public int getFrames() {
+		return (int) (next - getFirst());
+	}
+
+	public int getNumAtoms() {
+		return numatoms;
+	}
+
+	public boolean isLive() {
+		return live;
+	}
+
+	/*
+	 * Copies the coordinates and scalar data of an update into the
+	 * oldest slot of the ring.
+	 */
+	public void record(TinkerUpdate u) {
+		if (u.numatoms != numatoms || u.coordinates == null) {
+			return;
+		}
+		int slot = (int) (next % capacity);
+		int offset = slot * 3 * numatoms;
+		double[] x = u.coordinates[0];
+		double[] y = u.coordinates[1];
+		double[] z = u.coordinates[2];
+		for (int i = 0; i < numatoms; i++) {
+			coordinates[offset++] = (float) x[i];
+			coordinates[offset++] = (float) y[i];
+			coordinates[offset++] = (float) z[i];
+		}
+		time[slot] = u.time;
+		energy[slot] = u.energy;
+		temperature[slot] = u.temperature;
+		step[slot] = u.step;
+		type[slot] = u.type;
+		next++;
+		if (live) {
+			current = next - 1;
+		}
+	}
+
+	/*
+	 * Moves the atoms of the system to a recorded frame; selecting the
+	 * newest frame returns the recorder to live display.
+	 *
+	 * @return false if the frame is not available
+	 */
+	public boolean setFrame(int frame, FFESystem system) {
+		int frames = getFrames();
+		if (frame < 1 || frame > frames) {
+			return false;
+		}
+		current = getFirst() + frame - 1;
+		live = (frame == frames);
+		List<Atom> atoms = system.getAtomList();
+		if (atoms.size() != numatoms) {
+			return false;
+		}
+		int slot = (int) (current % capacity);
+		int base = slot * 3 * numatoms;
+		for (Atom a : atoms) {
+			int offset = base + 3 * (a.getXYZIndex() - 1);
+			a.moveTo(coordinates[offset], coordinates[offset + 1],
+					coordinates[offset + 2]);
+		}
+		system.rotateMultipoles();
+		system.setEnergy(energy[slot]);
+		if (type[slot] == TinkerUpdate.SIMULATION) {
+			system.setTime(time[slot]);
+			system.setTemperature(temperature[slot]);
+		} else {
+			system.setStep(step[slot]);
+		}
+		return true;
+	}
+}
@@ -17,14 +17,9 @@ import java.util.logging.Logger;
 import org.jogamp.java3d.Appearance;
 import org.jogamp.java3d.BranchGroup;
 import org.jogamp.java3d.Canvas3D;
-import org.jogamp.java3d.Geometry;
 import org.jogamp.java3d.J3DGraphics2D;
 import org.jogamp.java3d.Material;
 import org.jogamp.java3d.Node;
-import org.jogamp.java3d.Shape3D;
-import org.jogamp.java3d.Transform3D;
-import org.jogamp.java3d.TransformGroup;
-import org.jogamp.vecmath.AxisAngle4d;
 import org.jogamp.vecmath.Color3f;
 import org.jogamp.vecmath.Point2d;
 import org.jogamp.vecmath.Point3d;
@@ -58,26 +53,10 @@ public class Atom extends MSNode {
 	// Theses "max" values are used for relative vector display
 	private static double maxInduced, maxVel, maxAccel, maxForce;
 
-	private static Appearance vectorAppearance = null;
-
 	private static Point3d point3d = new Point3d();
 
 	private static Point2d point2d = new Point2d();
 
-	private static double[] y = { 0.0d, 1.0d, 0.0d };
-
-	private static double[] ycrossv = new double[4];
-
-	private static double[] shapeVector = new double[3];
-
-	private static Vector3d scaleV3D = new Vector3d();
-
-	private static Vector3d transV3D = new Vector3d();
-
-	private static AxisAngle4d axisAngle = new AxisAngle4d();
-
-	private static double angle;
-
 	public static Hashtable<Integer, Color3f> AtomColor = new Hashtable<Integer, Color3f>();
 
 	public static Hashtable<Integer, Float> AtomVDW = new Hashtable<Integer, Float>();
@@ -223,7 +202,8 @@ public class Atom extends MSNode {
 	// Coordinates
 	private Vector3d positionVector3d;
 
-	private ArrayList<Vector3d> trajectory;
+	// Archive frames, shared by all atoms of the MolecularAssembly
+	private FrameStore frameStore;
 
 	// Molecular Mechanics Info
 	private AtomType atomType = null;
@@ -279,12 +259,9 @@ public class Atom extends MSNode {
 
 	/* ***************************************************************** */
 	// Java3D methods and variables for visualization of this Atom.
-	/* Scenegraph Diagram. */
 	/*
-	 * childShapes (The childShapes group is from this Atom's MolecularAssembly) | |
-	 * branchGroup vectorBranchGroup | _______|_______
-	 * transformGroup(transform3D) | | | cylTG(cylT3D) coneTG(coneT3D) sphere | |
-	 * cylinder cone
+	 * Spheres are drawn by the SphereBatch and vectors by the GlyphBatch of
+	 * this Atom's MolecularAssembly.
 	 */
 
 	// The current ViewModel
@@ -298,14 +275,22 @@ public class Atom extends MSNode {
 
 	private ColorModel colorModel = ColorModel.CPK;
 
-	// Java3D Scenegraph Objects
-	private Shape3D sphere, cylinder, cone;
+	// The batch drawing this Atom's sphere, and its place in the batch
+	private SphereBatch sphereBatch = null;
+
+	SphereBatch.Bucket sphereBucket = null;
+
+	int sphereSlot = -1;
 
-	private BranchGroup branchGroup, vectorBranchGroup;
+	// The batch drawing this Atom's vector, and its slot in the batch
+	private GlyphBatch glyphBatch = null;
 
-	private TransformGroup transformGroup, cylTG, coneTG;
+	int glyphSlot = -1;
 
-	private Transform3D transform3D, cylT3D, coneT3D;
+	// The detail chosen by the LODManager, and whether this Atom is off screen
+	int lodDetail = LODManager.MAX_DETAIL;
+
+	private boolean culled = false;
 
 	// Appearance and Coloring
 	private Appearance appearance;
@@ -369,14 +354,6 @@ public class Atom extends MSNode {
 		}
 	}
 
-	public void addTrajectoryCoords(Vector3d coords, int position) {
-		if (trajectory == null) {
-			trajectory = new ArrayList<Vector3d>();
-			trajectory.add(0, positionVector3d);
-		}
-		trajectory.add(position, coords);
-	}
-
 	@Override
 	public void drawLabel(Canvas3D canvas, J3DGraphics2D g2d, Node node) {
 		if (RendererCache.labelAtoms) {
@@ -430,6 +407,13 @@ public class Atom extends MSNode {
 		return currentCol;
 	}
 
+	/*
+	 * Radius of this Atom's sphere in the current ViewModel.
+	 */
+	double getSphereScale() {
+		return scale;
+	}
+
 	/*
 	 * Gets the Atomic Number
 	 * 
@@ -686,11 +670,16 @@ public class Atom extends MSNode {
 	}
 
 	public Vector3d getTrajectoryCoords(int position) {
-		return trajectory.get(position);
+		Vector3d v = new Vector3d();
+		frameStore.getCoords(position, xyzindex - 1, v);
+		return v;
 	}
 
 	public int getTrajectoryLength() {
-		return trajectory.size();
+		if (frameStore == null) {
+			return 0;
+		}
+		return frameStore.getFrames();
 	}
 
 	public int getType() {
@@ -772,62 +761,33 @@ public class Atom extends MSNode {
 	}
 
 	/*
-	 * Create the Sphere Java3D objects.
+	 * Finds the SphereBatch of this Atom's MolecularAssembly.
 	 * 
-	 * @param newShapes
-	 *            List
+	 * @return SphereBatch, or null before the scene is created
 	 */
-	private void initSphere(List<BranchGroup> newShapes) {
+	private SphereBatch initSphere() {
 		if (appearance == null) {
 			appearance = RendererCache.appearanceFactory(currentCol,
 					ViewModel.FILL);
 		}
-		if (transform3D == null) {
-			transform3D = RendererCache.transform3DFactory(positionVector3d,
-					scale);
-		} else {
-			transform3D.setTranslation(positionVector3d);
-			transform3D.setScale(scale);
+		MolecularAssembly m = (MolecularAssembly) getMSNode(MolecularAssembly.class);
+		if (m != null) {
+			sphereBatch = m.getSphereBatch();
 		}
-		detail = RendererCache.detail;
-		branchGroup = RendererCache.sphereFactory(appearance, detail,
-				transform3D);
-		transformGroup = (TransformGroup) branchGroup.getChild(0);
-		sphere = (Shape3D) transformGroup.getChild(0);
-		sphere.setUserData(this);
-		newShapes.add(branchGroup);
+		return sphereBatch;
 	}
 
 	/*
-	 * Create the Vector Java3D objects.
+	 * Finds the batch that draws this Atom's vector.
 	 * 
-	 * @param newShapes
-	 *            List
+	 * @return GlyphBatch, or null before the scene is created
 	 */
-	public void initVector(List<BranchGroup> newShapes) {
-		appearance = RendererCache
-				.appearanceFactory(currentCol, ViewModel.FILL);
-		detail = RendererCache.detail;
-		cylinder = RendererCache.createCylinder(appearance, detail);
-		cylinder.setUserData(this);
-		cylT3D = new Transform3D();
-		cylTG = new TransformGroup(cylT3D);
-		cylTG.setCapability(TransformGroup.ALLOW_TRANSFORM_READ);
-		cylTG.setCapability(TransformGroup.ALLOW_TRANSFORM_WRITE);
-		cylTG.addChild(cylinder);
-		cone = RendererCache.coneFactory(appearance, detail);
-		cone.setUserData(this);
-		coneT3D = new Transform3D();
-		coneT3D.setScale(0.1d);
-		coneTG = new TransformGroup(coneT3D);
-		coneTG.setCapability(TransformGroup.ALLOW_TRANSFORM_READ);
-		coneTG.setCapability(TransformGroup.ALLOW_TRANSFORM_WRITE);
-		coneTG.addChild(cone);
-		vectorBranchGroup = new BranchGroup();
-		vectorBranchGroup.addChild(cylTG);
-		vectorBranchGroup.addChild(coneTG);
-		newShapes.add(vectorBranchGroup);
-		updateVector();
+	private GlyphBatch initVector() {
+		MolecularAssembly m = (MolecularAssembly) getMSNode(MolecularAssembly.class);
+		if (m != null) {
+			glyphBatch = m.getGlyphBatch();
+		}
+		return glyphBatch;
 	}
 
 	/*
@@ -919,20 +879,18 @@ public class Atom extends MSNode {
 		if (dihedrals != null) {
 			dihedrals.clear();
 		}
-		if (trajectory != null) {
-			trajectory.clear();
-		}
-		trajectory = null;
+		frameStore = null;
 		stale = false;
 		viewModel = ViewModel.INVISIBLE;
 		vectorType = ViewModel.HIDEVECTORS;
 		vectorLength = ViewModel.UNIT;
-		RendererCache.poolTransform3D(transform3D);
-		if (branchGroup != null) {
-			branchGroup.detach();
-			branchGroup.setUserData(null);
-			RendererCache.poolSphere(branchGroup);
-			branchGroup = null;
+		if (sphereBatch != null) {
+			sphereBatch.remove(this);
+			sphereBatch = null;
+		}
+		if (glyphBatch != null) {
+			glyphBatch.remove(this);
+			glyphBatch = null;
 		}
 	}
 
@@ -1082,12 +1040,11 @@ public class Atom extends MSNode {
 		}
 		// Apply the Color Change
 		appearance = RendererCache.appearanceFactory(currentCol, polygonType);
-		if (branchGroup != null && viewModel != ViewModel.INVISIBLE) {
-			sphere.setAppearance(appearance);
+		if (sphereBucket != null && viewModel != ViewModel.INVISIBLE) {
+			sphereBatch.set(this, appearance);
 		}
-		if (vectorBranchGroup != null && vectorType != ViewModel.HIDEVECTORS) {
-			cylinder.setAppearance(appearance);
-			cone.setAppearance(appearance);
+		if (glyphSlot >= 0) {
+			glyphBatch.setColor(this, currentCol);
 		}
 		if (bonds != null) {
 			for (Bond bond : bonds) {
@@ -1097,16 +1054,20 @@ public class Atom extends MSNode {
 	}
 
 	public void setCurrentCycle(int cycle) {
-		if (trajectory == null) {
+		if (frameStore == null) {
 			return;
 		}
-		if (cycle <= 0 || cycle > trajectory.size()) {
+		if (cycle <= 0 || cycle > frameStore.getFrames()) {
 			return;
 		}
-		positionVector3d = trajectory.get(cycle - 1);
+		frameStore.getCoords(cycle - 1, xyzindex - 1, positionVector3d);
 		stale = true;
 	}
 
+	public void setFrameStore(FrameStore f) {
+		frameStore = f;
+	}
+
 	public void setCurrentVector() {
 		switch (vectorType) {
 		case FORCE:
@@ -1217,18 +1178,20 @@ public class Atom extends MSNode {
 			List<BranchGroup> newShapes) {
 		if (!sphereVisible) {
 			// Make this atom invisible.
-			if (branchGroup != null) {
-				sphere.setPickable(false);
-				sphere.setAppearance(RendererCache.nullAp);
+			if (sphereBatch != null) {
+				sphereBatch.remove(this);
 			}
 		} else {
 			// Make this atom visible.
-			if (branchGroup == null) {
-				initSphere(newShapes);
+			if (sphereBatch == null && initSphere() == null) {
+				return;
+			}
+			if (!culled) {
+				sphereBatch.set(this, appearance);
+			}
+			if (colorModel == ColorModel.VECTORMAGNITUDE) {
+				setColor(colorModel, null, null);
 			}
-			sphere.setAppearance(appearance);
-			sphere.setPickable(true);
-			updateSphere();
 		}
 	}
 
@@ -1266,21 +1229,14 @@ public class Atom extends MSNode {
 	public void setVectorVisible(boolean vectorVisible,
 			List<BranchGroup> newShapes) {
 		if (!vectorVisible) {
-			if (vectorBranchGroup != null) {
-				cylinder.setAppearance(RendererCache.nullAp);
-				cylinder.setPickable(false);
-				cone.setAppearance(RendererCache.nullAp);
-				cone.setPickable(false);
+			if (glyphBatch != null) {
+				glyphBatch.remove(this);
 			}
 		} else {
 			if (vectorType != ViewModel.HIDEVECTORS) {
-				if (vectorBranchGroup == null) {
-					initVector(newShapes);
+				if (glyphBatch == null && initVector() == null) {
+					return;
 				}
-				cylinder.setAppearance(vectorAppearance);
-				cylinder.setPickable(true);
-				cone.setAppearance(vectorAppearance);
-				cone.setPickable(true);
 				updateVector();
 			}
 		}
@@ -1371,15 +1327,8 @@ public class Atom extends MSNode {
 			}
 			break;
 		case DETAIL:
-			int newdetail = RendererCache.detail;
-			if (newdetail != detail) {
-				detail = newdetail;
-				if (sphere != null) {
-					Geometry geom = RendererCache.getSphereGeom(detail);
-					sphere.removeAllGeometries();
-					sphere.addGeometry(geom);
-				}
-			}
+			// The MolecularAssembly updates the detail of its spheres
+			detail = RendererCache.detail;
 			double newradius = RendererCache.radius;
 			if (newradius != radius) {
 				radius = newradius;
@@ -1447,7 +1396,7 @@ public class Atom extends MSNode {
 	 */
 	@Override
 	public void update() {
-		if (stale) {
+		if (stale && !culled) {
 			updateSphere();
 			updateVector();
 			stale = false;
@@ -1455,47 +1404,52 @@ public class Atom extends MSNode {
 	}
 
 	public void updateSphere() {
-		if (branchGroup != null && viewModel != ViewModel.INVISIBLE) {
-			transform3D.setTranslation(positionVector3d);
-			transform3D.setScale(scale);
-			transformGroup.setTransform(transform3D);
+		if (sphereBucket != null && viewModel != ViewModel.INVISIBLE) {
+			sphereBatch.move(this);
 			if (colorModel == ColorModel.VECTORMAGNITUDE) {
 				setColor(colorModel, null, null);
 			}
 		}
 	}
+
+	/*
+	 * Applies the detail and visibility chosen by the LODManager. While
+	 * culled, this Atom's sphere and vector are not drawn or updated.
+	 */
+	void setLOD(int lod, boolean cull) {
+		boolean changed = lod != lodDetail;
+		lodDetail = lod;
+		if (cull != culled) {
+			culled = cull;
+			if (culled) {
+				if (sphereBatch != null) {
+					sphereBatch.remove(this);
+				}
+				if (glyphBatch != null) {
+					glyphBatch.remove(this);
+				}
+				return;
+			}
+			changed = true;
+			updateVector();
+			stale = false;
+		}
+		if (changed && sphereBatch != null && viewModel != ViewModel.INVISIBLE) {
+			sphereBatch.set(this, appearance);
+		}
+	}
+
 	public void updateVector() {
-		if (vectorBranchGroup != null && vectorType != ViewModel.HIDEVECTORS) {
+		if (glyphBatch != null && vectorType != ViewModel.HIDEVECTORS
+				&& !culled) {
 			setCurrentVector();
 			if (vectorType == ViewModel.HIDEVECTORS) {
+				glyphBatch.remove(this);
 				return;
 			}
-			double v[] = currentVector;
 			setVectorLength();
-			double mag = currentLength * RendererCache.vectorScale;
-			// Cylinder and Cone Rotation from the Positive Y-axis
-			angle = VectorMath.angle(v, y);
-			VectorMath.cross(y, v, ycrossv);
-			ycrossv[3] = angle; // Math.PI;
-			axisAngle.set(ycrossv);
-			// Cylinder Orientation
-			cylT3D.setRotation(axisAngle);
-			VectorMath.norm(v, shapeVector);
-			VectorMath.scalar(shapeVector, mag * 0.5d, shapeVector);
-			transV3D.set(shapeVector);
-			transV3D.add(positionVector3d);
-			cylT3D.setTranslation(transV3D);
-			scaleV3D.set(0.05d, mag, 0.05d);
-			cylT3D.setScale(scaleV3D);
-			cylTG.setTransform(cylT3D);
-			// Cone Orientation
-			coneT3D.setRotation(axisAngle);
-			VectorMath.norm(shapeVector, shapeVector);
-			VectorMath.scalar(shapeVector, mag + 0.05d, shapeVector);
-			transV3D.set(shapeVector);
-			transV3D.add(positionVector3d);
-			coneT3D.setTranslation(transV3D);
-			coneTG.setTransform(coneT3D);
+			glyphBatch.set(this, currentVector, currentLength
+					* RendererCache.vectorScale, currentCol);
 		}
 	}
 }
@@ -56,7 +56,8 @@ public class Bond extends ValenceTerm {
 	private static float f16[] = { 0.0f, 0.0f, 0.0f, 0.9f, 0.0f, 0.0f, 0.0f,
 			0.9f, 0.0f, 0.0f, 0.0f, 0.9f, 0.0f, 0.0f, 0.0f, 0.9f };
 
-	// Some static variables used for computing cylinder orientations
+	// Some static variables used for computing cylinder orientations, which
+	// are guarded by Bond.class so that Bonds can be drawn from any thread
 	private static double d;
 
 	private static double a13d[] = new double[3];
@@ -106,8 +107,15 @@ public class Bond extends ValenceTerm {
 
 	private int detail = 3;
 
+	// The detail chosen by the LODManager, and whether this Bond is off screen
+	private int lodDetail = LODManager.MAX_DETAIL;
+
+	private boolean culled = false;
+
 	private LineArray la;
 
+	private WireBatch wireBatch;
+
 	private int lineIndex;
 
 	private boolean wireVisible = true;
@@ -228,7 +236,7 @@ public class Bond extends ValenceTerm {
 	 *            List
 	 */
 	private void initJ3D(List<BranchGroup> newShapes) {
-		detail = RendererCache.detail;
+		detail = Math.min(RendererCache.detail, lodDetail);
 		branchGroup = RendererCache.doubleCylinderFactory(atoms[0], atoms[1],
 				detail);
 		cy1tg = (TransformGroup) branchGroup.getChild(0);
@@ -238,7 +246,13 @@ public class Bond extends ValenceTerm {
 		newShapes.add(branchGroup);
 		cy1t3d = RendererCache.transform3DFactory();
 		cy2t3d = RendererCache.transform3DFactory();
-		update();
+		synchronized (Bond.class) {
+			update();
+			if (culled) {
+				// Place new cylinders even though they are off screen
+				updateCylinders();
+			}
+		}
 	}
 
 	public void removeFromParent() {
@@ -280,21 +294,23 @@ public class Bond extends ValenceTerm {
 
 	public void setBondTransform3d(Transform3D t3d, double[] pos,
 			double[] orient, double len, boolean newRot) {
-		// Bond Orientation
-		if (newRot) {
-			angle = VectorMath.angle(orient, y);
-			VectorMath.cross(y, orient, bcross);
-			bcross[3] = angle - Math.PI;
-			axisAngle.set(bcross);
+		synchronized (Bond.class) {
+			// Bond Orientation
+			if (newRot) {
+				angle = VectorMath.angle(orient, y);
+				VectorMath.cross(y, orient, bcross);
+				bcross[3] = angle - Math.PI;
+				axisAngle.set(bcross);
+			}
+			// Scale the orientation vector to be a fourth the bond length
+			// and add it to the position vector of the of the first atom
+			VectorMath.scalar(orient, len / 4.0d, cstart);
+			VectorMath.sum(cstart, pos, cstart);
+			pos3d.set(cstart);
+			t3d.setTranslation(pos3d);
+			t3d.setRotation(axisAngle);
+			t3d.setScale(scale);
 		}
-		// Scale the orientation vector to be a fourth the bond length
-		// and add it to the position vector of the of the first atom
-		VectorMath.scalar(orient, len / 4.0d, cstart);
-		VectorMath.sum(cstart, pos, cstart);
-		pos3d.set(cstart);
-		t3d.setTranslation(pos3d);
-		t3d.setRotation(axisAngle);
-		t3d.setScale(scale);
 	}
 
 	/*
@@ -396,23 +412,7 @@ public class Bond extends ValenceTerm {
 			setCylinderVisible(true, newShapes);
 			break;
 		case DETAIL:
-			int res = RendererCache.detail;
-			if (res != detail) {
-				detail = res;
-				if (branchGroup != null) {
-					Geometry g1 = RendererCache.getCylinderGeom(0, detail);
-					Geometry g2 = RendererCache.getCylinderGeom(1, detail);
-					Geometry g3 = RendererCache.getCylinderGeom(2, detail);
-					cy1.removeAllGeometries();
-					cy2.removeAllGeometries();
-					cy1.addGeometry(g1);
-					cy1.addGeometry(g2);
-					cy1.addGeometry(g3);
-					cy2.addGeometry(g1);
-					cy2.addGeometry(g2);
-					cy2.addGeometry(g3);
-				}
-			}
+			setDetail(Math.min(RendererCache.detail, lodDetail));
 			if (scale == null) {
 				scale = new Vector3d();
 			}
@@ -457,11 +457,56 @@ public class Bond extends ValenceTerm {
 		}
 	}
 
+	/*
+	 * Sets the resolution of the cylinders.
+	 */
+	private void setDetail(int res) {
+		if (res != detail) {
+			detail = res;
+			if (branchGroup != null) {
+				Geometry g1 = RendererCache.getCylinderGeom(0, detail);
+				Geometry g2 = RendererCache.getCylinderGeom(1, detail);
+				Geometry g3 = RendererCache.getCylinderGeom(2, detail);
+				cy1.removeAllGeometries();
+				cy2.removeAllGeometries();
+				cy1.addGeometry(g1);
+				cy1.addGeometry(g2);
+				cy1.addGeometry(g3);
+				cy2.addGeometry(g1);
+				cy2.addGeometry(g2);
+				cy2.addGeometry(g3);
+			}
+		}
+	}
+
+	/*
+	 * Applies the detail and visibility chosen by the LODManager. While
+	 * culled, the cylinder transforms of this Bond are not updated.
+	 */
+	void setLOD(int lod, boolean cull) {
+		lodDetail = lod;
+		setDetail(Math.min(RendererCache.detail, lod));
+		if (culled && !cull) {
+			culled = false;
+			update();
+		}
+		culled = cull;
+	}
+
 	public void setWire(LineArray l, int i) {
 		la = l;
 		lineIndex = i;
 	}
 
+	void setWire(WireBatch w, int i) {
+		wireBatch = w;
+		lineIndex = i;
+	}
+
+	boolean isWireVisible() {
+		return wireVisible;
+	}
+
 	/*
 	 * Manage Wireframe Visibility.
 	 * 
@@ -469,23 +514,28 @@ public class Bond extends ValenceTerm {
 	 *            boolean
 	 */
 	public void setWireVisible(boolean visible) {
-		if (!visible) {
+		if (wireBatch != null) {
+			wireVisible = visible;
+			wireBatch.recolor();
+		} else if (!visible) {
 			wireVisible = false;
 			la.setColors(lineIndex, a0col);
 		} else {
 			wireVisible = true;
-			float cols[] = f16;
-			float col1[] = f4a;
-			float col2[] = f4b;
-			atoms[0].getAtomColor().get(col1);
-			atoms[1].getAtomColor().get(col2);
-			for (int i = 0; i < 3; i++) {
-				cols[i] = col1[i];
-				cols[4 + i] = col1[i];
-				cols[8 + i] = col2[i];
-				cols[12 + i] = col2[i];
+			synchronized (Bond.class) {
+				float cols[] = f16;
+				float col1[] = f4a;
+				float col2[] = f4b;
+				atoms[0].getAtomColor().get(col1);
+				atoms[1].getAtomColor().get(col2);
+				for (int i = 0; i < 3; i++) {
+					cols[i] = col1[i];
+					cols[4 + i] = col1[i];
+					cols[8 + i] = col2[i];
+					cols[12 + i] = col2[i];
+				}
+				la.setColors(lineIndex, cols);
 			}
-			la.setColors(lineIndex, cols);
 		}
 	}
 
@@ -494,33 +544,45 @@ public class Bond extends ValenceTerm {
 	 * and Cylinder Transforms
 	 */
 	public void update() {
-		// Update the Bond Length
-		atoms[0].getXYZ(a13d);
-		atoms[1].getXYZ(a23d);
-		VectorMath.diff(a13d, a23d, diff3d);
-		d = VectorMath.r(diff3d);
-		setValue(d);
-		VectorMath.sum(a13d, a23d, sum3d);
-		VectorMath.scalar(sum3d, 0.5d, mid);
-		// Update the Wireframe Model.
-		if (la != null) {
-			for (int i = 0; i < 3; i++) {
-				coord[i] = a13d[i];
-				coord[3 + i] = mid[i];
-				coord[6 + i] = mid[i];
-				coord[9 + i] = a23d[i];
+		synchronized (Bond.class) {
+			// Update the Bond Length
+			atoms[0].getXYZ(a13d);
+			atoms[1].getXYZ(a23d);
+			VectorMath.diff(a13d, a23d, diff3d);
+			d = VectorMath.r(diff3d);
+			setValue(d);
+			VectorMath.sum(a13d, a23d, sum3d);
+			VectorMath.scalar(sum3d, 0.5d, mid);
+			// Update the Wireframe Model.
+			if (la != null) {
+				for (int i = 0; i < 3; i++) {
+					coord[i] = a13d[i];
+					coord[3 + i] = mid[i];
+					coord[6 + i] = mid[i];
+					coord[9 + i] = a23d[i];
+				}
+				la.setCoordinates(lineIndex, coord);
+			} else if (wireBatch != null) {
+				wireBatch.move();
+			}
+			// Update the Bond cylinder transforms.
+			if (branchGroup != null && !culled) {
+				updateCylinders();
 			}
-			la.setCoordinates(lineIndex, coord);
-		}
-		// Update the Bond cylinder transforms.
-		if (branchGroup != null) {
-			VectorMath.norm(diff3d, diff3d);
-			scale.y = d / 2.0d;
-			setBondTransform3d(cy1t3d, mid, diff3d, d, true);
-			VectorMath.scalar(diff3d, -1.0d, diff3d);
-			setBondTransform3d(cy2t3d, mid, diff3d, d, false);
-			cy1tg.setTransform(cy1t3d);
-			cy2tg.setTransform(cy2t3d);
 		}
 	}
+
+	/*
+	 * Orients the cylinders from the atoms, midpoint and bond vector that
+	 * update has just computed.
+	 */
+	private void updateCylinders() {
+		VectorMath.norm(diff3d, diff3d);
+		scale.y = d / 2.0d;
+		setBondTransform3d(cy1t3d, mid, diff3d, d, true);
+		VectorMath.scalar(diff3d, -1.0d, diff3d);
+		setBondTransform3d(cy2t3d, mid, diff3d, d, false);
+		cy1tg.setTransform(cy1t3d);
+		cy2tg.setTransform(cy2t3d);
+	}
 }
@@ -0,0 +1,287 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/*
+ * The BondGraph class is an immutable adjacency graph of the bonds
+ * between a list of atoms, stored in compressed sparse row form: the 1-2
+ * neighbors of atom i are neighbors[offsets[i]] .. neighbors[offsets[i + 1] - 1],
+ * in the order of Atom.getBonds(). Atoms are numbered by their position in
+ * the list, and bonds to atoms outside the list are left out.
+ *
+ * Topology queries (1-2, 1-3 and 1-4 neighbors, exclusion masks) walk
+ * these two int arrays instead of Bond and Angle objects.
+ */
+public final class BondGraph {
+
+	private final Atom[] atoms;
+
+	private final int[] offsets;
+
+	private final int[] neighbors;
+
+	// Only needed when the list is not in XYZ index order
+	private IdentityHashMap<Atom, Integer> index = null;
+
+	public BondGraph(List<Atom> atomList) {
+		int n = atomList.size();
+		atoms = atomList.toArray(new Atom[n]);
+		for (int i = 0; i < n; i++) {
+			if (atoms[i].getXYZIndex() != i + 1) {
+				index = new IdentityHashMap<Atom, Integer>(2 * n);
+				for (int j = 0; j < n; j++) {
+					index.put(atoms[j], j);
+				}
+				break;
+			}
+		}
+		offsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			int degree = 0;
+			if (atoms[i].getNumBonds() > 0) {
+				for (Bond b : atoms[i].getBonds()) {
+					if (getIndex(b.get1_2(atoms[i])) >= 0) {
+						degree++;
+					}
+				}
+			}
+			offsets[i + 1] = offsets[i] + degree;
+		}
+		neighbors = new int[offsets[n]];
+		for (int i = 0; i < n; i++) {
+			int k = offsets[i];
+			if (atoms[i].getNumBonds() > 0) {
+				for (Bond b : atoms[i].getBonds()) {
+					int j = getIndex(b.get1_2(atoms[i]));
+					if (j >= 0) {
+						neighbors[k++] = j;
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns the BondGraph of the MolecularAssembly holding the atoms if
+	 * the list is that assembly's atom list, in order, and otherwise
+	 * builds a new BondGraph of the list.
+	 */
+	public static BondGraph of(List<Atom> atomList) {
+		if (!atomList.isEmpty()) {
+			ROLS node = atomList.get(0).getMSNode(MolecularAssembly.class);
+			if (node != null) {
+				BondGraph graph = ((MolecularAssembly) node).getBondGraph();
+				if (graph.isGraphOf(atomList)) {
+					return graph;
+				}
+			}
+		}
+		return new BondGraph(atomList);
+	}
+
+	private boolean isGraphOf(List<Atom> atomList) {
+		if (atomList.size() != atoms.length) {
+			return false;
+		}
+		for (int i = 0; i < atoms.length; i++) {
+			if (atomList.get(i) != atoms[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public Atom getAtom(int i) {
+		return atoms[i];
+	}
+
+	/*
+	 * Returns the number of 1-2 neighbors of atom i.
+	 */
+	public int getDegree(int i) {
+		return offsets[i + 1] - offsets[i];
+	}
+
+	/*
+	 * Returns the position of an atom in the list, or -1.
+	 */
+	public int getIndex(Atom a) {
+		if (a == null) {
+			return -1;
+		}
+		if (index == null) {
+			int i = a.getXYZIndex() - 1;
+			if (i >= 0 && i < atoms.length && atoms[i] == a) {
+				return i;
+			}
+			return -1;
+		}
+		Integer i = index.get(a);
+		return i == null ? -1 : i.intValue();
+	}
+
+	/*
+	 * Returns the k-th 1-2 neighbor of atom i.
+	 */
+	public int getNeighbor(int i, int k) {
+		return neighbors[offsets[i] + k];
+	}
+
+	public int get12(int i, int[] result) {
+		return getNeighbors(i, 1, result);
+	}
+
+	public int get13(int i, int[] result) {
+		return getNeighbors(i, 2, result);
+	}
+
+	public int get14(int i, int[] result) {
+		return getNeighbors(i, 3, result);
+	}
+
+	/*
+	 * Finds the atoms whose shortest bonded path to atom i is exactly
+	 * separation bonds long. As many as fit are stored in result.
+	 *
+	 * @return the number of atoms found, which may exceed result.length
+	 */
+	public int getNeighbors(int i, int separation, int[] result) {
+		int[] seen = new int[16];
+		int nseen = 0;
+		seen[nseen++] = i;
+		int[] frontier = { i };
+		int nfrontier = 1;
+		for (int level = 1; level <= separation; level++) {
+			int[] next = new int[4 * nfrontier + 4];
+			int nnext = 0;
+			for (int f = 0; f < nfrontier; f++) {
+				int a = frontier[f];
+				for (int k = offsets[a]; k < offsets[a + 1]; k++) {
+					int j = neighbors[k];
+					if (contains(seen, nseen, j)) {
+						continue;
+					}
+					if (nseen == seen.length) {
+						seen = grow(seen);
+					}
+					seen[nseen++] = j;
+					if (nnext == next.length) {
+						next = grow(next);
+					}
+					next[nnext++] = j;
+				}
+			}
+			frontier = next;
+			nfrontier = nnext;
+		}
+		System.arraycopy(frontier, 0, result, 0, Math.min(nfrontier,
+				result.length));
+		return nfrontier;
+	}
+
+	/*
+	 * Finds the atoms at the ends of the angles that have atom i at one
+	 * end, in the order Atom.getAngles() returned them when every Angle
+	 * was built at finalize time: central atoms by position in the list,
+	 * then the other neighbors of each central atom in bond order. As with
+	 * Angle.get1_3, an atom reached through two central atoms is found
+	 * twice, and in a three membered ring a 1-2 neighbor is found as well.
+	 * As many as fit are stored in result.
+	 *
+	 * @return the number of atoms found, which may exceed result.length
+	 */
+	public int getAngleEnds(int i, int[] result) {
+		int[] centers = Arrays.copyOfRange(neighbors, offsets[i],
+				offsets[i + 1]);
+		Arrays.sort(centers);
+		int count = 0;
+		for (int c : centers) {
+			for (int k = offsets[c]; k < offsets[c + 1]; k++) {
+				int j = neighbors[k];
+				if (j == i) {
+					continue;
+				}
+				if (count < result.length) {
+					result[count] = j;
+				}
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Sets mask[j] to stamp for atom i and every atom within separation
+	 * bonds of it. A new stamp for each atom i avoids clearing the mask.
+	 * The atoms stamped, atom i first, are stored in excluded as far as
+	 * they fit.
+	 *
+	 * @return the number of atoms stamped, which may exceed excluded.length
+	 */
+	public int setExclusions(int i, int separation, int[] mask, int stamp,
+			int[] excluded) {
+		mask[i] = stamp;
+		int count = 0;
+		if (excluded.length > 0) {
+			excluded[0] = i;
+		}
+		count++;
+		int[] frontier = { i };
+		int nfrontier = 1;
+		for (int level = 1; level <= separation; level++) {
+			int[] next = new int[4 * nfrontier + 4];
+			int nnext = 0;
+			for (int f = 0; f < nfrontier; f++) {
+				int a = frontier[f];
+				for (int k = offsets[a]; k < offsets[a + 1]; k++) {
+					int j = neighbors[k];
+					if (mask[j] == stamp) {
+						continue;
+					}
+					mask[j] = stamp;
+					if (count < excluded.length) {
+						excluded[count] = j;
+					}
+					count++;
+					if (nnext == next.length) {
+						next = grow(next);
+					}
+					next[nnext++] = j;
+				}
+			}
+			frontier = next;
+			nfrontier = nnext;
+		}
+		return count;
+	}
+
+	public int size() {
+		return atoms.length;
+	}
+
+	private static boolean contains(int[] a, int n, int j) {
+		for (int i = 0; i < n; i++) {
+			if (a[i] == j) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int[] grow(int[] a) {
+		int[] g = new int[2 * a.length];
+		System.arraycopy(a, 0, g, 0, a.length);
+		return g;
+	}
+}
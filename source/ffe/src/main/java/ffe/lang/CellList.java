@@ -0,0 +1,208 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * The CellList class is a spatial index over the coordinates of a list of
+ * atoms. Space is divided into a uniform grid of cubic cells and each atom
+ * is binned by its position, so a distance query only has to visit the
+ * cells that overlap the query sphere. With a cell edge close to the
+ * typical query radius, finding all pairs within a cutoff is linear in the
+ * number of atoms.
+ *
+ * The coordinates are copied when the CellList is built; it does not
+ * follow atoms that move afterwards.
+ */
+public class CellList {
+
+	private final List<Atom> atoms;
+
+	private final double[] coords;
+
+	private final double[] min = new double[3];
+
+	private final double edge;
+
+	private final int nx, ny, nz;
+
+	// Atoms in cell c are cellAtoms[cellStart[c]] .. cellAtoms[cellStart[c + 1] - 1]
+	private final int[] cellStart;
+
+	private final int[] cellAtoms;
+
+	/*
+	 * Builds a CellList whose cell edge is the cutoff that will typically
+	 * be queried.
+	 */
+	public CellList(List<Atom> atomList, double cutoff) {
+		atoms = atomList;
+		int n = atoms.size();
+		coords = new double[3 * n];
+		double[] max = new double[3];
+		double[] x = new double[3];
+		for (int i = 0; i < n; i++) {
+			atoms.get(i).getXYZ(x);
+			for (int k = 0; k < 3; k++) {
+				coords[3 * i + k] = x[k];
+				if (i == 0 || x[k] < min[k]) {
+					min[k] = x[k];
+				}
+				if (i == 0 || x[k] > max[k]) {
+					max[k] = x[k];
+				}
+			}
+		}
+		// Keep the number of cells proportional to the number of atoms
+		double e = Math.max(cutoff, 1.0e-3);
+		long cells;
+		while (true) {
+			cells = cellCount(max[0] - min[0], e) * cellCount(max[1] - min[1], e)
+					* cellCount(max[2] - min[2], e);
+			if (cells <= Math.max(8, 2L * n)) {
+				break;
+			}
+			e *= 1.25;
+		}
+		edge = e;
+		nx = (int) cellCount(max[0] - min[0], e);
+		ny = (int) cellCount(max[1] - min[1], e);
+		nz = (int) cellCount(max[2] - min[2], e);
+		// Counting sort of the atoms by cell, in list order within a cell
+		int[] cell = new int[n];
+		cellStart = new int[nx * ny * nz + 1];
+		for (int i = 0; i < n; i++) {
+			cell[i] = cellIndex(coords[3 * i], coords[3 * i + 1],
+					coords[3 * i + 2]);
+			cellStart[cell[i] + 1]++;
+		}
+		for (int c = 0; c < cellStart.length - 1; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		int[] fill = new int[cellStart.length];
+		System.arraycopy(cellStart, 0, fill, 0, cellStart.length);
+		cellAtoms = new int[n];
+		for (int i = 0; i < n; i++) {
+			cellAtoms[fill[cell[i]]++] = i;
+		}
+	}
+
+	private static long cellCount(double extent, double e) {
+		return Math.max(1, (long) (extent / e) + 1);
+	}
+
+	private int cell(double x, double m, int count) {
+		int c = (int) Math.floor((x - m) / edge);
+		if (c < 0) {
+			return 0;
+		}
+		if (c >= count) {
+			return count - 1;
+		}
+		return c;
+	}
+
+	private int cellIndex(double x, double y, double z) {
+		return (cell(x, min[0], nx) * ny + cell(y, min[1], ny)) * nz
+				+ cell(z, min[2], nz);
+	}
+
+	public Atom getAtom(int i) {
+		return atoms.get(i);
+	}
+
+	/*
+	 * Returns the atoms within r of the point x, in list order.
+	 */
+	public ArrayList<Atom> getAtoms(double[] x, double r) {
+		int[] found = new int[32];
+		int count = query(x, r, found);
+		if (count > found.length) {
+			found = new int[count];
+			query(x, r, found);
+		}
+		ArrayList<Atom> list = new ArrayList<Atom>(count);
+		for (int k = 0; k < count; k++) {
+			list.add(atoms.get(found[k]));
+		}
+		return list;
+	}
+
+	/*
+	 * Returns the atom nearest to the point x within r, or null.
+	 */
+	public Atom getNearest(double[] x, double r) {
+		Atom nearest = null;
+		double best = r * r;
+		int x0 = cell(x[0] - r, min[0], nx), x1 = cell(x[0] + r, min[0], nx);
+		int y0 = cell(x[1] - r, min[1], ny), y1 = cell(x[1] + r, min[1], ny);
+		int z0 = cell(x[2] - r, min[2], nz), z1 = cell(x[2] + r, min[2], nz);
+		for (int i = x0; i <= x1; i++) {
+			for (int j = y0; j <= y1; j++) {
+				for (int k = z0; k <= z1; k++) {
+					int c = (i * ny + j) * nz + k;
+					for (int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+						double d2 = distance2(x, cellAtoms[p]);
+						if (d2 <= best) {
+							best = d2;
+							nearest = atoms.get(cellAtoms[p]);
+						}
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	/*
+	 * Finds the indices into the atom list of the atoms within r of the
+	 * point x. As many as fit are stored in ascending order in result.
+	 *
+	 * @return the number of atoms found, which may exceed result.length
+	 */
+	public int query(double[] x, double r, int[] result) {
+		int count = 0;
+		double r2 = r * r;
+		int x0 = cell(x[0] - r, min[0], nx), x1 = cell(x[0] + r, min[0], nx);
+		int y0 = cell(x[1] - r, min[1], ny), y1 = cell(x[1] + r, min[1], ny);
+		int z0 = cell(x[2] - r, min[2], nz), z1 = cell(x[2] + r, min[2], nz);
+		for (int i = x0; i <= x1; i++) {
+			for (int j = y0; j <= y1; j++) {
+				for (int k = z0; k <= z1; k++) {
+					int c = (i * ny + j) * nz + k;
+					for (int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+						if (distance2(x, cellAtoms[p]) < r2) {
+							if (count < result.length) {
+								result[count] = cellAtoms[p];
+							}
+							count++;
+						}
+					}
+				}
+			}
+		}
+		Arrays.sort(result, 0, Math.min(count, result.length));
+		return count;
+	}
+
+	private double distance2(double[] x, int i) {
+		double dx = coords[3 * i] - x[0];
+		double dy = coords[3 * i + 1] - x[1];
+		double dz = coords[3 * i + 2] - x[2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	public int size() {
+		return atoms.size();
+	}
+}
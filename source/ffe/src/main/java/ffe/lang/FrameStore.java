@@ -0,0 +1,109 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.List;
+
+import org.jogamp.vecmath.Vector3d;
+
+/*
+ * The FrameStore class holds the coordinates of every frame of a
+ * trajectory for a MolecularAssembly. Each frame is a single float array
+ * of interleaved x, y, z coordinates indexed by Tinker atom number
+ * (Atom.getXYZIndex() - 1), which takes a fraction of the memory of a
+ * Vector3d per atom per frame. Frames are numbered from 0.
+ */
+public class FrameStore {
+
+	protected final int numatoms;
+
+	protected int frames = 0;
+
+	private float[][] store = new float[16][];
+
+	public FrameStore(int n) {
+		numatoms = n;
+	}
+
+	/*
+	 * Appends a frame of interleaved coordinates.
+	 *
+	 * @return the index of the new frame
+	 */
+	public int addFrame(double[] xyz) {
+		float[] f = new float[3 * numatoms];
+		for (int i = 0; i < f.length; i++) {
+			f[i] = (float) xyz[i];
+		}
+		return addFrame(f);
+	}
+
+	/*
+	 * Appends the current coordinates of a list of atoms as a frame.
+	 *
+	 * @return the index of the new frame
+	 */
+	public int addFrame(List<Atom> atoms) {
+		float[] f = new float[3 * numatoms];
+		for (Atom a : atoms) {
+			int i = 3 * (a.getXYZIndex() - 1);
+			f[i] = (float) a.getX();
+			f[i + 1] = (float) a.getY();
+			f[i + 2] = (float) a.getZ();
+		}
+		return addFrame(f);
+	}
+
+	protected int addFrame(float[] f) {
+		if (frames == store.length) {
+			float[][] grow = new float[2 * frames][];
+			System.arraycopy(store, 0, grow, 0, frames);
+			store = grow;
+		}
+		store[frames] = f;
+		return frames++;
+	}
+
+	/*
+	 * Copies the coordinates of one atom in a frame into v.
+	 */
+	public void getCoords(int frame, int index, Vector3d v) {
+		float[] f = getFrame(frame);
+		int i = 3 * index;
+		v.set(f[i], f[i + 1], f[i + 2]);
+	}
+
+	/*
+	 * Returns the interleaved coordinates of a frame; the array must not
+	 * be modified.
+	 */
+	public float[] getFrame(int frame) {
+		return store[frame];
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public int getNumAtoms() {
+		return numatoms;
+	}
+
+	/*
+	 * Moves a list of atoms to the coordinates of a frame.
+	 */
+	public void moveTo(int frame, List<Atom> atoms) {
+		float[] f = getFrame(frame);
+		for (Atom a : atoms) {
+			int i = 3 * (a.getXYZIndex() - 1);
+			a.moveTo(f[i], f[i + 1], f[i + 2]);
+		}
+	}
+}
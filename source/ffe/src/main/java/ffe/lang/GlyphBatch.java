@@ -0,0 +1,457 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.Iterator;
+
+import org.jogamp.java3d.Appearance;
+import org.jogamp.java3d.Behavior;
+import org.jogamp.java3d.BoundingSphere;
+import org.jogamp.java3d.BranchGroup;
+import org.jogamp.java3d.Geometry;
+import org.jogamp.java3d.GeometryArray;
+import org.jogamp.java3d.GeometryUpdater;
+import org.jogamp.java3d.IndexedGeometryArray;
+import org.jogamp.java3d.IndexedTriangleArray;
+import org.jogamp.java3d.Shape3D;
+import org.jogamp.java3d.WakeupOnBehaviorPost;
+import org.jogamp.vecmath.Color3f;
+import org.jogamp.vecmath.Point3d;
+
+/*
+ * The GlyphBatch class draws the vectors (force, velocity, acceleration or
+ * induced dipole) of one MolecularAssembly as arrows in a single Shape3D,
+ * instead of a cylinder and a cone, each under a TransformGroup, per Atom.
+ * Every Atom showing a vector owns a slot of four packed arrays: origin,
+ * unit direction, length and color. The arrows are generated from the
+ * packed arrays into coordinate, normal and color arrays that an
+ * IndexedTriangleArray shares by reference.
+ *
+ * Atoms write their slots from any thread; the arrows are rewritten in
+ * one pass by this Behavior, which is posted to after the first change
+ * since its last pass. Lengths are computed by the Atom, so the UNIT,
+ * RELATIVE and ABSOLUTE vector length models apply as before.
+ */
+final class GlyphBatch extends Behavior implements GeometryUpdater {
+
+	// Facets around the shaft and the head of each arrow
+	private static final int SIDES = 8;
+
+	private static final double SHAFT_RADIUS = 0.05;
+
+	private static final double HEAD_RADIUS = 0.1;
+
+	private static final double HEAD_LENGTH = 0.1;
+
+	private static final int POST = 1;
+
+	/*
+	 * The arrow template about the axis of a local frame. Vertex i lies at
+	 * radius[i] along the radial direction (cos[i], sin[i]), and at
+	 * axial[i] + length * stretch[i] along the axis; its normal is
+	 * radialNormal[i] along the radial direction plus axialNormal[i] along
+	 * the axis.
+	 */
+	private static final int VERTICES = 4 * SIDES + 2;
+
+	private static final double cos[] = new double[VERTICES];
+
+	private static final double sin[] = new double[VERTICES];
+
+	private static final double radius[] = new double[VERTICES];
+
+	private static final double stretch[] = new double[VERTICES];
+
+	private static final double axial[] = new double[VERTICES];
+
+	private static final double radialNormal[] = new double[VERTICES];
+
+	private static final double axialNormal[] = new double[VERTICES];
+
+	private static final int indices[] = new int[12 * SIDES];
+
+	private final MolecularAssembly molecularAssembly;
+
+	private final BranchGroup branchGroup;
+
+	private final Shape3D shape;
+
+	private final WakeupOnBehaviorPost post = new WakeupOnBehaviorPost(this,
+			POST);
+
+	private IndexedTriangleArray geometry = null;
+
+	private float coordinates[];
+
+	private float normals[];
+
+	private float colors[];
+
+	// The packed arrays, 3 values per slot except for lengths
+	private Atom atoms[] = new Atom[16];
+
+	private double origins[] = new double[48];
+
+	private double directions[] = new double[48];
+
+	private double lengths[] = new double[16];
+
+	private float glyphColors[] = new float[48];
+
+	private final float color[] = new float[3];
+
+	private int size = 0;
+
+	private boolean dirty = false;
+
+	private boolean posted = false;
+
+	GlyphBatch(MolecularAssembly m) {
+		molecularAssembly = m;
+		Appearance ap = new Appearance();
+		// The vertex colors replace the diffuse color of the Material
+		ap.setMaterial(RendererCache.materialFactory(RendererCache.WHITE));
+		ap.setRenderingAttributes(RendererCache.renderingAttributes);
+		ap.setColoringAttributes(RendererCache.coloringAttributes);
+		ap.setPolygonAttributes(RendererCache.fillPolygonAttributes);
+		shape = new Shape3D();
+		shape.setAppearance(ap);
+		shape.setUserData(molecularAssembly);
+		shape.setCapability(Shape3D.ALLOW_GEOMETRY_READ);
+		shape.setCapability(Shape3D.ALLOW_GEOMETRY_WRITE);
+		shape.setCapability(Shape3D.ENABLE_PICK_REPORTING);
+		shape.setPickable(true);
+		branchGroup = new BranchGroup();
+		branchGroup.setCapability(BranchGroup.ALLOW_DETACH);
+		branchGroup.addChild(shape);
+		setSchedulingBounds(new BoundingSphere(new Point3d(),
+				Double.POSITIVE_INFINITY));
+		branchGroup.addChild(this);
+	}
+
+	BranchGroup getBranchGroup() {
+		return branchGroup;
+	}
+
+	/*
+	 * Shows the atom's vector at its position with the given direction,
+	 * length and color, or updates it.
+	 */
+	void set(Atom atom, double vector[], double length, Color3f c) {
+		synchronized (this) {
+			if (atom.glyphSlot < 0) {
+				add(atom);
+			}
+			int k = 3 * atom.glyphSlot;
+			double r = Math.sqrt(vector[0] * vector[0] + vector[1] * vector[1]
+					+ vector[2] * vector[2]);
+			origins[k] = atom.getX();
+			origins[k + 1] = atom.getY();
+			origins[k + 2] = atom.getZ();
+			for (int i = 0; i < 3; i++) {
+				directions[k + i] = r > 0.0 ? vector[i] / r : 0.0;
+			}
+			lengths[atom.glyphSlot] = r > 0.0 ? length : 0.0;
+			c.get(color);
+			glyphColors[k] = color[0];
+			glyphColors[k + 1] = color[1];
+			glyphColors[k + 2] = color[2];
+			dirty = true;
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	/*
+	 * Changes the color of the atom's vector.
+	 */
+	void setColor(Atom atom, Color3f c) {
+		synchronized (this) {
+			if (atom.glyphSlot < 0) {
+				return;
+			}
+			int k = 3 * atom.glyphSlot;
+			c.get(color);
+			glyphColors[k] = color[0];
+			glyphColors[k + 1] = color[1];
+			glyphColors[k + 2] = color[2];
+			dirty = true;
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	/*
+	 * Hides the atom's vector.
+	 */
+	void remove(Atom atom) {
+		synchronized (this) {
+			int slot = atom.glyphSlot;
+			if (slot < 0) {
+				return;
+			}
+			Atom last = atoms[--size];
+			if (slot != size) {
+				// Move the last slot into the hole
+				System.arraycopy(origins, 3 * size, origins, 3 * slot, 3);
+				System.arraycopy(directions, 3 * size, directions, 3 * slot, 3);
+				System.arraycopy(glyphColors, 3 * size, glyphColors, 3 * slot,
+						3);
+				lengths[slot] = lengths[size];
+				atoms[slot] = last;
+				last.glyphSlot = slot;
+			}
+			atoms[size] = null;
+			atom.glyphSlot = -1;
+			dirty = true;
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	/*
+	 * Returns the atom whose vector is drawn with a vertex of the shape.
+	 */
+	synchronized Atom getAtom(Shape3D s, int vertex) {
+		if (s != shape) {
+			return null;
+		}
+		int slot = vertex / VERTICES;
+		return slot < size ? atoms[slot] : null;
+	}
+
+	private void add(Atom atom) {
+		if (size == atoms.length) {
+			int n = 2 * size;
+			Atom grownAtoms[] = new Atom[n];
+			System.arraycopy(atoms, 0, grownAtoms, 0, size);
+			atoms = grownAtoms;
+			origins = grow(origins, 3 * n);
+			directions = grow(directions, 3 * n);
+			lengths = grow(lengths, n);
+			float grownColors[] = new float[3 * n];
+			System.arraycopy(glyphColors, 0, grownColors, 0, 3 * size);
+			glyphColors = grownColors;
+		}
+		atom.glyphSlot = size;
+		atoms[size++] = atom;
+	}
+
+	private static double[] grow(double a[], int n) {
+		double grown[] = new double[n];
+		System.arraycopy(a, 0, grown, 0, a.length);
+		return grown;
+	}
+
+	/*
+	 * Returns true if the caller should post to this Behavior, which is
+	 * done outside the lock so as not to hold it while Java3D schedules.
+	 */
+	private boolean post() {
+		if (posted || !isLive()) {
+			return false;
+		}
+		posted = true;
+		return true;
+	}
+
+	/*
+	 * Resizes the geometry to the vectors, then writes their arrows.
+	 */
+	private synchronized void flush() {
+		posted = false;
+		if (!dirty) {
+			return;
+		}
+		int capacity = geometry == null ? 0 : geometry.getVertexCount()
+				/ VERTICES;
+		if (geometry == null || size > capacity
+				|| (capacity > 16 && size < capacity / 4)) {
+			allocate(Math.max(16, 2 * size));
+		} else {
+			geometry.updateData(this);
+		}
+		geometry.setValidIndexCount(size * indices.length);
+		dirty = false;
+	}
+
+	private void allocate(int capacity) {
+		int vertexCount = capacity * VERTICES;
+		geometry = new IndexedTriangleArray(vertexCount,
+				GeometryArray.COORDINATES | GeometryArray.NORMALS
+						| GeometryArray.COLOR_3 | GeometryArray.BY_REFERENCE
+						| GeometryArray.USE_COORD_INDEX_ONLY, capacity
+						* indices.length);
+		geometry.setCapability(GeometryArray.ALLOW_REF_DATA_READ);
+		geometry.setCapability(GeometryArray.ALLOW_REF_DATA_WRITE);
+		geometry.setCapability(GeometryArray.ALLOW_COUNT_READ);
+		geometry.setCapability(GeometryArray.ALLOW_COUNT_WRITE);
+		geometry.setCapability(GeometryArray.ALLOW_FORMAT_READ);
+		geometry.setCapability(GeometryArray.ALLOW_COORDINATE_READ);
+		geometry.setCapability(IndexedGeometryArray.ALLOW_COORDINATE_INDEX_READ);
+		geometry.setCapability(Geometry.ALLOW_INTERSECT);
+		coordinates = new float[3 * vertexCount];
+		normals = new float[3 * vertexCount];
+		colors = new float[3 * vertexCount];
+		int coordinateIndices[] = new int[capacity * indices.length];
+		for (int s = 0; s < capacity; s++) {
+			int offset = s * VERTICES;
+			int k = s * indices.length;
+			for (int i = 0; i < indices.length; i++) {
+				coordinateIndices[k + i] = indices[i] + offset;
+			}
+		}
+		geometry.setCoordinateIndices(0, coordinateIndices);
+		updateData(geometry);
+		geometry.setCoordRefFloat(coordinates);
+		geometry.setNormalRefFloat(normals);
+		geometry.setColorRefFloat(colors);
+		shape.setGeometry(geometry);
+	}
+
+	/*
+	 * Writes each arrow into the coordinate, normal and color arrays.
+	 */
+	public void updateData(Geometry g) {
+		for (int s = 0; s < size; s++) {
+			int k = 3 * s;
+			double ox = origins[k];
+			double oy = origins[k + 1];
+			double oz = origins[k + 2];
+			double dx = directions[k];
+			double dy = directions[k + 1];
+			double dz = directions[k + 2];
+			double length = lengths[s];
+			float red = glyphColors[k];
+			float green = glyphColors[k + 1];
+			float blue = glyphColors[k + 2];
+			int v = s * VERTICES * 3;
+			if (length <= 0.0) {
+				// Collapse the arrow onto its origin
+				for (int i = 0; i < VERTICES; i++, v += 3) {
+					coordinates[v] = (float) ox;
+					coordinates[v + 1] = (float) oy;
+					coordinates[v + 2] = (float) oz;
+					normals[v] = (float) dx;
+					normals[v + 1] = (float) dy;
+					normals[v + 2] = (float) dz;
+					colors[v] = red;
+					colors[v + 1] = green;
+					colors[v + 2] = blue;
+				}
+				continue;
+			}
+			// U is perpendicular to the direction, W completes the frame
+			double ux, uy, uz;
+			if (Math.abs(dx) < 0.9) {
+				ux = 1.0 - dx * dx;
+				uy = -dx * dy;
+				uz = -dx * dz;
+			} else {
+				ux = -dy * dx;
+				uy = 1.0 - dy * dy;
+				uz = -dy * dz;
+			}
+			double n = 1.0 / Math.sqrt(ux * ux + uy * uy + uz * uz);
+			ux *= n;
+			uy *= n;
+			uz *= n;
+			double wx = dy * uz - dz * uy;
+			double wy = dz * ux - dx * uz;
+			double wz = dx * uy - dy * ux;
+			for (int i = 0; i < VERTICES; i++, v += 3) {
+				double ex = cos[i] * ux + sin[i] * wx;
+				double ey = cos[i] * uy + sin[i] * wy;
+				double ez = cos[i] * uz + sin[i] * wz;
+				double a = axial[i] + length * stretch[i];
+				coordinates[v] = (float) (ox + radius[i] * ex + a * dx);
+				coordinates[v + 1] = (float) (oy + radius[i] * ey + a * dy);
+				coordinates[v + 2] = (float) (oz + radius[i] * ez + a * dz);
+				normals[v] = (float) (radialNormal[i] * ex + axialNormal[i] * dx);
+				normals[v + 1] = (float) (radialNormal[i] * ey + axialNormal[i]
+						* dy);
+				normals[v + 2] = (float) (radialNormal[i] * ez + axialNormal[i]
+						* dz);
+				colors[v] = red;
+				colors[v + 1] = green;
+				colors[v + 2] = blue;
+			}
+		}
+	}
+
+	public void initialize() {
+		// Changes made before the batch was live
+		flush();
+		wakeupOn(post);
+	}
+
+	public void processStimulus(Iterator criteria) {
+		flush();
+		wakeupOn(post);
+	}
+
+	/*
+	 * Builds the arrow template: the rings at the foot and the top of the
+	 * shaft, the ring of the cap under the head, the ring of the head's
+	 * side, the tip and the center of the cap. The foot of the shaft is
+	 * inside the atom and is left open.
+	 */
+	static {
+		double slant = 1.0 / Math.sqrt(HEAD_RADIUS * HEAD_RADIUS
+				+ HEAD_LENGTH * HEAD_LENGTH);
+		for (int j = 0; j < SIDES; j++) {
+			double theta = 2.0 * Math.PI * j / SIDES;
+			for (int ring = 0; ring < 4; ring++) {
+				int i = ring * SIDES + j;
+				cos[i] = Math.cos(theta);
+				sin[i] = Math.sin(theta);
+				stretch[i] = ring == 0 ? 0.0 : 1.0;
+				switch (ring) {
+				case 0:
+				case 1:
+					radius[i] = SHAFT_RADIUS;
+					radialNormal[i] = 1.0;
+					break;
+				case 2:
+					radius[i] = HEAD_RADIUS;
+					axialNormal[i] = -1.0;
+					break;
+				default:
+					radius[i] = HEAD_RADIUS;
+					radialNormal[i] = HEAD_LENGTH * slant;
+					axialNormal[i] = HEAD_RADIUS * slant;
+				}
+			}
+		}
+		int tip = 4 * SIDES;
+		int center = tip + 1;
+		stretch[tip] = 1.0;
+		axial[tip] = HEAD_LENGTH;
+		axialNormal[tip] = 1.0;
+		stretch[center] = 1.0;
+		axialNormal[center] = -1.0;
+		// Wind every triangle counter-clockwise seen from outside
+		int k = 0;
+		for (int j = 0; j < SIDES; j++) {
+			int next = (j + 1) % SIDES;
+			int facets[] = { j, next, SIDES + next, j, SIDES + next, SIDES + j,
+					3 * SIDES + j, 3 * SIDES + next, tip, center,
+					2 * SIDES + next, 2 * SIDES + j };
+			System.arraycopy(facets, 0, indices, k, facets.length);
+			k += facets.length;
+		}
+	}
+}
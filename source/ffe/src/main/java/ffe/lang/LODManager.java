@@ -0,0 +1,226 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.jogamp.java3d.Behavior;
+import org.jogamp.java3d.BoundingSphere;
+import org.jogamp.java3d.Canvas3D;
+import org.jogamp.java3d.Node;
+import org.jogamp.java3d.Transform3D;
+import org.jogamp.java3d.View;
+import org.jogamp.java3d.WakeupOnElapsedFrames;
+import org.jogamp.vecmath.Point3d;
+
+/*
+ * The LODManager class chooses the level of detail of each residue and
+ * molecule of a MolecularAssembly from its size on the screen. Every few
+ * frames the bounding sphere of each cluster is projected onto the
+ * canvas; spheres and bond cylinders of a cluster that spans few pixels
+ * per Angstrom are drawn with coarser geometry, while those near the
+ * viewer keep RendererCache.detail. Clusters outside the view frustum
+ * are culled: their spheres and vectors are not drawn and their Atoms and
+ * Bonds are not updated until they come back into view.
+ *
+ * Setting ffe.lod to false turns the manager off.
+ */
+final class LODManager extends Behavior {
+
+	static final boolean enabled = System.getProperty("ffe.lod", "true")
+			.equalsIgnoreCase("true");
+
+	// The highest detail of RendererCache geometry
+	static final int MAX_DETAIL = 10;
+
+	// Frames between evaluations
+	private static final int FRAMES = 5;
+
+	// Angstroms added to each cluster radius for spheres and vectors
+	private static final double MARGIN = 4.0;
+
+	// Pixels per Angstrom below which each detail is used
+	private static final double PIXELS[] = { 2.0, 4.0, 8.0, 16.0 };
+
+	private static final int DETAIL[] = { 0, 2, 5, 8 };
+
+	private final MolecularAssembly molecularAssembly;
+
+	private final WakeupOnElapsedFrames wakeup = new WakeupOnElapsedFrames(
+			FRAMES, true);
+
+	private final Transform3D localToVworld = new Transform3D();
+
+	private final Transform3D toImagePlate = new Transform3D();
+
+	private final Point3d point = new Point3d();
+
+	private final Point3d eye = new Point3d();
+
+	private final Point3d corner = new Point3d();
+
+	private final Point3d oppositeCorner = new Point3d();
+
+	private Cluster clusters[] = null;
+
+	// Modification count of the assembly when the clusters were built
+	private int clusterCount = -1;
+
+	/*
+	 * The Atoms and Bonds of one residue or molecule.
+	 */
+	private static final class Cluster {
+		private final Atom atoms[];
+
+		private final Bond bonds[];
+
+		private int detail = MAX_DETAIL;
+
+		private boolean culled = false;
+
+		Cluster(MSGroup group) {
+			ArrayList<Atom> atomList = group.getAtomList();
+			atoms = atomList.toArray(new Atom[atomList.size()]);
+			ArrayList<ROLS> bondList = group.getBondList();
+			bonds = new Bond[bondList.size()];
+			for (int i = 0; i < bonds.length; i++) {
+				bonds[i] = (Bond) bondList.get(i);
+			}
+		}
+
+		void set(int d, boolean c) {
+			if (d == detail && c == culled) {
+				return;
+			}
+			detail = d;
+			culled = c;
+			for (Atom atom : atoms) {
+				atom.setLOD(d, c);
+			}
+			for (Bond bond : bonds) {
+				bond.setLOD(d, c);
+			}
+		}
+	}
+
+	LODManager(MolecularAssembly m) {
+		molecularAssembly = m;
+		setCapability(Node.ALLOW_LOCAL_TO_VWORLD_READ);
+		setSchedulingBounds(new BoundingSphere(new Point3d(),
+				Double.POSITIVE_INFINITY));
+	}
+
+	public void initialize() {
+		wakeupOn(wakeup);
+	}
+
+	public void processStimulus(Iterator criteria) {
+		evaluate();
+		wakeupOn(wakeup);
+	}
+
+	private void evaluate() {
+		View view = getView();
+		if (view == null || view.numCanvas3Ds() == 0) {
+			return;
+		}
+		Canvas3D canvas = view.getCanvas3D(0);
+		if (canvas.getWidth() <= 0 || canvas.getHeight() <= 0) {
+			return;
+		}
+		int modCount = molecularAssembly.getModificationCount();
+		if (clusters == null || clusterCount != modCount) {
+			ArrayList<MSGroup> groups = molecularAssembly.getLODClusters();
+			clusters = new Cluster[groups.size()];
+			for (int i = 0; i < clusters.length; i++) {
+				clusters[i] = new Cluster(groups.get(i));
+			}
+			clusterCount = modCount;
+		}
+		// Local coordinates to image plate coordinates (meters)
+		getLocalToVworld(localToVworld);
+		canvas.getVworldToImagePlate(toImagePlate);
+		toImagePlate.mul(localToVworld);
+		double scale = toImagePlate.getScale();
+		canvas.getCenterEyeInImagePlate(eye);
+		boolean parallel = view.getProjectionPolicy() == View.PARALLEL_PROJECTION;
+		// The window within the image plate; pixel y runs downward
+		canvas.getPixelLocationInImagePlate(0, 0, corner);
+		canvas.getPixelLocationInImagePlate(canvas.getWidth(), canvas
+				.getHeight(), oppositeCorner);
+		double minX = Math.min(corner.x, oppositeCorner.x);
+		double maxX = Math.max(corner.x, oppositeCorner.x);
+		double minY = Math.min(corner.y, oppositeCorner.y);
+		double maxY = Math.max(corner.y, oppositeCorner.y);
+		double pixelsPerMeter = canvas.getWidth() / (maxX - minX);
+		int maxDetail = RendererCache.detail;
+		for (Cluster cluster : clusters) {
+			Atom atoms[] = cluster.atoms;
+			if (atoms.length == 0) {
+				continue;
+			}
+			// Bounding sphere of the cluster
+			double x = 0.0, y = 0.0, z = 0.0;
+			for (Atom atom : atoms) {
+				x += atom.getX();
+				y += atom.getY();
+				z += atom.getZ();
+			}
+			x /= atoms.length;
+			y /= atoms.length;
+			z /= atoms.length;
+			double r2 = 0.0;
+			for (Atom atom : atoms) {
+				double dx = atom.getX() - x;
+				double dy = atom.getY() - y;
+				double dz = atom.getZ() - z;
+				r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+			}
+			double radius = (Math.sqrt(r2) + MARGIN) * scale;
+			point.set(x, y, z);
+			toImagePlate.transform(point);
+			// Perspective projection onto the image plate at z = 0
+			double f = 1.0;
+			if (!parallel) {
+				double depth = eye.z - point.z;
+				if (depth < -radius) {
+					// Behind the eye
+					cluster.set(cluster.detail, true);
+					continue;
+				}
+				if (depth <= radius) {
+					// Around the eye
+					cluster.set(maxDetail, false);
+					continue;
+				}
+				f = eye.z / depth;
+				point.x = eye.x + (point.x - eye.x) * f;
+				point.y = eye.y + (point.y - eye.y) * f;
+			}
+			double projected = radius * f;
+			if (point.x + projected < minX || point.x - projected > maxX
+					|| point.y + projected < minY
+					|| point.y - projected > maxY) {
+				cluster.set(cluster.detail, true);
+				continue;
+			}
+			double pixelsPerAngstrom = scale * f * pixelsPerMeter;
+			int detail = MAX_DETAIL;
+			for (int i = 0; i < PIXELS.length; i++) {
+				if (pixelsPerAngstrom < PIXELS[i]) {
+					detail = DETAIL[i];
+					break;
+				}
+			}
+			cluster.set(Math.min(detail, maxDetail), false);
+		}
+	}
+}
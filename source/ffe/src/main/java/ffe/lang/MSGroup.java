@@ -11,7 +11,6 @@ package ffe.lang;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.logging.Logger;
 
 import org.jogamp.java3d.BranchGroup;
@@ -96,10 +95,12 @@ public abstract class MSGroup extends MSNode {
 	 */
 	public abstract void addMSNode(MSNode m);
 
+	/*
+	 * Collects the bonds between atoms of this MultiScaleGroup. Angles and
+	 * Dihedrals are only indexed; see ValenceTermNode.
+	 */
 	public void collectValenceTerms() {
 		MSNode b = new MSNode("Bonds");
-		MSNode a = new MSNode("Angles");
-		MSNode d = new MSNode("Dihedrals");
 
 		// Collect all bonds for which both atoms are in this MultiScaleGroup
 		ArrayList<Bond> newBonds = new ArrayList<Bond>();
@@ -115,58 +116,33 @@ public abstract class MSGroup extends MSNode {
 		}
 		b.setName("Bonds (" + b.getChildCount() + ")");
 		setBonds(b);
-		// Collect Angles
-		ArrayList<Angle> angleAL = new ArrayList<Angle>();
-		for (Atom a1 : getAtomList()) {
-			int index = 0;
-			if (a1.getBonds() != null) {
-				for (Bond b1 : a1.getBonds()) {
-					index++;
-					for (ListIterator<Bond> li = a1.getBonds().listIterator(
-							index); li.hasNext();) {
-						Bond b2 = li.next();
-						Angle an1 = new Angle(b1, b2);
-						a.insert(an1, 0);
-						angleAL.add(an1);
-					}
-				}
-			}
-		}
-		a.setName("Angles (" + a.getChildCount() + ")");
-		setAngles(a);
-		// Collect Dihedrals
-		for (Bond b1 : newBonds) {
-			Atom a1 = b1.getAtom(0);
-			Atom a2 = b1.getAtom(1);
-			ArrayList<Bond> a1Bonds = a1.getBonds();
-			ArrayList<Bond> a2Bonds = a2.getBonds();
-			if (a1Bonds != null && a2Bonds != null) {
-				for (Bond b2 : a1.getBonds()) {
-					if (b2 != b1) {
-						for (Bond b3 : a2.getBonds()) {
-							if (b3 != b1) {
-								d.add(new Dihedral(b2, b1, b3));
-							}
-						}
-					}
-				}
-			}
-		}
-		d.setName("Dihedrals (" + d.getChildCount() + ")");
-		setDihedrals(d);
+		setAngles(ValenceTermNode.angles(getAtomView()));
+		setDihedrals(ValenceTermNode.dihedrals(newBonds));
 	}
 
 	public void constructValenceTerms() {
 		MSNode b = new MSNode("Bonds");
 		MSNode a = new MSNode("Angles");
 		MSNode d = new MSNode("Dihedrals");
-		int index = 0;
 		ArrayList<Atom> atomList = getAtomList();
-		for (Atom a1 : atomList) {
-			index++;
-			for (ListIterator li = atomList.listIterator(index); li.hasNext();) {
-				Atom a2 = (Atom) li.next();
-				a1.getXYZ(da);
+		// Only atoms in neighboring cells can be close enough to bond
+		double cutoff = getBondCutoff(atomList);
+		CellList cellList = new CellList(atomList, cutoff);
+		int[] neighbors = new int[64];
+		for (int i = 0; i < atomList.size(); i++) {
+			Atom a1 = atomList.get(i);
+			a1.getXYZ(da);
+			int count = cellList.query(da, cutoff, neighbors);
+			if (count > neighbors.length) {
+				neighbors = new int[2 * count];
+				count = cellList.query(da, cutoff, neighbors);
+			}
+			for (int n = 0; n < count; n++) {
+				// Pairs are visited in the original list order
+				if (neighbors[n] <= i) {
+					continue;
+				}
+				Atom a2 = atomList.get(neighbors[n]);
 				a2.getXYZ(db);
 				double d1 = VectorMath.dist(da, db);
 				double d2 = Bond.BUFF + a1.getVDWR() / 2 + a2.getVDWR() / 2;
@@ -202,6 +178,25 @@ public abstract class MSGroup extends MSNode {
 		setDihedrals(d);
 	}
 
+	/*
+	 * Returns the longest distance at which two atoms of a list are bonded.
+	 */
+	private static double getBondCutoff(List<Atom> atoms) {
+		double vdw = 0.0;
+		for (Atom a : atoms) {
+			vdw = Math.max(vdw, a.getVDWR());
+		}
+		return Bond.BUFF + vdw;
+	}
+
+	/*
+	 * Returns a CellList over the atoms of this MSGroup, for distance
+	 * queries such as picking and measurement.
+	 */
+	public CellList getCellList(double cutoff) {
+		return new CellList(getAtomList(), cutoff);
+	}
+
 	/*
 	 * Joiner joins
 	 * 
@@ -255,9 +250,20 @@ public abstract class MSGroup extends MSNode {
 	 */
 	public Joint createJoint(MSGroup m1, MSGroup m2) {
 		Joint joint = null;
+		ArrayList<Atom> atoms2 = m2.getAtomList();
+		double cutoff = Math.max(getBondCutoff(m1.getAtomList()),
+				getBondCutoff(atoms2));
+		CellList cellList = new CellList(atoms2, cutoff);
+		int[] neighbors = new int[64];
 		for (Atom a1 : m1.getAtomList()) {
 			a1.getXYZ(da);
-			for (Atom a2 : m2.getAtomList()) {
+			int count = cellList.query(da, cutoff, neighbors);
+			if (count > neighbors.length) {
+				neighbors = new int[2 * count];
+				count = cellList.query(da, cutoff, neighbors);
+			}
+			for (int n = 0; n < count; n++) {
+				Atom a2 = atoms2.get(neighbors[n]);
 				a2.getXYZ(db);
 				double d1 = VectorMath.dist(da, db);
 				double d2 = Bond.BUFF + a1.getVDWR() / 2 + a2.getVDWR() / 2;
@@ -312,7 +318,7 @@ public abstract class MSGroup extends MSNode {
 	 * Returns the MSNode at the given index.
 	 */
 	public MSNode getAtomNode(int index) {
-		return (MSNode) getAtomNodeList().get(index);
+		return getAtomNodeList().get(index);
 	}
 
 	/*
@@ -323,13 +329,13 @@ public abstract class MSGroup extends MSNode {
 		if (i == -1) {
 			return null;
 		}
-		return (MSNode) getAtomNodeList().get(i);
+		return getAtomNodeList().get(i);
 	}
 
 	/*
 	 * Returns an ArrayList of the AtomNode's children.
 	 */
-	public ArrayList getAtomNodeList() {
+	public ArrayList<MSNode> getAtomNodeList() {
 		return atomNode.getChildList();
 	}
 
@@ -376,7 +382,7 @@ public abstract class MSGroup extends MSNode {
 	/*
 	 * Returns the MultiScaleGroup's dangelingatoms list.
 	 */
-	public ArrayList getDangelingAtoms() {
+	public ArrayList<Atom> getDangelingAtoms() {
 		return dangelingatoms;
 	}
 
@@ -459,11 +465,11 @@ public abstract class MSGroup extends MSNode {
 		if (bondNode.getChildCount() == 0 && !(bondNode.getParent() == null)) {
 			termNode.remove(bondNode);
 		}
-		if (angleNode.getChildCount() == 0 && !(angleNode.getParent() == null)) {
+		// Unmaterialized terms are not children, but are not leaves
+		if (angleNode.isLeaf() && !(angleNode.getParent() == null)) {
 			termNode.remove(angleNode);
 		}
-		if (dihedralNode.getChildCount() == 0
-				&& !(dihedralNode.getParent() == null)) {
+		if (dihedralNode.isLeaf() && !(dihedralNode.getParent() == null)) {
 			termNode.remove(dihedralNode);
 		}
 		if (termNode.getChildCount() == 0) {
@@ -10,11 +10,14 @@
 package ffe.lang;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.ListIterator;
 
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreeNode;
 
 import org.jogamp.java3d.BranchGroup;
@@ -51,6 +54,26 @@ public class MSNode extends DefaultMutableTreeNode implements ROLS {
 
 	protected boolean selected = false;
 
+	// Number of changes to the tree below this node
+	private int modCount = 0;
+
+	// Flattened atoms and bonds below this node
+	private SubtreeCache cache = null;
+
+	/*
+	 * The atoms and bonds below a node, valid while the modification
+	 * count of the node is unchanged.
+	 */
+	private static final class SubtreeCache {
+		int atomCount = -1;
+
+		List<Atom> atoms;
+
+		int bondCount = -1;
+
+		List<ROLS> bonds;
+	}
+
 	/*
 	 * Default MSNode Constructor
 	 */
@@ -130,29 +153,61 @@ public class MSNode extends DefaultMutableTreeNode implements ROLS {
 	 * Returns an ArrayList of all Atoms below the present MSNode.
 	 */
 	public ArrayList<Atom> getAtomList() {
-		ArrayList<Atom> arrayList = new ArrayList<Atom>();
-		Enumeration e = depthFirstEnumeration();
-		while (e.hasMoreElements()) {
-			MSNode dataNode = (MSNode) e.nextElement();
-			if (dataNode instanceof Atom) {
-				arrayList.add((Atom) dataNode);
+		return new ArrayList<Atom>(getAtomView());
+	}
+
+	/*
+	 * Returns an unmodifiable List of all Atoms below the present MSNode.
+	 * The tree is only walked again after it has changed.
+	 */
+	public List<Atom> getAtomView() {
+		if (cache == null) {
+			cache = new SubtreeCache();
+		}
+		if (cache.atomCount != modCount) {
+			ArrayList<Atom> arrayList = new ArrayList<Atom>();
+			Enumeration e = depthFirstEnumeration();
+			while (e.hasMoreElements()) {
+				MSNode dataNode = (MSNode) e.nextElement();
+				if (dataNode instanceof Atom) {
+					arrayList.add((Atom) dataNode);
+				}
 			}
+			Atom[] atoms = arrayList.toArray(new Atom[arrayList.size()]);
+			cache.atoms = Collections.unmodifiableList(Arrays.asList(atoms));
+			cache.atomCount = modCount;
 		}
-		return arrayList;
+		return cache.atoms;
 	}
 
 	/*
 	 * Returns an ArrayList of all Bonds below the present MSNode.
 	 */
 	public ArrayList<ROLS> getBondList() {
-		ArrayList<ROLS> arrayList = new ArrayList<ROLS>();
-		return getList(Bond.class, arrayList);
+		return new ArrayList<ROLS>(getBondView());
+	}
+
+	/*
+	 * Returns an unmodifiable List of all Bonds below the present MSNode.
+	 */
+	public List<ROLS> getBondView() {
+		if (cache == null) {
+			cache = new SubtreeCache();
+		}
+		if (cache.bondCount != modCount) {
+			ArrayList<ROLS> arrayList = getList(Bond.class,
+					new ArrayList<ROLS>());
+			ROLS[] bonds = arrayList.toArray(new ROLS[arrayList.size()]);
+			cache.bonds = Collections.unmodifiableList(Arrays.asList(bonds));
+			cache.bondCount = modCount;
+		}
+		return cache.bonds;
 	}
 
 	public double[] getCenter(boolean w) {
 		double[] Rc = { 0, 0, 0 };
 		double sum = 0, mass = 1;
-		ArrayList<Atom> atomList = getAtomList();
+		List<Atom> atomList = getAtomView();
 		for (Atom a : atomList) {
 			if (w) {
 				mass = a.getMass();
@@ -242,14 +297,22 @@ public class MSNode extends DefaultMutableTreeNode implements ROLS {
 		return null;
 	}
 
+	/*
+	 * Returns a count that changes whenever a node is added to or removed
+	 * from the tree below this node.
+	 */
+	public int getModificationCount() {
+		return modCount;
+	}
+
 	public int getMultiScaleLevel() {
 		return MultiScaleLevel;
 	}
 
 	public double getMW() {
 		double weight = 0.0;
-		for (ListIterator<Atom> li = getAtomList().listIterator(); li.hasNext();) {
-			weight += li.next().getMass();
+		for (Atom a : getAtomView()) {
+			weight += a.getMass();
 		}
 		return weight;
 	}
@@ -265,6 +328,14 @@ public class MSNode extends DefaultMutableTreeNode implements ROLS {
 		return HashCodeUtil.hash(HashCodeUtil.DATANODESEED, name.hashCode());
 	}
 
+	/*
+	 * Adding a child is a change to this node and all of its ancestors.
+	 */
+	public void insert(MutableTreeNode newChild, int childIndex) {
+		super.insert(newChild, childIndex);
+		treeChanged();
+	}
+
 	public boolean isSelected() {
 		return selected;
 	}
@@ -276,6 +347,11 @@ public class MSNode extends DefaultMutableTreeNode implements ROLS {
 		System.out.println(name);
 	}
 
+	public void remove(int childIndex) {
+		super.remove(childIndex);
+		treeChanged();
+	}
+
 	public void setColor(RendererCache.ColorModel colorModel, Color3f color,
 			Material mat) {
 		for (Enumeration e = children(); e.hasMoreElements();) {
@@ -314,6 +390,12 @@ public class MSNode extends DefaultMutableTreeNode implements ROLS {
 		return name;
 	}
 
+	private void treeChanged() {
+		for (TreeNode n = this; n instanceof MSNode; n = n.getParent()) {
+			((MSNode) n).modCount++;
+		}
+	}
+
 	public void update() {
 		for (Enumeration e = children(); e.hasMoreElements();) {
 			MSNode node = (MSNode) e.nextElement();
@@ -12,9 +12,12 @@ package ffe.lang;
 import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 import java.util.Vector;
 import java.util.logging.Logger;
 
@@ -72,6 +75,16 @@ public class MolecularAssembly extends MSGroup {
 
 	private int currentCycle = 1;
 
+	// Coordinates of every archive frame
+	private FrameStore frameStore = null;
+
+	// Bonded topology, built when the assembly is finalized
+	private BondGraph bondGraph = null;
+
+	// Rotates assigned multipoles as the atoms move; null until
+	// multipoles are assigned
+	private Simulation simulation = null;
+
 	private Vector<String> altLoc = null;
 
 	// Data Nodes
@@ -108,8 +121,14 @@ public class MolecularAssembly extends MSGroup {
 
 	private Shape3D wire;
 
+	private WireBatch wireBatch;
+
 	private BranchGroup childNodes;
 
+	private SphereBatch sphereBatch;
+
+	private GlyphBatch glyphBatch;
+
 	private Atom[] atomLookUp;
 
 	private LineAttributes lineAttributes;
@@ -118,8 +137,12 @@ public class MolecularAssembly extends MSGroup {
 
 	private ArrayList<ROLS> bondList = null;
 
+	private int bondListCount = -1;
+
 	private ArrayList<Atom> atomList = null;
 
+	private int atomListCount = -1;
+
 	private final ArrayList<BranchGroup> myNewShapes = new ArrayList<BranchGroup>();
 
 	// Constructors
@@ -340,6 +363,16 @@ public class MolecularAssembly extends MSGroup {
 		if (wire != null) {
 			base.addChild(wire);
 		}
+		if (wireBatch != null) {
+			base.addChild(wireBatch);
+		}
+		sphereBatch = new SphereBatch(this);
+		base.addChild(sphereBatch.getBranchGroup());
+		glyphBatch = new GlyphBatch(this);
+		base.addChild(glyphBatch.getBranchGroup());
+		if (LODManager.enabled) {
+			base.addChild(new LODManager(this));
+		}
 		switchGroup.setWhichChild(Switch.CHILD_ALL);
 		rotToCOM.addChild(switchGroup);
 		originToRot.addChild(rotToCOM);
@@ -390,6 +423,7 @@ public class MolecularAssembly extends MSGroup {
 		createScene(!finalizeGroups);
 		center();
 		removeLeaves();
+		bondGraph = new BondGraph(getAtomList());
 		setFinalized(true);
 	}
 
@@ -412,11 +446,30 @@ public class MolecularAssembly extends MSGroup {
 		return null;
 	}
 
+	/*
+	 * Returns the Atom drawn by a vertex of the wireframe, or of a sphere or
+	 * vector Shape3D whose user data is this MolecularAssembly.
+	 */
+	public Atom getAtom(Shape3D shape, int vertex) {
+		if (shape == wire) {
+			return getAtomFromWireVertex(vertex);
+		}
+		Atom atom = null;
+		if (glyphBatch != null) {
+			atom = glyphBatch.getAtom(shape, vertex);
+		}
+		if (atom == null && sphereBatch != null) {
+			atom = sphereBatch.getAtom(shape, vertex);
+		}
+		return atom;
+	}
+
 	public ArrayList<Atom> getAtomList() {
-		if (atomList != null) {
+		if (atomList != null && atomListCount == getModificationCount()) {
 			return atomList;
 		}
 		atomList = super.getAtomList();
+		atomListCount = getModificationCount();
 		return atomList;
 	}
 
@@ -437,10 +490,11 @@ public class MolecularAssembly extends MSGroup {
 	}
 
 	public ArrayList<ROLS> getBondList() {
-		if (bondList != null) {
+		if (bondList != null && bondListCount == getModificationCount()) {
 			return bondList;
 		}
 		bondList = super.getBondList();
+		bondListCount = getModificationCount();
 		return bondList;
 	}
 
@@ -470,6 +524,50 @@ public class MolecularAssembly extends MSGroup {
 		return currentCycle;
 	}
 
+	/*
+	 * Returns the bonded topology of this MolecularAssembly.
+	 */
+	public BondGraph getBondGraph() {
+		if (bondGraph == null) {
+			bondGraph = new BondGraph(getAtomList());
+		}
+		return bondGraph;
+	}
+
+	/*
+	 * Writes moved and recolored Bonds to the by reference wireframe now,
+	 * rather than on the next pass of its Behavior.
+	 */
+	void flushWireframe() {
+		if (wireBatch != null) {
+			wireBatch.flush();
+		}
+	}
+
+	/*
+	 * Rotates the multipoles of this MolecularAssembly's atoms into the
+	 * global frame, once they have been assigned.
+	 */
+	void initMultipoleRotation() {
+		simulation = new Simulation(getAtomView());
+	}
+
+	/*
+	 * Rotates the multipoles of the atoms that moved since the last frame.
+	 *
+	 * @return the number of multipoles rotated
+	 */
+	public int rotateMultipoles() {
+		if (simulation == null) {
+			return 0;
+		}
+		return simulation.rotateMultipoles();
+	}
+
+	public FrameStore getFrameStore() {
+		return frameStore;
+	}
+
 	public int getCycles() {
 		return cycles;
 	}
@@ -569,6 +667,32 @@ public class MolecularAssembly extends MSGroup {
 		return wire;
 	}
 
+	SphereBatch getSphereBatch() {
+		return sphereBatch;
+	}
+
+	GlyphBatch getGlyphBatch() {
+		return glyphBatch;
+	}
+
+	/*
+	 * Returns the residues and molecules whose level of detail is chosen
+	 * together.
+	 */
+	ArrayList<MSGroup> getLODClusters() {
+		ArrayList<MSGroup> clusters = new ArrayList<MSGroup>(getResidueList());
+		for (MSNode m : molecules.getChildList()) {
+			clusters.add((MSGroup) m);
+		}
+		for (MSNode m : water.getChildList()) {
+			clusters.add((MSGroup) m);
+		}
+		for (MSNode m : ions.getChildList()) {
+			clusters.add((MSGroup) m);
+		}
+		return clusters;
+	}
+
 	public boolean isVisible() {
 		return visible;
 	}
@@ -612,6 +736,60 @@ public class MolecularAssembly extends MSGroup {
 		if (numbonds < 1) {
 			return null;
 		}
+		GeometryArray geometry;
+		if (WireBatch.legacy) {
+			geometry = renderLegacyWire(bonds);
+		} else {
+			wireBatch = new WireBatch(bonds);
+			geometry = wireBatch.getGeometry();
+			atomLookUp = new Atom[4 * numbonds];
+			int i = 0;
+			for (ROLS b : bonds) {
+				Bond bond = (Bond) b;
+				atomLookUp[i++] = bond.getAtom(0);
+				atomLookUp[i++] = bond.getAtom(0);
+				atomLookUp[i++] = bond.getAtom(1);
+				atomLookUp[i++] = bond.getAtom(1);
+			}
+		}
+		ColoringAttributes cola = new ColoringAttributes(new Color3f(),
+				ColoringAttributes.SHADE_GOURAUD);
+		Appearance app = new Appearance();
+		lineAttributes = new LineAttributes();
+		lineAttributes.setLineWidth(RendererCache.bondwidth);
+		lineAttributes.setCapability(LineAttributes.ALLOW_WIDTH_WRITE);
+		lineAttributes.setLineAntialiasingEnable(true);
+		app.setLineAttributes(lineAttributes);
+		app.setCapability(Appearance.ALLOW_LINE_ATTRIBUTES_READ);
+		app.setCapability(Appearance.ALLOW_LINE_ATTRIBUTES_WRITE);
+		RenderingAttributes ra = new RenderingAttributes();
+		ra.setAlphaTestValue(0.1f);
+		ra.setAlphaTestFunction(RenderingAttributes.GREATER);
+		ra.setDepthBufferEnable(true);
+		ra.setDepthBufferWriteEnable(true);
+		app.setRenderingAttributes(ra);
+		app.setColoringAttributes(cola);
+		Shape3D wireframe = new Shape3D(geometry, app);
+		// PickTool.setCapabilities(wire, PickTool.INTERSECT_COORD);
+		wireframe.setUserData(this);
+		wireframe.setBounds(new BoundingSphere(new Point3d(0, 0, 0), 1000.0));
+		try {
+			wireframe.setBoundsAutoCompute(false);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		wireframe.setCapability(Shape3D.ALLOW_GEOMETRY_READ);
+		wireframe.setCapability(Shape3D.ALLOW_APPEARANCE_READ);
+		wireframe.setCapability(Shape3D.ALLOW_LOCAL_TO_VWORLD_READ);
+		return wireframe;
+	}
+
+	/*
+	 * Builds the wireframe as a LineArray whose vertices are written by
+	 * each Bond, which is used when ffe.wire.legacy is true.
+	 */
+	private LineArray renderLegacyWire(ArrayList<ROLS> bonds) {
+		int numbonds = bonds.size();
 		Vector3d bondmidpoint = new Vector3d();
 		double[] mid = { 0, 0, 0 };
 		Vector3d v1 = new Vector3d();
@@ -632,7 +810,7 @@ public class MolecularAssembly extends MSGroup {
 		atomLookUp = new Atom[4 * numbonds];
 		int i = 0;
 		col[3] = 0.9f;
-		for (ListIterator li = bondList.listIterator(); li.hasNext();) {
+		for (ListIterator li = bonds.listIterator(); li.hasNext();) {
 			bond = (Bond) li.next();
 			bond.setWire(la, i);
 			atom1 = bond.getAtom(0);
@@ -674,36 +852,7 @@ public class MolecularAssembly extends MSGroup {
 			la.setNormal(i, a1);
 			i++;
 		}
-		ColoringAttributes cola = new ColoringAttributes(new Color3f(),
-				ColoringAttributes.SHADE_GOURAUD);
-		Appearance app = new Appearance();
-		lineAttributes = new LineAttributes();
-		lineAttributes.setLineWidth(RendererCache.bondwidth);
-		lineAttributes.setCapability(LineAttributes.ALLOW_WIDTH_WRITE);
-		lineAttributes.setLineAntialiasingEnable(true);
-		app.setLineAttributes(lineAttributes);
-		app.setCapability(Appearance.ALLOW_LINE_ATTRIBUTES_READ);
-		app.setCapability(Appearance.ALLOW_LINE_ATTRIBUTES_WRITE);
-		RenderingAttributes ra = new RenderingAttributes();
-		ra.setAlphaTestValue(0.1f);
-		ra.setAlphaTestFunction(RenderingAttributes.GREATER);
-		ra.setDepthBufferEnable(true);
-		ra.setDepthBufferWriteEnable(true);
-		app.setRenderingAttributes(ra);
-		app.setColoringAttributes(cola);
-		Shape3D wireframe = new Shape3D(la, app);
-		// PickTool.setCapabilities(wire, PickTool.INTERSECT_COORD);
-		wireframe.setUserData(this);
-		wireframe.setBounds(new BoundingSphere(new Point3d(0, 0, 0), 1000.0));
-		try {
-			wireframe.setBoundsAutoCompute(false);
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		wireframe.setCapability(Shape3D.ALLOW_GEOMETRY_READ);
-		wireframe.setCapability(Shape3D.ALLOW_APPEARANCE_READ);
-		wireframe.setCapability(Shape3D.ALLOW_LOCAL_TO_VWORLD_READ);
-		return wireframe;
+		return la;
 	}
 
 	/**
@@ -800,26 +949,19 @@ public class MolecularAssembly extends MSGroup {
 
 	public void setColor(RendererCache.ColorModel newColorModel, Color3f color,
 			Material mat) {
-		for (ListIterator li = getAtomNodeList().listIterator(); li.hasNext();) {
-			MSGroup group = (MSGroup) li.next();
-			group.setColor(newColorModel, color, mat);
-		}
-		for (MSNode m : molecules.getChildList()) {
-			m.setColor(newColorModel, color, mat);
-		}
-		for (MSNode m : water.getChildList()) {
-			m.setColor(newColorModel, color, mat);
-		}
-		for (MSNode m : ions.getChildList()) {
-			m.setColor(newColorModel, color, mat);
-		}
+		ArrayList<ROLS> groups = new ArrayList<ROLS>(getAtomNodeList());
+		groups.addAll(molecules.getChildList());
+		groups.addAll(water.getChildList());
+		groups.addAll(ions.getChildList());
+		SceneBuilder.setColor(groups, newColorModel, color, mat);
 	}
 
 	public void setCurrentCycle(int c) {
 		if (c <= cycles && c > 0) {
 			currentCycle = c;
-			for (ListIterator li = getAtomList().listIterator(); li.hasNext();) {
-				((Atom) li.next()).setCurrentCycle(currentCycle);
+			if (frameStore != null && c <= frameStore.getFrames()) {
+				frameStore.moveTo(c - 1, getAtomView());
+				rotateMultipoles();
 			}
 		}
 	}
@@ -828,6 +970,20 @@ public class MolecularAssembly extends MSGroup {
 		cycles = c;
 	}
 
+	/*
+	 * Sets the archive frames of this MolecularAssembly; the number of
+	 * cycles becomes the number of frames.
+	 */
+	public void setFrameStore(FrameStore f) {
+		frameStore = f;
+		for (Atom a : getAtomList()) {
+			a.setFrameStore(f);
+		}
+		if (f != null) {
+			cycles = f.getFrames();
+		}
+	}
+
 	public void setFile(File f) {
 		if (f == null) {
 			return;
@@ -860,24 +1016,39 @@ public class MolecularAssembly extends MSGroup {
 			// node and all new shapes for every MolecularAssembly would then be
 			// put into the same ArrayList.
 			super.setView(newViewModel, myNewShapes);
-			ArrayList<ROLS> moleculeList = getList(Molecule.class,
-					new ArrayList<ROLS>());
-			for (ROLS m : moleculeList) {
-				m.setView(newViewModel, myNewShapes);
+			// Each molecule is visited once, so that none is set up by two
+			// tasks at the same time
+			Set<ROLS> moleculeSet = Collections
+					.newSetFromMap(new IdentityHashMap<ROLS, Boolean>());
+			ArrayList<ROLS> moleculeList = new ArrayList<ROLS>();
+			for (ROLS m : getList(Molecule.class, new ArrayList<ROLS>())) {
+				if (moleculeSet.add(m)) {
+					moleculeList.add(m);
+				}
 			}
 			for (MSNode m : molecules.getChildList()) {
-				m.setView(newViewModel, myNewShapes);
+				if (moleculeSet.add(m)) {
+					moleculeList.add(m);
+				}
 			}
 			for (MSNode m : water.getChildList()) {
-				m.setView(newViewModel, myNewShapes);
+				if (moleculeSet.add(m)) {
+					moleculeList.add(m);
+				}
 			}
 			for (MSNode m : ions.getChildList()) {
-				m.setView(newViewModel, myNewShapes);
+				if (moleculeSet.add(m)) {
+					moleculeList.add(m);
+				}
 			}
+			SceneBuilder.setView(moleculeList, newViewModel, myNewShapes);
 			if (newViewModel == RendererCache.ViewModel.INVISIBLE) {
 				switchGroup.setWhichChild(0);
 			}
 			if (newViewModel == RendererCache.ViewModel.DETAIL) {
+				if (sphereBatch != null) {
+					sphereBatch.setDetail(RendererCache.detail);
+				}
 				childNodes.compile();
 				base.addChild(childNodes);
 			}
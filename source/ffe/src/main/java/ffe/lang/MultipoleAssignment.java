@@ -0,0 +1,271 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ffe.mm.AtomType;
+import ffe.mm.ForceField;
+import ffe.mm.MultipoleIndex;
+import ffe.mm.MultipoleType;
+
+/*
+ * The MultipoleAssignment class assigns multipole types and reference
+ * sites to a list of atoms. The frames tried for an atom depend only on
+ * its atom type and the atom types of its 1-2 and 1-3 neighbors, in
+ * order, so the outcome is memoized on that signature: every water, and
+ * every copy of a residue, is looked up once. Frames are found in the
+ * integer keyed MultipoleIndex of the ForceField, and the atoms are
+ * split across the common ForkJoinPool.
+ */
+final class MultipoleAssignment {
+
+	static final byte ASSIGNED = 0;
+
+	static final byte UNTYPED = 1;
+
+	static final byte UNBONDED = 2;
+
+	static final byte NOT_FOUND = 3;
+
+	// Atoms per task; smaller lists are assigned on the calling thread
+	private static final int CHUNK = 512;
+
+	private final List<Atom> atoms;
+
+	private final BondGraph graph;
+
+	private final MultipoleIndex index;
+
+	private final byte[] status;
+
+	private final ConcurrentHashMap<Signature, Frame> frames = new ConcurrentHashMap<Signature, Frame>();
+
+	private MultipoleAssignment(List<Atom> atomList, ForceField forceField) {
+		atoms = atomList;
+		graph = BondGraph.of(atomList);
+		index = forceField.getMultipoleIndex();
+		status = new byte[atomList.size()];
+	}
+
+	/*
+	 * Assigns multipoles to the atoms and returns the outcome for each.
+	 */
+	static byte[] assign(List<Atom> atoms, ForceField forceField) {
+		MultipoleAssignment m = new MultipoleAssignment(atoms, forceField);
+		AssignTask task = m.new AssignTask(0, atoms.size());
+		if (atoms.size() <= CHUNK) {
+			task.compute();
+		} else {
+			ForkJoinPool.commonPool().invoke(task);
+		}
+		return m.status;
+	}
+
+	/*
+	 * The atom types of an atom followed by those of its 1-2 and then its
+	 * 1-3 neighbors, each list preceded by its length.
+	 */
+	private static final class Signature {
+		final int[] types;
+
+		final int hash;
+
+		Signature(int[] t, int length) {
+			types = Arrays.copyOf(t, length);
+			hash = Arrays.hashCode(types);
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Signature
+					&& Arrays.equals(types, ((Signature) o).types);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/*
+	 * The multipole found for a signature. Reference sites are positions
+	 * among the 1-2 neighbors, or the number of 1-2 neighbors plus a
+	 * position among the 1-3 neighbors.
+	 */
+	private static final class Frame {
+		final MultipoleType multipoleType;
+
+		final int[] references;
+
+		Frame(MultipoleType m, int... r) {
+			multipoleType = m;
+			references = r;
+		}
+	}
+
+	private static final Frame NONE = new Frame(null);
+
+	private static int type(Atom a) {
+		AtomType atomType = a.getAtomType();
+		return atomType == null ? -1 : atomType.type;
+	}
+
+	/*
+	 * Tries the frames with reference atoms in the traditional order: one,
+	 * two and three 1-2 neighbors, then a 1-2 and a 1-3 neighbor.
+	 */
+	private Frame find(int t, int[] bonded, int numBonded, int[] angled,
+			int numAngled) {
+		MultipoleType m;
+		for (int b = 0; b < numBonded; b++) {
+			m = index.get(t, bonded[b], 0);
+			if (m != null) {
+				return new Frame(m, b);
+			}
+		}
+		for (int b = 0; b < numBonded; b++) {
+			for (int b2 = 0; b2 < numBonded; b2++) {
+				if (b == b2) {
+					continue;
+				}
+				m = index.get(t, bonded[b], bonded[b2]);
+				if (m != null) {
+					return new Frame(m, b, b2);
+				}
+			}
+		}
+		for (int b = 0; b < numBonded; b++) {
+			for (int b2 = 0; b2 < numBonded; b2++) {
+				if (b == b2) {
+					continue;
+				}
+				for (int b3 = 0; b3 < numBonded; b3++) {
+					if (b == b3 || b2 == b3) {
+						continue;
+					}
+					m = index.get(t, bonded[b], bonded[b2], bonded[b3]);
+					if (m != null) {
+						return new Frame(m, b, b2, b3);
+					}
+				}
+				for (int a = 0; a < numAngled; a++) {
+					m = index.get(t, bonded[b], bonded[b2], angled[a]);
+					if (m != null) {
+						return new Frame(m, b, b2, numBonded + a);
+					}
+				}
+			}
+		}
+		// A 2 reference atom definition that may include a 1-3 site,
+		// for example a hydrogen on water
+		for (int b = 0; b < numBonded; b++) {
+			for (int a = 0; a < numAngled; a++) {
+				m = index.get(t, bonded[b], angled[a]);
+				if (m != null) {
+					return new Frame(m, b, numBonded + a);
+				}
+			}
+		}
+		return NONE;
+	}
+
+	private class AssignTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		AssignTask(int f, int t) {
+			from = f;
+			to = t;
+		}
+
+		protected void compute() {
+			if (to - from > CHUNK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new AssignTask(from, mid), new AssignTask(mid, to));
+				return;
+			}
+			int[] bonded = new int[8];
+			int[] angled = new int[16];
+			int[] signature = new int[32];
+			for (int i = from; i < to; i++) {
+				Atom atom = atoms.get(i);
+				int t = type(atom);
+				if (t < 0) {
+					status[i] = UNTYPED;
+					continue;
+				}
+				MultipoleType m = index.get(t, 0, 0);
+				if (m != null) {
+					atom.setMultipoleType(m, null);
+					status[i] = ASSIGNED;
+					continue;
+				}
+				int g = graph.getIndex(atom);
+				int numBonded = graph.get12(g, bonded);
+				if (numBonded < 1) {
+					status[i] = UNBONDED;
+					continue;
+				}
+				if (numBonded > bonded.length) {
+					bonded = new int[numBonded];
+					graph.get12(g, bonded);
+				}
+				int numAngled = graph.getAngleEnds(g, angled);
+				if (numAngled > angled.length) {
+					angled = new int[numAngled];
+					graph.getAngleEnds(g, angled);
+				}
+				int length = 3 + numBonded + numAngled;
+				if (length > signature.length) {
+					signature = new int[length];
+				}
+				int s = 0;
+				signature[s++] = t;
+				signature[s++] = numBonded;
+				for (int b = 0; b < numBonded; b++) {
+					signature[s++] = type(graph.getAtom(bonded[b]));
+				}
+				signature[s++] = numAngled;
+				for (int a = 0; a < numAngled; a++) {
+					signature[s++] = type(graph.getAtom(angled[a]));
+				}
+				Signature key = new Signature(signature, length);
+				Frame frame = frames.get(key);
+				if (frame == null) {
+					int[] bondedTypes = Arrays.copyOfRange(signature, 2,
+							2 + numBonded);
+					int[] angledTypes = Arrays.copyOfRange(signature,
+							3 + numBonded, length);
+					frame = find(t, bondedTypes, numBonded, angledTypes,
+							numAngled);
+					frames.putIfAbsent(key, frame);
+				}
+				if (frame.multipoleType == null) {
+					status[i] = NOT_FOUND;
+					continue;
+				}
+				Atom[] references = new Atom[frame.references.length];
+				for (int r = 0; r < references.length; r++) {
+					int p = frame.references[r];
+					references[r] = graph.getAtom(p < numBonded ? bonded[p]
+							: angled[p - numBonded]);
+				}
+				atom.setMultipoleType(frame.multipoleType, references);
+				status[i] = ASSIGNED;
+			}
+		}
+	}
+}
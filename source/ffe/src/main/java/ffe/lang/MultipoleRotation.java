@@ -0,0 +1,410 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+import ffe.mm.MultipoleType;
+
+/*
+ * The MultipoleRotation class rotates atomic multipoles from their local
+ * frames into the global frame. All data is packed into flat arrays:
+ * coordinates are x[3 * atom + k], local multipoles are stored once per
+ * MultipoleType, and quadrupoles keep the non-redundant elements xx, yx,
+ * yy, zx, zy, zz. Sites are rotated in ranges on the common ForkJoinPool
+ * without allocating.
+ *
+ * update() rotates only the sites whose origin or frame atoms have moved
+ * since the previous rotation, which suits trajectories where much of the
+ * system is still from one frame to the next.
+ */
+public class MultipoleRotation {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	// Sites per task; smaller ranges are rotated on the calling thread
+	private static final int CHUNK = 1024;
+
+	private final int numberOfSites;
+
+	// Atom index of each site and of its z and x frame atoms; -1 is the
+	// global origin
+	private final int[] site;
+
+	private final int[] zAxis;
+
+	private final int[] xAxis;
+
+	// Index of the local multipole of each site
+	private final int[] type;
+
+	private final boolean[] bisector;
+
+	private final double[] localDipole;
+
+	private final double[] localQuadrupole;
+
+	private final double[] dipole;
+
+	private final double[] quadrupole;
+
+	// Coordinates at the previous rotation, for update()
+	private double[] previous = null;
+
+	// The pass in which each site was last rotated
+	private final int[] rotatedIn;
+
+	private int pass = 0;
+
+	/*
+	 * @param site atom index of each multipole site
+	 * @param zAxis atom index of the z frame atom of each site, or -1
+	 * @param xAxis atom index of the x frame atom of each site, or -1
+	 * @param type index of the local multipole of each site
+	 * @param frameDefinition frame definition of each local multipole
+	 * @param localDipole 3 elements per local multipole
+	 * @param localQuadrupole 6 elements per local multipole
+	 */
+	public MultipoleRotation(int[] site, int[] zAxis, int[] xAxis,
+			int[] type,
+			MultipoleType.MultipoleFrameDefinition[] frameDefinition,
+			double[] localDipole, double[] localQuadrupole) {
+		numberOfSites = site.length;
+		this.site = site;
+		this.zAxis = zAxis;
+		this.xAxis = xAxis;
+		this.type = type;
+		bisector = new boolean[frameDefinition.length];
+		for (int i = 0; i < frameDefinition.length; i++) {
+			bisector[i] = frameDefinition[i] == MultipoleType.MultipoleFrameDefinition.BISECTOR;
+		}
+		this.localDipole = localDipole;
+		this.localQuadrupole = localQuadrupole;
+		dipole = new double[3 * numberOfSites];
+		quadrupole = new double[6 * numberOfSites];
+		rotatedIn = new int[numberOfSites];
+		Arrays.fill(rotatedIn, -1);
+	}
+
+	/*
+	 * Packs the multipole sites of a list of atoms; atoms are indexed by
+	 * their position in the list. Atoms without a MultipoleType are left
+	 * out. So is, with a warning, an atom whose frame atoms are not all in
+	 * the list, since its frame can not be built from the coordinates.
+	 */
+	public static MultipoleRotation create(List<Atom> atoms) {
+		BondGraph graph = BondGraph.of(atoms);
+		int n = atoms.size();
+		int[] site = new int[n];
+		int[] zAxis = new int[n];
+		int[] xAxis = new int[n];
+		int[] type = new int[n];
+		HashMap<MultipoleType, Integer> types = new HashMap<MultipoleType, Integer>();
+		MultipoleType[] local = new MultipoleType[n];
+		int s = 0;
+		for (int i = 0; i < n; i++) {
+			Atom atom = atoms.get(i);
+			MultipoleType multipoleType = atom.getMultipoleType();
+			if (multipoleType == null) {
+				continue;
+			}
+			site[s] = i;
+			zAxis[s] = -1;
+			xAxis[s] = -1;
+			Atom[] referenceSites = atom.getMultipoleReferenceSites();
+			if (referenceSites != null) {
+				if (referenceSites.length > 0) {
+					zAxis[s] = graph.getIndex(referenceSites[0]);
+				}
+				if (referenceSites.length > 1) {
+					xAxis[s] = graph.getIndex(referenceSites[1]);
+				}
+				if ((referenceSites.length > 0 && zAxis[s] < 0)
+						|| (referenceSites.length > 1 && xAxis[s] < 0)) {
+					logger.warning("The multipole of " + atom
+							+ " is not rotated; its frame atoms are not"
+							+ " all in the atom list.");
+					continue;
+				}
+			}
+			Integer t = types.get(multipoleType);
+			if (t == null) {
+				t = Integer.valueOf(types.size());
+				types.put(multipoleType, t);
+				local[t.intValue()] = multipoleType;
+			}
+			type[s++] = t.intValue();
+		}
+		if (s < n) {
+			site = Arrays.copyOf(site, s);
+			zAxis = Arrays.copyOf(zAxis, s);
+			xAxis = Arrays.copyOf(xAxis, s);
+			type = Arrays.copyOf(type, s);
+		}
+		int numberOfTypes = types.size();
+		MultipoleType.MultipoleFrameDefinition[] frameDefinition = new MultipoleType.MultipoleFrameDefinition[numberOfTypes];
+		double[] localDipole = new double[3 * numberOfTypes];
+		double[] localQuadrupole = new double[6 * numberOfTypes];
+		for (int t = 0; t < numberOfTypes; t++) {
+			MultipoleType multipoleType = local[t];
+			frameDefinition[t] = multipoleType.frameDefinition;
+			localDipole[3 * t] = multipoleType.dipole[0];
+			localDipole[3 * t + 1] = multipoleType.dipole[1];
+			localDipole[3 * t + 2] = multipoleType.dipole[2];
+			double[][] q = multipoleType.quadrupole;
+			localQuadrupole[6 * t] = q[0][0];
+			localQuadrupole[6 * t + 1] = q[1][0];
+			localQuadrupole[6 * t + 2] = q[1][1];
+			localQuadrupole[6 * t + 3] = q[2][0];
+			localQuadrupole[6 * t + 4] = q[2][1];
+			localQuadrupole[6 * t + 5] = q[2][2];
+		}
+		return new MultipoleRotation(site, zAxis, xAxis, type, frameDefinition,
+				localDipole, localQuadrupole);
+	}
+
+	/*
+	 * Global dipoles, 3 elements per site.
+	 */
+	public double[] getDipoles() {
+		return dipole;
+	}
+
+	public int getNumberOfSites() {
+		return numberOfSites;
+	}
+
+	/*
+	 * Global quadrupoles, the 6 elements xx, yx, yy, zx, zy, zz per site.
+	 */
+	public double[] getQuadrupoles() {
+		return quadrupole;
+	}
+
+	/*
+	 * Returns the atom index of a site.
+	 */
+	public int getSite(int s) {
+		return site[s];
+	}
+
+	/*
+	 * True if site s was rotated by the latest call to rotate or update.
+	 */
+	public boolean isRotated(int s) {
+		return rotatedIn[s] == pass;
+	}
+
+	/*
+	 * Copies the global multipoles into the atoms of the list this object
+	 * was created from; with rotatedOnly set, only the sites rotated by
+	 * the latest call to rotate or update are copied.
+	 */
+	public void setGlobalMultipoles(List<Atom> atoms, boolean rotatedOnly) {
+		double[] d = new double[3];
+		double[][] q = new double[3][3];
+		for (int s = 0; s < numberOfSites; s++) {
+			if (rotatedOnly && rotatedIn[s] != pass) {
+				continue;
+			}
+			System.arraycopy(dipole, 3 * s, d, 0, 3);
+			int p = 6 * s;
+			q[0][0] = quadrupole[p];
+			q[1][0] = q[0][1] = quadrupole[p + 1];
+			q[1][1] = quadrupole[p + 2];
+			q[2][0] = q[0][2] = quadrupole[p + 3];
+			q[2][1] = q[1][2] = quadrupole[p + 4];
+			q[2][2] = quadrupole[p + 5];
+			atoms.get(site[s]).setGlobalMultipole(d, q);
+		}
+	}
+
+	/*
+	 * Rotates every site for the coordinates x.
+	 */
+	public void rotate(double[] x) {
+		run(x, false);
+		previous = x.clone();
+	}
+
+	/*
+	 * Rotates the sites whose origin or frame atoms have moved since the
+	 * previous rotation.
+	 *
+	 * @return the number of sites rotated
+	 */
+	public int update(double[] x) {
+		if (previous == null || previous.length != x.length) {
+			rotate(x);
+			return numberOfSites;
+		}
+		int count = run(x, true);
+		System.arraycopy(x, 0, previous, 0, x.length);
+		return count;
+	}
+
+	private int run(double[] x, boolean incremental) {
+		pass++;
+		RotationTask task = new RotationTask(x, incremental, 0, numberOfSites);
+		if (numberOfSites <= CHUNK) {
+			return task.compute().intValue();
+		}
+		return ForkJoinPool.commonPool().invoke(task).intValue();
+	}
+
+	private boolean moved(double[] x, int atom) {
+		if (atom < 0) {
+			return false;
+		}
+		int i = 3 * atom;
+		return x[i] != previous[i] || x[i + 1] != previous[i + 1]
+				|| x[i + 2] != previous[i + 2];
+	}
+
+	/*
+	 * Rotates the local multipole of site s into the global frame.
+	 */
+	private void rotate(double[] x, int s) {
+		int o = 3 * site[s];
+		double ox = x[o];
+		double oy = x[o + 1];
+		double oz = x[o + 2];
+		// The z and x frame vectors, relative to the site
+		double zx = -ox, zy = -oy, zz = -oz;
+		if (zAxis[s] >= 0) {
+			int z = 3 * zAxis[s];
+			zx += x[z];
+			zy += x[z + 1];
+			zz += x[z + 2];
+		}
+		double xx = -ox, xy = -oy, xz = -oz;
+		if (xAxis[s] >= 0) {
+			int xa = 3 * xAxis[s];
+			xx += x[xa];
+			xy += x[xa + 1];
+			xz += x[xa + 2];
+		}
+		double r = Math.sqrt(zx * zx + zy * zy + zz * zz);
+		zx /= r;
+		zy /= r;
+		zz /= r;
+		int t = type[s];
+		if (bisector[t]) {
+			// The z axis bisects the two unit vectors
+			r = Math.sqrt(xx * xx + xy * xy + xz * xz);
+			xx /= r;
+			xy /= r;
+			xz /= r;
+			zx += xx;
+			zy += xy;
+			zz += xz;
+			r = Math.sqrt(zx * zx + zy * zy + zz * zz);
+			zx /= r;
+			zy /= r;
+			zz /= r;
+		}
+		// The x axis is the part of the x vector normal to z
+		double dot = zx * xx + zy * xy + zz * xz;
+		xx -= dot * zx;
+		xy -= dot * zy;
+		xz -= dot * zz;
+		r = Math.sqrt(xx * xx + xy * xy + xz * xz);
+		xx /= r;
+		xy /= r;
+		xz /= r;
+		// y = z cross x
+		double yx = zy * xz - zz * xy;
+		double yy = zz * xx - zx * xz;
+		double yz = zx * xy - zy * xx;
+		// Rows of the rotation matrix; its columns are the x, y and z axes
+		double r00 = xx, r01 = yx, r02 = zx;
+		double r10 = xy, r11 = yy, r12 = zy;
+		double r20 = xz, r21 = yz, r22 = zz;
+		int d = 3 * t;
+		double d0 = localDipole[d];
+		double d1 = localDipole[d + 1];
+		double d2 = localDipole[d + 2];
+		int g = 3 * s;
+		dipole[g] = r00 * d0 + r01 * d1 + r02 * d2;
+		dipole[g + 1] = r10 * d0 + r11 * d1 + r12 * d2;
+		dipole[g + 2] = r20 * d0 + r21 * d1 + r22 * d2;
+		int q = 6 * t;
+		double q00 = localQuadrupole[q];
+		double q10 = localQuadrupole[q + 1];
+		double q11 = localQuadrupole[q + 2];
+		double q20 = localQuadrupole[q + 3];
+		double q21 = localQuadrupole[q + 4];
+		double q22 = localQuadrupole[q + 5];
+		// Rows of R Q
+		double a00 = r00 * q00 + r01 * q10 + r02 * q20;
+		double a01 = r00 * q10 + r01 * q11 + r02 * q21;
+		double a02 = r00 * q20 + r01 * q21 + r02 * q22;
+		double a10 = r10 * q00 + r11 * q10 + r12 * q20;
+		double a11 = r10 * q10 + r11 * q11 + r12 * q21;
+		double a12 = r10 * q20 + r11 * q21 + r12 * q22;
+		double a20 = r20 * q00 + r21 * q10 + r22 * q20;
+		double a21 = r20 * q10 + r21 * q11 + r22 * q21;
+		double a22 = r20 * q20 + r21 * q21 + r22 * q22;
+		// R Q R^T
+		int p = 6 * s;
+		quadrupole[p] = a00 * r00 + a01 * r01 + a02 * r02;
+		quadrupole[p + 1] = a10 * r00 + a11 * r01 + a12 * r02;
+		quadrupole[p + 2] = a10 * r10 + a11 * r11 + a12 * r12;
+		quadrupole[p + 3] = a20 * r00 + a21 * r01 + a22 * r02;
+		quadrupole[p + 4] = a20 * r10 + a21 * r11 + a22 * r12;
+		quadrupole[p + 5] = a20 * r20 + a21 * r21 + a22 * r22;
+	}
+
+	private class RotationTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final double[] x;
+
+		private final boolean incremental;
+
+		private final int from;
+
+		private final int to;
+
+		RotationTask(double[] x, boolean incremental, int from, int to) {
+			this.x = x;
+			this.incremental = incremental;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected Integer compute() {
+			if (to - from > CHUNK) {
+				int mid = (from + to) >>> 1;
+				RotationTask left = new RotationTask(x, incremental, from, mid);
+				left.fork();
+				int right = new RotationTask(x, incremental, mid, to).compute()
+						.intValue();
+				return Integer.valueOf(left.join().intValue() + right);
+			}
+			int count = 0;
+			for (int s = from; s < to; s++) {
+				if (incremental && !moved(x, site[s]) && !moved(x, zAxis[s])
+						&& !moved(x, xAxis[s])) {
+					continue;
+				}
+				rotate(x, s);
+				rotatedIn[s] = pass;
+				count++;
+			}
+			return Integer.valueOf(count);
+		}
+	}
+}
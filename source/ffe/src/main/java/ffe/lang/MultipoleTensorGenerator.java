@@ -0,0 +1,185 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashSet;
+
+/*
+ * The MultipoleTensorGenerator class writes the MultipoleTensorOrder
+ * classes. For a given order it expands the recursion of
+ * MultipoleTensorRecursion.Tlmnj symbolically and emits each intermediate
+ * Tlmnj once, as a local variable, in the order it is needed. The result
+ * is straight line code with no loops, branches or work array, whose
+ * tensors are packed as described by MultipoleTensorRecursion.tensorIndex.
+ *
+ * Usage: MultipoleTensorGenerator [directory] [maxOrder]
+ */
+public final class MultipoleTensorGenerator {
+
+	private static final String NL = "\r\n";
+
+	private final int order;
+
+	private final StringBuilder body = new StringBuilder();
+
+	private final HashSet<String> emitted = new HashSet<String>();
+
+	private MultipoleTensorGenerator(int order) {
+		this.order = order;
+	}
+
+	public static void main(String[] args) throws IOException {
+		File dir = new File(args.length > 0 ? args[0] : ".");
+		int maxOrder = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+		for (int o = 1; o <= maxOrder; o++) {
+			File f = new File(dir, className(o) + ".java");
+			FileWriter w = new FileWriter(f);
+			try {
+				w.write(new MultipoleTensorGenerator(o).generate());
+			} finally {
+				w.close();
+			}
+			System.out.println("Wrote " + f);
+		}
+	}
+
+	private static String className(int order) {
+		return "MultipoleTensorOrder" + order;
+	}
+
+	private static String name(int l, int m, int n, int j) {
+		return "t" + l + m + n + "_" + j;
+	}
+
+	/*
+	 * Emits the statements that compute Tlmnj, after those it depends on,
+	 * and returns the name of its local variable.
+	 */
+	private String emit(int l, int m, int n, int j) {
+		String name = name(l, m, n, j);
+		if (emitted.contains(name)) {
+			return name;
+		}
+		String expression;
+		if (m == 0 && n == 0) {
+			if (l == 0) {
+				// Auxiliary elements are emitted up front
+				return name;
+			}
+			expression = term("x", l, emit(l - 1, 0, 0, j + 1), l > 1 ? emit(
+					l - 2, 0, 0, j + 1) : null);
+		} else if (n == 0) {
+			expression = term("y", m, emit(l, m - 1, 0, j + 1), m > 1 ? emit(
+					l, m - 2, 0, j + 1) : null);
+		} else {
+			expression = term("z", n, emit(l, m, n - 1, j + 1), n > 1 ? emit(
+					l, m, n - 2, j + 1) : null);
+		}
+		emitted.add(name);
+		body.append("\t\tfinal double ").append(name).append(" = ").append(
+				expression).append(";").append(NL);
+		return name;
+	}
+
+	/*
+	 * x * a + (k - 1) * b
+	 */
+	private static String term(String x, int k, String a, String b) {
+		if (b == null) {
+			return x + " * " + a;
+		}
+		if (k == 2) {
+			return x + " * " + a + " + " + b;
+		}
+		return x + " * " + a + " + " + (k - 1) + ".0 * " + b;
+	}
+
+	private String generate() {
+		int size = (order + 1) * (order + 2) * (order + 3) / 6;
+		String cls = className(order);
+		// Auxiliary tensor elements (equation 40), t000_j = (-1)^j (2j - 1)!!
+		// rr^(2j + 1), with the same operations as noStorageTensorRecursion
+		// so that both give the same results
+		body.append("\t\tfinal double rr1 = 1.0 / Math.sqrt(x * x + y * y + z * z);").append(NL);
+		body.append("\t\tfinal double rr2 = rr1 * rr1;").append(NL);
+		long factor = 1;
+		for (int j = 0; j <= order; j++) {
+			if (j > 0) {
+				factor *= 2 * j - 1;
+				body.append("\t\tfinal double rr").append(2 * j + 1).append(
+						" = rr").append(2 * j - 1).append(" * rr2;").append(NL);
+			}
+			body.append("\t\tfinal double ").append(name(0, 0, 0, j)).append(
+					" = ");
+			if (j % 2 == 1) {
+				body.append("-");
+			}
+			if (factor > 1) {
+				body.append(factor).append(".0 * ");
+			}
+			body.append("rr").append(2 * j + 1).append(";").append(NL);
+		}
+		StringBuilder stores = new StringBuilder();
+		int index = 0;
+		for (int n = 0; n <= order; n++) {
+			for (int m = 0; m <= order - n; m++) {
+				for (int l = 0; l <= order - m - n; l++) {
+					String t = emit(l, m, n, 0);
+					stores.append("\t\ttensor[offset + ").append(index++).append(
+							"] = ").append(t).append(";").append(NL);
+				}
+			}
+		}
+		StringBuilder s = new StringBuilder();
+		s.append("/*").append(NL);
+		s.append(" * <p>Title: Force Field Explorer</p>").append(NL);
+		s.append(" * <p>Description: Force Field Explorer Molecular Modeling Program</p>").append(NL);
+		s.append(" * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>").append(NL);
+		s.append(" * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>").append(NL);
+		s.append(" * @author Michael J. Schnieders").append(NL);
+		s.append(" * @version 8.10").append(NL);
+		s.append(" */").append(NL).append(NL);
+		s.append("package ffe.lang;").append(NL).append(NL);
+		s.append("/*").append(NL);
+		s.append(" * Cartesian multipole tensors of order ").append(order).append(
+				", unrolled by MultipoleTensorGenerator.").append(NL);
+		s.append(" * Do not edit; run the generator instead.").append(NL);
+		s.append(" */").append(NL);
+		s.append("public final class ").append(cls).append(" {").append(NL).append(NL);
+		s.append("\t// binomial(order + 3, 3) elements per tensor").append(NL);
+		s.append("\tpublic static final int SIZE = ").append(size).append(";").append(NL).append(NL);
+		s.append("\tprivate ").append(cls).append("() {").append(NL);
+		s.append("\t}").append(NL).append(NL);
+		s.append("\t/*").append(NL);
+		s.append("\t * Stores the tensor for the separation {x, y, z} in").append(NL);
+		s.append("\t * tensor[offset] .. tensor[offset + SIZE - 1].").append(NL);
+		s.append("\t */").append(NL);
+		s.append("\tpublic static void tensor(final double x, final double y,").append(NL);
+		s.append("\t\t\tfinal double z, final double[] tensor, final int offset) {").append(NL);
+		s.append(body);
+		s.append(stores);
+		s.append("\t}").append(NL).append(NL);
+		s.append("\t/*").append(NL);
+		s.append("\t * Computes the tensors of count separations, packed as").append(NL);
+		s.append("\t * r[3 * i + k], into tensors[SIZE * i] onwards.").append(NL);
+		s.append("\t */").append(NL);
+		s.append("\tpublic static void tensors(final double[] r, final int count,").append(NL);
+		s.append("\t\t\tfinal double[] tensors) {").append(NL);
+		s.append("\t\tfor (int i = 0; i < count; i++) {").append(NL);
+		s.append("\t\t\ttensor(r[3 * i], r[3 * i + 1], r[3 * i + 2], tensors, SIZE * i);").append(NL);
+		s.append("\t\t}").append(NL);
+		s.append("\t}").append(NL);
+		s.append("}").append(NL);
+		return s.toString();
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+/*
+ * Cartesian multipole tensors of order 1, unrolled by MultipoleTensorGenerator.
+ * Do not edit; run the generator instead.
+ */
+public final class MultipoleTensorOrder1 {
+
+	// binomial(order + 3, 3) elements per tensor
+	public static final int SIZE = 4;
+
+	private MultipoleTensorOrder1() {
+	}
+
+	/*
+	 * Stores the tensor for the separation {x, y, z} in
+	 * tensor[offset] .. tensor[offset + SIZE - 1].
+	 */
+	public static void tensor(final double x, final double y,
+			final double z, final double[] tensor, final int offset) {
+		final double rr1 = 1.0 / Math.sqrt(x * x + y * y + z * z);
+		final double rr2 = rr1 * rr1;
+		final double t000_0 = rr1;
+		final double rr3 = rr1 * rr2;
+		final double t000_1 = -rr3;
+		final double t100_0 = x * t000_1;
+		final double t010_0 = y * t000_1;
+		final double t001_0 = z * t000_1;
+		tensor[offset + 0] = t000_0;
+		tensor[offset + 1] = t100_0;
+		tensor[offset + 2] = t010_0;
+		tensor[offset + 3] = t001_0;
+	}
+
+	/*
+	 * Computes the tensors of count separations, packed as
+	 * r[3 * i + k], into tensors[SIZE * i] onwards.
+	 */
+	public static void tensors(final double[] r, final int count,
+			final double[] tensors) {
+		for (int i = 0; i < count; i++) {
+			tensor(r[3 * i], r[3 * i + 1], r[3 * i + 2], tensors, SIZE * i);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+/*
+ * Cartesian multipole tensors of order 3, unrolled by MultipoleTensorGenerator.
+ * Do not edit; run the generator instead.
+ */
+public final class MultipoleTensorOrder3 {
+
+	// binomial(order + 3, 3) elements per tensor
+	public static final int SIZE = 20;
+
+	private MultipoleTensorOrder3() {
+	}
+
+	/*
+	 * Stores the tensor for the separation {x, y, z} in
+	 * tensor[offset] .. tensor[offset + SIZE - 1].
+	 */
+	public static void tensor(final double x, final double y,
+			final double z, final double[] tensor, final int offset) {
+		final double rr1 = 1.0 / Math.sqrt(x * x + y * y + z * z);
+		final double rr2 = rr1 * rr1;
+		final double t000_0 = rr1;
+		final double rr3 = rr1 * rr2;
+		final double t000_1 = -rr3;
+		final double rr5 = rr3 * rr2;
+		final double t000_2 = 3.0 * rr5;
+		final double rr7 = rr5 * rr2;
+		final double t000_3 = -15.0 * rr7;
+		final double t100_0 = x * t000_1;
+		final double t100_1 = x * t000_2;
+		final double t200_0 = x * t100_1 + t000_1;
+		final double t100_2 = x * t000_3;
+		final double t200_1 = x * t100_2 + t000_2;
+		final double t300_0 = x * t200_1 + 2.0 * t100_1;
+		final double t010_0 = y * t000_1;
+		final double t110_0 = y * t100_1;
+		final double t210_0 = y * t200_1;
+		final double t010_1 = y * t000_2;
+		final double t020_0 = y * t010_1 + t000_1;
+		final double t110_1 = y * t100_2;
+		final double t120_0 = y * t110_1 + t100_1;
+		final double t010_2 = y * t000_3;
+		final double t020_1 = y * t010_2 + t000_2;
+		final double t030_0 = y * t020_1 + 2.0 * t010_1;
+		final double t001_0 = z * t000_1;
+		final double t101_0 = z * t100_1;
+		final double t201_0 = z * t200_1;
+		final double t011_0 = z * t010_1;
+		final double t111_0 = z * t110_1;
+		final double t021_0 = z * t020_1;
+		final double t001_1 = z * t000_2;
+		final double t002_0 = z * t001_1 + t000_1;
+		final double t101_1 = z * t100_2;
+		final double t102_0 = z * t101_1 + t100_1;
+		final double t011_1 = z * t010_2;
+		final double t012_0 = z * t011_1 + t010_1;
+		final double t001_2 = z * t000_3;
+		final double t002_1 = z * t001_2 + t000_2;
+		final double t003_0 = z * t002_1 + 2.0 * t001_1;
+		tensor[offset + 0] = t000_0;
+		tensor[offset + 1] = t100_0;
+		tensor[offset + 2] = t200_0;
+		tensor[offset + 3] = t300_0;
+		tensor[offset + 4] = t010_0;
+		tensor[offset + 5] = t110_0;
+		tensor[offset + 6] = t210_0;
+		tensor[offset + 7] = t020_0;
+		tensor[offset + 8] = t120_0;
+		tensor[offset + 9] = t030_0;
+		tensor[offset + 10] = t001_0;
+		tensor[offset + 11] = t101_0;
+		tensor[offset + 12] = t201_0;
+		tensor[offset + 13] = t011_0;
+		tensor[offset + 14] = t111_0;
+		tensor[offset + 15] = t021_0;
+		tensor[offset + 16] = t002_0;
+		tensor[offset + 17] = t102_0;
+		tensor[offset + 18] = t012_0;
+		tensor[offset + 19] = t003_0;
+	}
+
+	/*
+	 * Computes the tensors of count separations, packed as
+	 * r[3 * i + k], into tensors[SIZE * i] onwards.
+	 */
+	public static void tensors(final double[] r, final int count,
+			final double[] tensors) {
+		for (int i = 0; i < count; i++) {
+			tensor(r[3 * i], r[3 * i + 1], r[3 * i + 2], tensors, SIZE * i);
+		}
+	}
+}
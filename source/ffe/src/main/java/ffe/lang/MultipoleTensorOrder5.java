@@ -0,0 +1,231 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+/*
+ * Cartesian multipole tensors of order 5, unrolled by MultipoleTensorGenerator.
+ * Do not edit; run the generator instead.
+ */
+public final class MultipoleTensorOrder5 {
+
+	// binomial(order + 3, 3) elements per tensor
+	public static final int SIZE = 56;
+
+	private MultipoleTensorOrder5() {
+	}
+
+	/*
+	 * Stores the tensor for the separation {x, y, z} in
+	 * tensor[offset] .. tensor[offset + SIZE - 1].
+	 */
+	public static void tensor(final double x, final double y,
+			final double z, final double[] tensor, final int offset) {
+		final double rr1 = 1.0 / Math.sqrt(x * x + y * y + z * z);
+		final double rr2 = rr1 * rr1;
+		final double t000_0 = rr1;
+		final double rr3 = rr1 * rr2;
+		final double t000_1 = -rr3;
+		final double rr5 = rr3 * rr2;
+		final double t000_2 = 3.0 * rr5;
+		final double rr7 = rr5 * rr2;
+		final double t000_3 = -15.0 * rr7;
+		final double rr9 = rr7 * rr2;
+		final double t000_4 = 105.0 * rr9;
+		final double rr11 = rr9 * rr2;
+		final double t000_5 = -945.0 * rr11;
+		final double t100_0 = x * t000_1;
+		final double t100_1 = x * t000_2;
+		final double t200_0 = x * t100_1 + t000_1;
+		final double t100_2 = x * t000_3;
+		final double t200_1 = x * t100_2 + t000_2;
+		final double t300_0 = x * t200_1 + 2.0 * t100_1;
+		final double t100_3 = x * t000_4;
+		final double t200_2 = x * t100_3 + t000_3;
+		final double t300_1 = x * t200_2 + 2.0 * t100_2;
+		final double t400_0 = x * t300_1 + 3.0 * t200_1;
+		final double t100_4 = x * t000_5;
+		final double t200_3 = x * t100_4 + t000_4;
+		final double t300_2 = x * t200_3 + 2.0 * t100_3;
+		final double t400_1 = x * t300_2 + 3.0 * t200_2;
+		final double t500_0 = x * t400_1 + 4.0 * t300_1;
+		final double t010_0 = y * t000_1;
+		final double t110_0 = y * t100_1;
+		final double t210_0 = y * t200_1;
+		final double t310_0 = y * t300_1;
+		final double t410_0 = y * t400_1;
+		final double t010_1 = y * t000_2;
+		final double t020_0 = y * t010_1 + t000_1;
+		final double t110_1 = y * t100_2;
+		final double t120_0 = y * t110_1 + t100_1;
+		final double t210_1 = y * t200_2;
+		final double t220_0 = y * t210_1 + t200_1;
+		final double t310_1 = y * t300_2;
+		final double t320_0 = y * t310_1 + t300_1;
+		final double t010_2 = y * t000_3;
+		final double t020_1 = y * t010_2 + t000_2;
+		final double t030_0 = y * t020_1 + 2.0 * t010_1;
+		final double t110_2 = y * t100_3;
+		final double t120_1 = y * t110_2 + t100_2;
+		final double t130_0 = y * t120_1 + 2.0 * t110_1;
+		final double t210_2 = y * t200_3;
+		final double t220_1 = y * t210_2 + t200_2;
+		final double t230_0 = y * t220_1 + 2.0 * t210_1;
+		final double t010_3 = y * t000_4;
+		final double t020_2 = y * t010_3 + t000_3;
+		final double t030_1 = y * t020_2 + 2.0 * t010_2;
+		final double t040_0 = y * t030_1 + 3.0 * t020_1;
+		final double t110_3 = y * t100_4;
+		final double t120_2 = y * t110_3 + t100_3;
+		final double t130_1 = y * t120_2 + 2.0 * t110_2;
+		final double t140_0 = y * t130_1 + 3.0 * t120_1;
+		final double t010_4 = y * t000_5;
+		final double t020_3 = y * t010_4 + t000_4;
+		final double t030_2 = y * t020_3 + 2.0 * t010_3;
+		final double t040_1 = y * t030_2 + 3.0 * t020_2;
+		final double t050_0 = y * t040_1 + 4.0 * t030_1;
+		final double t001_0 = z * t000_1;
+		final double t101_0 = z * t100_1;
+		final double t201_0 = z * t200_1;
+		final double t301_0 = z * t300_1;
+		final double t401_0 = z * t400_1;
+		final double t011_0 = z * t010_1;
+		final double t111_0 = z * t110_1;
+		final double t211_0 = z * t210_1;
+		final double t311_0 = z * t310_1;
+		final double t021_0 = z * t020_1;
+		final double t121_0 = z * t120_1;
+		final double t221_0 = z * t220_1;
+		final double t031_0 = z * t030_1;
+		final double t131_0 = z * t130_1;
+		final double t041_0 = z * t040_1;
+		final double t001_1 = z * t000_2;
+		final double t002_0 = z * t001_1 + t000_1;
+		final double t101_1 = z * t100_2;
+		final double t102_0 = z * t101_1 + t100_1;
+		final double t201_1 = z * t200_2;
+		final double t202_0 = z * t201_1 + t200_1;
+		final double t301_1 = z * t300_2;
+		final double t302_0 = z * t301_1 + t300_1;
+		final double t011_1 = z * t010_2;
+		final double t012_0 = z * t011_1 + t010_1;
+		final double t111_1 = z * t110_2;
+		final double t112_0 = z * t111_1 + t110_1;
+		final double t211_1 = z * t210_2;
+		final double t212_0 = z * t211_1 + t210_1;
+		final double t021_1 = z * t020_2;
+		final double t022_0 = z * t021_1 + t020_1;
+		final double t121_1 = z * t120_2;
+		final double t122_0 = z * t121_1 + t120_1;
+		final double t031_1 = z * t030_2;
+		final double t032_0 = z * t031_1 + t030_1;
+		final double t001_2 = z * t000_3;
+		final double t002_1 = z * t001_2 + t000_2;
+		final double t003_0 = z * t002_1 + 2.0 * t001_1;
+		final double t101_2 = z * t100_3;
+		final double t102_1 = z * t101_2 + t100_2;
+		final double t103_0 = z * t102_1 + 2.0 * t101_1;
+		final double t201_2 = z * t200_3;
+		final double t202_1 = z * t201_2 + t200_2;
+		final double t203_0 = z * t202_1 + 2.0 * t201_1;
+		final double t011_2 = z * t010_3;
+		final double t012_1 = z * t011_2 + t010_2;
+		final double t013_0 = z * t012_1 + 2.0 * t011_1;
+		final double t111_2 = z * t110_3;
+		final double t112_1 = z * t111_2 + t110_2;
+		final double t113_0 = z * t112_1 + 2.0 * t111_1;
+		final double t021_2 = z * t020_3;
+		final double t022_1 = z * t021_2 + t020_2;
+		final double t023_0 = z * t022_1 + 2.0 * t021_1;
+		final double t001_3 = z * t000_4;
+		final double t002_2 = z * t001_3 + t000_3;
+		final double t003_1 = z * t002_2 + 2.0 * t001_2;
+		final double t004_0 = z * t003_1 + 3.0 * t002_1;
+		final double t101_3 = z * t100_4;
+		final double t102_2 = z * t101_3 + t100_3;
+		final double t103_1 = z * t102_2 + 2.0 * t101_2;
+		final double t104_0 = z * t103_1 + 3.0 * t102_1;
+		final double t011_3 = z * t010_4;
+		final double t012_2 = z * t011_3 + t010_3;
+		final double t013_1 = z * t012_2 + 2.0 * t011_2;
+		final double t014_0 = z * t013_1 + 3.0 * t012_1;
+		final double t001_4 = z * t000_5;
+		final double t002_3 = z * t001_4 + t000_4;
+		final double t003_2 = z * t002_3 + 2.0 * t001_3;
+		final double t004_1 = z * t003_2 + 3.0 * t002_2;
+		final double t005_0 = z * t004_1 + 4.0 * t003_1;
+		tensor[offset + 0] = t000_0;
+		tensor[offset + 1] = t100_0;
+		tensor[offset + 2] = t200_0;
+		tensor[offset + 3] = t300_0;
+		tensor[offset + 4] = t400_0;
+		tensor[offset + 5] = t500_0;
+		tensor[offset + 6] = t010_0;
+		tensor[offset + 7] = t110_0;
+		tensor[offset + 8] = t210_0;
+		tensor[offset + 9] = t310_0;
+		tensor[offset + 10] = t410_0;
+		tensor[offset + 11] = t020_0;
+		tensor[offset + 12] = t120_0;
+		tensor[offset + 13] = t220_0;
+		tensor[offset + 14] = t320_0;
+		tensor[offset + 15] = t030_0;
+		tensor[offset + 16] = t130_0;
+		tensor[offset + 17] = t230_0;
+		tensor[offset + 18] = t040_0;
+		tensor[offset + 19] = t140_0;
+		tensor[offset + 20] = t050_0;
+		tensor[offset + 21] = t001_0;
+		tensor[offset + 22] = t101_0;
+		tensor[offset + 23] = t201_0;
+		tensor[offset + 24] = t301_0;
+		tensor[offset + 25] = t401_0;
+		tensor[offset + 26] = t011_0;
+		tensor[offset + 27] = t111_0;
+		tensor[offset + 28] = t211_0;
+		tensor[offset + 29] = t311_0;
+		tensor[offset + 30] = t021_0;
+		tensor[offset + 31] = t121_0;
+		tensor[offset + 32] = t221_0;
+		tensor[offset + 33] = t031_0;
+		tensor[offset + 34] = t131_0;
+		tensor[offset + 35] = t041_0;
+		tensor[offset + 36] = t002_0;
+		tensor[offset + 37] = t102_0;
+		tensor[offset + 38] = t202_0;
+		tensor[offset + 39] = t302_0;
+		tensor[offset + 40] = t012_0;
+		tensor[offset + 41] = t112_0;
+		tensor[offset + 42] = t212_0;
+		tensor[offset + 43] = t022_0;
+		tensor[offset + 44] = t122_0;
+		tensor[offset + 45] = t032_0;
+		tensor[offset + 46] = t003_0;
+		tensor[offset + 47] = t103_0;
+		tensor[offset + 48] = t203_0;
+		tensor[offset + 49] = t013_0;
+		tensor[offset + 50] = t113_0;
+		tensor[offset + 51] = t023_0;
+		tensor[offset + 52] = t004_0;
+		tensor[offset + 53] = t104_0;
+		tensor[offset + 54] = t014_0;
+		tensor[offset + 55] = t005_0;
+	}
+
+	/*
+	 * Computes the tensors of count separations, packed as
+	 * r[3 * i + k], into tensors[SIZE * i] onwards.
+	 */
+	public static void tensors(final double[] r, final int count,
+			final double[] tensors) {
+		for (int i = 0; i < count; i++) {
+			tensor(r[3 * i], r[3 * i + 1], r[3 * i + 2], tensors, SIZE * i);
+		}
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+/*
+ * Cartesian multipole tensors of order 6, unrolled by MultipoleTensorGenerator.
+ * Do not edit; run the generator instead.
+ */
+public final class MultipoleTensorOrder6 {
+
+	// binomial(order + 3, 3) elements per tensor
+	public static final int SIZE = 84;
+
+	private MultipoleTensorOrder6() {
+	}
+
+	/*
+	 * Stores the tensor for the separation {x, y, z} in
+	 * tensor[offset] .. tensor[offset + SIZE - 1].
+	 */
+	public static void tensor(final double x, final double y,
+			final double z, final double[] tensor, final int offset) {
+		final double rr1 = 1.0 / Math.sqrt(x * x + y * y + z * z);
+		final double rr2 = rr1 * rr1;
+		final double t000_0 = rr1;
+		final double rr3 = rr1 * rr2;
+		final double t000_1 = -rr3;
+		final double rr5 = rr3 * rr2;
+		final double t000_2 = 3.0 * rr5;
+		final double rr7 = rr5 * rr2;
+		final double t000_3 = -15.0 * rr7;
+		final double rr9 = rr7 * rr2;
+		final double t000_4 = 105.0 * rr9;
+		final double rr11 = rr9 * rr2;
+		final double t000_5 = -945.0 * rr11;
+		final double rr13 = rr11 * rr2;
+		final double t000_6 = 10395.0 * rr13;
+		final double t100_0 = x * t000_1;
+		final double t100_1 = x * t000_2;
+		final double t200_0 = x * t100_1 + t000_1;
+		final double t100_2 = x * t000_3;
+		final double t200_1 = x * t100_2 + t000_2;
+		final double t300_0 = x * t200_1 + 2.0 * t100_1;
+		final double t100_3 = x * t000_4;
+		final double t200_2 = x * t100_3 + t000_3;
+		final double t300_1 = x * t200_2 + 2.0 * t100_2;
+		final double t400_0 = x * t300_1 + 3.0 * t200_1;
+		final double t100_4 = x * t000_5;
+		final double t200_3 = x * t100_4 + t000_4;
+		final double t300_2 = x * t200_3 + 2.0 * t100_3;
+		final double t400_1 = x * t300_2 + 3.0 * t200_2;
+		final double t500_0 = x * t400_1 + 4.0 * t300_1;
+		final double t100_5 = x * t000_6;
+		final double t200_4 = x * t100_5 + t000_5;
+		final double t300_3 = x * t200_4 + 2.0 * t100_4;
+		final double t400_2 = x * t300_3 + 3.0 * t200_3;
+		final double t500_1 = x * t400_2 + 4.0 * t300_2;
+		final double t600_0 = x * t500_1 + 5.0 * t400_1;
+		final double t010_0 = y * t000_1;
+		final double t110_0 = y * t100_1;
+		final double t210_0 = y * t200_1;
+		final double t310_0 = y * t300_1;
+		final double t410_0 = y * t400_1;
+		final double t510_0 = y * t500_1;
+		final double t010_1 = y * t000_2;
+		final double t020_0 = y * t010_1 + t000_1;
+		final double t110_1 = y * t100_2;
+		final double t120_0 = y * t110_1 + t100_1;
+		final double t210_1 = y * t200_2;
+		final double t220_0 = y * t210_1 + t200_1;
+		final double t310_1 = y * t300_2;
+		final double t320_0 = y * t310_1 + t300_1;
+		final double t410_1 = y * t400_2;
+		final double t420_0 = y * t410_1 + t400_1;
+		final double t010_2 = y * t000_3;
+		final double t020_1 = y * t010_2 + t000_2;
+		final double t030_0 = y * t020_1 + 2.0 * t010_1;
+		final double t110_2 = y * t100_3;
+		final double t120_1 = y * t110_2 + t100_2;
+		final double t130_0 = y * t120_1 + 2.0 * t110_1;
+		final double t210_2 = y * t200_3;
+		final double t220_1 = y * t210_2 + t200_2;
+		final double t230_0 = y * t220_1 + 2.0 * t210_1;
+		final double t310_2 = y * t300_3;
+		final double t320_1 = y * t310_2 + t300_2;
+		final double t330_0 = y * t320_1 + 2.0 * t310_1;
+		final double t010_3 = y * t000_4;
+		final double t020_2 = y * t010_3 + t000_3;
+		final double t030_1 = y * t020_2 + 2.0 * t010_2;
+		final double t040_0 = y * t030_1 + 3.0 * t020_1;
+		final double t110_3 = y * t100_4;
+		final double t120_2 = y * t110_3 + t100_3;
+		final double t130_1 = y * t120_2 + 2.0 * t110_2;
+		final double t140_0 = y * t130_1 + 3.0 * t120_1;
+		final double t210_3 = y * t200_4;
+		final double t220_2 = y * t210_3 + t200_3;
+		final double t230_1 = y * t220_2 + 2.0 * t210_2;
+		final double t240_0 = y * t230_1 + 3.0 * t220_1;
+		final double t010_4 = y * t000_5;
+		final double t020_3 = y * t010_4 + t000_4;
+		final double t030_2 = y * t020_3 + 2.0 * t010_3;
+		final double t040_1 = y * t030_2 + 3.0 * t020_2;
+		final double t050_0 = y * t040_1 + 4.0 * t030_1;
+		final double t110_4 = y * t100_5;
+		final double t120_3 = y * t110_4 + t100_4;
+		final double t130_2 = y * t120_3 + 2.0 * t110_3;
+		final double t140_1 = y * t130_2 + 3.0 * t120_2;
+		final double t150_0 = y * t140_1 + 4.0 * t130_1;
+		final double t010_5 = y * t000_6;
+		final double t020_4 = y * t010_5 + t000_5;
+		final double t030_3 = y * t020_4 + 2.0 * t010_4;
+		final double t040_2 = y * t030_3 + 3.0 * t020_3;
+		final double t050_1 = y * t040_2 + 4.0 * t030_2;
+		final double t060_0 = y * t050_1 + 5.0 * t040_1;
+		final double t001_0 = z * t000_1;
+		final double t101_0 = z * t100_1;
+		final double t201_0 = z * t200_1;
+		final double t301_0 = z * t300_1;
+		final double t401_0 = z * t400_1;
+		final double t501_0 = z * t500_1;
+		final double t011_0 = z * t010_1;
+		final double t111_0 = z * t110_1;
+		final double t211_0 = z * t210_1;
+		final double t311_0 = z * t310_1;
+		final double t411_0 = z * t410_1;
+		final double t021_0 = z * t020_1;
+		final double t121_0 = z * t120_1;
+		final double t221_0 = z * t220_1;
+		final double t321_0 = z * t320_1;
+		final double t031_0 = z * t030_1;
+		final double t131_0 = z * t130_1;
+		final double t231_0 = z * t230_1;
+		final double t041_0 = z * t040_1;
+		final double t141_0 = z * t140_1;
+		final double t051_0 = z * t050_1;
+		final double t001_1 = z * t000_2;
+		final double t002_0 = z * t001_1 + t000_1;
+		final double t101_1 = z * t100_2;
+		final double t102_0 = z * t101_1 + t100_1;
+		final double t201_1 = z * t200_2;
+		final double t202_0 = z * t201_1 + t200_1;
+		final double t301_1 = z * t300_2;
+		final double t302_0 = z * t301_1 + t300_1;
+		final double t401_1 = z * t400_2;
+		final double t402_0 = z * t401_1 + t400_1;
+		final double t011_1 = z * t010_2;
+		final double t012_0 = z * t011_1 + t010_1;
+		final double t111_1 = z * t110_2;
+		final double t112_0 = z * t111_1 + t110_1;
+		final double t211_1 = z * t210_2;
+		final double t212_0 = z * t211_1 + t210_1;
+		final double t311_1 = z * t310_2;
+		final double t312_0 = z * t311_1 + t310_1;
+		final double t021_1 = z * t020_2;
+		final double t022_0 = z * t021_1 + t020_1;
+		final double t121_1 = z * t120_2;
+		final double t122_0 = z * t121_1 + t120_1;
+		final double t221_1 = z * t220_2;
+		final double t222_0 = z * t221_1 + t220_1;
+		final double t031_1 = z * t030_2;
+		final double t032_0 = z * t031_1 + t030_1;
+		final double t131_1 = z * t130_2;
+		final double t132_0 = z * t131_1 + t130_1;
+		final double t041_1 = z * t040_2;
+		final double t042_0 = z * t041_1 + t040_1;
+		final double t001_2 = z * t000_3;
+		final double t002_1 = z * t001_2 + t000_2;
+		final double t003_0 = z * t002_1 + 2.0 * t001_1;
+		final double t101_2 = z * t100_3;
+		final double t102_1 = z * t101_2 + t100_2;
+		final double t103_0 = z * t102_1 + 2.0 * t101_1;
+		final double t201_2 = z * t200_3;
+		final double t202_1 = z * t201_2 + t200_2;
+		final double t203_0 = z * t202_1 + 2.0 * t201_1;
+		final double t301_2 = z * t300_3;
+		final double t302_1 = z * t301_2 + t300_2;
+		final double t303_0 = z * t302_1 + 2.0 * t301_1;
+		final double t011_2 = z * t010_3;
+		final double t012_1 = z * t011_2 + t010_2;
+		final double t013_0 = z * t012_1 + 2.0 * t011_1;
+		final double t111_2 = z * t110_3;
+		final double t112_1 = z * t111_2 + t110_2;
+		final double t113_0 = z * t112_1 + 2.0 * t111_1;
+		final double t211_2 = z * t210_3;
+		final double t212_1 = z * t211_2 + t210_2;
+		final double t213_0 = z * t212_1 + 2.0 * t211_1;
+		final double t021_2 = z * t020_3;
+		final double t022_1 = z * t021_2 + t020_2;
+		final double t023_0 = z * t022_1 + 2.0 * t021_1;
+		final double t121_2 = z * t120_3;
+		final double t122_1 = z * t121_2 + t120_2;
+		final double t123_0 = z * t122_1 + 2.0 * t121_1;
+		final double t031_2 = z * t030_3;
+		final double t032_1 = z * t031_2 + t030_2;
+		final double t033_0 = z * t032_1 + 2.0 * t031_1;
+		final double t001_3 = z * t000_4;
+		final double t002_2 = z * t001_3 + t000_3;
+		final double t003_1 = z * t002_2 + 2.0 * t001_2;
+		final double t004_0 = z * t003_1 + 3.0 * t002_1;
+		final double t101_3 = z * t100_4;
+		final double t102_2 = z * t101_3 + t100_3;
+		final double t103_1 = z * t102_2 + 2.0 * t101_2;
+		final double t104_0 = z * t103_1 + 3.0 * t102_1;
+		final double t201_3 = z * t200_4;
+		final double t202_2 = z * t201_3 + t200_3;
+		final double t203_1 = z * t202_2 + 2.0 * t201_2;
+		final double t204_0 = z * t203_1 + 3.0 * t202_1;
+		final double t011_3 = z * t010_4;
+		final double t012_2 = z * t011_3 + t010_3;
+		final double t013_1 = z * t012_2 + 2.0 * t011_2;
+		final double t014_0 = z * t013_1 + 3.0 * t012_1;
+		final double t111_3 = z * t110_4;
+		final double t112_2 = z * t111_3 + t110_3;
+		final double t113_1 = z * t112_2 + 2.0 * t111_2;
+		final double t114_0 = z * t113_1 + 3.0 * t112_1;
+		final double t021_3 = z * t020_4;
+		final double t022_2 = z * t021_3 + t020_3;
+		final double t023_1 = z * t022_2 + 2.0 * t021_2;
+		final double t024_0 = z * t023_1 + 3.0 * t022_1;
+		final double t001_4 = z * t000_5;
+		final double t002_3 = z * t001_4 + t000_4;
+		final double t003_2 = z * t002_3 + 2.0 * t001_3;
+		final double t004_1 = z * t003_2 + 3.0 * t002_2;
+		final double t005_0 = z * t004_1 + 4.0 * t003_1;
+		final double t101_4 = z * t100_5;
+		final double t102_3 = z * t101_4 + t100_4;
+		final double t103_2 = z * t102_3 + 2.0 * t101_3;
+		final double t104_1 = z * t103_2 + 3.0 * t102_2;
+		final double t105_0 = z * t104_1 + 4.0 * t103_1;
+		final double t011_4 = z * t010_5;
+		final double t012_3 = z * t011_4 + t010_4;
+		final double t013_2 = z * t012_3 + 2.0 * t011_3;
+		final double t014_1 = z * t013_2 + 3.0 * t012_2;
+		final double t015_0 = z * t014_1 + 4.0 * t013_1;
+		final double t001_5 = z * t000_6;
+		final double t002_4 = z * t001_5 + t000_5;
+		final double t003_3 = z * t002_4 + 2.0 * t001_4;
+		final double t004_2 = z * t003_3 + 3.0 * t002_3;
+		final double t005_1 = z * t004_2 + 4.0 * t003_2;
+		final double t006_0 = z * t005_1 + 5.0 * t004_1;
+		tensor[offset + 0] = t000_0;
+		tensor[offset + 1] = t100_0;
+		tensor[offset + 2] = t200_0;
+		tensor[offset + 3] = t300_0;
+		tensor[offset + 4] = t400_0;
+		tensor[offset + 5] = t500_0;
+		tensor[offset + 6] = t600_0;
+		tensor[offset + 7] = t010_0;
+		tensor[offset + 8] = t110_0;
+		tensor[offset + 9] = t210_0;
+		tensor[offset + 10] = t310_0;
+		tensor[offset + 11] = t410_0;
+		tensor[offset + 12] = t510_0;
+		tensor[offset + 13] = t020_0;
+		tensor[offset + 14] = t120_0;
+		tensor[offset + 15] = t220_0;
+		tensor[offset + 16] = t320_0;
+		tensor[offset + 17] = t420_0;
+		tensor[offset + 18] = t030_0;
+		tensor[offset + 19] = t130_0;
+		tensor[offset + 20] = t230_0;
+		tensor[offset + 21] = t330_0;
+		tensor[offset + 22] = t040_0;
+		tensor[offset + 23] = t140_0;
+		tensor[offset + 24] = t240_0;
+		tensor[offset + 25] = t050_0;
+		tensor[offset + 26] = t150_0;
+		tensor[offset + 27] = t060_0;
+		tensor[offset + 28] = t001_0;
+		tensor[offset + 29] = t101_0;
+		tensor[offset + 30] = t201_0;
+		tensor[offset + 31] = t301_0;
+		tensor[offset + 32] = t401_0;
+		tensor[offset + 33] = t501_0;
+		tensor[offset + 34] = t011_0;
+		tensor[offset + 35] = t111_0;
+		tensor[offset + 36] = t211_0;
+		tensor[offset + 37] = t311_0;
+		tensor[offset + 38] = t411_0;
+		tensor[offset + 39] = t021_0;
+		tensor[offset + 40] = t121_0;
+		tensor[offset + 41] = t221_0;
+		tensor[offset + 42] = t321_0;
+		tensor[offset + 43] = t031_0;
+		tensor[offset + 44] = t131_0;
+		tensor[offset + 45] = t231_0;
+		tensor[offset + 46] = t041_0;
+		tensor[offset + 47] = t141_0;
+		tensor[offset + 48] = t051_0;
+		tensor[offset + 49] = t002_0;
+		tensor[offset + 50] = t102_0;
+		tensor[offset + 51] = t202_0;
+		tensor[offset + 52] = t302_0;
+		tensor[offset + 53] = t402_0;
+		tensor[offset + 54] = t012_0;
+		tensor[offset + 55] = t112_0;
+		tensor[offset + 56] = t212_0;
+		tensor[offset + 57] = t312_0;
+		tensor[offset + 58] = t022_0;
+		tensor[offset + 59] = t122_0;
+		tensor[offset + 60] = t222_0;
+		tensor[offset + 61] = t032_0;
+		tensor[offset + 62] = t132_0;
+		tensor[offset + 63] = t042_0;
+		tensor[offset + 64] = t003_0;
+		tensor[offset + 65] = t103_0;
+		tensor[offset + 66] = t203_0;
+		tensor[offset + 67] = t303_0;
+		tensor[offset + 68] = t013_0;
+		tensor[offset + 69] = t113_0;
+		tensor[offset + 70] = t213_0;
+		tensor[offset + 71] = t023_0;
+		tensor[offset + 72] = t123_0;
+		tensor[offset + 73] = t033_0;
+		tensor[offset + 74] = t004_0;
+		tensor[offset + 75] = t104_0;
+		tensor[offset + 76] = t204_0;
+		tensor[offset + 77] = t014_0;
+		tensor[offset + 78] = t114_0;
+		tensor[offset + 79] = t024_0;
+		tensor[offset + 80] = t005_0;
+		tensor[offset + 81] = t105_0;
+		tensor[offset + 82] = t015_0;
+		tensor[offset + 83] = t006_0;
+	}
+
+	/*
+	 * Computes the tensors of count separations, packed as
+	 * r[3 * i + k], into tensors[SIZE * i] onwards.
+	 */
+	public static void tensors(final double[] r, final int count,
+			final double[] tensors) {
+		for (int i = 0; i < count; i++) {
+			tensor(r[3 * i], r[3 * i + 1], r[3 * i + 2], tensors, SIZE * i);
+		}
+	}
+}
@@ -9,12 +9,20 @@
 
 package ffe.lang;
 
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class MultipoleTensorRecursion {
 	private static final Logger logger = Logger.getLogger("ffe");
 
+	// Highest order with a generated MultipoleTensorOrder class
+	public static final int MAX_UNROLLED = 6;
+
+	// Largest relative difference allowed between the unrolled tensors
+	// and noStorageTensorRecursion in main()
+	private static final double TOLERANCE = 1.0e-12;
+
 	/*
 	 * Store the auxillary tensor memory to avoid memory consumption.
 	 */
@@ -61,6 +69,64 @@ public class MultipoleTensorRecursion {
 				logger.info("Tensor Recursion - Order           : "
 						+ order + " n " + niter + " time " + done + " size "
 						+ size);
+				if (order > MAX_UNROLLED) {
+					continue;
+				}
+				// The same separation, through the unrolled and batched
+				// kernels
+				start = System.currentTimeMillis();
+				for (int i = 0; i < niter; i++) {
+					tensor(order, r, tensor);
+				}
+				done = System.currentTimeMillis() - start;
+				logger.info("Unrolled Tensors - Order           : "
+						+ order + " n " + niter + " time " + done + " size "
+						+ size);
+				// Random directions at distances from 0.5 to 12 Angstroms
+				int batch = 1024;
+				double[] rs = new double[3 * batch];
+				Random random = new Random(order);
+				for (int i = 0; i < batch; i++) {
+					double x = random.nextGaussian();
+					double y = random.nextGaussian();
+					double z = random.nextGaussian();
+					double d = (0.5 + 11.5 * random.nextDouble())
+							/ Math.sqrt(x * x + y * y + z * z);
+					rs[3 * i] = d * x;
+					rs[3 * i + 1] = d * y;
+					rs[3 * i + 2] = d * z;
+				}
+				double[] tensors = new double[size * batch];
+				start = System.currentTimeMillis();
+				for (int i = 0; i < niter; i += batch) {
+					tensors(order, rs, batch, tensors);
+				}
+				done = System.currentTimeMillis() - start;
+				logger.info("Batched Tensors - Order            : "
+						+ order + " n " + niter + " time " + done + " size "
+						+ size);
+				// Check every batched tensor against the recursion
+				double[] expected = new double[size];
+				double[] ri = new double[3];
+				double error = 0.0;
+				for (int i = 0; i < batch; i++) {
+					System.arraycopy(rs, 3 * i, ri, 0, 3);
+					multipoleTensor.noStorageTensorRecursion(ri, expected);
+					for (int k = 0; k < size; k++) {
+						double e = expected[k];
+						error = Math.max(error, Math.abs(tensors[size * i + k]
+								- e)
+								/ Math.max(1.0, Math.abs(e)));
+					}
+				}
+				logger.info(String.format(
+						"Largest difference from noStorageTensorRecursion: %8.3e",
+						error));
+				if (error > TOLERANCE) {
+					logger.warning(String.format(
+							"Unrolled tensors exceed the tolerance of %8.3e",
+							TOLERANCE));
+				}
 				/*
 				 * start = System.currentTimeMillis(); for (int i = 0; i <
 				 * niter; i++) { multipoleTensor.noStorageTensorRecursion(r,
@@ -111,6 +177,67 @@ public class MultipoleTensorRecursion {
 		return dx + yindex + zindex;
 	}
 
+	/*
+	 * Computes one tensor of order 1 .. MAX_UNROLLED with the generated
+	 * MultipoleTensorOrder classes. The tensor is packed as described by
+	 * tensorIndex, the same as noStorageTensorRecursion.
+	 */
+	public static void tensor(int order, double r[], double tensor[]) {
+		switch (order) {
+		case 1:
+			MultipoleTensorOrder1.tensor(r[0], r[1], r[2], tensor, 0);
+			break;
+		case 2:
+			MultipoleTensorOrder2.tensor(r[0], r[1], r[2], tensor, 0);
+			break;
+		case 3:
+			MultipoleTensorOrder3.tensor(r[0], r[1], r[2], tensor, 0);
+			break;
+		case 4:
+			MultipoleTensorOrder4.tensor(r[0], r[1], r[2], tensor, 0);
+			break;
+		case 5:
+			MultipoleTensorOrder5.tensor(r[0], r[1], r[2], tensor, 0);
+			break;
+		case 6:
+			MultipoleTensorOrder6.tensor(r[0], r[1], r[2], tensor, 0);
+			break;
+		default:
+			logger.warning("No unrolled tensors of order " + order);
+		}
+	}
+
+	/*
+	 * Computes the tensors of count separation vectors, packed as
+	 * r[3 * i + k], into one array: tensor i starts at
+	 * tensors[i * binomial(order + 3, 3)].
+	 */
+	public static void tensors(int order, double r[], int count,
+			double tensors[]) {
+		switch (order) {
+		case 1:
+			MultipoleTensorOrder1.tensors(r, count, tensors);
+			break;
+		case 2:
+			MultipoleTensorOrder2.tensors(r, count, tensors);
+			break;
+		case 3:
+			MultipoleTensorOrder3.tensors(r, count, tensors);
+			break;
+		case 4:
+			MultipoleTensorOrder4.tensors(r, count, tensors);
+			break;
+		case 5:
+			MultipoleTensorOrder5.tensors(r, count, tensors);
+			break;
+		case 6:
+			MultipoleTensorOrder6.tensors(r, count, tensors);
+			break;
+		default:
+			logger.warning("No unrolled tensors of order " + order);
+		}
+	}
+
 	/*
 	 * This routine implements the recurrence relations for computation of of
 	 * any Cartesion multipole tensor in ~O(L^8) time, where L is the total
@@ -239,7 +366,7 @@ public class MultipoleTensorRecursion {
 		// return;
 		// }
 
-		if (T000 == null) {
+		if (T000 == null || T000.length < order + 1) {
 			T000 = new double[order + 1];
 		}
 		// R.
@@ -353,10 +353,8 @@ public class Polymer extends MSGroup {
 			color = polymerColor.get(index);
 			mat = RendererCache.materialFactory(color);
 		}
-		for (ListIterator li = getAtomNodeList().listIterator(); li.hasNext();) {
-			MSGroup atomGroup = (MSGroup) li.next();
-			atomGroup.setColor(newColorModel, color, mat);
-		}
+		// Residues are colored in parallel, then the Joints between them
+		SceneBuilder.setColor(getAtomNodeList(), newColorModel, color, mat);
 		for (Enumeration e = getTerms().children(); e.hasMoreElements();) {
 			Joint joint = (Joint) e.nextElement();
 			joint.setColor(newColorModel);
@@ -368,10 +366,7 @@ public class Polymer extends MSGroup {
 	}
 	public void setView(RendererCache.ViewModel newViewModel,
 			List<BranchGroup> newShapes) {
-		for (ListIterator li = getAtomNodeList().listIterator(); li.hasNext();) {
-			MSGroup atomGroup = (MSGroup) li.next();
-			atomGroup.setView(newViewModel, newShapes);
-		}
+		SceneBuilder.setView(getAtomNodeList(), newViewModel, newShapes);
 		for (Enumeration e = getTerms().children(); e.hasMoreElements();) {
 			Joint joint = (Joint) e.nextElement();
 			joint.setView(newViewModel, newShapes);
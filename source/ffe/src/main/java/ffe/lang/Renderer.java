@@ -197,12 +197,20 @@ public class Renderer extends Behavior {
 		}
 		// Perform the requested rendering operation
 		ArrayList<ArrayList<BranchGroup>> newChildren = new ArrayList<ArrayList<BranchGroup>>();
+		long updateTime = 0;
 		for (MSNode nodeToUpdate : nodesToUpdate) {
 			if (nodeToUpdate == null) {
 				continue;
 			}
 			if (doTransform) {
+				long start = System.nanoTime();
 				nodeToUpdate.update();
+				if (timer && !WireBatch.legacy) {
+					// The legacy path writes each Bond's LineArray in
+					// update(), so include the batched write to compare
+					flushWireframes(nodeToUpdate);
+				}
+				updateTime += System.nanoTime() - start;
 			}
 			if (doColor) {
 				nodeToUpdate.setColor(colorModel, null, null);
@@ -221,69 +229,53 @@ public class Renderer extends Behavior {
 				}
 			}
 		}
-		// Wait for the parallel nodes to finish
-		try {
-			if (ROLSP.GO_PARALLEL && ROLSP.parallelNotDone > 0) {
-				logger.info("Renderer waiting for "
-						+ ROLSP.parallelNotDone + " processes...");
+		// setView has returned on every node, including those built in
+		// parallel, so the new children are attached here in one batch
+		// from the Java3D behavior thread.
+		for (int i = 0; i < nodesToUpdate.size(); i++) {
+			if (newChildren.isEmpty()) {
+				break;
 			}
-			while (ROLSP.GO_PARALLEL && ROLSP.parallelNotDone > 0) {
-				synchronized (this) {
-					wait(10);
-				}
+			MSNode nodeToUpdate = nodesToUpdate.get(i);
+			if (nodeToUpdate == null) {
+				continue;
 			}
-		} catch (Exception e) {
-			System.out
-					.println("Exception Waiting for Parallel MultiScale Methods to Finish");
-		} finally {
-			// If there are new children, they can not be added in parallel
-			// because Java3D does not seem to be thread safe.
-			// (There are ArrayList that are not synchronized).
-			// Here we will add them one at a time. The cases are setView being
-			// called on nodes below the
-			// Scenegraph attachment points (MolecularAssemblies), setView being
-			// called on the root node, setView
-			// being called on a ParallelMSM node, or setView being called on
-			// the MolecularAssembly.
-			for (int i = 0; i < nodesToUpdate.size(); i++) {
-				if (newChildren.isEmpty()) {
-					break;
-				}
-				MSNode nodeToUpdate = nodesToUpdate.get(i);
-				if (nodeToUpdate == null) {
-					continue;
+			if (nodeToUpdate instanceof MolecularAssembly) {
+				MolecularAssembly ma = (MolecularAssembly) nodeToUpdate;
+				ma.sceneGraphChange(null);
+			} else if (nodeToUpdate instanceof ROLSP) {
+				MolecularAssembly ma = (MolecularAssembly) nodeToUpdate
+						.getChildAt(0);
+				ma.sceneGraphChange(null);
+			} else if (nodeToUpdate instanceof MSRoot) {
+				for (Enumeration e = nodeToUpdate.children(); e
+						.hasMoreElements();) {
+					MSNode updatedNode = (MSNode) e.nextElement();
+					if (updatedNode instanceof ROLSP) {
+						MolecularAssembly ma = (MolecularAssembly) updatedNode
+								.getChildAt(0);
+						ma.sceneGraphChange(null);
+					} else {
+						MolecularAssembly ma = (MolecularAssembly) updatedNode;
+						ma.sceneGraphChange(null);
+					}
 				}
-				if (nodeToUpdate instanceof MolecularAssembly) {
-					MolecularAssembly ma = (MolecularAssembly) nodeToUpdate;
-					ma.sceneGraphChange(null);
-				} else if (nodeToUpdate instanceof ROLSP) {
+			} else {
+				ArrayList<BranchGroup> newShapes = newChildren.get(i);
+				if (!newShapes.isEmpty()) {
 					MolecularAssembly ma = (MolecularAssembly) nodeToUpdate
-							.getChildAt(0);
-					ma.sceneGraphChange(null);
-				} else if (nodeToUpdate instanceof MSRoot) {
-					for (Enumeration e = nodeToUpdate.children(); e
-							.hasMoreElements();) {
-						MSNode updatedNode = (MSNode) e.nextElement();
-						if (updatedNode instanceof ROLSP) {
-							MolecularAssembly ma = (MolecularAssembly) updatedNode
-									.getChildAt(0);
-							ma.sceneGraphChange(null);
-						} else {
-							MolecularAssembly ma = (MolecularAssembly) updatedNode;
-							ma.sceneGraphChange(null);
-						}
-					}
-				} else {
-					ArrayList<BranchGroup> newShapes = newChildren.get(i);
-					if (!newShapes.isEmpty()) {
-						MolecularAssembly ma = (MolecularAssembly) nodeToUpdate
-								.getMSNode(MolecularAssembly.class);
-						ma.sceneGraphChange(newShapes);
-					}
+							.getMSNode(MolecularAssembly.class);
+					ma.sceneGraphChange(newShapes);
 				}
 			}
 		}
 		if (timer) {
+			if (doTransform) {
+				// Compare runs with and without ffe.wire.legacy
+				logger.info("Coordinate Update (msec, "
+						+ (WireBatch.legacy ? "legacy" : "by reference")
+						+ " wireframe): " + updateTime * 1.0e-6);
+			}
 			stopTimer();
 		}
 		nodesToUpdate = null;
@@ -300,6 +292,26 @@ public class Renderer extends Behavior {
 		}
 	}
 
+	/*
+	 * Flushes the wireframe of each MolecularAssembly a node belongs to or
+	 * holds.
+	 */
+	private void flushWireframes(MSNode node) {
+		if (node instanceof MolecularAssembly) {
+			((MolecularAssembly) node).flushWireframe();
+		} else if (node instanceof ROLSP || node instanceof MSRoot) {
+			for (Enumeration e = node.children(); e.hasMoreElements();) {
+				flushWireframes((MSNode) e.nextElement());
+			}
+		} else {
+			MolecularAssembly ma = (MolecularAssembly) node
+					.getMSNode(MolecularAssembly.class);
+			if (ma != null) {
+				ma.flushWireframe();
+			}
+		}
+	}
+
 	private void startTimer() {
 		Runtime runtime = Runtime.getRuntime();
 		frameDuration = getView().getLastFrameDuration();
@@ -34,13 +34,11 @@ import org.jogamp.java3d.Shape3D;
 import org.jogamp.java3d.Transform3D;
 import org.jogamp.java3d.TransformGroup;
 import org.jogamp.java3d.TransparencyAttributes;
-import org.jogamp.java3d.utils.geometry.Cone;
 import org.jogamp.java3d.utils.geometry.Cylinder;
 import org.jogamp.java3d.utils.geometry.Sphere;
 import org.jogamp.vecmath.Color3f;
 import org.jogamp.vecmath.Point2d;
 import org.jogamp.vecmath.Point3d;
-import org.jogamp.vecmath.Vector3d;
 
 /*
  * The RendererCache class defines constants related to rendering
@@ -152,8 +150,6 @@ public class RendererCache {
 	private static List<Transform3D> transform3DPool = Collections
 			.synchronizedList(new ArrayList<Transform3D>());
 
-	protected static List<BranchGroup> spherePool = Collections
-			.synchronizedList(new ArrayList<BranchGroup>());
 	private static List<BranchGroup> doubleCylinderPool = Collections
 			.synchronizedList(new ArrayList<BranchGroup>());
 
@@ -161,8 +157,6 @@ public class RendererCache {
 
 	private static final Geometry cylgeom[][] = new Geometry[3][11];
 
-	private static final Geometry conegeom[][] = new Geometry[2][4];
-
 	static private final Hashtable<Color3f, Appearance> pointAppearances = new Hashtable<Color3f, Appearance>();
 
 	static private final Hashtable<Color3f, Appearance> lineAppearances = new Hashtable<Color3f, Appearance>();
@@ -218,7 +212,7 @@ public class RendererCache {
 		nullAp.setRenderingAttributes(ra);
 	}
 
-	protected static Appearance appearanceFactory(Color3f col,
+	protected static synchronized Appearance appearanceFactory(Color3f col,
 			ViewModel polygonType) {
 		if (col == null) {
 			return null;
@@ -237,21 +231,6 @@ public class RendererCache {
 		return ap;
 	}
 
-	protected static Shape3D coneFactory(Appearance ap, int res) {
-		if (res > 3) {
-			res = 3;
-		}
-		Shape3D cone = new Shape3D();
-		cone.setAppearance(ap);
-		cone.setCapability(Shape3D.ALLOW_GEOMETRY_READ);
-		cone.setCapability(Shape3D.ALLOW_GEOMETRY_WRITE);
-		cone.setCapability(Shape3D.ALLOW_APPEARANCE_WRITE);
-		cone.setCapability(Shape3D.ALLOW_PICKABLE_WRITE);
-		cone.addGeometry(getConeGeom(0, res));
-		cone.addGeometry(getConeGeom(1, res));
-		return cone;
-	}
-
 	static private Appearance createAppearance(Color3f col,
 			ViewModel polygonType) {
 		Appearance ap = null;
@@ -306,22 +285,6 @@ public class RendererCache {
 		return cyl;
 	}
 
-	/*
-	 * This method creates a single Sphere from the given appearance
-	 */
-	private static Shape3D createSphere(Appearance ap, int div) {
-		Shape3D shape3d = new Shape3D();
-		shape3d.setAppearance(ap);
-		shape3d.addGeometry(getSphereGeom(div));
-		shape3d.setCapability(Shape3D.ALLOW_GEOMETRY_READ);
-		shape3d.setCapability(Shape3D.ALLOW_GEOMETRY_WRITE);
-		shape3d.setCapability(Shape3D.ALLOW_APPEARANCE_WRITE);
-		shape3d.setCapability(Shape3D.ALLOW_APPEARANCE_READ);
-		shape3d.setCapability(Shape3D.ENABLE_PICK_REPORTING);
-		shape3d.setCapability(Shape3D.ALLOW_PICKABLE_WRITE);
-		return shape3d;
-	}
-
 	private static final TransformGroup createTransformGroup(
 			Transform3D transform3D) {
 		TransformGroup transformGroup;
@@ -338,21 +301,23 @@ public class RendererCache {
 
 	protected static final BranchGroup doubleCylinderFactory(Atom a1, Atom a2,
 			int div) {
-		BranchGroup branchGroup;
-		if (doubleCylinderPool.size() > 0) {
-			branchGroup = doubleCylinderPool.remove(0);
-			if (branchGroup != null) {
-				TransformGroup cy1tg = (TransformGroup) branchGroup.getChild(0);
-				Shape3D cy1 = (Shape3D) cy1tg.getChild(0);
-				cy1.setAppearance(a1.getAtomAppearance());
-				cy1.setUserData(a1);
-				TransformGroup cy2tg = (TransformGroup) branchGroup.getChild(1);
-				Shape3D cy2 = (Shape3D) cy2tg.getChild(0);
-				cy2.setUserData(a2);
-				cy2.setAppearance(a2.getAtomAppearance());
-				return branchGroup;
+		BranchGroup branchGroup = null;
+		synchronized (doubleCylinderPool) {
+			if (doubleCylinderPool.size() > 0) {
+				branchGroup = doubleCylinderPool.remove(0);
 			}
 		}
+		if (branchGroup != null) {
+			TransformGroup cy1tg = (TransformGroup) branchGroup.getChild(0);
+			Shape3D cy1 = (Shape3D) cy1tg.getChild(0);
+			cy1.setAppearance(a1.getAtomAppearance());
+			cy1.setUserData(a1);
+			TransformGroup cy2tg = (TransformGroup) branchGroup.getChild(1);
+			Shape3D cy2 = (Shape3D) cy2tg.getChild(0);
+			cy2.setUserData(a2);
+			cy2.setAppearance(a2.getAtomAppearance());
+			return branchGroup;
+		}
 		branchGroup = new BranchGroup();
 		branchGroup.setCapability(BranchGroup.ALLOW_DETACH);
 		branchGroup.setCapability(BranchGroup.ALLOW_CHILDREN_READ);
@@ -434,17 +399,8 @@ public class RendererCache {
 		}
 	}
 
-	protected static Geometry getConeGeom(int num, int res) {
-		if (res > 3) {
-			res = 3;
-		}
-		if (conegeom[num][res] == null) {
-			initConeGeom(res);
-		}
-		return conegeom[num][res];
-	}
-
-	protected static final Geometry getCylinderGeom(int num, int res) {
+	protected static final synchronized Geometry getCylinderGeom(int num,
+			int res) {
 		if (res < 0) {
 			res = 0;
 		}
@@ -484,7 +440,7 @@ public class RendererCache {
 		 */
 	}
 
-	protected static final Geometry getSphereGeom(int res) {
+	protected static final synchronized Geometry getSphereGeom(int res) {
 		if (res < 0) {
 			res = 0;
 		}
@@ -497,21 +453,6 @@ public class RendererCache {
 		return sphereGeom[res];
 	}
 
-	private static void initConeGeom(int res) {
-		Cone cone = new Cone(1.0f, 1.0f, Cone.GENERATE_NORMALS
-				| Cone.ENABLE_GEOMETRY_PICKING | Cone.ENABLE_APPEARANCE_MODIFY,
-				(res + 1) * 4, 1, nullAp);
-		for (int i = 0; i < 2; i++) {
-			conegeom[i][res] = cone.getShape(i).getGeometry();
-			/*
-			 * conegeom[i][res].setCapability(Geometry.ALLOW_INTERSECT);
-			 * conegeom[i][res].setCapability(GeometryArray.ALLOW_FORMAT_READ);
-			 * conegeom[i][res].setCapability(GeometryArray.ALLOW_COUNT_READ);
-			 * conegeom[i][res].setCapability(GeometryArray.ALLOW_COORDINATE_READ);
-			 */
-		}
-	}
-
 	private static void initCylinderGeom(int res) {
 		Appearance ap = new Appearance();
 		Cylinder cyl = new Cylinder(1.0f, 1.0f, Cylinder.GENERATE_NORMALS
@@ -546,7 +487,7 @@ public class RendererCache {
 		 */
 	}
 
-	static protected Material materialFactory(Color3f col) {
+	static protected synchronized Material materialFactory(Color3f col) {
 		if (col == null) {
 			return null;
 		}
@@ -566,45 +507,12 @@ public class RendererCache {
 		}
 	}
 
-	// A pool of TransformGroups with one child, a sphere.
-	protected static void poolSphere(BranchGroup tg) {
-		if (tg != null) {
-			spherePool.add(tg);
-		}
-	}
-
 	protected static void poolTransform3D(Transform3D transform3D) {
 		if (transform3D != null) {
 			transform3DPool.add(transform3D);
 		}
 	}
 
-	protected static final BranchGroup sphereFactory(Appearance ap, int div,
-			Transform3D transform3D) {
-		BranchGroup branchGroup;
-		if (spherePool.size() > 0) {
-			branchGroup = spherePool.remove(0);
-			if (branchGroup != null) {
-				TransformGroup transformGroup = (TransformGroup) branchGroup
-						.getChild(0);
-				transformGroup.setTransform(transform3D);
-				Shape3D sphere = (Shape3D) transformGroup.getChild(0);
-				sphere.setAppearance(ap);
-				return branchGroup;
-			}
-		}
-		branchGroup = new BranchGroup();
-		branchGroup.setCapability(BranchGroup.ALLOW_DETACH);
-		branchGroup.setCapability(BranchGroup.ALLOW_CHILDREN_READ);
-		branchGroup.setCapability(BranchGroup.ALLOW_CHILDREN_EXTEND);
-		TransformGroup transformGroup = createTransformGroup(transform3D);
-		Shape3D sphere = createSphere(ap, div);
-		transformGroup.addChild(sphere);
-		branchGroup.addChild(transformGroup);
-		branchGroup.compile();
-		return branchGroup;
-	}
-
 	protected static final Color3f toAtomColor(String s) {
 		String c = s.toLowerCase();
 		if (c.startsWith("h")) {
@@ -643,31 +551,17 @@ public class RendererCache {
 	 */
 
 	protected static final Transform3D transform3DFactory() {
-		Transform3D transform3D;
-		if (transform3DPool.size() > 0) {
-			transform3D = transform3DPool.get(0);
-			if (transform3D != null) {
-				return transform3D;
+		Transform3D transform3D = null;
+		synchronized (transform3DPool) {
+			if (transform3DPool.size() > 0) {
+				transform3D = transform3DPool.remove(0);
 			}
 		}
-		transform3D = new Transform3D();
-		return transform3D;
-	}
-
-	protected static final Transform3D transform3DFactory(Vector3d position,
-			double scale) {
-		Transform3D transform3D;
-		if (transform3DPool.size() > 0) {
-			transform3D = transform3DPool.get(0);
-			if (transform3D != null) {
-				transform3D.setTranslation(position);
-				transform3D.setScale(scale);
-				return transform3D;
-			}
+		if (transform3D != null) {
+			transform3D.setIdentity();
+			return transform3D;
 		}
 		transform3D = new Transform3D();
-		transform3D.setTranslation(position);
-		transform3D.setScale(scale);
 		return transform3D;
 	}
 
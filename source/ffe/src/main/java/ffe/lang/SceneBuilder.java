@@ -0,0 +1,162 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import org.jogamp.java3d.BranchGroup;
+import org.jogamp.java3d.Material;
+import org.jogamp.vecmath.Color3f;
+
+/*
+ * The SceneBuilder class applies a ViewModel or ColorModel change to a list
+ * of residues, polymers or molecules on the common ForkJoinPool. Each task
+ * collects the detached BranchGroups created by its nodes in its own list;
+ * the lists are joined in the order of the nodes and handed back to the
+ * caller, so the Renderer still attaches all new shapes in one batch from
+ * the Java3D behavior thread. Calls return once every node is done.
+ *
+ * Setting ffe.scene.parallel to false applies changes on the calling
+ * thread.
+ */
+final class SceneBuilder {
+
+	static final boolean parallel = System.getProperty("ffe.scene.parallel",
+			"true").equalsIgnoreCase("true");
+
+	// Nodes per task; shorter lists are done on the calling thread
+	private static final int CHUNK = 16;
+
+	private SceneBuilder() {
+	}
+
+	/*
+	 * Calls setView on each node and adds the new shapes to newShapes.
+	 */
+	static void setView(List<? extends ROLS> nodes,
+			RendererCache.ViewModel viewModel, List<BranchGroup> newShapes) {
+		if (!parallel || nodes.size() <= CHUNK) {
+			for (ROLS node : nodes) {
+				node.setView(viewModel, newShapes);
+			}
+			return;
+		}
+		newShapes.addAll(invoke(new ViewTask(nodes, viewModel, 0, nodes
+				.size())));
+	}
+
+	/*
+	 * Calls setColor on each node.
+	 */
+	static void setColor(List<? extends ROLS> nodes,
+			RendererCache.ColorModel colorModel, Color3f color, Material mat) {
+		if (!parallel || nodes.size() <= CHUNK) {
+			for (ROLS node : nodes) {
+				node.setColor(colorModel, color, mat);
+			}
+			return;
+		}
+		invoke(new ColorTask(nodes, colorModel, color, mat, 0, nodes.size()));
+	}
+
+	/*
+	 * Runs the task in the current pool when called from one of its
+	 * workers, for instance for the residues of a polymer whose molecular
+	 * assembly is being built in parallel.
+	 */
+	private static <T> T invoke(ForkJoinTask<T> task) {
+		if (ForkJoinTask.inForkJoinPool()) {
+			return task.invoke();
+		}
+		return ForkJoinPool.commonPool().invoke(task);
+	}
+
+	private static final class ViewTask extends
+			RecursiveTask<ArrayList<BranchGroup>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends ROLS> nodes;
+
+		private final RendererCache.ViewModel viewModel;
+
+		private final int from;
+
+		private final int to;
+
+		ViewTask(List<? extends ROLS> n, RendererCache.ViewModel v, int f,
+				int t) {
+			nodes = n;
+			viewModel = v;
+			from = f;
+			to = t;
+		}
+
+		protected ArrayList<BranchGroup> compute() {
+			if (to - from > CHUNK) {
+				int mid = (from + to) >>> 1;
+				ViewTask second = new ViewTask(nodes, viewModel, mid, to);
+				second.fork();
+				ArrayList<BranchGroup> shapes = new ViewTask(nodes,
+						viewModel, from, mid).compute();
+				shapes.addAll(second.join());
+				return shapes;
+			}
+			ArrayList<BranchGroup> shapes = new ArrayList<BranchGroup>();
+			for (int i = from; i < to; i++) {
+				nodes.get(i).setView(viewModel, shapes);
+			}
+			return shapes;
+		}
+	}
+
+	private static final class ColorTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends ROLS> nodes;
+
+		private final RendererCache.ColorModel colorModel;
+
+		private final Color3f color;
+
+		private final Material mat;
+
+		private final int from;
+
+		private final int to;
+
+		ColorTask(List<? extends ROLS> n, RendererCache.ColorModel c,
+				Color3f col, Material m, int f, int t) {
+			nodes = n;
+			colorModel = c;
+			color = col;
+			mat = m;
+			from = f;
+			to = t;
+		}
+
+		protected void compute() {
+			if (to - from > CHUNK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ColorTask(nodes, colorModel, color, mat, from,
+						mid), new ColorTask(nodes, colorModel, color, mat, mid,
+						to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				nodes.get(i).setColor(colorModel, color, mat);
+			}
+		}
+	}
+}
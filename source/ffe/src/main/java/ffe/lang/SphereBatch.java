@@ -0,0 +1,488 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+import org.jogamp.java3d.Appearance;
+import org.jogamp.java3d.Behavior;
+import org.jogamp.java3d.BoundingSphere;
+import org.jogamp.java3d.BranchGroup;
+import org.jogamp.java3d.Geometry;
+import org.jogamp.java3d.GeometryArray;
+import org.jogamp.java3d.GeometryUpdater;
+import org.jogamp.java3d.IndexedGeometryArray;
+import org.jogamp.java3d.IndexedTriangleArray;
+import org.jogamp.java3d.Shape3D;
+import org.jogamp.java3d.WakeupOnBehaviorPost;
+import org.jogamp.vecmath.Point3d;
+
+/*
+ * The SphereBatch class draws the atomic spheres of one MolecularAssembly
+ * with one Shape3D per Appearance, instead of a BranchGroup,
+ * TransformGroup and Shape3D per Atom. Each Shape3D holds an
+ * IndexedTriangleArray whose coordinates and normals are arrays shared by
+ * reference: every visible Atom owns a slot of the arrays, into which a
+ * unit icosphere, scaled and translated to the Atom, is written.
+ *
+ * Atoms are added, moved, recolored and removed from any thread; the
+ * arrays are rewritten in one pass by this Behavior, which is posted to
+ * after the first change since its last pass. The detail of the icosphere
+ * follows RendererCache.detail, but is lowered for large systems so that
+ * a batch holds at most ffe.sphere.vertices vertices. Within that bound,
+ * each Atom is drawn at the detail its LODManager chose for it, so an
+ * Appearance has one Shape3D per icosphere level in use.
+ */
+final class SphereBatch extends Behavior {
+
+	// Icosphere subdivisions used for RendererCache.detail / 3
+	private static final int MAX_LEVEL = 3;
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	private static final int DEFAULT_VERTICES = 2000000;
+
+	private static final int MAX_VERTICES = getMaxVertices();
+
+	private static final float[][] templateVertices = new float[MAX_LEVEL + 1][];
+
+	private static final int[][] templateIndices = new int[MAX_LEVEL + 1][];
+
+	private static final int POST = 1;
+
+	private final MolecularAssembly molecularAssembly;
+
+	private final BranchGroup branchGroup;
+
+	private final HashMap<Appearance, Bucket[]> buckets = new HashMap<Appearance, Bucket[]>();
+
+	private final WakeupOnBehaviorPost post = new WakeupOnBehaviorPost(this,
+			POST);
+
+	private int detail = RendererCache.detail;
+
+	private int level = -1;
+
+	private int count = 0;
+
+	private boolean posted = false;
+
+	/*
+	 * The visible Atoms that share one Appearance and level of detail; Atom
+	 * i is drawn with vertices i * templateVertices[drawn].length / 3
+	 * onwards.
+	 */
+	final class Bucket implements GeometryUpdater {
+		private final Shape3D shape;
+
+		// The highest icosphere level of this bucket, and the level drawn
+		private final int lod;
+
+		private int drawn = -1;
+
+		private IndexedTriangleArray geometry = null;
+
+		private float coordinates[];
+
+		private float normals[];
+
+		private Atom atoms[] = new Atom[16];
+
+		private int size = 0;
+
+		private boolean dirty = false;
+
+		Bucket(Appearance ap, int l) {
+			lod = l;
+			shape = new Shape3D();
+			shape.setAppearance(ap);
+			shape.setUserData(molecularAssembly);
+			shape.setCapability(Shape3D.ALLOW_GEOMETRY_READ);
+			shape.setCapability(Shape3D.ALLOW_GEOMETRY_WRITE);
+			shape.setCapability(Shape3D.ENABLE_PICK_REPORTING);
+			shape.setPickable(true);
+			BranchGroup group = new BranchGroup();
+			group.addChild(shape);
+			branchGroup.addChild(group);
+		}
+
+		private void add(Atom atom) {
+			if (size == atoms.length) {
+				Atom grown[] = new Atom[2 * size];
+				System.arraycopy(atoms, 0, grown, 0, size);
+				atoms = grown;
+			}
+			atom.sphereBucket = this;
+			atom.sphereSlot = size;
+			atoms[size++] = atom;
+			dirty = true;
+		}
+
+		private void remove(Atom atom) {
+			int slot = atom.sphereSlot;
+			Atom last = atoms[--size];
+			atoms[slot] = last;
+			last.sphereSlot = slot;
+			atoms[size] = null;
+			atom.sphereBucket = null;
+			atom.sphereSlot = -1;
+			dirty = true;
+		}
+
+		/*
+		 * Resizes the geometry to the atoms, then writes their spheres.
+		 */
+		private void flush() {
+			int capacity = geometry == null ? 0 : geometry.getVertexCount()
+					/ sphereVertices(drawn);
+			int l = Math.min(lod, level);
+			if (l != drawn || geometry == null || size > capacity
+					|| (capacity > 16 && size < capacity / 4)) {
+				drawn = l;
+				allocate(Math.max(16, 2 * size));
+			} else if (dirty) {
+				geometry.updateData(this);
+			}
+			geometry.setValidIndexCount(size * templateIndices[drawn].length);
+			dirty = false;
+		}
+
+		private void allocate(int capacity) {
+			float unit[] = templateVertices[drawn];
+			int indices[] = templateIndices[drawn];
+			int verticesPerSphere = unit.length / 3;
+			int vertexCount = capacity * verticesPerSphere;
+			geometry = new IndexedTriangleArray(vertexCount,
+					GeometryArray.COORDINATES | GeometryArray.NORMALS
+							| GeometryArray.BY_REFERENCE
+							| GeometryArray.USE_COORD_INDEX_ONLY, capacity
+							* indices.length);
+			geometry.setCapability(GeometryArray.ALLOW_REF_DATA_READ);
+			geometry.setCapability(GeometryArray.ALLOW_REF_DATA_WRITE);
+			geometry.setCapability(GeometryArray.ALLOW_COUNT_READ);
+			geometry.setCapability(GeometryArray.ALLOW_COUNT_WRITE);
+			geometry.setCapability(GeometryArray.ALLOW_FORMAT_READ);
+			geometry.setCapability(GeometryArray.ALLOW_COORDINATE_READ);
+			geometry.setCapability(IndexedGeometryArray.ALLOW_COORDINATE_INDEX_READ);
+			geometry.setCapability(Geometry.ALLOW_INTERSECT);
+			coordinates = new float[3 * vertexCount];
+			normals = new float[3 * vertexCount];
+			int coordinateIndices[] = new int[capacity * indices.length];
+			for (int s = 0; s < capacity; s++) {
+				System.arraycopy(unit, 0, normals, s * unit.length,
+						unit.length);
+				int offset = s * verticesPerSphere;
+				int k = s * indices.length;
+				for (int i = 0; i < indices.length; i++) {
+					coordinateIndices[k + i] = indices[i] + offset;
+				}
+			}
+			geometry.setCoordinateIndices(0, coordinateIndices);
+			updateData(geometry);
+			geometry.setCoordRefFloat(coordinates);
+			geometry.setNormalRefFloat(normals);
+			shape.setGeometry(geometry);
+		}
+
+		/*
+		 * Writes each atom's sphere into the coordinate array.
+		 */
+		public void updateData(Geometry g) {
+			float unit[] = templateVertices[drawn];
+			for (int s = 0; s < size; s++) {
+				Atom atom = atoms[s];
+				float x = (float) atom.getX();
+				float y = (float) atom.getY();
+				float z = (float) atom.getZ();
+				float r = (float) atom.getSphereScale();
+				int k = s * unit.length;
+				for (int i = 0; i < unit.length; i += 3) {
+					coordinates[k + i] = x + r * unit[i];
+					coordinates[k + i + 1] = y + r * unit[i + 1];
+					coordinates[k + i + 2] = z + r * unit[i + 2];
+				}
+			}
+		}
+
+		Atom getAtom(int vertex) {
+			if (drawn < 0) {
+				return null;
+			}
+			int s = vertex / sphereVertices(drawn);
+			return s < size ? atoms[s] : null;
+		}
+	}
+
+	SphereBatch(MolecularAssembly m) {
+		molecularAssembly = m;
+		branchGroup = new BranchGroup();
+		branchGroup.setCapability(BranchGroup.ALLOW_CHILDREN_READ);
+		branchGroup.setCapability(BranchGroup.ALLOW_CHILDREN_EXTEND);
+		branchGroup.setCapability(BranchGroup.ALLOW_CHILDREN_WRITE);
+		setSchedulingBounds(new BoundingSphere(new Point3d(),
+				Double.POSITIVE_INFINITY));
+		branchGroup.addChild(this);
+	}
+
+	BranchGroup getBranchGroup() {
+		return branchGroup;
+	}
+
+	/*
+	 * Shows the atom's sphere with the given appearance, or updates it.
+	 */
+	void set(Atom atom, Appearance appearance) {
+		synchronized (this) {
+			Bucket levels[] = buckets.get(appearance);
+			if (levels == null) {
+				levels = new Bucket[MAX_LEVEL + 1];
+				buckets.put(appearance, levels);
+			}
+			int l = Math.min(MAX_LEVEL, (atom.lodDetail + 1) / 3);
+			Bucket bucket = levels[l];
+			if (bucket == null) {
+				bucket = new Bucket(appearance, l);
+				levels[l] = bucket;
+			}
+			if (atom.sphereBucket != bucket) {
+				if (atom.sphereBucket != null) {
+					atom.sphereBucket.remove(atom);
+				} else {
+					count++;
+				}
+				bucket.add(atom);
+			} else {
+				bucket.dirty = true;
+			}
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	/*
+	 * Hides the atom's sphere.
+	 */
+	void remove(Atom atom) {
+		synchronized (this) {
+			if (atom.sphereBucket == null) {
+				return;
+			}
+			atom.sphereBucket.remove(atom);
+			count--;
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	/*
+	 * Notes that the atom has moved or changed radius.
+	 */
+	void move(Atom atom) {
+		synchronized (this) {
+			if (atom.sphereBucket == null) {
+				return;
+			}
+			atom.sphereBucket.dirty = true;
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	void setDetail(int d) {
+		synchronized (this) {
+			if (d == detail) {
+				return;
+			}
+			detail = d;
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	/*
+	 * Returns the atom drawn with a vertex of one of the batch's shapes.
+	 */
+	synchronized Atom getAtom(Shape3D shape, int vertex) {
+		for (Bucket levels[] : buckets.values()) {
+			for (Bucket bucket : levels) {
+				if (bucket != null && bucket.shape == shape) {
+					return bucket.getAtom(vertex);
+				}
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Returns true if the caller should post to this Behavior, which is
+	 * done outside the lock so as not to hold it while Java3D schedules.
+	 */
+	private boolean post() {
+		if (posted || !isLive()) {
+			return false;
+		}
+		posted = true;
+		return true;
+	}
+
+	/*
+	 * Rewrites the geometry of every bucket that changed.
+	 */
+	private synchronized void flush() {
+		posted = false;
+		int newLevel = Math.min(MAX_LEVEL, (detail + 1) / 3);
+		while (newLevel > 0
+				&& (long) count * sphereVertices(newLevel) > MAX_VERTICES) {
+			newLevel--;
+		}
+		level = newLevel;
+		for (Iterator<Bucket[]> i = buckets.values().iterator(); i.hasNext();) {
+			for (Bucket bucket : i.next()) {
+				if (bucket != null
+						&& (bucket.dirty || bucket.drawn != Math.min(
+								bucket.lod, level))) {
+					bucket.flush();
+				}
+			}
+		}
+	}
+
+	public void initialize() {
+		// Changes made before the batch was live
+		flush();
+		wakeupOn(post);
+	}
+
+	public void processStimulus(Iterator criteria) {
+		flush();
+		wakeupOn(post);
+	}
+
+	/*
+	 * Returns the vertex limit named by ffe.sphere.vertices.
+	 */
+	private static int getMaxVertices() {
+		String vertices = System.getProperty("ffe.sphere.vertices");
+		if (vertices == null) {
+			return DEFAULT_VERTICES;
+		}
+		try {
+			int n = Integer.parseInt(vertices.trim());
+			if (n > 0) {
+				return n;
+			}
+		} catch (NumberFormatException e) {
+		}
+		logger.warning("Invalid ffe.sphere.vertices \"" + vertices
+				+ "\"; using " + DEFAULT_VERTICES + " vertices.");
+		return DEFAULT_VERTICES;
+	}
+
+	private static int sphereVertices(int l) {
+		return templateVertices[l].length / 3;
+	}
+
+	static {
+		for (int l = 0; l <= MAX_LEVEL; l++) {
+			icosphere(l);
+		}
+	}
+
+	/*
+	 * Builds a unit icosphere by subdividing each face of an icosahedron
+	 * l times; its vertices are also its normals.
+	 */
+	private static void icosphere(int l) {
+		final double t = (1.0 + Math.sqrt(5.0)) / 2.0;
+		ArrayList<double[]> vertices = new ArrayList<double[]>();
+		double ico[][] = { { -1, t, 0 }, { 1, t, 0 }, { -1, -t, 0 },
+				{ 1, -t, 0 }, { 0, -1, t }, { 0, 1, t }, { 0, -1, -t },
+				{ 0, 1, -t }, { t, 0, -1 }, { t, 0, 1 }, { -t, 0, -1 },
+				{ -t, 0, 1 } };
+		for (double v[] : ico) {
+			VectorMath.norm(v, v);
+			vertices.add(v);
+		}
+		int faces[] = { 0, 11, 5, 0, 5, 1, 0, 1, 7, 0, 7, 10, 0, 10, 11, 1,
+				5, 9, 5, 11, 4, 11, 10, 2, 10, 7, 6, 7, 1, 8, 3, 9, 4, 3, 4,
+				2, 3, 2, 6, 3, 6, 8, 3, 8, 9, 4, 9, 5, 2, 4, 11, 6, 2, 10, 8,
+				6, 7, 9, 8, 1 };
+		for (int s = 0; s < l; s++) {
+			HashMap<Long, Integer> midpoints = new HashMap<Long, Integer>();
+			int subdivided[] = new int[4 * faces.length];
+			int k = 0;
+			for (int f = 0; f < faces.length; f += 3) {
+				int a = faces[f];
+				int b = faces[f + 1];
+				int c = faces[f + 2];
+				int ab = midpoint(a, b, vertices, midpoints);
+				int bc = midpoint(b, c, vertices, midpoints);
+				int ca = midpoint(c, a, vertices, midpoints);
+				int split[] = { a, ab, ca, b, bc, ab, c, ca, bc, ab, bc, ca };
+				System.arraycopy(split, 0, subdivided, k, split.length);
+				k += split.length;
+			}
+			faces = subdivided;
+		}
+		// Wind every face counter-clockwise seen from outside
+		for (int f = 0; f < faces.length; f += 3) {
+			double a[] = vertices.get(faces[f]);
+			double b[] = vertices.get(faces[f + 1]);
+			double c[] = vertices.get(faces[f + 2]);
+			double ab[] = new double[3];
+			double ac[] = new double[3];
+			double n[] = new double[3];
+			VectorMath.diff(b, a, ab);
+			VectorMath.diff(c, a, ac);
+			VectorMath.cross(ab, ac, n);
+			if (VectorMath.dot(n, a) < 0.0) {
+				int swap = faces[f + 1];
+				faces[f + 1] = faces[f + 2];
+				faces[f + 2] = swap;
+			}
+		}
+		float unit[] = new float[3 * vertices.size()];
+		for (int i = 0; i < vertices.size(); i++) {
+			double v[] = vertices.get(i);
+			unit[3 * i] = (float) v[0];
+			unit[3 * i + 1] = (float) v[1];
+			unit[3 * i + 2] = (float) v[2];
+		}
+		templateVertices[l] = unit;
+		templateIndices[l] = faces;
+	}
+
+	private static int midpoint(int a, int b, ArrayList<double[]> vertices,
+			HashMap<Long, Integer> midpoints) {
+		long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+		Integer m = midpoints.get(key);
+		if (m == null) {
+			double va[] = vertices.get(a);
+			double vb[] = vertices.get(b);
+			double mid[] = { va[0] + vb[0], va[1] + vb[1], va[2] + vb[2] };
+			VectorMath.norm(mid, mid);
+			m = vertices.size();
+			vertices.add(mid);
+			midpoints.put(key, m);
+		}
+		return m;
+	}
+}
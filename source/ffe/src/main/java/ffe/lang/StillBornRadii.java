@@ -0,0 +1,236 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Logger;
+
+/*
+ * The StillBornRadii class computes generalized Born radii by the method
+ * of Still. The topology of the atom list is fixed when the object is
+ * created: the 1-2 and 1-3 neighbors that are left out of each sum are
+ * stored once as a sorted exclusion list per atom. Each call to compute()
+ * then bins the current coordinates in a CellList, so only pairs within
+ * the cutoff are visited, and splits the atoms across the common
+ * ForkJoinPool. Nothing is shared between calls, so separate systems can
+ * be computed at the same time.
+ */
+public class StillBornRadii {
+
+	private static final double p4 = 15.236;
+
+	private static final double p5 = 1.254;
+
+	private static final double p5inv = 1.0 / 1.254;
+
+	private static final double pip5 = Math.PI * p5;
+
+	private static final double convert = -332.05382 / 2.0;
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	private static final double DEFAULT_CUTOFF = 12.0;
+
+	// Pairs further apart than this, in Angstroms, are left out of the sums
+	private static final double CUTOFF = getDefaultCutoff();
+
+	// Atoms per task; smaller ranges are computed on the calling thread
+	private static final int CHUNK = 256;
+
+	private final Atom[] atoms;
+
+	// The excluded atoms of atom i are exclusions[exclusionStart[i]] ..
+	// exclusions[exclusionStart[i + 1] - 1], in ascending order
+	private final int[] exclusionStart;
+
+	private final int[] exclusions;
+
+	private final double cutoff;
+
+	public StillBornRadii(List<Atom> atomList) {
+		this(atomList, CUTOFF);
+	}
+
+	public StillBornRadii(List<Atom> atomList, double c) {
+		int n = atomList.size();
+		atoms = atomList.toArray(new Atom[n]);
+		cutoff = c;
+		BondGraph graph = BondGraph.of(atomList);
+		int[] mask = new int[n];
+		int[] excluded = new int[8 * n + 8];
+		int[] atom = new int[32];
+		int total = 0;
+		exclusionStart = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			// Skip the atom itself and its 1-2 and 1-3 neighbors
+			int count = graph.setExclusions(i, 2, mask, i + 1, atom);
+			if (count > atom.length) {
+				// Stamp again with a stamp not used yet
+				atom = new int[count];
+				graph.setExclusions(i, 2, mask, -(i + 1), atom);
+			}
+			excluded = ensure(excluded, total + count);
+			System.arraycopy(atom, 0, excluded, total, count);
+			Arrays.sort(excluded, total, total + count);
+			total += count;
+			exclusionStart[i + 1] = total;
+		}
+		exclusions = new int[total];
+		System.arraycopy(excluded, 0, exclusions, 0, total);
+	}
+
+	/*
+	 * Returns the cutoff named by ffe.born.cutoff.
+	 */
+	private static double getDefaultCutoff() {
+		String cutoff = System.getProperty("ffe.born.cutoff");
+		if (cutoff == null) {
+			return DEFAULT_CUTOFF;
+		}
+		try {
+			double c = Double.parseDouble(cutoff.trim());
+			// Also rejects NaN
+			if (c > 0.0 && !Double.isInfinite(c)) {
+				return c;
+			}
+		} catch (NumberFormatException e) {
+		}
+		logger.warning("Invalid ffe.born.cutoff \"" + cutoff + "\"; using "
+				+ DEFAULT_CUTOFF + " Angstroms.");
+		return DEFAULT_CUTOFF;
+	}
+
+	private static int[] ensure(int[] a, int size) {
+		if (size <= a.length) {
+			return a;
+		}
+		int[] grow = new int[Math.max(size, 2 * a.length)];
+		System.arraycopy(a, 0, grow, 0, a.length);
+		return grow;
+	}
+
+	/*
+	 * Computes the Born radius of each atom from its current coordinates.
+	 */
+	public void compute() {
+		int n = atoms.length;
+		if (n == 0) {
+			return;
+		}
+		Frame frame = new Frame();
+		BornTask task = new BornTask(frame, 0, n);
+		if (n <= CHUNK) {
+			task.compute();
+		} else {
+			ForkJoinPool.commonPool().invoke(task);
+		}
+	}
+
+	/*
+	 * The coordinates and atomic parameters of one call to compute().
+	 */
+	private class Frame {
+		final double[] xyz;
+
+		final double[] rDielectric;
+
+		final double[] volume;
+
+		final CellList cellList;
+
+		Frame() {
+			int n = atoms.length;
+			xyz = new double[3 * n];
+			rDielectric = new double[n];
+			volume = new double[n];
+			double[] x = new double[3];
+			for (int i = 0; i < n; i++) {
+				atoms[i].getXYZ(x);
+				xyz[3 * i] = x[0];
+				xyz[3 * i + 1] = x[1];
+				xyz[3 * i + 2] = x[2];
+				rDielectric[i] = atoms[i].getRDielectric();
+				volume[i] = atoms[i].getBornVolume();
+			}
+			cellList = new CellList(Arrays.asList(atoms), cutoff);
+		}
+	}
+
+	private class BornTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Frame frame;
+
+		private final int from;
+
+		private final int to;
+
+		BornTask(Frame f, int i, int j) {
+			frame = f;
+			from = i;
+			to = j;
+		}
+
+		protected void compute() {
+			if (to - from > CHUNK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new BornTask(frame, from, mid), new BornTask(frame,
+						mid, to));
+				return;
+			}
+			double[] xyz = frame.xyz;
+			double[] x1 = new double[3];
+			int[] neighbors = new int[128];
+			for (int i = from; i < to; i++) {
+				x1[0] = xyz[3 * i];
+				x1[1] = xyz[3 * i + 1];
+				x1[2] = xyz[3 * i + 2];
+				int count = frame.cellList.query(x1, cutoff, neighbors);
+				if (count > neighbors.length) {
+					neighbors = new int[2 * count];
+					count = frame.cellList.query(x1, cutoff, neighbors);
+				}
+				double vdw1 = frame.rDielectric[i];
+				double gpi = atoms[i].getGPol();
+				// Both lists are sorted, so exclusions are found by merging
+				int e = exclusionStart[i];
+				int eEnd = exclusionStart[i + 1];
+				for (int p = 0; p < count; p++) {
+					int k = neighbors[p];
+					while (e < eEnd && exclusions[e] < k) {
+						e++;
+					}
+					if (e < eEnd && exclusions[e] == k) {
+						continue;
+					}
+					double dx = xyz[3 * k] - x1[0];
+					double dy = xyz[3 * k + 1] - x1[1];
+					double dz = xyz[3 * k + 2] - x1[2];
+					double r2 = dx * dx + dy * dy + dz * dz;
+					double r4 = r2 * r2;
+					double rvdw = vdw1 + frame.rDielectric[k];
+					double ratio = r2 / (rvdw * rvdw);
+					double ccf;
+					if (ratio > p5inv) {
+						ccf = 1.0;
+					} else {
+						double term = 0.5 * (1.0 - Math.cos(ratio * pip5));
+						ccf = term * term;
+					}
+					gpi += p4 * ccf * frame.volume[k] / r4;
+				}
+				atoms[i].setBornRadius(convert / gpi);
+			}
+		}
+	}
+}
@@ -10,9 +10,14 @@
 package ffe.lang;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,9 +49,14 @@ public final class Utilities {
 	 * The algorithms used to split arrays of atoms into a structural hierarchy
 	 * using a bunch of List instances. Pooling them seems like it might be
 	 * a performance win, although better algorithms probably exist. This is
-	 * currently backed by ArrayLists.
+	 * currently backed by ArrayLists, with one pool per thread so that
+	 * polymer backbones can be searched in parallel.
 	 */
-	public static List<List<Atom>> atomListPool = new ArrayList<List<Atom>>();
+	private static final ThreadLocal<List<List<Atom>>> atomListPool = new ThreadLocal<List<List<Atom>>>() {
+		protected List<List<Atom>> initialValue() {
+			return new ArrayList<List<Atom>>();
+		}
+	};
 
 	static int count = 0;
 
@@ -70,36 +80,6 @@ public final class Utilities {
 	 */
 	static private Hashtable<String, String> sidechainStoichiometry = new Hashtable<String, String>();
 
-	/*
-	 * Save about 30 * N * 8 bytes of memory per rotateMultipole call by
-	 * creating a few static double arrays.
-	 */
-	private static final double localOrigin[] = new double[3];
-
-	private static final double zaxis[] = new double[3];
-
-	private static final double xaxis[] = new double[3];
-
-	private static final double rotmat[][] = new double[3][3];
-
-	private static final double dipole[] = new double[3];
-
-	private static final double quadrupole[][] = new double[3][3];
-
-	private static final double p4 = 15.236;
-
-	private static final double p5 = 1.254;
-
-	private static final double p5inv = 1.0 / 1.254;
-
-	private static final double pip5 = Math.PI * p5;
-
-	private static final double convert = -332.05382 / 2.0;
-
-	private static final double[] x1 = new double[3];
-
-	private static final double[] x2 = new double[3];
-
 	static {
 		// Amino Acid Side Chains
 		sidechainStoichiometry.put("S1C3", "MET");
@@ -134,7 +114,7 @@ public final class Utilities {
 
 	public static void addAtomListToPool(List<Atom> a) {
 		a.clear();
-		atomListPool.add(a);
+		atomListPool.get().add(a);
 	}
 
 	/*
@@ -189,143 +169,6 @@ public final class Utilities {
 		}
 	}
 
-	private static boolean assignMultipole(Atom atom, ForceField forceField) {
-		AtomType atomType = atom.getAtomType();
-		if (atomType == null) {
-			logger.warning("Multipoles can only be assigned to atoms that have been typed");
-			return false;
-		}
-		MultipoleType multipoleType = null;
-		String key = null;
-		// No reference atoms.
-		key = atomType.key + " 0 0";
-		multipoleType = (MultipoleType) forceField.getForceFieldType(
-				ForceFieldType.MULTIPOLE, key);
-		if (multipoleType != null) {
-			atom.setMultipoleType(multipoleType, null);
-			return true;
-		}
-		// No bonds - no soup for you.
-		List<Bond> bonds = atom.getBonds();
-		if (bonds == null || bonds.size() < 1) {
-			logger.warning("Multipoles can only be assigned after bonded relationships are defined");
-			return false;
-		}
-		// 1 reference atom.
-		for (Bond b : bonds) {
-			Atom atom2 = b.get1_2(atom);
-			key = atomType.key + " " + atom2.getAtomType().key + " 0";
-			multipoleType = (MultipoleType) forceField.getForceFieldType(
-					ForceFieldType.MULTIPOLE, key);
-			if (multipoleType != null) {
-				Atom multipoleReferenceAtoms[] = new Atom[1];
-				multipoleReferenceAtoms[0] = atom2;
-				atom.setMultipoleType(multipoleType, multipoleReferenceAtoms);
-				return true;
-			}
-		}
-		// 2 reference atoms.
-		for (Bond b : bonds) {
-			Atom atom2 = b.get1_2(atom);
-			String key2 = atom2.getAtomType().key;
-			for (Bond b2 : bonds) {
-				if (b == b2) {
-					continue;
-				}
-				Atom atom3 = b2.get1_2(atom);
-				String key3 = atom3.getAtomType().key;
-				key = atomType.key + " " + key2 + " " + key3;
-				multipoleType = (MultipoleType) forceField.getForceFieldType(
-						ForceFieldType.MULTIPOLE, key);
-				if (multipoleType != null) {
-					Atom multipoleReferenceAtoms[] = new Atom[2];
-					multipoleReferenceAtoms[0] = atom2;
-					multipoleReferenceAtoms[1] = atom3;
-					atom.setMultipoleType(multipoleType,
-							multipoleReferenceAtoms);
-					return true;
-				}
-			}
-		}
-		// 3 reference atoms (chiral).
-		for (Bond b : bonds) {
-			Atom atom2 = b.get1_2(atom);
-			String key2 = atom2.getAtomType().key;
-			for (Bond b2 : bonds) {
-				if (b == b2) {
-					continue;
-				}
-				Atom atom3 = b2.get1_2(atom);
-				String key3 = atom3.getAtomType().key;
-				for (Bond b3 : bonds) {
-					if (b == b3 || b2 == b3) {
-						continue;
-					}
-					Atom atom4 = b3.get1_2(atom);
-					String key4 = atom4.getAtomType().key;
-					key = atomType.key + " " + key2 + " " + key3 + " " + key4;
-					multipoleType = (MultipoleType) forceField
-							.getForceFieldType(ForceFieldType.MULTIPOLE, key);
-					if (multipoleType != null) {
-						Atom multipoleReferenceAtoms[] = new Atom[3];
-						multipoleReferenceAtoms[0] = atom2;
-						multipoleReferenceAtoms[1] = atom3;
-						multipoleReferenceAtoms[2] = atom4;
-						atom.setMultipoleType(multipoleType,
-								multipoleReferenceAtoms);
-						return true;
-					}
-				}
-				List<Angle> angles = atom.getAngles();
-				for (Angle angle : angles) {
-					Atom atom4 = angle.get1_3(atom);
-					if (atom4 != null) {
-						String key4 = atom4.getAtomType().key;
-						key = atomType.key + " " + key2 + " " + key3 + " "
-								+ key4;
-						multipoleType = (MultipoleType) forceField
-								.getForceFieldType(ForceFieldType.MULTIPOLE,
-										key);
-						if (multipoleType != null) {
-							Atom multipoleReferenceAtoms[] = new Atom[3];
-							multipoleReferenceAtoms[0] = atom2;
-							multipoleReferenceAtoms[1] = atom3;
-							multipoleReferenceAtoms[2] = atom4;
-							atom.setMultipoleType(multipoleType,
-									multipoleReferenceAtoms);
-							return true;
-						}
-					}
-				}
-			}
-		}
-		// Revert to a 2 reference atom definition that may include a 1-3 site.
-		// For example a hydrogen on water
-		for (Bond b : bonds) {
-			Atom atom2 = b.get1_2(atom);
-			String key2 = atom2.getAtomType().key;
-			List<Angle> angles = atom.getAngles();
-			for (Angle angle : angles) {
-				Atom atom3 = angle.get1_3(atom);
-				if (atom3 != null) {
-					String key3 = atom3.getAtomType().key;
-					key = atomType.key + " " + key2 + " " + key3;
-					multipoleType = (MultipoleType) forceField
-							.getForceFieldType(ForceFieldType.MULTIPOLE, key);
-					if (multipoleType != null) {
-						Atom multipoleReferenceAtoms[] = new Atom[2];
-						multipoleReferenceAtoms[0] = atom2;
-						multipoleReferenceAtoms[1] = atom3;
-						atom.setMultipoleType(multipoleType,
-								multipoleReferenceAtoms);
-						return true;
-					}
-				}
-			}
-		}
-		return false;
-	}
-
 	/*
 	 * Given an array of atoms (with atom types), assign
 	 * multipole types and reference sites
@@ -348,8 +191,20 @@ public final class Utilities {
 			logger.warning("Could not assign multipoles due to null atom list");
 			return;
 		}
-		for (Atom atom : atoms) {
-			if (!assignMultipole(atom, forceField)) {
+		byte[] status = MultipoleAssignment.assign(atoms, forceField);
+		// Keep the multipoles of the assembly rotated as its atoms move
+		ROLS assembly = atoms.get(0).getMSNode(MolecularAssembly.class);
+		if (assembly != null) {
+			((MolecularAssembly) assembly).initMultipoleRotation();
+		}
+		for (int i = 0; i < status.length; i++) {
+			Atom atom = atoms.get(i);
+			if (status[i] == MultipoleAssignment.UNTYPED) {
+				logger.warning("Multipoles can only be assigned to atoms that have been typed");
+			} else if (status[i] == MultipoleAssignment.UNBONDED) {
+				logger.warning("Multipoles can only be assigned after bonded relationships are defined");
+			}
+			if (status[i] != MultipoleAssignment.ASSIGNED) {
 				logger.warning("No multipole could be assigned to atom:\n"
 						+ atom + "\nOf type:\n" + atom.getAtomType());
 			} else {
@@ -509,6 +364,13 @@ public final class Utilities {
 	 * This routine sub-divides a system into groups of ions, water,
 	 * heteromolecules, and polynucleotides/polypeptides.
 	 * 
+	 * The atoms are first split into bonded components (not crossing
+	 * disulfides). No component has been assigned yet, so the backbone
+	 * search from the first nitrogen of each component is done in
+	 * parallel. Components are then assigned in the original order: each
+	 * unassigned nitrogen seeds a polymer, then the remaining atoms become
+	 * ions, waters and heteros.
+	 * 
 	 * @param m
 	 * @param atoms
 	 */
@@ -518,81 +380,72 @@ public final class Utilities {
 		int waterNum = 0;
 		int ionNum = 0;
 		int heteroNum = 0;
-
-		while (atoms.size() > 0) {
-			// Nitrogens are used to "seed" a backbone search rather than carbon
-			// because a carbon can be separated from the backbone by a sulfur
-			// (ie, in MET residues)
-			for (Atom a : atoms) {
-				seed = a;
-				if (seed.getAtomicNumber() == 7) {
-					break;
-				}
+		int n = atoms.size();
+		IdentityHashMap<Atom, Integer> index = new IdentityHashMap<Atom, Integer>(
+				2 * n);
+		for (int i = 0; i < n; i++) {
+			index.put(atoms.get(i), i);
+		}
+		// Union-find over the bonds
+		int[] component = new int[n];
+		for (int i = 0; i < n; i++) {
+			component[i] = i;
+		}
+		for (int i = 0; i < n; i++) {
+			atom = atoms.get(i);
+			if (atom.getNumBonds() == 0) {
+				continue;
 			}
-			// No more nitrogens, so no DNA/RNA/Protein molecules are left
-			if (seed.getAtomicNumber() != 7) {
-				List<Atom> resatoms;
-				while (atoms.size() > 0) {
-					atom = atoms.get(0);
-					// Check for a metal ion or noble gas
-					if (atom.getNumBonds() == 0) {
-						ionNum++;
-						Molecule ion = new Molecule(atom.getName() + ": "
-								+ ionNum, true);
-						ion.addMSNode(atom);
-						atoms.remove(0);
-						m.addMSNode(ion);
-						continue;
-					}
-					// Check for water
-					else if (atom.getAtomicNumber() == 8 && isWaterOxygen(atom)) {
-						waterNum++;
-						Molecule water = new Molecule("H2O: " + waterNum, true);
-						water.addMSNode(atom);
-						atoms.remove(0);
-						List<Bond> bonds = atom.getBonds();
-						for (Bond b : bonds) {
-							Atom o = b.get1_2(atom);
-							water.addMSNode(o);
-							atoms.remove(o);
-						}
-						m.addMSNode(water);
-						continue;
-					}
-					// Otherwise classify the molecule as a hetero
-					heteroNum++;
-					Molecule hetero = new Molecule("Hetero: " + heteroNum, true);
-					resatoms = getAtomListFromPool();
-					collectAtoms(atoms.get(0), resatoms);
-					while (resatoms.size() > 0) {
-						atom = resatoms.get(0);
-						resatoms.remove(0);
-						hetero.addMSNode(atom);
-						atoms.remove(atom);
-					}
-					hetero.setName(String.format("Hetero %7.1f: %6d", hetero
-							.getMW(), heteroNum));
-					m.addMSNode(hetero);
+			for (Bond b : atom.getBonds()) {
+				Atom other = b.get1_2(atom);
+				Integer j = index.get(other);
+				if (j == null || (atom.getAtomicNumber() == 16
+						&& other.getAtomicNumber() == 16)) {
+					continue;
 				}
-				seed = null;
-				break;
-			}
-			List<Atom> backbone = findPolymer(atoms, seed, null);
-			if (backbone.size() > 0) {
-				for (ListIterator li = backbone.listIterator(backbone.size()); li
-						.hasPrevious();) {
-					seed = (Atom) li.previous();
-					if (seed.getAtomicNumber() == 7) {
-						break;
-					}
+				int r1 = findRoot(component, i);
+				int r2 = findRoot(component, j.intValue());
+				if (r1 != r2) {
+					component[Math.max(r1, r2)] = Math.min(r1, r2);
 				}
-				backbone = findPolymer(atoms, seed, null);
+			}
+		}
+		// The first nitrogen of each component
+		boolean[] seeded = new boolean[n];
+		final List<Atom> seeds = new ArrayList<Atom>();
+		for (int i = 0; i < n; i++) {
+			atom = atoms.get(i);
+			int root = findRoot(component, i);
+			if (atom.getAtomicNumber() == 7 && !seeded[root]) {
+				seeded[root] = true;
+				seeds.add(atom);
+			}
+		}
+		final List<List<Atom>> searched = new ArrayList<List<Atom>>(
+				Collections.<List<Atom>> nCopies(seeds.size(), null));
+		ForkJoinPool.commonPool().invoke(
+				new BackboneSearch(seeds, searched, 0, seeds.size()));
+		IdentityHashMap<Atom, List<Atom>> backbones = new IdentityHashMap<Atom, List<Atom>>();
+		for (int i = 0; i < seeds.size(); i++) {
+			backbones.put(seeds.get(i), searched.get(i));
+		}
+		// Assigned atoms are no longer part of the search
+		boolean[] assigned = new boolean[n];
+		// Nitrogens are used to "seed" a backbone search rather than carbon
+		// because a carbon can be separated from the backbone by a sulfur
+		// (ie, in MET residues)
+		for (int i = 0; i < n; i++) {
+			seed = atoms.get(i);
+			if (assigned[i] || seed.getAtomicNumber() != 7) {
+				continue;
+			}
+			List<Atom> backbone = backbones.remove(seed);
+			if (backbone == null) {
+				backbone = findBackbone(atoms, seed);
 			}
 			Polymer c = new Polymer(polymerLookup(num), true, true);
 			if (backbone.size() > 2 && divideBackbone(backbone, c)) {
-				for (Atom a : c.getAtomList()) {
-					atoms.remove(a);
-				}
+				setAssigned(c.getAtomList(), index, assigned);
 				logger.info("Sequenced Chain: " + c.getName());
 				m.addMSNode(c);
 				num++;
@@ -605,14 +458,132 @@ public final class Utilities {
 				for (Atom a : heteroAtomList) {
 					hetero.addMSNode(a);
 				}
-				for (Atom a : hetero.getAtomList()) {
-					atoms.remove(a);
-				}
+				setAssigned(hetero.getAtomList(), index, assigned);
 				hetero.setName(String.format("Hetero %7.1f: %6d", hetero
 						.getMW(), heteroNum));
 				m.addMSNode(hetero);
 			}
 		}
+		// No more nitrogens, so no DNA/RNA/Protein molecules are left
+		List<Atom> resatoms;
+		for (int i = 0; i < n; i++) {
+			if (assigned[i]) {
+				continue;
+			}
+			atom = atoms.get(i);
+			// Check for a metal ion or noble gas
+			if (atom.getNumBonds() == 0) {
+				ionNum++;
+				Molecule ion = new Molecule(atom.getName() + ": " + ionNum,
+						true);
+				ion.addMSNode(atom);
+				assigned[i] = true;
+				m.addMSNode(ion);
+				continue;
+			}
+			// Check for water
+			else if (atom.getAtomicNumber() == 8 && isWaterOxygen(atom)) {
+				waterNum++;
+				Molecule water = new Molecule("H2O: " + waterNum, true);
+				water.addMSNode(atom);
+				assigned[i] = true;
+				List<Bond> bonds = atom.getBonds();
+				for (Bond b : bonds) {
+					Atom o = b.get1_2(atom);
+					water.addMSNode(o);
+					Integer j = index.get(o);
+					if (j != null) {
+						assigned[j.intValue()] = true;
+					}
+				}
+				m.addMSNode(water);
+				continue;
+			}
+			// Otherwise classify the molecule as a hetero
+			heteroNum++;
+			Molecule hetero = new Molecule("Hetero: " + heteroNum, true);
+			resatoms = getAtomListFromPool();
+			collectAtoms(atom, resatoms);
+			for (Atom a : resatoms) {
+				hetero.addMSNode(a);
+			}
+			setAssigned(resatoms, index, assigned);
+			addAtomListToPool(resatoms);
+			hetero.setName(String.format("Hetero %7.1f: %6d", hetero.getMW(),
+					heteroNum));
+			m.addMSNode(hetero);
+		}
+	}
+
+	/*
+	 * Searches for the longest backbone through a nitrogen, then searches
+	 * again from the last nitrogen along it.
+	 */
+	private static List<Atom> findBackbone(List<Atom> atoms, Atom seed) {
+		List<Atom> backbone = findPolymer(atoms, seed, null);
+		if (backbone.size() > 0) {
+			for (ListIterator li = backbone.listIterator(backbone.size()); li
+					.hasPrevious();) {
+				seed = (Atom) li.previous();
+				if (seed.getAtomicNumber() == 7) {
+					break;
+				}
+			}
+			backbone = findPolymer(atoms, seed, null);
+		}
+		return backbone;
+	}
+
+	private static int findRoot(int[] component, int i) {
+		while (component[i] != i) {
+			// Path halving
+			component[i] = component[component[i]];
+			i = component[i];
+		}
+		return i;
+	}
+
+	private static void setAssigned(List<Atom> list,
+			IdentityHashMap<Atom, Integer> index, boolean[] assigned) {
+		for (Atom a : list) {
+			Integer j = index.get(a);
+			if (j != null) {
+				assigned[j.intValue()] = true;
+			}
+		}
+	}
+
+	/*
+	 * Searches the backbones of a range of components. The search only
+	 * reads the bonds and parents of atoms, so components are independent.
+	 */
+	private static class BackboneSearch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Atom> seeds;
+
+		private final List<List<Atom>> backbones;
+
+		private final int from, to;
+
+		BackboneSearch(List<Atom> s, List<List<Atom>> b, int f, int t) {
+			seeds = s;
+			backbones = b;
+			from = f;
+			to = t;
+		}
+
+		protected void compute() {
+			if (to - from <= 1) {
+				for (int i = from; i < to; i++) {
+					backbones.set(i, findBackbone(null, seeds.get(i)));
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new BackboneSearch(seeds, backbones, from, mid),
+					new BackboneSearch(seeds, backbones, mid, to));
+		}
 	}
 
 	/*
@@ -631,10 +602,18 @@ public final class Utilities {
 	 *            List
 	 */
 	private static void collectAtoms(Atom seed, List<Atom> atoms) {
+		Set<Atom> collected = Collections.newSetFromMap(new IdentityHashMap<Atom, Boolean>());
+		collected.addAll(atoms);
+		collectAtoms(seed, atoms, collected);
+	}
+
+	private static void collectAtoms(Atom seed, List<Atom> atoms,
+			Set<Atom> collected) {
 		if (seed == null) {
 			return;
 		}
 		atoms.add(seed);
+		collected.add(seed);
 		for (Bond b : seed.getBonds()) {
 			Atom nextAtom = b.get1_2(seed);
 			if (nextAtom.getParent() != null) {
@@ -642,8 +621,8 @@ public final class Utilities {
 			}
 			// avoid crossing disulfides
 			if ((nextAtom.getAtomicNumber() != 16 || seed.getAtomicNumber() != 16)
-					&& !atoms.contains(nextAtom)) {
-				collectAtoms(nextAtom, atoms);
+					&& !collected.contains(nextAtom)) {
+				collectAtoms(nextAtom, atoms, collected);
 			}
 		}
 	}
@@ -1218,10 +1197,11 @@ public final class Utilities {
 	}
 
 	public static List<Atom> getAtomListFromPool() {
-		if (atomListPool.isEmpty()) {
+		List<List<Atom>> pool = atomListPool.get();
+		if (pool.isEmpty()) {
 			return new ArrayList<Atom>();
 		}
-		return atomListPool.remove(0);
+		return pool.remove(pool.size() - 1);
 	}
 
 	/*
@@ -1423,8 +1403,10 @@ public final class Utilities {
 		if (m1 == null || m2 == null) {
 			return 0;
 		}
-		int n1 = m1.getAtomList().size();
-		int n2 = m2.getAtomList().size();
+		List<Atom> atoms1 = m1.getAtomView();
+		List<Atom> atoms2 = m2.getAtomView();
+		int n1 = atoms1.size();
+		int n2 = atoms2.size();
 		if (n1 != n2) {
 			return 0;
 		}
@@ -1433,11 +1415,9 @@ public final class Utilities {
 		double[] da = new double[3];
 		double[] db = new double[3];
 		double rms = 0;
-		ListIterator li, lj;
-		for (li = m1.getAtomList().listIterator(), lj = m2.getAtomList()
-				.listIterator(); li.hasNext();) {
-			a1 = (Atom) li.next();
-			a2 = (Atom) lj.next();
+		for (int i = 0; i < n1; i++) {
+			a1 = atoms1.get(i);
+			a2 = atoms2.get(i);
 			a1.getXYZ(da);
 			a2.getXYZ(db);
 			VectorMath.diff(da, db, d);
@@ -1454,139 +1434,41 @@ public final class Utilities {
 	 */
 	public static void rotateMulitpoles(List<Atom> atoms) {
 		for (Atom atom : atoms) {
-			MultipoleType multipoleType = atom.getMultipoleType();
-			if (multipoleType == null) {
+			if (atom.getMultipoleType() == null) {
 				logger.warning("No multipole assigned to: " + atom
 						+ "\nOf type:\n" + atom.getAtomType());
-				continue;
-			}
-			atom.getXYZ(localOrigin);
-			Atom referenceSites[] = atom.getMultipoleReferenceSites();
-			for (int i = 0; i < 3; i++) {
-				zaxis[i] = 0.0;
-				xaxis[i] = 0.0;
-				dipole[i] = 0.0;
-				for (int j = 0; j < 3; j++) {
-					quadrupole[i][j] = 0.0;
-				}
-			}
-			if (referenceSites != null) {
-				if (referenceSites.length == 1) {
-					referenceSites[0].getXYZ(zaxis);
-				} else if (referenceSites.length == 2) {
-					referenceSites[0].getXYZ(zaxis);
-					referenceSites[1].getXYZ(xaxis);
-				}
 			}
-			VectorMath.diff(zaxis, localOrigin, zaxis);
-			VectorMath.norm(zaxis, zaxis);
-			VectorMath.diff(xaxis, localOrigin, xaxis);
-			// Separate differences between the Z-THEN-X definition
-			// and BISECTOR methods for finding the Z elements of the
-			// rotation matrix.
-			if (multipoleType.frameDefinition == MultipoleType.MultipoleFrameDefinition.ZTHENX) {
-				rotmat[0][2] = zaxis[0];
-				rotmat[1][2] = zaxis[1];
-				rotmat[2][2] = zaxis[2];
-			} else {
-				VectorMath.norm(xaxis, xaxis);
-				// Take the norm of the sum of unit vectors to find their
-				// bisector.
-				VectorMath.sum(zaxis, xaxis, zaxis);
-				VectorMath.norm(zaxis, zaxis);
-				rotmat[0][2] = zaxis[0];
-				rotmat[1][2] = zaxis[1];
-				rotmat[2][2] = zaxis[2];
-			}
-			// Find the X elements.
-			double dot = VectorMath.dot(zaxis, xaxis);
-			VectorMath.scalar(zaxis, dot, zaxis);
-			VectorMath.diff(xaxis, zaxis, xaxis);
-			VectorMath.norm(xaxis, xaxis);
-			rotmat[0][0] = xaxis[0];
-			rotmat[1][0] = xaxis[1];
-			rotmat[2][0] = xaxis[2];
-			// Finally the Y elements.
-			rotmat[0][1] = rotmat[2][0] * rotmat[1][2] - rotmat[1][0]
-					* rotmat[2][2];
-			rotmat[1][1] = rotmat[0][0] * rotmat[2][2] - rotmat[2][0]
-					* rotmat[0][2];
-			rotmat[2][1] = rotmat[1][0] * rotmat[0][2] - rotmat[0][0]
-					* rotmat[1][2];
-			// Do the rotation.
-			double localDipole[] = multipoleType.dipole;
-			double localQuadrupole[][] = multipoleType.quadrupole;
-			for (int i = 0; i < 3; i++) {
-				double[] rotmati = rotmat[i];
-				double[] quadrupolei = quadrupole[i];
-				for (int j = 0; j < 3; j++) {
-					double[] rotmatj = rotmat[j];
-					dipole[i] += rotmati[j] * localDipole[j];
-					if (j < i) {
-						quadrupolei[j] = quadrupole[j][i];
-					} else {
-						for (int k = 0; k < 3; k++) {
-							double[] localQuadrupolek = localQuadrupole[k];
-							quadrupolei[j] += rotmati[k]
-									* (rotmatj[0] * localQuadrupolek[0]
-										+ rotmatj[1] * localQuadrupolek[1]
-										+ rotmatj[2] * localQuadrupolek[2]);
-						}
-					}
-				}
-			}
-			atom.setGlobalMultipole(dipole, quadrupole);
-			if (logger.isLoggable(Level.FINEST)) {
-				logger.finest(atom.toMultipoleString());
+		}
+		int n = atoms.size();
+		double[] x = new double[3 * n];
+		double[] xyz = new double[3];
+		for (int i = 0; i < n; i++) {
+			atoms.get(i).getXYZ(xyz);
+			x[3 * i] = xyz[0];
+			x[3 * i + 1] = xyz[1];
+			x[3 * i + 2] = xyz[2];
+		}
+		MultipoleRotation rotation = MultipoleRotation.create(atoms);
+		rotation.rotate(x);
+		rotation.setGlobalMultipoles(atoms, false);
+		if (logger.isLoggable(Level.FINEST)) {
+			for (int s = 0; s < rotation.getNumberOfSites(); s++) {
+				logger.finest(atoms.get(rotation.getSite(s))
+						.toMultipoleString());
 			}
 		}
 	}
 
+	/*
+	 * Computes Still generalized Born radii for a list of atoms. Callers
+	 * that compute radii repeatedly for the same atoms, such as for each
+	 * frame of a trajectory, should keep a StillBornRadii instead.
+	 */
 	public static void stillBornRadii(List<Atom> atoms) {
 		if (atoms == null || atoms.size() < 1) {
 			logger.warning("No Born radii computed due to empty an atom list");
 			return;
 		}
-		int numberOfAtoms = atoms.size();
-		int skip[] = new int[numberOfAtoms + 1];
-		double ccf = 0.0;
-		for (int i = 0; i < numberOfAtoms; i++) {
-			Atom a1 = atoms.get(i);
-			a1.getXYZ(x1);
-			double vdw1 = a1.getRDielectric();
-			double gpi = a1.getGPol();
-			List<Bond> bonds = a1.getBonds();
-			for (Bond b : bonds) {
-				int other = b.get1_2(a1).getXYZIndex();
-				skip[other] = i + 1;
-			}
-			List<Angle> angles = a1.getAngles();
-			for (Angle a : angles) {
-				Atom other = a.get1_3(a1);
-				if (other != null) {
-					int i13 = other.getXYZIndex();
-					skip[i13] = i + 1;
-				}
-			}
-			for (int k = 0; k < numberOfAtoms; k++) {
-				if (skip[k] != i + 1) {
-					Atom a2 = atoms.get(k);
-					a2.getXYZ(x2);
-					VectorMath.diff(x2, x1, x2);
-					double r2 = x2[0] * x2[0] + x2[1] * x2[1] + x2[2] * x2[2];
-					double r4 = r2 * r2;
-					double rvdw = vdw1 + a2.getRDielectric();
-					double ratio = r2 / (rvdw * rvdw);
-					if (ratio > p5inv) {
-						ccf = 1.0;
-					} else {
-						double term = 0.5 * (1.0 - Math.cos(ratio * pip5));
-						ccf = term * term;
-					}
-					gpi += p4 * ccf * a2.getBornVolume() / r4;
-				}
-			}
-			a1.setBornRadius(convert / gpi);
-		}
+		new StillBornRadii(atoms).compute();
 	}
 }
@@ -0,0 +1,242 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import javax.swing.tree.TreeNode;
+
+/*
+ * The ValenceTermNode class holds the Angles or Dihedrals of an MSGroup
+ * without creating them. When the group is finalized the atoms of each
+ * term are recorded in a table of indices, which costs a few int arrays
+ * per group instead of an object per term. Angle and Dihedral objects,
+ * which also register themselves with their atoms, are only created by
+ * materialize() when the Hierarchy expands the node or picking needs the
+ * terms of an atom.
+ */
+public class ValenceTermNode extends MSNode {
+	private static final long serialVersionUID = 1L;
+
+	// Atoms referenced by the table
+	private final Atom[] atoms;
+
+	// table[k][t] is the index into atoms of atom k of term t
+	private final int[][] table;
+
+	private final int count;
+
+	private boolean materialized = false;
+
+	private ValenceTermNode(String n, ArrayList<Atom> atomList, int[][] t,
+			int c) {
+		super(n + " (" + c + ")");
+		atoms = atomList.toArray(new Atom[atomList.size()]);
+		table = t;
+		count = c;
+	}
+
+	/*
+	 * The angles centered on each atom of a list, between each pair of its
+	 * bonds.
+	 */
+	public static ValenceTermNode angles(List<Atom> atomList) {
+		int c = 0;
+		for (Atom a1 : atomList) {
+			int n = a1.getNumBonds();
+			c += n * (n - 1) / 2;
+		}
+		IdentityHashMap<Atom, Integer> index = new IdentityHashMap<Atom, Integer>();
+		ArrayList<Atom> atoms = new ArrayList<Atom>();
+		int[][] table = new int[3][c];
+		int t = 0;
+		for (Atom a1 : atomList) {
+			ArrayList<Bond> bonds = a1.getBonds();
+			if (bonds == null) {
+				continue;
+			}
+			int center = index(a1, index, atoms);
+			for (int i = 0; i < bonds.size(); i++) {
+				int end1 = index(bonds.get(i).get1_2(a1), index, atoms);
+				for (int j = i + 1; j < bonds.size(); j++) {
+					table[0][t] = end1;
+					table[1][t] = center;
+					table[2][t] = index(bonds.get(j).get1_2(a1), index, atoms);
+					t++;
+				}
+			}
+		}
+		return new ValenceTermNode("Angles", atoms, table, c);
+	}
+
+	/*
+	 * The dihedrals about each bond of a list.
+	 */
+	public static ValenceTermNode dihedrals(List<Bond> bondList) {
+		int c = 0;
+		for (Bond b1 : bondList) {
+			int n1 = b1.getAtom(0).getNumBonds();
+			int n2 = b1.getAtom(1).getNumBonds();
+			if (n1 > 0 && n2 > 0) {
+				c += (n1 - 1) * (n2 - 1);
+			}
+		}
+		IdentityHashMap<Atom, Integer> index = new IdentityHashMap<Atom, Integer>();
+		ArrayList<Atom> atoms = new ArrayList<Atom>();
+		int[][] table = new int[4][c];
+		int t = 0;
+		for (Bond b1 : bondList) {
+			Atom a1 = b1.getAtom(0);
+			Atom a2 = b1.getAtom(1);
+			if (a1.getNumBonds() == 0 || a2.getNumBonds() == 0) {
+				continue;
+			}
+			int i1 = index(a1, index, atoms);
+			int i2 = index(a2, index, atoms);
+			for (Bond b2 : a1.getBonds()) {
+				if (b2 == b1) {
+					continue;
+				}
+				int i0 = index(b2.get1_2(a1), index, atoms);
+				for (Bond b3 : a2.getBonds()) {
+					if (b3 != b1) {
+						table[0][t] = i0;
+						table[1][t] = i1;
+						table[2][t] = i2;
+						table[3][t] = index(b3.get1_2(a2), index, atoms);
+						t++;
+					}
+				}
+			}
+		}
+		return new ValenceTermNode("Dihedrals", atoms, table, c);
+	}
+
+	/*
+	 * Materializes the Angles and Dihedrals of every MSGroup that holds a
+	 * term including atom a, so that a.getAngles() and a.getDihedrals()
+	 * are complete.
+	 */
+	public static void materialize(Atom a) {
+		ArrayList<MSGroup> groups = new ArrayList<MSGroup>();
+		addGroup(a, groups);
+		if (a.getNumBonds() > 0) {
+			for (Bond b12 : a.getBonds()) {
+				Atom a2 = b12.get1_2(a);
+				addGroup(a2, groups);
+				for (Bond b23 : a2.getBonds()) {
+					addGroup(b23.get1_2(a2), groups);
+				}
+			}
+		}
+		for (MSGroup g : groups) {
+			if (g.getAngles() instanceof ValenceTermNode) {
+				((ValenceTermNode) g.getAngles()).materialize();
+			}
+			if (g.getDihedrals() instanceof ValenceTermNode) {
+				((ValenceTermNode) g.getDihedrals()).materialize();
+			}
+		}
+	}
+
+	private static void addGroup(Atom a, ArrayList<MSGroup> groups) {
+		for (TreeNode n = a.getParent(); n != null; n = n.getParent()) {
+			if (n instanceof MSGroup) {
+				for (MSGroup g : groups) {
+					if (g == n) {
+						return;
+					}
+				}
+				groups.add((MSGroup) n);
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Returns atom k of term t.
+	 */
+	public Atom getAtom(int t, int k) {
+		return atoms[table[k][t]];
+	}
+
+	/*
+	 * Returns the number of terms, whether or not they are materialized.
+	 */
+	public int getTermCount() {
+		return count;
+	}
+
+	/*
+	 * Returns the number of atoms in each term.
+	 */
+	public int getTermSize() {
+		return table.length;
+	}
+
+	public boolean isMaterialized() {
+		return materialized;
+	}
+
+	/*
+	 * A node with terms can be expanded before they are materialized.
+	 */
+	public boolean isLeaf() {
+		if (!materialized) {
+			return count == 0;
+		}
+		return super.isLeaf();
+	}
+
+	/*
+	 * Creates the Angle or Dihedral objects and adds them to this node.
+	 */
+	public synchronized void materialize() {
+		if (materialized) {
+			return;
+		}
+		ValenceTerm[] terms = new ValenceTerm[count];
+		if (table.length == 3) {
+			for (int t = 0; t < count; t++) {
+				Atom center = atoms[table[1][t]];
+				terms[t] = new Angle(center.getBond(atoms[table[0][t]]), center
+						.getBond(atoms[table[2][t]]));
+			}
+			// Angles have always been listed last first
+			for (int t = count - 1; t >= 0; t--) {
+				add(terms[t]);
+			}
+		} else {
+			for (int t = 0; t < count; t++) {
+				Atom a1 = atoms[table[1][t]];
+				Atom a2 = atoms[table[2][t]];
+				terms[t] = new Dihedral(a1.getBond(atoms[table[0][t]]), a1
+						.getBond(a2), a2.getBond(atoms[table[3][t]]));
+			}
+			for (int t = 0; t < count; t++) {
+				add(terms[t]);
+			}
+		}
+		materialized = true;
+	}
+
+	private static int index(Atom a, IdentityHashMap<Atom, Integer> index,
+			ArrayList<Atom> atomList) {
+		Integer i = index.get(a);
+		if (i == null) {
+			i = Integer.valueOf(atomList.size());
+			index.put(a, i);
+			atomList.add(a);
+		}
+		return i.intValue();
+	}
+}
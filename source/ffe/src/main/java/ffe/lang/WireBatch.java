@@ -0,0 +1,232 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.lang;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+import org.jogamp.java3d.Behavior;
+import org.jogamp.java3d.BoundingSphere;
+import org.jogamp.java3d.Geometry;
+import org.jogamp.java3d.GeometryArray;
+import org.jogamp.java3d.GeometryUpdater;
+import org.jogamp.java3d.LineArray;
+import org.jogamp.java3d.WakeupOnBehaviorPost;
+import org.jogamp.vecmath.Color3f;
+import org.jogamp.vecmath.Point3d;
+
+/*
+ * The WireBatch class holds the wireframe of one MolecularAssembly in a
+ * LineArray whose coordinates and colors are float arrays shared by
+ * reference. Each Bond owns four vertices: its first Atom, the bond
+ * midpoint twice, and its second Atom. Bonds only note that they moved or
+ * changed color; the arrays are then rewritten by this Behavior in one
+ * pass over all Bonds, instead of one setCoordinates call per Bond.
+ *
+ * The per Bond LineArray path is kept for comparison and is used when
+ * ffe.wire.legacy is true. With ffe.timer set, the time of each pass is
+ * logged.
+ */
+final class WireBatch extends Behavior implements GeometryUpdater {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	static final boolean legacy = System.getProperty("ffe.wire.legacy",
+			"false").equalsIgnoreCase("true");
+
+	private static final boolean timer = System.getProperty("ffe.timer",
+			"false").equalsIgnoreCase("true");
+
+	private static final float ALPHA = 0.9f;
+
+	private static final int POST = 1;
+
+	private final Bond bonds[];
+
+	private final LineArray geometry;
+
+	private final float coordinates[];
+
+	private final float colors[];
+
+	private final float color[] = new float[3];
+
+	private final WakeupOnBehaviorPost post = new WakeupOnBehaviorPost(this,
+			POST);
+
+	private boolean moved = true;
+
+	private boolean recolored = true;
+
+	private boolean posted = false;
+
+	WireBatch(ArrayList<ROLS> bondList) {
+		int n = bondList.size();
+		bonds = new Bond[n];
+		for (int i = 0; i < n; i++) {
+			bonds[i] = (Bond) bondList.get(i);
+			bonds[i].setWire(this, 4 * i);
+		}
+		coordinates = new float[12 * n];
+		colors = new float[16 * n];
+		geometry = new LineArray(4 * n, GeometryArray.COORDINATES
+				| GeometryArray.COLOR_4 | GeometryArray.BY_REFERENCE);
+		geometry.setCapability(GeometryArray.ALLOW_REF_DATA_READ);
+		geometry.setCapability(GeometryArray.ALLOW_REF_DATA_WRITE);
+		geometry.setCapability(GeometryArray.ALLOW_COORDINATE_READ);
+		geometry.setCapability(GeometryArray.ALLOW_COUNT_READ);
+		geometry.setCapability(GeometryArray.ALLOW_FORMAT_READ);
+		geometry.setCapability(Geometry.ALLOW_INTERSECT);
+		updateData(geometry);
+		geometry.setCoordRefFloat(coordinates);
+		geometry.setColorRefFloat(colors);
+		setSchedulingBounds(new BoundingSphere(new Point3d(),
+				Double.POSITIVE_INFINITY));
+	}
+
+	GeometryArray getGeometry() {
+		return geometry;
+	}
+
+	/*
+	 * Notes that Bonds have moved.
+	 */
+	void move() {
+		synchronized (this) {
+			if (moved) {
+				return;
+			}
+			moved = true;
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	/*
+	 * Notes that a Bond changed color or visibility.
+	 */
+	void recolor() {
+		synchronized (this) {
+			if (recolored) {
+				return;
+			}
+			recolored = true;
+			if (!post()) {
+				return;
+			}
+		}
+		postId(POST);
+	}
+
+	/*
+	 * Returns true if the caller should post to this Behavior, which is
+	 * done outside the lock so as not to hold it while Java3D schedules.
+	 */
+	private boolean post() {
+		if (posted || !isLive()) {
+			return false;
+		}
+		posted = true;
+		return true;
+	}
+
+	synchronized void flush() {
+		posted = false;
+		if (moved || recolored) {
+			long time = System.nanoTime();
+			geometry.updateData(this);
+			if (timer) {
+				time = System.nanoTime() - time;
+				logger.info("Wireframe Update (" + bonds.length
+						+ " bonds, msec): " + time * 1.0e-6);
+			}
+		}
+	}
+
+	/*
+	 * Writes the vertices of every Bond, and their colors if any changed.
+	 */
+	public void updateData(Geometry g) {
+		if (moved) {
+			for (int b = 0, k = 0; b < bonds.length; b++, k += 12) {
+				Bond bond = bonds[b];
+				Atom a1 = bond.getAtom(0);
+				Atom a2 = bond.getAtom(1);
+				float x1 = (float) a1.getX();
+				float y1 = (float) a1.getY();
+				float z1 = (float) a1.getZ();
+				float x2 = (float) a2.getX();
+				float y2 = (float) a2.getY();
+				float z2 = (float) a2.getZ();
+				float mx = 0.5f * (x1 + x2);
+				float my = 0.5f * (y1 + y2);
+				float mz = 0.5f * (z1 + z2);
+				coordinates[k] = x1;
+				coordinates[k + 1] = y1;
+				coordinates[k + 2] = z1;
+				coordinates[k + 3] = mx;
+				coordinates[k + 4] = my;
+				coordinates[k + 5] = mz;
+				coordinates[k + 6] = mx;
+				coordinates[k + 7] = my;
+				coordinates[k + 8] = mz;
+				coordinates[k + 9] = x2;
+				coordinates[k + 10] = y2;
+				coordinates[k + 11] = z2;
+			}
+			moved = false;
+		}
+		if (recolored) {
+			for (int b = 0, k = 0; b < bonds.length; b++, k += 16) {
+				Bond bond = bonds[b];
+				if (bond.isWireVisible()) {
+					setColor(bond.getAtom(0), k);
+					setColor(bond.getAtom(1), k + 8);
+				} else {
+					for (int i = 0; i < 16; i++) {
+						colors[k + i] = 0.0f;
+					}
+				}
+			}
+			recolored = false;
+		}
+	}
+
+	/*
+	 * Colors the two vertices from offset k with the atom's color.
+	 */
+	private void setColor(Atom atom, int k) {
+		Color3f c = atom.getAtomColor();
+		if (c == null) {
+			c = Atom.AtomColor.get(atom.getAtomicNumber());
+		}
+		c.get(color);
+		for (int v = k; v < k + 8; v += 4) {
+			colors[v] = color[0];
+			colors[v + 1] = color[1];
+			colors[v + 2] = color[2];
+			colors[v + 3] = ALPHA;
+		}
+	}
+
+	public void initialize() {
+		// Changes made before the batch was live
+		flush();
+		wakeupOn(post);
+	}
+
+	public void processStimulus(Iterator criteria) {
+		flush();
+		wakeupOn(post);
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.mm;
+
+import java.util.Collection;
+import java.util.logging.Logger;
+
+/*
+ * The CompiledForceField class is a read-only view of a ForceField for
+ * type assignment. Atom types are kept in an array indexed by their
+ * integer type, so lookups neither parse nor build Strings. A ForceField
+ * compiles a new view after any of its types change.
+ */
+public final class CompiledForceField {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	private final AtomType[] atomTypes;
+
+	CompiledForceField(ForceField forceField) {
+		Collection<AtomType> atoms = forceField.getTypes(
+				ForceField.ForceFieldType.ATOM);
+		int max = -1;
+		for (AtomType a : atoms) {
+			max = Math.max(max, index(a.type, a));
+		}
+		atomTypes = new AtomType[max + 1];
+		for (AtomType a : atoms) {
+			if (index(a.type, a) >= 0) {
+				atomTypes[a.type] = a;
+			}
+		}
+	}
+
+	/*
+	 * Returns i if it can index an array, or -1 after a warning.
+	 */
+	private static int index(int i, BaseType type) {
+		if (i < 0 || i > LongKeyMap.MAX) {
+			logger.warning("Force field entry " + type.key
+					+ " is out of range and was not compiled.");
+			return -1;
+		}
+		return i;
+	}
+
+	private static <T> T get(T[] array, int i) {
+		if (i < 0 || i >= array.length) {
+			return null;
+		}
+		return array[i];
+	}
+
+	public AtomType getAtomType(int type) {
+		return get(atomTypes, type);
+	}
+}
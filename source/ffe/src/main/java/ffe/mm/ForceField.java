@@ -10,6 +10,7 @@
 package ffe.mm;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.TreeMap;
 import java.util.logging.Logger;
 
@@ -52,6 +53,12 @@ public class ForceField {
 	private final TreeMap<ForceFieldString, String> keyString;
 	private final TreeMap<ForceFieldDouble, Double> keyDouble;
 
+	// Built from the multipole map when first needed
+	private MultipoleIndex multipoleIndex = null;
+
+	// Compiled when first needed, and again after any type changes
+	private CompiledForceField compiled = null;
+
 	/*
 	 * ForceField Constructor.
 	 */
@@ -155,6 +162,12 @@ public class ForceField {
 		}
 		Class baseTypeClass = type.getClass();
 		treeMap.put(type.key, baseTypeClass.cast(type));
+		synchronized (this) {
+			compiled = null;
+			if (type.forceFieldType == ForceFieldType.MULTIPOLE) {
+				multipoleIndex = null;
+			}
+		}
 	}
 
 	public BaseType getForceFieldType(ForceFieldType type, String key) {
@@ -167,6 +180,45 @@ public class ForceField {
 		return treeMap.get(key);
 	}
 
+	/*
+	 * Returns an index of the multipole types by the atom types of their
+	 * frames.
+	 */
+	public synchronized MultipoleIndex getMultipoleIndex() {
+		if (multipoleIndex == null) {
+			multipoleIndex = new MultipoleIndex(multipole.values());
+		}
+		return multipoleIndex;
+	}
+
+	/*
+	 * Returns a read-only view of the force field whose types are looked
+	 * up by integer atom types and classes.
+	 */
+	public synchronized CompiledForceField compile() {
+		if (compiled == null) {
+			compiled = new CompiledForceField(this);
+		}
+		return compiled;
+	}
+
+	/*
+	 * Returns the types of one family; T must match the family.
+	 */
+	@SuppressWarnings("unchecked")
+	<T extends BaseType> Collection<T> getTypes(ForceFieldType type) {
+		TreeMap<String, T> treeMap = (TreeMap<String, T>) types.get(type);
+		return treeMap.values();
+	}
+
+	TreeMap<ForceFieldString, String> getForceFieldStrings() {
+		return keyString;
+	}
+
+	TreeMap<ForceFieldDouble, Double> getForceFieldDoubles() {
+		return keyDouble;
+	}
+
 	public int getForceFieldTypeCount(ForceFieldType type) {
 		TreeMap<String, BaseType> treeMap = (TreeMap<String, BaseType>) types
 				.get(type);
@@ -0,0 +1,314 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.mm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import ffe.mm.ForceField.ForceFieldDouble;
+import ffe.mm.ForceField.ForceFieldString;
+import ffe.mm.ForceField.ForceFieldType;
+import ffe.mm.MultipoleType.MultipoleFrameDefinition;
+
+/*
+ * The ForceFieldSnapshot class writes a parsed ForceField as a compact
+ * binary record and reads it back without parsing text. Keywords and
+ * type families are written by name, so a snapshot stays readable when
+ * the enums gain constants. The snapshot starts with a caller supplied
+ * key, and read returns null if it does not match.
+ */
+public final class ForceFieldSnapshot {
+
+	private static final int MAGIC = 0x46464653;
+
+	private static final int VERSION = 1;
+
+	private ForceFieldSnapshot() {
+	}
+
+	public static void write(ForceField forceField, String key,
+			DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(key);
+		Map<ForceFieldString, String> strings = forceField
+				.getForceFieldStrings();
+		out.writeInt(strings.size());
+		for (Map.Entry<ForceFieldString, String> e : strings.entrySet()) {
+			out.writeUTF(e.getKey().name());
+			out.writeUTF(e.getValue());
+		}
+		Map<ForceFieldDouble, Double> doubles = forceField
+				.getForceFieldDoubles();
+		out.writeInt(doubles.size());
+		for (Map.Entry<ForceFieldDouble, Double> e : doubles.entrySet()) {
+			out.writeUTF(e.getKey().name());
+			out.writeDouble(e.getValue());
+		}
+		ForceFieldType families[] = ForceFieldType.values();
+		out.writeInt(families.length);
+		for (ForceFieldType family : families) {
+			Collection<BaseType> types = forceField
+					.getTypes(family);
+			out.writeUTF(family.name());
+			out.writeInt(types.size());
+			for (BaseType type : types) {
+				write(type, out);
+			}
+		}
+	}
+
+	/*
+	 * Returns the force field, or null if the snapshot was written with
+	 * another key or format.
+	 */
+	public static ForceField read(DataInputStream in, String key,
+			File forceFieldFile, File keyFile) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != VERSION
+				|| !in.readUTF().equals(key)) {
+			return null;
+		}
+		ForceField forceField = new ForceField(forceFieldFile, keyFile);
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			ForceFieldString s = ForceFieldString.valueOf(in.readUTF());
+			forceField.addForceFieldString(s, in.readUTF());
+		}
+		n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			ForceFieldDouble d = ForceFieldDouble.valueOf(in.readUTF());
+			forceField.addForceFieldDouble(d, in.readDouble());
+		}
+		int families = in.readInt();
+		for (int f = 0; f < families; f++) {
+			ForceFieldType family = ForceFieldType.valueOf(in.readUTF());
+			n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				forceField.addForceFieldType(read(family, in));
+			}
+		}
+		return forceField;
+	}
+
+	private static void write(BaseType type, DataOutputStream out)
+			throws IOException {
+		switch (type.forceFieldType) {
+		case ATOM:
+			AtomType atom = (AtomType) type;
+			out.writeInt(atom.type);
+			out.writeInt(atom.atomClass);
+			writeString(atom.name, out);
+			writeString(atom.environment, out);
+			out.writeInt(atom.atomicNumber);
+			out.writeDouble(atom.mass);
+			out.writeInt(atom.hybridization);
+			break;
+		case ANGLE:
+			AngleType angle = (AngleType) type;
+			writeInts(angle.atomClasses, out);
+			out.writeDouble(angle.forceConstant);
+			writeDoubles(angle.angle, out);
+			break;
+		case BIOTYPE:
+			BioType bio = (BioType) type;
+			out.writeInt(bio.index);
+			writeString(bio.PDB, out);
+			writeString(bio.residue, out);
+			out.writeInt(bio.atomType);
+			break;
+		case BOND:
+			BondType bond = (BondType) type;
+			writeInts(bond.atomClasses, out);
+			out.writeDouble(bond.forceConstant);
+			out.writeDouble(bond.distance);
+			break;
+		case CHARGE:
+			ChargeType charge = (ChargeType) type;
+			out.writeInt(charge.atomType);
+			out.writeDouble(charge.charge);
+			break;
+		case MULTIPOLE:
+			MultipoleType multipole = (MultipoleType) type;
+			out.writeDouble(multipole.charge);
+			writeDoubles(multipole.dipole, out);
+			for (int i = 0; i < 3; i++) {
+				writeDoubles(multipole.quadrupole[i], out);
+			}
+			writeInts(multipole.frameAtomTypes, out);
+			out.writeUTF(multipole.frameDefinition.name());
+			break;
+		case OPBEND:
+			OutOfPlaneBendType opbend = (OutOfPlaneBendType) type;
+			writeInts(opbend.atomClasses, out);
+			out.writeDouble(opbend.forceConstant);
+			break;
+		case PITORS:
+			PiTorsionType pitors = (PiTorsionType) type;
+			writeInts(pitors.atomClasses, out);
+			out.writeDouble(pitors.forceConstant);
+			break;
+		case POLARIZE:
+			PolarizeType polarize = (PolarizeType) type;
+			out.writeInt(polarize.atomType);
+			out.writeDouble(polarize.polarizability);
+			out.writeDouble(polarize.thole);
+			writeInts(polarize.polarizationGroup, out);
+			break;
+		case STRBND:
+			StretchBendType strbnd = (StretchBendType) type;
+			writeInts(strbnd.atomClasses, out);
+			writeDoubles(strbnd.forceConstants, out);
+			break;
+		case TORSION:
+			TorsionType torsion = (TorsionType) type;
+			writeInts(torsion.atomClasses, out);
+			writeDoubles(torsion.amplitude, out);
+			writeDoubles(torsion.phase, out);
+			writeInts(torsion.periodicity, out);
+			break;
+		case TORTORS:
+			TorsionTorsionType tortors = (TorsionTorsionType) type;
+			writeInts(tortors.atomClasses, out);
+			writeInts(tortors.gridPoints, out);
+			writeDoubles(tortors.torsion1, out);
+			writeDoubles(tortors.torsion2, out);
+			writeDoubles(tortors.energy, out);
+			break;
+		case UREYBRAD:
+			UreyBradleyType ureybrad = (UreyBradleyType) type;
+			writeInts(ureybrad.atomClasses, out);
+			out.writeDouble(ureybrad.forceConstant);
+			out.writeDouble(ureybrad.distance);
+			break;
+		case VDW:
+			VDWType vdw = (VDWType) type;
+			out.writeInt(vdw.atomClass);
+			out.writeDouble(vdw.radius);
+			out.writeDouble(vdw.wellDepth);
+			out.writeDouble(vdw.reductionFactor);
+			break;
+		default:
+			throw new IOException("Unsupported force field type: "
+					+ type.forceFieldType);
+		}
+	}
+
+	private static BaseType read(ForceFieldType family, DataInputStream in)
+			throws IOException {
+		switch (family) {
+		case ATOM:
+			return new AtomType(in.readInt(), in.readInt(), readString(in),
+					readString(in), in.readInt(), in.readDouble(), in
+							.readInt());
+		case ANGLE:
+			return new AngleType(readInts(in), in.readDouble(),
+					readDoubles(in));
+		case BIOTYPE:
+			return new BioType(in.readInt(), readString(in), readString(in),
+					in.readInt());
+		case BOND:
+			return new BondType(readInts(in), in.readDouble(), in.readDouble());
+		case CHARGE:
+			return new ChargeType(in.readInt(), in.readDouble());
+		case MULTIPOLE:
+			double charge = in.readDouble();
+			double dipole[] = readDoubles(in);
+			double quadrupole[][] = new double[3][];
+			for (int i = 0; i < 3; i++) {
+				quadrupole[i] = readDoubles(in);
+			}
+			return new MultipoleType(charge, dipole, quadrupole, readInts(in),
+					MultipoleFrameDefinition.valueOf(in.readUTF()), false);
+		case OPBEND:
+			return new OutOfPlaneBendType(readInts(in), in.readDouble());
+		case PITORS:
+			return new PiTorsionType(readInts(in), in.readDouble());
+		case POLARIZE:
+			return new PolarizeType(in.readInt(), in.readDouble(), in
+					.readDouble(), readInts(in));
+		case STRBND:
+			return new StretchBendType(readInts(in), readDoubles(in));
+		case TORSION:
+			return new TorsionType(readInts(in), readDoubles(in),
+					readDoubles(in), readInts(in));
+		case TORTORS:
+			return new TorsionTorsionType(readInts(in), readInts(in),
+					readDoubles(in), readDoubles(in), readDoubles(in));
+		case UREYBRAD:
+			return new UreyBradleyType(readInts(in), in.readDouble(), in
+					.readDouble());
+		case VDW:
+			return new VDWType(in.readInt(), in.readDouble(), in.readDouble(),
+					in.readDouble());
+		default:
+			throw new IOException("Unsupported force field type: " + family);
+		}
+	}
+
+	private static void writeString(String s, DataOutputStream out)
+			throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF().intern() : null;
+	}
+
+	private static void writeInts(int a[], DataOutputStream out)
+			throws IOException {
+		out.writeInt(a == null ? -1 : a.length);
+		if (a != null) {
+			for (int i = 0; i < a.length; i++) {
+				out.writeInt(a[i]);
+			}
+		}
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		if (n < 0) {
+			return null;
+		}
+		int a[] = new int[n];
+		for (int i = 0; i < n; i++) {
+			a[i] = in.readInt();
+		}
+		return a;
+	}
+
+	private static void writeDoubles(double a[], DataOutputStream out)
+			throws IOException {
+		out.writeInt(a == null ? -1 : a.length);
+		if (a != null) {
+			for (int i = 0; i < a.length; i++) {
+				out.writeDouble(a[i]);
+			}
+		}
+	}
+
+	private static double[] readDoubles(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		if (n < 0) {
+			return null;
+		}
+		double a[] = new double[n];
+		for (int i = 0; i < n; i++) {
+			a[i] = in.readDouble();
+		}
+		return a;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.mm;
+
+/*
+ * The LongKeyMap class is an open addressing hash map from non-negative
+ * long keys to values, used to look up force field types by their atom
+ * types or classes packed into a long. Lookups do not allocate.
+ */
+final class LongKeyMap<T> {
+
+	// Bits per atom type or class in a packed key
+	static final int BITS = 15;
+
+	static final int MAX = (1 << BITS) - 1;
+
+	// Returned by pack() when an atom type or class does not fit
+	static final long NONE = -1L;
+
+	private long[] keys;
+
+	private Object[] values;
+
+	private int mask;
+
+	private int size = 0;
+
+	LongKeyMap(int expected) {
+		int capacity = 16;
+		while (capacity < 2 * expected) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < capacity; i++) {
+			keys[i] = NONE;
+		}
+	}
+
+	/*
+	 * Packs up to four atom types or classes, most significant first.
+	 */
+	static long pack(int a, int b, int c, int d) {
+		if ((a | b | c | d) < 0 || a > MAX || b > MAX || c > MAX || d > MAX) {
+			return NONE;
+		}
+		return ((long) a << (3 * BITS)) | ((long) b << (2 * BITS))
+				| ((long) c << BITS) | d;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		int i = (int) (h >>> 32) & mask;
+		while (keys[i] != NONE && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	@SuppressWarnings("unchecked")
+	T get(long key) {
+		if (key == NONE) {
+			return null;
+		}
+		return (T) values[slot(key)];
+	}
+
+	/*
+	 * Maps key to value, replacing any earlier value.
+	 */
+	void put(long key, T value) {
+		if (key == NONE) {
+			return;
+		}
+		if (2 * (size + 1) > keys.length) {
+			long[] oldKeys = keys;
+			Object[] oldValues = values;
+			allocate(2 * keys.length);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != NONE) {
+					int s = slot(oldKeys[i]);
+					keys[s] = oldKeys[i];
+					values[s] = oldValues[i];
+				}
+			}
+		}
+		int s = slot(key);
+		if (keys[s] == NONE) {
+			size++;
+		}
+		keys[s] = key;
+		values[s] = value;
+	}
+
+	int size() {
+		return size;
+	}
+}
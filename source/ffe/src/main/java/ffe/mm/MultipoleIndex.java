@@ -0,0 +1,72 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.mm;
+
+import java.util.Collection;
+import java.util.logging.Logger;
+
+/*
+ * The MultipoleIndex class looks up MultipoleTypes by the atom types of
+ * their frame without building a String key. Frames of three and four
+ * atom types are packed into longs and kept in separate LongKeyMaps. The
+ * index is immutable; a ForceField builds a new one after its multipoles
+ * change.
+ */
+public final class MultipoleIndex {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	public static final int MAX_TYPE = LongKeyMap.MAX;
+
+	private final LongKeyMap<MultipoleType> frames3;
+
+	private final LongKeyMap<MultipoleType> frames4;
+
+	MultipoleIndex(Collection<MultipoleType> multipoles) {
+		frames3 = new LongKeyMap<MultipoleType>(multipoles.size());
+		frames4 = new LongKeyMap<MultipoleType>(16);
+		for (MultipoleType multipoleType : multipoles) {
+			int[] t = multipoleType.frameAtomTypes;
+			long key = LongKeyMap.NONE;
+			if (t.length == 3) {
+				key = LongKeyMap.pack(0, t[0], t[1], t[2]);
+				frames3.put(key, multipoleType);
+			} else if (t.length == 4) {
+				key = LongKeyMap.pack(t[0], t[1], t[2], t[3]);
+				frames4.put(key, multipoleType);
+			}
+			if (key == LongKeyMap.NONE) {
+				// Frames of other lengths are never looked up
+				logger.fine("Multipole " + multipoleType.key
+						+ " is not indexed.");
+			}
+		}
+	}
+
+	/*
+	 * Returns the multipole whose frame is the atom types t0 t1 t2, where
+	 * 0 stands for no atom, or null.
+	 */
+	public MultipoleType get(int t0, int t1, int t2) {
+		return frames3.get(LongKeyMap.pack(0, t0, t1, t2));
+	}
+
+	/*
+	 * Returns the multipole whose frame is the atom types t0 t1 t2 t3, or
+	 * null.
+	 */
+	public MultipoleType get(int t0, int t1, int t2, int t3) {
+		return frames4.get(LongKeyMap.pack(t0, t1, t2, t3));
+	}
+
+	public int size() {
+		return frames3.size() + frames4.size();
+	}
+}
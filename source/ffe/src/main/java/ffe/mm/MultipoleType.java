@@ -82,13 +82,26 @@ public final class MultipoleType extends BaseType {
 	 */
 	public MultipoleType(double charge, double dipole[], double quadrupole[][],
 			int[] multipoleFrameTypes, MultipoleFrameDefinition frameDefinition) {
+		this(charge, dipole, quadrupole, multipoleFrameTypes, frameDefinition,
+				true);
+	}
+
+	/*
+	 * Restores a multipole already in electron-Angstroms when bohr is
+	 * false, as read back from a ForceFieldSnapshot.
+	 */
+	MultipoleType(double charge, double dipole[], double quadrupole[][],
+			int[] multipoleFrameTypes, MultipoleFrameDefinition frameDefinition,
+			boolean bohr) {
 		super(ForceField.ForceFieldType.MULTIPOLE, multipoleFrameTypes);
 		this.charge = charge;
 		this.dipole = dipole;
 		this.quadrupole = quadrupole;
 		this.frameAtomTypes = multipoleFrameTypes;
 		this.frameDefinition = frameDefinition;
-		initMultipole();
+		if (bohr) {
+			initMultipole();
+		}
 	}
 
 	private void initMultipole() {
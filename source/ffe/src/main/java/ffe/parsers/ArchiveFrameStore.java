@@ -0,0 +1,316 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.parsers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import ffe.lang.FrameStore;
+
+/*
+ * The ArchiveFrameStore class gives access to the frames of a Tinker
+ * archive without reading them into memory. The file is memory mapped and
+ * scanned once to index where each frame begins; a frame is only parsed
+ * when it is asked for, and the most recently used frames are kept in a
+ * small cache. Memory use therefore does not depend on the length of the
+ * trajectory.
+ */
+public class ArchiveFrameStore extends FrameStore {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	// Files larger than 2 GB are mapped in several segments
+	private static final int SEGMENT_BITS = 30;
+
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	private static final int DEFAULT_CACHE = 16;
+
+	private final File file;
+
+	private final MappedByteBuffer[] segments;
+
+	private final long length;
+
+	// File offset of the header line of each frame
+	private long[] index = new long[64];
+
+	private final LinkedHashMap<Integer, float[]> cache;
+
+	// Parse position within the file
+	private long pos = 0;
+
+	private LineTokenizer tokenizer = new LineTokenizer((InputStream) null);
+
+	private ByteBuffer[] views;
+
+	public ArchiveFrameStore(File f, int n) throws IOException {
+		this(f, n, getCacheSize());
+	}
+
+	/*
+	 * Returns the number of cached frames named by ffe.archive.cache.
+	 */
+	private static int getCacheSize() {
+		String cache = System.getProperty("ffe.archive.cache");
+		if (cache == null) {
+			return DEFAULT_CACHE;
+		}
+		try {
+			int n = Integer.parseInt(cache.trim());
+			if (n >= 1) {
+				return n;
+			}
+		} catch (NumberFormatException e) {
+		}
+		logger.warning("Invalid ffe.archive.cache \"" + cache + "\"; caching "
+				+ DEFAULT_CACHE + " frames.");
+		return DEFAULT_CACHE;
+	}
+
+	public ArchiveFrameStore(File f, int n, final int cacheSize)
+			throws IOException {
+		super(n);
+		file = f;
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			length = channel.size();
+			int count = (int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS);
+			segments = new MappedByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				long start = (long) i << SEGMENT_BITS;
+				long size = Math.min(length - start, 1L << SEGMENT_BITS);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						start, size);
+			}
+		} finally {
+			// The mappings remain valid after the file is closed
+			raf.close();
+		}
+		views = new ByteBuffer[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			views[i] = segments[i].duplicate();
+		}
+		cache = new LinkedHashMap<Integer, float[]>(2 * cacheSize, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Integer, float[]> e) {
+				return size() > Math.max(1, cacheSize);
+			}
+		};
+		scan();
+	}
+
+	/*
+	 * Finds the start of each frame by counting lines; frames that do not
+	 * hold numatoms atoms end the archive.
+	 */
+	private void scan() {
+		pos = 0;
+		while (true) {
+			skipBlankLines();
+			if (pos >= length) {
+				return;
+			}
+			long header = pos;
+			int num = readInt();
+			if (num != numatoms) {
+				logger.warning(num + " atoms for archive entry "
+						+ (frames + 1) + " is not equal to " + numatoms
+						+ ". Only the first " + frames
+						+ " entries were read.");
+				return;
+			}
+			nextLine();
+			skipBlankLines();
+			if (isBoxLine()) {
+				nextLine();
+			}
+			for (int i = 0; i < numatoms; i++) {
+				skipBlankLines();
+				if (pos >= length) {
+					logger.warning("Archive entry " + (frames + 1) + " of "
+							+ file.getName() + " is incomplete.");
+					return;
+				}
+				nextLine();
+			}
+			if (frames == index.length) {
+				long[] grow = new long[2 * frames];
+				System.arraycopy(index, 0, grow, 0, frames);
+				index = grow;
+			}
+			index[frames++] = header;
+		}
+	}
+
+	/*
+	 * Returns the coordinates of a frame, parsing it from the archive if
+	 * it is not cached.
+	 */
+	public synchronized float[] getFrame(int frame) {
+		Integer key = Integer.valueOf(frame);
+		float[] f = cache.get(key);
+		if (f == null) {
+			f = parseFrame(frame);
+			cache.put(key, f);
+		}
+		return f;
+	}
+
+	private float[] parseFrame(int frame) {
+		float[] f = new float[3 * numatoms];
+		pos = index[frame];
+		LineTokenizer t = tokenizer;
+		t.reset(new MappedInputStream());
+		try {
+			t.nextLine();
+			t.nextNonBlankLine();
+			t.skipToken();
+			boolean box = t.isNumber();
+			t.rewind();
+			for (int i = 0; i < numatoms; i++) {
+				if (i > 0 || box) {
+					t.nextNonBlankLine();
+				}
+				try {
+					// Skip the atom number and name
+					t.skipToken();
+					t.skipToken();
+					f[3 * i] = (float) t.nextDouble();
+					f[3 * i + 1] = (float) t.nextDouble();
+					f[3 * i + 2] = (float) t.nextDouble();
+				} catch (NumberFormatException e) {
+					logger.warning("Check atom " + (i + 1) + ", archive entry "
+							+ (frame + 1) + " in " + file.getName());
+				}
+			}
+		} catch (IOException e) {
+			logger.warning(e.toString());
+		}
+		return f;
+	}
+
+	/*
+	 * Streams the mapped file from the parse position.
+	 */
+	private class MappedInputStream extends InputStream {
+		public int read() {
+			if (pos >= length) {
+				return -1;
+			}
+			return get(pos++) & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) {
+			if (pos >= length) {
+				return -1;
+			}
+			ByteBuffer view = views[(int) (pos >>> SEGMENT_BITS)];
+			view.position((int) (pos & SEGMENT_MASK));
+			int n = Math.min(len, view.remaining());
+			view.get(b, off, n);
+			pos += n;
+			return n;
+		}
+	}
+
+	private byte get(long p) {
+		return segments[(int) (p >>> SEGMENT_BITS)].get((int) (p & SEGMENT_MASK));
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	/*
+	 * A periodic box line holds six numbers, whereas the second token of
+	 * an atom line is an atom name.
+	 */
+	private boolean isBoxLine() {
+		long start = pos;
+		skipToken();
+		while (pos < length && isSpace(get(pos))) {
+			pos++;
+		}
+		boolean box = false;
+		if (pos < length) {
+			byte b = get(pos);
+			box = (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.';
+		}
+		pos = start;
+		return box;
+	}
+
+	private void nextLine() {
+		while (pos < length && get(pos++) != '\n') {
+		}
+	}
+
+	/*
+	 * Parses an unsigned int token, or returns -1 if the token is not one.
+	 */
+	private int readInt() {
+		while (pos < length && isSpace(get(pos))) {
+			pos++;
+		}
+		long value = 0;
+		boolean digits = false;
+		while (pos < length && value <= Integer.MAX_VALUE) {
+			byte b = get(pos);
+			if (b < '0' || b > '9') {
+				break;
+			}
+			value = 10 * value + (b - '0');
+			digits = true;
+			pos++;
+		}
+		if (!digits || value > Integer.MAX_VALUE
+				|| (pos < length && !isSpace(get(pos)) && get(pos) != '\n')) {
+			return -1;
+		}
+		return (int) value;
+	}
+
+	private void skipToken() {
+		while (pos < length && isSpace(get(pos))) {
+			pos++;
+		}
+		while (pos < length) {
+			byte b = get(pos);
+			if (b == '\n' || isSpace(b)) {
+				break;
+			}
+			pos++;
+		}
+	}
+
+	private void skipBlankLines() {
+		while (pos < length) {
+			long p = pos;
+			while (p < length && isSpace(get(p))) {
+				p++;
+			}
+			if (p < length && get(p) != '\n') {
+				return;
+			}
+			pos = p + 1;
+		}
+	}
+}
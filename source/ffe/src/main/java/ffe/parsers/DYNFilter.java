@@ -9,9 +9,9 @@
 
 package ffe.parsers;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.List;
 
 import ffe.lang.Atom;
@@ -37,105 +37,93 @@ public class DYNFilter {
 			return false;
 		}
 		try {
-			FileReader fr = new FileReader(file);
-			BufferedReader br = new BufferedReader(fr);
-			br.readLine();
-			String data = br.readLine().trim();
-			String tokens[] = data.split("\\s+");
-			if (tokens.length == 0) {
-				return false;
-			}
-			int numatoms = Integer.parseInt(tokens[0]);
-			if (numatoms != fsystem.getAtomList().size()) {
-				return false;
-			}
-			br.readLine();
-			data = br.readLine().trim();
-			tokens = data.split("\\s+");
-			if (tokens.length != 3) {
-				return false;
-			}
-			double d[] = new double[3];
-			d[0] = Double.parseDouble(tokens[0]);
-			d[1] = Double.parseDouble(tokens[1]);
-			d[2] = Double.parseDouble(tokens[2]);
-			fsystem.setBox(d);
-			data = br.readLine().trim();
-			tokens = data.split("\\s+");
-			if (tokens.length != 3) {
-				return false;
-			}
-			d[0] = Double.parseDouble(tokens[0]);
-			d[1] = Double.parseDouble(tokens[1]);
-			d[2] = Double.parseDouble(tokens[2]);
-			fsystem.setAngle(d);
-			// Positions
-			br.readLine();
-			double x[][] = new double[numatoms][3];
-			for (int i = 0; i < numatoms; i++) {
-				data = br.readLine().trim();
-				tokens = data.split("\\s+");
-				if (tokens.length != 3) {
+			LineTokenizer t = new LineTokenizer(new FileInputStream(file));
+			try {
+				t.nextLine();
+				if (!t.nextLine() || !t.hasMoreTokens()) {
 					return false;
 				}
-				x[i][0] = Double.parseDouble(tokens[0]);
-				x[i][1] = Double.parseDouble(tokens[1]);
-				x[i][2] = Double.parseDouble(tokens[2]);
-			}
-			List<Atom> atoms = fsystem.getAtomList();
-			for (Atom a : atoms) {
-				int j = a.getXYZIndex() - 1;
-				a.moveTo(x[j][0], x[j][1], x[j][2]);
-			}
-			// Velocities
-			br.readLine();
-			for (int i = 0; i < numatoms; i++) {
-				data = br.readLine().trim();
-				tokens = data.split("\\s+");
-				if (tokens.length != 3) {
+				int numatoms = t.nextInt();
+				if (numatoms != fsystem.getAtomList().size()) {
 					return false;
 				}
-				x[i][0] = Double.parseDouble(tokens[0]);
-				x[i][1] = Double.parseDouble(tokens[1]);
-				x[i][2] = Double.parseDouble(tokens[2]);
-			}
-			double max = 0.0d;
-			for (Atom a : atoms) {
-				int j = a.getXYZIndex() - 1;
-				a.setVeclocity(x[j][0], x[j][1], x[j][2]);
-				double r = VectorMath.r(x[j]);
-				if (r > max) {
-					max = r;
+				t.nextLine();
+				double d[] = new double[3];
+				if (!readTriple(t, d)) {
+					return false;
 				}
-			}
-			Atom.setMaxVelocity(max);
-			// Accelerations
-			br.readLine();
-			for (int i = 0; i < numatoms; i++) {
-				data = br.readLine().trim();
-				tokens = data.split("\\s+");
-				if (tokens.length != 3) {
+				fsystem.setBox(d);
+				if (!readTriple(t, d)) {
 					return false;
 				}
-				x[i][0] = Double.parseDouble(tokens[0]);
-				x[i][1] = Double.parseDouble(tokens[1]);
-				x[i][2] = Double.parseDouble(tokens[2]);
-			}
-			max = 0.0d;
-			for (Atom a : atoms) {
-				int j = a.getXYZIndex() - 1;
-				a.setAcceleration(x[j][0], x[j][1], x[j][2]);
-				double r = VectorMath.r(x[j]);
-				if (r > max) {
-					max = r;
+				fsystem.setAngle(d);
+				// Positions
+				t.nextLine();
+				double x[][] = new double[numatoms][3];
+				for (int i = 0; i < numatoms; i++) {
+					if (!readTriple(t, x[i])) {
+						return false;
+					}
 				}
+				List<Atom> atoms = fsystem.getAtomList();
+				for (Atom a : atoms) {
+					int j = a.getXYZIndex() - 1;
+					a.moveTo(x[j][0], x[j][1], x[j][2]);
+				}
+				// Velocities
+				t.nextLine();
+				for (int i = 0; i < numatoms; i++) {
+					if (!readTriple(t, x[i])) {
+						return false;
+					}
+				}
+				double max = 0.0d;
+				for (Atom a : atoms) {
+					int j = a.getXYZIndex() - 1;
+					a.setVeclocity(x[j][0], x[j][1], x[j][2]);
+					double r = VectorMath.r(x[j]);
+					if (r > max) {
+						max = r;
+					}
+				}
+				Atom.setMaxVelocity(max);
+				// Accelerations
+				t.nextLine();
+				for (int i = 0; i < numatoms; i++) {
+					if (!readTriple(t, x[i])) {
+						return false;
+					}
+				}
+				max = 0.0d;
+				for (Atom a : atoms) {
+					int j = a.getXYZIndex() - 1;
+					a.setAcceleration(x[j][0], x[j][1], x[j][2]);
+					double r = VectorMath.r(x[j]);
+					if (r > max) {
+						max = r;
+					}
+				}
+				Atom.setMaxAcceleration(max);
+			} finally {
+				t.close();
 			}
-			Atom.setMaxAcceleration(max);
-			br.close();
-			fr.close();
 		} catch (Exception e) {
 			return false;
 		}
 		return true;
 	}
+
+	/*
+	 * Reads a line of exactly three numbers into d.
+	 */
+	private static boolean readTriple(LineTokenizer t, double d[])
+			throws IOException {
+		if (!t.nextLine() || t.countTokens() != 3) {
+			return false;
+		}
+		d[0] = t.nextDouble();
+		d[1] = t.nextDouble();
+		d[2] = t.nextDouble();
+		return true;
+	}
 }
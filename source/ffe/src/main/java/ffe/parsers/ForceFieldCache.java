@@ -0,0 +1,176 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.parsers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import ffe.mm.ForceField;
+import ffe.mm.ForceFieldSnapshot;
+
+/*
+ * The ForceFieldCache class keeps the ForceFields parsed by this process,
+ * keyed by the path, modification time and length of the parameter file
+ * and a digest of the key file contents. Structures that share a
+ * parameter file and an equivalent key file share one ForceField, which
+ * is not modified after parsing. Each ForceField is also written as a
+ * ForceFieldSnapshot to the directory named by the ffe.forcefield.cache
+ * property (by default ~/.ffe/forcefields), so the next process reads it
+ * back instead of parsing; setting the property to "none" turns the
+ * snapshots off.
+ */
+public final class ForceFieldCache {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	private static final ConcurrentHashMap<String, ForceField> forceFields = new ConcurrentHashMap<String, ForceField>();
+
+	private static final File snapshotDir;
+
+	static {
+		String dir = System.getProperty("ffe.forcefield.cache", System
+				.getProperty("user.home")
+				+ File.separator + ".ffe" + File.separator + "forcefields");
+		snapshotDir = dir.equalsIgnoreCase("none") ? null : new File(dir);
+	}
+
+	private ForceFieldCache() {
+	}
+
+	/*
+	 * Returns the ForceField for the parameter and key files, either of
+	 * which may be null.
+	 */
+	public static ForceField get(File parameterFile, File keyFile) {
+		String key;
+		try {
+			key = key(parameterFile, keyFile);
+		} catch (IOException e) {
+			logger.warning("Force field not cached:\n" + e);
+			return new ForceFieldFilter(parameterFile, keyFile).parse();
+		}
+		ForceField forceField = forceFields.get(key);
+		if (forceField != null) {
+			return forceField;
+		}
+		File snapshot = snapshotDir == null ? null : new File(snapshotDir,
+				digest(key.getBytes()) + ".ffs");
+		if (snapshot != null && snapshot.exists()) {
+			forceField = read(snapshot, key, parameterFile, keyFile);
+		}
+		if (forceField == null) {
+			forceField = new ForceFieldFilter(parameterFile, keyFile).parse();
+			if (snapshot != null) {
+				write(forceField, key, snapshot);
+			}
+		}
+		ForceField cached = forceFields.putIfAbsent(key, forceField);
+		return cached == null ? forceField : cached;
+	}
+
+	/*
+	 * Forgets the ForceFields of this process; snapshots on disk are left
+	 * in place and only matched while their files are unchanged.
+	 */
+	public static void clear() {
+		forceFields.clear();
+	}
+
+	private static String key(File parameterFile, File keyFile)
+			throws IOException {
+		StringBuilder key = new StringBuilder();
+		if (parameterFile != null) {
+			key.append(parameterFile.getCanonicalPath()).append('|').append(
+					parameterFile.lastModified()).append('|').append(
+					parameterFile.length());
+		}
+		key.append('|');
+		if (keyFile != null) {
+			byte contents[] = new byte[(int) keyFile.length()];
+			DataInputStream in = new DataInputStream(new FileInputStream(
+					keyFile));
+			try {
+				in.readFully(contents);
+			} finally {
+				in.close();
+			}
+			key.append(digest(contents));
+		}
+		return key.toString();
+	}
+
+	private static String digest(byte bytes[]) {
+		try {
+			byte d[] = MessageDigest.getInstance("SHA-1").digest(bytes);
+			StringBuilder hex = new StringBuilder();
+			for (int i = 0; i < d.length; i++) {
+				hex.append(Character.forDigit((d[i] >> 4) & 0xf, 16));
+				hex.append(Character.forDigit(d[i] & 0xf, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform provides SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static ForceField read(File snapshot, String key,
+			File parameterFile, File keyFile) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(snapshot)));
+			try {
+				return ForceFieldSnapshot.read(in, key, parameterFile, keyFile);
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			logger.fine("Ignoring force field snapshot " + snapshot + ":\n"
+					+ e);
+			return null;
+		}
+	}
+
+	private static void write(ForceField forceField, String key,
+			File snapshot) {
+		File temp = new File(snapshot.getPath() + ".tmp");
+		try {
+			if (!snapshotDir.isDirectory() && !snapshotDir.mkdirs()) {
+				return;
+			}
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				ForceFieldSnapshot.write(forceField, key, out);
+			} finally {
+				out.close();
+			}
+			// Rename so that readers never see a partial snapshot
+			if (!temp.renameTo(snapshot)) {
+				snapshot.delete();
+				temp.renameTo(snapshot);
+			}
+		} catch (IOException e) {
+			logger.fine("Force field snapshot not written to " + snapshot
+					+ ":\n" + e);
+			temp.delete();
+		}
+	}
+}
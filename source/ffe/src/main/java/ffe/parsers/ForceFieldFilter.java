@@ -13,8 +13,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import ffe.mm.AngleType;
 import ffe.mm.AtomType;
@@ -75,6 +77,28 @@ public class ForceFieldFilter {
 		aminoAcidLookup.put("HEM", "HEM");
 	}
 
+	/*
+	 * Force field keywords by their first token, normalized as by
+	 * keyword(String), so that each line is dispatched with one lookup.
+	 * A name is matched as a String keyword first, then as a double
+	 * keyword, then as a type, so those are put last.
+	 */
+	private static final HashMap<String, Object> keywords = new HashMap<String, Object>();
+
+	static {
+		for (ForceFieldType t : ForceFieldType.values()) {
+			keywords.put(t.name(), t);
+		}
+		for (ForceFieldDouble d : ForceFieldDouble.values()) {
+			keywords.put(d.name(), d);
+		}
+		for (ForceFieldString s : ForceFieldString.values()) {
+			keywords.put(s.name(), s);
+		}
+	}
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
 	private ForceField forceField = null;
 	private Logger logger = Logger.getLogger("ffe");
 	
@@ -100,91 +124,31 @@ public class ForceFieldFilter {
 		return forceField;
 	}
 	
-	private void parse(File file){
+	private void parse(File file) {
 		try {
 			FileInputStream fis = new FileInputStream(file);
 			BufferedReader br = new BufferedReader(new InputStreamReader(fis));
 			while (br.ready()) {
 				String input = br.readLine();
-				String tokens[] = input.trim().split("\\s+");
-				if (tokens != null) {
-					String keyword = tokens[0].toUpperCase().replaceAll("-",
-							"_");
-					// Parse Keywords with String values.
-					try {
-						ForceFieldString forceFieldString = ForceFieldString
-								.valueOf(keyword);
-						forceField.addForceFieldString(forceFieldString,
-								tokens[1]);
-						continue;
-					} catch (Exception e) {
-						// Parse Keywords with double values.
-						try {
-							ForceFieldDouble forceFieldDouble = ForceFieldDouble
-									.valueOf(keyword);
-							double value = Double.parseDouble(tokens[1]);
-							forceField.addForceFieldDouble(forceFieldDouble,
-									value);
-							continue;
-						} catch (Exception e2) {
-							// Parse Force Field Types.
-							try {
-								ForceFieldType type = ForceFieldType
-										.valueOf(tokens[0].toUpperCase());
-								switch (type) {
-								case ATOM:
-									parseAtom(input, tokens);
-									break;
-								case ANGLE:
-									parseAngle(input, tokens);
-									break;
-								case BIOTYPE:
-									parseBioType(input, tokens);
-									break;
-								case BOND:
-									parseBond(input, tokens);
-									break;
-								case CHARGE:
-									parseCharge(input, tokens);
-									break;
-								case MULTIPOLE:
-									parseMultipole(input, tokens, br);
-									break;
-								case OPBEND:
-									parseOPBend(input, tokens);
-									break;
-								case STRBND:
-									parseStrBnd(input, tokens);
-									break;
-								case PITORS:
-									parsePiTorsion(input, tokens);
-									break;
-								case TORSION:
-									parseTorsion(input, tokens);
-									break;
-								case TORTORS:
-									parseTorsionTorsion(input, tokens, br);
-									break;
-								case UREYBRAD:
-									parseUreyBradley(input, tokens);
-									break;
-								case VDW:
-									parseVDW(input, tokens);
-									break;
-								case POLARIZE:
-									parsePolarize(input, tokens);
-									break;
-								default:
-									logger
-											.warning("ForceField type recognized, but not stored:"
-													+ type);
-								}
-								continue;
-							} catch (Exception e3) {
-								//logger.finest("Parsed as a comment: " + input);
-							}
-						}
+				Object keyword = keywords.get(keyword(input));
+				if (keyword == null) {
+					// Comments and unsupported keywords
+					continue;
+				}
+				String tokens[] = WHITESPACE.split(input.trim());
+				try {
+					if (keyword instanceof ForceFieldString) {
+						forceField.addForceFieldString(
+								(ForceFieldString) keyword, tokens[1]);
+					} else if (keyword instanceof ForceFieldDouble) {
+						double value = Double.parseDouble(tokens[1]);
+						forceField.addForceFieldDouble(
+								(ForceFieldDouble) keyword, value);
+					} else {
+						parse((ForceFieldType) keyword, input, tokens, br);
 					}
+				} catch (Exception e) {
+					logger.finest("Parsed as a comment: " + input);
 				}
 			}
 			br.close();
@@ -195,6 +159,74 @@ public class ForceFieldFilter {
 		}
 	}
 
+	/*
+	 * Returns the first token of a line in upper case with dashes replaced
+	 * by underscores, the form of the keyword table entries.
+	 */
+	private static String keyword(String input) {
+		int length = input.length();
+		int from = 0;
+		while (from < length && Character.isWhitespace(input.charAt(from))) {
+			from++;
+		}
+		int to = from;
+		while (to < length && !Character.isWhitespace(input.charAt(to))) {
+			to++;
+		}
+		return input.substring(from, to).toUpperCase().replace('-', '_');
+	}
+
+	private void parse(ForceFieldType type, String input, String tokens[],
+			BufferedReader br) {
+		switch (type) {
+		case ATOM:
+			parseAtom(input, tokens);
+			break;
+		case ANGLE:
+			parseAngle(input, tokens);
+			break;
+		case BIOTYPE:
+			parseBioType(input, tokens);
+			break;
+		case BOND:
+			parseBond(input, tokens);
+			break;
+		case CHARGE:
+			parseCharge(input, tokens);
+			break;
+		case MULTIPOLE:
+			parseMultipole(input, tokens, br);
+			break;
+		case OPBEND:
+			parseOPBend(input, tokens);
+			break;
+		case STRBND:
+			parseStrBnd(input, tokens);
+			break;
+		case PITORS:
+			parsePiTorsion(input, tokens);
+			break;
+		case TORSION:
+			parseTorsion(input, tokens);
+			break;
+		case TORTORS:
+			parseTorsionTorsion(input, tokens, br);
+			break;
+		case UREYBRAD:
+			parseUreyBradley(input, tokens);
+			break;
+		case VDW:
+			parseVDW(input, tokens);
+			break;
+		case POLARIZE:
+			parsePolarize(input, tokens);
+			break;
+		default:
+			logger.warning("ForceField type recognized, but not stored:"
+					+ type);
+		}
+	}
+
 	private void parseAngle(String input, String tokens[]) {
 		if (tokens.length < 6) {
 			logger.warning("Invalid ANGLE type:\n" + input);
@@ -23,6 +23,7 @@ import ffe.lang.MolecularAssembly;
 import ffe.lang.VectorMath;
 import ffe.lang.Utilities.FileType;
 import ffe.mm.AtomType;
+import ffe.mm.CompiledForceField;
 import ffe.mm.ForceField;
 
 /*
@@ -264,6 +265,7 @@ public class INTFilter extends SystemFilter {
 			Vector<int[]> zadd = new Vector<int[]>();
 			Vector<int[]> zdel = new Vector<int[]>();
 			atomList = new ArrayList<Atom>();
+			CompiledForceField compiled = forceField.compile();
 			for (int i = 0; i < numberOfAtoms; i++) {
 				// Atom Data
 				if (!br.ready()) {
@@ -284,8 +286,7 @@ public class INTFilter extends SystemFilter {
 				// Atom number, name, type
 				String name = tokens[1];
 				int type = Integer.parseInt(tokens[2]);
-				AtomType atomType = (AtomType) forceField.getForceFieldType(
-						ForceField.ForceFieldType.ATOM, String.valueOf(type));
+				AtomType atomType = compiled.getAtomType(type);
 				if (atomType == null) {
 					logger.severe("  Check atom " + (i + 1) + " in "
 							+ molecularAssembly.getFile().getName());
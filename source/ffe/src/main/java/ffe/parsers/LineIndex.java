@@ -0,0 +1,226 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.parsers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Logger;
+
+/*
+ * The LineIndex class holds the contents of a file, or of its first
+ * lines, in memory together with the offset of each line. Files whose records can be parsed
+ * independently hand a range of lines to parse(), which splits it into
+ * line aligned chunks and parses them in parallel on the common
+ * ForkJoinPool. The results go into primitive arrays indexed by line or
+ * record, which the filter then assembles sequentially.
+ */
+final class LineIndex {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	private static final int DEFAULT_CHUNK = 4096;
+
+	// Lines per chunk; smaller ranges are parsed on the calling thread
+	private static final int CHUNK = getChunk();
+
+	/*
+	 * Parses the lines of one chunk, reading them with a LineTokenizer
+	 * positioned before the first line.
+	 */
+	interface LineParser {
+		public void parse(LineTokenizer t, int from, int to)
+				throws IOException;
+	}
+
+	// The longest array a file is read into
+	private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+	private final byte[] bytes;
+
+	private int[] starts = new int[1024];
+
+	private int lines = 0;
+
+	LineIndex(File f) throws IOException {
+		this(new FileInputStream(f), f.length(), Integer.MAX_VALUE);
+	}
+
+	/*
+	 * Reads only the first maxLines lines of a file, so a structure can be
+	 * parsed from the head of a file too large to hold in memory.
+	 */
+	LineIndex(File f, int maxLines) throws IOException {
+		this(new FileInputStream(f), f.length(), maxLines);
+	}
+
+	/*
+	 * Reads a stream to its end and indexes its lines.
+	 *
+	 * @param size the length of the stream if known, otherwise -1
+	 */
+	LineIndex(InputStream in, long size) throws IOException {
+		this(in, size, Integer.MAX_VALUE);
+	}
+
+	/*
+	 * Reads and indexes the lines of a stream until maxLines lines are
+	 * complete or the stream ends.
+	 *
+	 * @param size the length of the stream if known, otherwise -1
+	 */
+	LineIndex(InputStream in, long size, int maxLines) throws IOException {
+		int capacity = 65536;
+		if (maxLines == Integer.MAX_VALUE && size > 0) {
+			if (size > MAX_SIZE) {
+				in.close();
+				throw new IOException(
+						"Files larger than 2 GB are not supported.");
+			}
+			capacity = (int) size;
+		}
+		byte[] b = new byte[capacity];
+		int n = 0;
+		int start = 0;
+		try {
+			while (lines < maxLines) {
+				if (n == b.length) {
+					if (b.length == MAX_SIZE) {
+						throw new IOException(
+								"Files larger than 2 GB are not supported.");
+					}
+					byte[] grow = new byte[(int) Math.min(2L * b.length,
+							MAX_SIZE)];
+					System.arraycopy(b, 0, grow, 0, n);
+					b = grow;
+				}
+				int r = in.read(b, n, b.length - n);
+				if (r < 0) {
+					if (start < n) {
+						addLine(start);
+					}
+					break;
+				}
+				for (int i = n; i < n + r; i++) {
+					if (b[i] == '\n') {
+						addLine(start);
+						start = i + 1;
+						if (lines == maxLines) {
+							// Drop the bytes read past the last line
+							r = start - n;
+							break;
+						}
+					}
+				}
+				n += r;
+			}
+		} finally {
+			in.close();
+		}
+		if (n < b.length) {
+			byte[] trim = new byte[n];
+			System.arraycopy(b, 0, trim, 0, n);
+			b = trim;
+		}
+		bytes = b;
+	}
+
+	/*
+	 * Returns the chunk size named by ffe.parse.chunk.
+	 */
+	private static int getChunk() {
+		String chunk = System.getProperty("ffe.parse.chunk");
+		if (chunk == null) {
+			return DEFAULT_CHUNK;
+		}
+		try {
+			int n = Integer.parseInt(chunk.trim());
+			if (n > 0) {
+				return n;
+			}
+		} catch (NumberFormatException e) {
+		}
+		logger.warning("Invalid ffe.parse.chunk \"" + chunk
+				+ "\"; parsing " + DEFAULT_CHUNK + " lines per chunk.");
+		return DEFAULT_CHUNK;
+	}
+
+	private void addLine(int start) {
+		if (lines == starts.length) {
+			int[] grow = new int[2 * lines];
+			System.arraycopy(starts, 0, grow, 0, lines);
+			starts = grow;
+		}
+		starts[lines++] = start;
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public int getLines() {
+		return lines;
+	}
+
+	/*
+	 * Returns a LineTokenizer positioned before a line.
+	 */
+	public LineTokenizer getTokenizer(int line) {
+		LineTokenizer t = new LineTokenizer(bytes);
+		t.seek(line < lines ? starts[line] : bytes.length);
+		return t;
+	}
+
+	/*
+	 * Parses lines [from, to) in parallel chunks.
+	 */
+	public void parse(int from, int to, LineParser parser) {
+		ChunkTask task = new ChunkTask(from, to, parser);
+		if (to - from <= CHUNK) {
+			task.compute();
+		} else {
+			ForkJoinPool.commonPool().invoke(task);
+		}
+	}
+
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		private final LineParser parser;
+
+		ChunkTask(int f, int t, LineParser p) {
+			from = f;
+			to = t;
+			parser = p;
+		}
+
+		protected void compute() {
+			if (to - from <= CHUNK) {
+				try {
+					parser.parse(getTokenizer(from), from, to);
+				} catch (IOException e) {
+					// Lines in memory can not fail to read
+					throw new RuntimeException(e);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ChunkTask(from, mid, parser), new ChunkTask(mid, to,
+					parser));
+		}
+	}
+}
@@ -0,0 +1,636 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.parsers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Logger;
+
+/*
+ * The LineTokenizer class splits the lines of a Tinker file into white
+ * space separated tokens and parses ints and doubles directly from a
+ * reusable byte buffer. Unlike String.split and Double.parseDouble, no
+ * Strings are created unless a token is asked for as a String.
+ *
+ * Fortran "D" exponents, as written in Tinker restart files, are accepted.
+ */
+public final class LineTokenizer {
+
+	private static final Logger logger = Logger.getLogger("ffe");
+
+	// Powers of ten that are exact doubles
+	private static final double[] POW10 = new double[23];
+
+	// Mantissas up to this are exact doubles
+	private static final long MAX_EXACT = 1L << 53;
+
+	// Splits a double into halves whose products are exact
+	private static final double SPLITTER = 134217729.0;
+
+	static {
+		POW10[0] = 1.0;
+		for (int i = 1; i < POW10.length; i++) {
+			POW10[i] = 10.0 * POW10[i - 1];
+		}
+	}
+
+	private InputStream in;
+
+	private byte[] buf = new byte[65536];
+
+	// Number of valid bytes in buf
+	private int limit = 0;
+
+	// Start of the next line
+	private int next = 0;
+
+	private int lineStart = 0;
+
+	// End of the current line, excluding the line terminator
+	private int lineEnd = 0;
+
+	// Parse position within the current line
+	private int pos = 0;
+
+	private boolean eof = false;
+
+	public LineTokenizer(InputStream in) {
+		reset(in);
+	}
+
+	/*
+	 * Creates a LineTokenizer over bytes already in memory, which are
+	 * shared rather than copied.
+	 */
+	public LineTokenizer(byte[] b) {
+		reset(null);
+		buf = b;
+		limit = b.length;
+		eof = true;
+	}
+
+	/*
+	 * Continues from a line start in an in-memory buffer.
+	 */
+	public void seek(int offset) {
+		next = offset;
+		lineStart = lineEnd = pos = offset;
+	}
+
+	/*
+	 * Starts reading from a new stream, reusing the buffer.
+	 */
+	public void reset(InputStream input) {
+		in = input;
+		limit = 0;
+		next = 0;
+		lineStart = 0;
+		lineEnd = 0;
+		pos = 0;
+		eof = false;
+	}
+
+	public void close() throws IOException {
+		if (in != null) {
+			in.close();
+		}
+	}
+
+	/*
+	 * Advances to the next line.
+	 *
+	 * @return false at the end of the stream
+	 */
+	public boolean nextLine() throws IOException {
+		int i = next;
+		while (true) {
+			while (i < limit && buf[i] != '\n') {
+				i++;
+			}
+			if (i < limit || eof) {
+				break;
+			}
+			// Keep the partial line and read more of the stream
+			int shift = next;
+			if (shift > 0) {
+				System.arraycopy(buf, shift, buf, 0, limit - shift);
+				limit -= shift;
+				i -= shift;
+				next = 0;
+			} else if (limit == buf.length) {
+				byte[] grow = new byte[2 * buf.length];
+				System.arraycopy(buf, 0, grow, 0, limit);
+				buf = grow;
+			}
+			int n = in.read(buf, limit, buf.length - limit);
+			if (n < 0) {
+				eof = true;
+			} else {
+				limit += n;
+			}
+		}
+		if (next >= limit) {
+			lineStart = lineEnd = pos = limit;
+			return false;
+		}
+		lineStart = next;
+		lineEnd = i;
+		if (lineEnd > lineStart && buf[lineEnd - 1] == '\r') {
+			lineEnd--;
+		}
+		pos = lineStart;
+		next = Math.min(i + 1, limit);
+		return true;
+	}
+
+	/*
+	 * Advances to the next line that is not blank.
+	 *
+	 * @return false at the end of the stream
+	 */
+	public boolean nextNonBlankLine() throws IOException {
+		while (nextLine()) {
+			if (!isBlank()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isBlank() {
+		for (int i = lineStart; i < lineEnd; i++) {
+			if (!isSpace(buf[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Returns the number of tokens on the current line.
+	 */
+	public int countTokens() {
+		int count = 0;
+		boolean token = false;
+		for (int i = lineStart; i < lineEnd; i++) {
+			boolean space = isSpace(buf[i]);
+			if (!space && !token) {
+				count++;
+			}
+			token = !space;
+		}
+		return count;
+	}
+
+	/*
+	 * Returns to the first token of the current line.
+	 */
+	public void rewind() {
+		pos = lineStart;
+	}
+
+	public boolean hasMoreTokens() {
+		skipSpace();
+		return pos < lineEnd;
+	}
+
+	/*
+	 * True if the next token begins like a number.
+	 */
+	public boolean isNumber() {
+		skipSpace();
+		if (pos >= lineEnd) {
+			return false;
+		}
+		byte b = buf[pos];
+		return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.';
+	}
+
+	public void skipToken() {
+		skipSpace();
+		toTokenEnd();
+	}
+
+	public String nextString() {
+		skipSpace();
+		int start = pos;
+		skipToken();
+		return string(start, pos);
+	}
+
+	/*
+	 * Returns the rest of the current line without leading or trailing
+	 * white space.
+	 */
+	public String getRest() {
+		skipSpace();
+		int end = lineEnd;
+		while (end > pos && isSpace(buf[end - 1])) {
+			end--;
+		}
+		String s = string(pos, end);
+		pos = lineEnd;
+		return s;
+	}
+
+	public String getLine() {
+		return string(lineStart, lineEnd);
+	}
+
+	/*
+	 * Returns the length of the current line.
+	 */
+	public int length() {
+		return lineEnd - lineStart;
+	}
+
+	/*
+	 * Returns the character in a column of the current line, or a space
+	 * beyond its end.
+	 */
+	public char getChar(int column) {
+		int i = lineStart + column;
+		if (i >= lineEnd) {
+			return ' ';
+		}
+		return (char) (buf[i] & 0xff);
+	}
+
+	/*
+	 * True if the current line starts with the ASCII String s.
+	 */
+	public boolean startsWith(String s) {
+		if (s.length() > lineEnd - lineStart) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (buf[lineStart + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The fixed column methods parse the field between two columns of the
+	 * current line, as found in PDB records, ignoring white space around
+	 * it. Columns are numbered from 0 and fields are clipped at the end of
+	 * the line.
+	 */
+	public String getString(int begin, int end) {
+		int e = setField(begin, end);
+		String field = getRest();
+		lineEnd = e;
+		return field;
+	}
+
+	public int getInt(int begin, int end) {
+		int e = setField(begin, end);
+		try {
+			return nextInt();
+		} finally {
+			lineEnd = e;
+		}
+	}
+
+	public double getDouble(int begin, int end) {
+		int e = setField(begin, end);
+		try {
+			return nextDouble();
+		} finally {
+			lineEnd = e;
+		}
+	}
+
+	/*
+	 * Limits parsing to a field, returning the end of the line.
+	 */
+	private int setField(int begin, int end) {
+		int e = lineEnd;
+		pos = Math.min(lineStart + begin, e);
+		lineEnd = Math.min(lineStart + end, e);
+		return e;
+	}
+
+	public int nextInt() {
+		skipSpace();
+		int start = pos;
+		boolean negative = false;
+		if (pos < lineEnd && (buf[pos] == '-' || buf[pos] == '+')) {
+			negative = (buf[pos] == '-');
+			pos++;
+		}
+		long value = 0;
+		int digits = 0;
+		while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9') {
+			value = 10 * value + (buf[pos++] - '0');
+			if (++digits > 10) {
+				break;
+			}
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (digits == 0 || digits > 10 || !atTokenEnd()
+				|| value != (int) value) {
+			toTokenEnd();
+			throw new NumberFormatException("For input string: \""
+					+ string(start, pos) + "\"");
+		}
+		return (int) value;
+	}
+
+	public double nextDouble() {
+		skipSpace();
+		int start = pos;
+		boolean negative = false;
+		if (pos < lineEnd && (buf[pos] == '-' || buf[pos] == '+')) {
+			negative = (buf[pos] == '-');
+			pos++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean any = false;
+		while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9') {
+			any = true;
+			if (digits < 18) {
+				mantissa = 10 * mantissa + (buf[pos] - '0');
+				if (mantissa > 0) {
+					digits++;
+				}
+			} else {
+				exponent++;
+				digits++;
+			}
+			pos++;
+		}
+		if (pos < lineEnd && buf[pos] == '.') {
+			pos++;
+			while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9') {
+				any = true;
+				if (digits < 18) {
+					mantissa = 10 * mantissa + (buf[pos] - '0');
+					exponent--;
+					if (mantissa > 0) {
+						digits++;
+					}
+				} else {
+					digits++;
+				}
+				pos++;
+			}
+		}
+		if (any && pos < lineEnd) {
+			byte b = buf[pos];
+			if (b == 'e' || b == 'E' || b == 'd' || b == 'D') {
+				pos++;
+				boolean negativeExponent = false;
+				if (pos < lineEnd && (buf[pos] == '-' || buf[pos] == '+')) {
+					negativeExponent = (buf[pos] == '-');
+					pos++;
+				}
+				int e = 0;
+				boolean expDigits = false;
+				while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9') {
+					expDigits = true;
+					if (e < 10000) {
+						e = 10 * e + (buf[pos] - '0');
+					}
+					pos++;
+				}
+				if (!expDigits) {
+					any = false;
+				}
+				exponent += negativeExponent ? -e : e;
+			}
+		}
+		if (any && atTokenEnd() && digits <= 18
+				&& Math.abs(exponent) < POW10.length) {
+			double value;
+			if (mantissa <= MAX_EXACT) {
+				// Both the mantissa and the power of ten are exact, so a
+				// single operation gives the correctly rounded result
+				value = mantissa;
+				if (exponent < 0) {
+					value /= POW10[-exponent];
+				} else {
+					value *= POW10[exponent];
+				}
+			} else {
+				// Such as the 16 digits of a d26.16 restart file value
+				value = nearest(mantissa, exponent);
+			}
+			if (!Double.isNaN(value)) {
+				return negative ? -value : value;
+			}
+		}
+		// Over 18 digits, large exponents, near ties, NaN and Infinity
+		toTokenEnd();
+		String s = string(start, pos).replace('d', 'e').replace('D', 'e');
+		return Double.parseDouble(s);
+	}
+
+	/*
+	 * Returns the double nearest to m * 10^e for a mantissa that is not an
+	 * exact double, or NaN if it lies too close to halfway between two
+	 * doubles to decide. A candidate is checked by computing its residual
+	 * exactly with split products, and moved by one ulp at a time.
+	 */
+	private static double nearest(long m, int e) {
+		double p = POW10[Math.abs(e)];
+		double mh = m;
+		// m = mh + ml exactly, since m has at most 63 bits
+		double ml = m - (long) mh;
+		double c = e < 0 ? mh / p : mh * p;
+		for (int i = 0; i < 3; i++) {
+			// r is m * 10^e - c, in units of f
+			double r, f;
+			if (e < 0) {
+				double q = c * p;
+				r = ((mh - q) - productError(c, p, q)) + ml;
+				f = p;
+			} else {
+				double q = mh * p;
+				double s = ml * p;
+				r = (q - c) + ((productError(mh, p, q) + s) + productError(ml,
+						p, s));
+				f = 1.0;
+			}
+			double below = Math.nextAfter(c, Double.NEGATIVE_INFINITY);
+			double above = Math.nextUp(c);
+			double up = 0.5 * (above - c) * f;
+			double down = 0.5 * (c - below) * f;
+			// The error of r is about 2^-40 of the spacing
+			double margin = Math.min(up, down) * 0x1p-20;
+			if (r <= -down - margin) {
+				c = below;
+			} else if (r >= up + margin) {
+				c = above;
+			} else if (r > -down + margin && r < up - margin) {
+				return c;
+			} else {
+				return Double.NaN;
+			}
+		}
+		return Double.NaN;
+	}
+
+	/*
+	 * Returns a * b - q exactly, where q is the rounded product a * b.
+	 */
+	private static double productError(double a, double b, double q) {
+		double t = SPLITTER * a;
+		double ah = t - (t - a);
+		double al = a - ah;
+		t = SPLITTER * b;
+		double bh = t - (t - b);
+		double bl = b - bh;
+		return ((ah * bh - q) + ah * bl + al * bh) + al * bl;
+	}
+
+	private boolean atTokenEnd() {
+		return pos >= lineEnd || isSpace(buf[pos]);
+	}
+
+	private void toTokenEnd() {
+		while (pos < lineEnd && !isSpace(buf[pos])) {
+			pos++;
+		}
+	}
+
+	private void skipSpace() {
+		while (pos < lineEnd && isSpace(buf[pos])) {
+			pos++;
+		}
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+	}
+
+	private String string(int start, int end) {
+		char[] c = new char[end - start];
+		for (int i = 0; i < c.length; i++) {
+			c[i] = (char) (buf[start + i] & 0xff);
+		}
+		return new String(c);
+	}
+
+	/*
+	 * Compares the cost per atom line of String.split and
+	 * Double.parseDouble with that of the LineTokenizer, for XYZ atom lines
+	 * and for the d26.16 lines of a DYN restart file. The parsed DYN values
+	 * must equal those of Double.parseDouble bit for bit.
+	 */
+	public static void main(String[] args) throws Exception {
+		int n = 100000;
+		if (args.length > 0) {
+			n = Integer.parseInt(args[0]);
+		}
+		int loops = 5;
+		if (args.length > 1) {
+			loops = Integer.parseInt(args[1]);
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= n; i++) {
+			sb.append(String.format("%6d  %-3s%12.6f%12.6f%12.6f %7d %7d %7d\n",
+					i, "C", 10.0 * Math.sin(i), -3.0 * Math.cos(i),
+					0.001 * i, 1, Math.max(1, i - 1), Math.min(n, i + 1)));
+		}
+		byte[] bytes = sb.toString().getBytes("US-ASCII");
+		String[] lines = sb.toString().split("\n");
+		sb.setLength(0);
+		for (int i = 1; i <= n; i++) {
+			sb.append(fortran(10.0 * Math.sin(i)));
+			sb.append(fortran(-0.3 * Math.cos(i) / i));
+			sb.append(fortran(1.0e-3 * i * Math.sin(7.0 * i)));
+			sb.append('\n');
+		}
+		byte[] dynBytes = sb.toString().getBytes("US-ASCII");
+		String[] dynLines = sb.toString().split("\n");
+		LineTokenizer t = new LineTokenizer((InputStream) null);
+		for (int l = 1; l <= loops; l++) {
+			double sum = 0.0;
+			long start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				String tokens[] = lines[i].trim().split("\\s+");
+				sum += Integer.parseInt(tokens[0]);
+				sum += Double.parseDouble(tokens[2]);
+				sum += Double.parseDouble(tokens[3]);
+				sum += Double.parseDouble(tokens[4]);
+				for (int j = 5; j < tokens.length; j++) {
+					sum += Integer.parseInt(tokens[j]);
+				}
+			}
+			long split = System.nanoTime() - start;
+			start = System.nanoTime();
+			t.reset(new ByteArrayInputStream(bytes));
+			double check = 0.0;
+			while (t.nextLine()) {
+				check += t.nextInt();
+				t.skipToken();
+				check += t.nextDouble();
+				check += t.nextDouble();
+				check += t.nextDouble();
+				while (t.hasMoreTokens()) {
+					check += t.nextInt();
+				}
+			}
+			long tokenizer = System.nanoTime() - start;
+			logger.info(String.format(
+					" Loop %d: split %8.1f ns/atom, tokenizer %8.1f ns/atom"
+							+ " (checksum difference %g)", l, (double) split
+							/ n, (double) tokenizer / n, sum - check));
+			double dyn[] = new double[3 * n];
+			start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				String tokens[] = dynLines[i].trim().split("\\s+");
+				for (int j = 0; j < 3; j++) {
+					dyn[3 * i + j] = Double.parseDouble(tokens[j].replace('D',
+							'e'));
+				}
+			}
+			split = System.nanoTime() - start;
+			start = System.nanoTime();
+			t.reset(new ByteArrayInputStream(dynBytes));
+			int mismatches = 0;
+			for (int i = 0; t.nextLine(); i++) {
+				for (int j = 0; j < 3; j++) {
+					double d = t.nextDouble();
+					if (Double.doubleToLongBits(d) != Double
+							.doubleToLongBits(dyn[3 * i + j])) {
+						mismatches++;
+					}
+				}
+			}
+			tokenizer = System.nanoTime() - start;
+			logger.info(String.format(
+					" Loop %d: split %8.1f ns/DYN line, tokenizer %8.1f ns/DYN"
+							+ " line (%d mismatches)", l, (double) split / n,
+					(double) tokenizer / n, mismatches));
+		}
+	}
+
+	/*
+	 * Formats a value as Fortran d26.16, as Tinker writes restart files.
+	 */
+	private static String fortran(double x) {
+		if (x == 0.0) {
+			return String.format("%26s", "0.0000000000000000D+00");
+		}
+		String e = String.format("%.15e", Math.abs(x));
+		int exponent = Integer.parseInt(e.substring(e.indexOf('e') + 1)) + 1;
+		String digits = e.substring(0, 1) + e.substring(2, e.indexOf('e'));
+		return String.format("%26s", (x < 0.0 ? "-" : "") + "0." + digits
+				+ String.format("D%+03d", exponent));
+	}
+}
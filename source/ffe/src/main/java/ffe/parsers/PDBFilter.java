@@ -9,13 +9,10 @@
 
 package ffe.parsers;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.Hashtable;
 import java.util.Vector;
@@ -109,34 +106,24 @@ public final class PDBFilter extends SystemFilter {
 	 */
 	public boolean readFile() {
 		FileWriter fw = null;
-		BufferedReader br = null;
 		BufferedWriter bw = null;
 		Logger logger = Logger.getLogger("ffe");
 		molecularAssembly.setFileType(FileType.PDB);
 		try {
 			setFileRead(false);
+			LineIndex index;
 			if (pdbURL == null) {
-				// Open a data stream to the PDB file
+				// Read the PDB file from the local disk
 				File pdbFile = molecularAssembly.getFile();
 				if (pdbFile == null || !pdbFile.exists() || !pdbFile.canRead()) {
 					return false;
 				}
-				FileReader fr = new FileReader(pdbFile);
-				br = new BufferedReader(fr);
+				index = new LineIndex(pdbFile);
 				logger.info("  Opening " + pdbFile.getName());
 			} else {
 				try {
 					URL url = new URL(pdbURL);
-					br = new BufferedReader(new InputStreamReader(url
-							.openStream()));
-					int retry = 0;
-					while (!br.ready() && retry < 10) {
-						synchronized (this) {
-							logger.info("Waiting on Network");
-							wait(50);
-							retry++;
-						}
-					}
+					index = new LineIndex(url.openStream(), -1);
 				} catch (Exception e) {
 					logger.severe(e.toString() + "\n");
 					return false;
@@ -150,12 +137,57 @@ public final class PDBFilter extends SystemFilter {
 					logger.info("  Opening " + pdbFile.getName());
 				}
 			}
-			String rawdata = br.readLine();
+			// Atoms are loaded until the END parameter
+			LineTokenizer t = index.getTokenizer(0);
+			int end = 0;
+			while (t.nextLine() && !t.startsWith("END")) {
+				end++;
+			}
+			// Parse the ATOM and HETATM records in parallel
+			final String identities[] = new String[end];
+			final char altlocs[] = new char[end];
+			final String types[] = new String[end];
+			final String residueTypes[] = new String[end];
+			final String polymerTypes[] = new String[end];
+			final int residueNums[] = new int[end];
+			final double xyz[] = new double[3 * end];
+			index.parse(0, end, new LineIndex.LineParser() {
+				public void parse(LineTokenizer t, int from, int to)
+						throws IOException {
+					for (int l = from; l < to; l++) {
+						t.nextLine();
+						String identity = t.getString(0, 6).toUpperCase()
+								.intern();
+						identities[l] = identity;
+						if (identity != "ATOM" && identity != "HETATM") {
+							continue;
+						}
+						char altloc = Character.toUpperCase(t.getChar(16));
+						altlocs[l] = altloc;
+						if (altloc == ' ' || altloc == 'A') {
+							types[l] = t.getString(12, 16).intern();
+							residueTypes[l] = t.getString(17, 20).intern();
+							residueNums[l] = Integer.decode(t.getString(22, 26))
+									.intValue();
+							char polymer = t.getChar(21);
+							if (polymer == ' ') {
+								polymerTypes[l] = "Blank".intern();
+							} else {
+								polymerTypes[l] = String.valueOf(polymer)
+										.intern();
+							}
+							xyz[3 * l] = t.getDouble(30, 38);
+							xyz[3 * l + 1] = t.getDouble(38, 46);
+							xyz[3 * l + 2] = t.getDouble(46, 54);
+						}
+					}
+				}
+			});
 			// First atom is #1, to match xyz file format
 			int atomnum = 1;
 			Atom a = null;
 			double[] d = new double[3];
-			String altloc, type, polymerType, residueType;
+			String rawdata, type, polymerType, residueType;
 			int residueNum;
 			AtomType atomType;
 			boolean link = false;
@@ -166,34 +198,24 @@ public final class PDBFilter extends SystemFilter {
 			Residue residue = null;
 			Polymer polymer = null;
 			String identity;
-			// While the END parameter is not read in, load atoms
-			while ((rawdata != null) && (!rawdata.startsWith("END"))) {
-				int len = rawdata.length();
-				if (len > 6) {
-					len = 6;
-				}
-				identity = rawdata.substring(0, len).trim().toUpperCase()
-						.intern();
+			// Assemble the atoms and read the remaining records in order
+			t = index.getTokenizer(0);
+			for (int l = 0; l < end; l++) {
+				t.nextLine();
+				identity = identities[l];
 				if (identity == "ATOM" || identity == "HETATM") {
-					altloc = rawdata.substring(16, 17).toUpperCase();
-					if (!altloc.equals(" ")) {
-						molecularAssembly.addAltLocation(altloc);
+					char altloc = altlocs[l];
+					if (altloc != ' ') {
+						molecularAssembly.addAltLocation(String.valueOf(altloc));
 					}
-					if (altloc.equals(" ") || altloc.equals("A")) {
-						type = rawdata.substring(12, 16).trim().intern();
-						residueType = rawdata.substring(17, 20).trim().intern();
-						residueNum = Integer.decode(
-								rawdata.substring(22, 26).trim()).intValue();
-						polymerType = rawdata.substring(21, 22).intern();
-						if (polymerType.equalsIgnoreCase(" ")) {
-							polymerType = "Blank".intern();
-						}
-						d[0] = Double.valueOf(rawdata.substring(30, 38).trim())
-								.doubleValue();
-						d[1] = Double.valueOf(rawdata.substring(38, 46).trim())
-								.doubleValue();
-						d[2] = Double.valueOf(rawdata.substring(46, 54).trim())
-								.doubleValue();
+					if (altloc == ' ' || altloc == 'A') {
+						type = types[l];
+						residueType = residueTypes[l];
+						residueNum = residueNums[l];
+						polymerType = polymerTypes[l];
+						d[0] = xyz[3 * l];
+						d[1] = xyz[3 * l + 1];
+						d[2] = xyz[3 * l + 2];
 						atomType = getAtomType(type);
 						a = new Atom(atomnum++, type, atomType, d, residueType,
 								residueNum, polymerType);
@@ -208,7 +230,14 @@ public final class PDBFilter extends SystemFilter {
 							polymer = (Polymer) a.getMSNode(Polymer.class);
 						}
 					}
-				} else if (identity == "CONECT") {
+					if (bw != null) {
+						bw.write(t.getLine());
+						bw.newLine();
+					}
+					continue;
+				}
+				rawdata = t.getLine();
+				if (identity == "CONECT") {
 					link = true;
 					connect = new String[2];
 					connect[0] = new String(rawdata.substring(7, 11).trim());
@@ -273,13 +302,11 @@ public final class PDBFilter extends SystemFilter {
 					bw.write(rawdata);
 					bw.newLine();
 				}
-				rawdata = br.readLine();
 			}
 			if (bw != null) {
 				bw.flush();
 				bw.close();
 			}
-			br.close();
 			atomnum--;
 			logger.info("  Read " + atomnum + " atoms");
 			// Assign Secondary Structure Based on PDB Info
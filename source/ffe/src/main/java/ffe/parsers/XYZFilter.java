@@ -9,13 +9,13 @@
 
 package ffe.parsers;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.logging.Logger;
@@ -27,8 +27,8 @@ import ffe.lang.Bond;
 import ffe.lang.MolecularAssembly;
 import ffe.lang.Utilities.FileType;
 import ffe.mm.AtomType;
+import ffe.mm.CompiledForceField;
 import ffe.mm.ForceField;
-import ffe.mm.ForceField.ForceFieldType;
 
 /*
  * The XYZFilter class parses Tinker Cartesian Coordinate (*.XYZ) files
@@ -39,61 +39,45 @@ public class XYZFilter extends SystemFilter {
 			return false;
 		}
 		try {
-			FileReader fr = new FileReader(newFile);
-			BufferedReader br = new BufferedReader(fr);
-			String data = br.readLine();
-			if (data == null) {
+			LineTokenizer t = new LineTokenizer(new FileInputStream(newFile));
+			if (!t.nextLine()) {
+				t.close();
 				return false;
 			}
-			String tokens[] = data.trim().split("\\s+");
-			int num_atoms = Integer.parseInt(tokens[0]);
+			int num_atoms = t.nextInt();
 			if (num_atoms != oldSystem.getAtomList().size()) {
+				t.close();
 				return false;
 			}
 			double d[][] = new double[3][num_atoms];
-			double box[] = new double[6];
 			for (int i = 0; i < num_atoms; i++) {
-				if (!br.ready()) {
-					return false;
-				}
-				data = br.readLine();
-				if (data == null) {
-					Logger.getLogger("ffe").warning("Check atom " + (i + 1));
-					return false;
-				}
-				tokens = data.trim().split("\\s+");
-				if (tokens == null || tokens.length < 6) {
+				if (!t.nextLine() || t.countTokens() < 6) {
 					Logger.getLogger("ffe").warning("Check atom " + (i + 1));
+					t.close();
 					return false;
 				}
 
-				// Try to parse the first line for cell dimensions
+				// Skip a line of cell dimensions before the first atom
 				if (i == 0) {
-					try {
-						box[0] = Double.parseDouble(tokens[0]);
-						box[1] = Double.parseDouble(tokens[1]);
-						box[2] = Double.parseDouble(tokens[2]);
-						box[3] = Double.parseDouble(tokens[3]);
-						box[4] = Double.parseDouble(tokens[4]);
-						box[5] = Double.parseDouble(tokens[5]);
-						data = br.readLine();
-						if (data == null) {
-							Logger.getLogger("ffe").warning("Check atom " + (i + 1));
-							return false;
-						}
-						tokens = data.trim().split("\\s+");
-						if (tokens == null || tokens.length < 6) {
+					t.skipToken();
+					boolean box = t.isNumber();
+					t.rewind();
+					if (box) {
+						if (!t.nextLine() || t.countTokens() < 6) {
 							Logger.getLogger("ffe").warning("Check atom " + (i + 1));
+							t.close();
 							return false;
 						}
-					} catch(NumberFormatException e) {
 					}
 				}
 
-				d[0][i] = Double.parseDouble(tokens[2]);
-				d[1][i] = Double.parseDouble(tokens[3]);
-				d[2][i] = Double.parseDouble(tokens[4]);
+				t.skipToken();
+				t.skipToken();
+				d[0][i] = t.nextDouble();
+				d[1][i] = t.nextDouble();
+				d[2][i] = t.nextDouble();
 			}
+			t.close();
 			double[] x = new double[3];
 			ArrayList<Atom> atoms = oldSystem.getAtomList();
 			for (Atom a : atoms) {
@@ -105,8 +89,6 @@ public class XYZFilter extends SystemFilter {
 			}
 			oldSystem.center();
 			oldSystem.setFile(newFile);
-			br.close();
-			fr.close();
 			return true;
 		} catch (Exception e) {
 			return false;
@@ -140,132 +122,136 @@ public class XYZFilter extends SystemFilter {
 			return false;
 		}
 		try {
-			FileReader fr = new FileReader(xyzFile);
-			BufferedReader br = new BufferedReader(fr);
-			String data = br.readLine();
-			// Read blank lines at the top of the file
-			while (data != null && data.trim().equals("")) {
-				data = br.readLine();
-			}
-			if (data == null) {
-				return false;
-			}
-			String tokens[] = data.trim().split("\\s+", 2);
-			int numberOfAtoms = Integer.parseInt(tokens[0]);
-			if (numberOfAtoms < 1) {
-				return false;
-			}
-			if (tokens.length == 2) {
-				getMolecularSystem().setName(tokens[1]);
+			// Stream the header; only the first structure is read into
+			// memory, since archives are indexed by ArchiveFrameStore
+			LineTokenizer t = new LineTokenizer(new FileInputStream(xyzFile));
+			final int numberOfAtoms;
+			int line = 0;
+			try {
+				// Read blank lines at the top of the file
+				boolean found = false;
+				while (t.nextLine()) {
+					if (!t.isBlank()) {
+						found = true;
+						break;
+					}
+					line++;
+				}
+				if (!found) {
+					return false;
+				}
+				numberOfAtoms = t.nextInt();
+				if (numberOfAtoms < 1) {
+					return false;
+				}
+				if (t.hasMoreTokens()) {
+					getMolecularSystem().setName(t.getRest());
+				}
+				line++;
+				// Skip a line of cell dimensions before the first atom
+				if (t.nextLine() && t.countTokens() >= 6) {
+					t.skipToken();
+					if (t.isNumber()) {
+						line++;
+					}
+				}
+			} finally {
+				t.close();
 			}
 			logger.info("  Opening " + xyzFile.getName() + " with "
 					+ numberOfAtoms + " atoms");
-			// The header line is reasonable; prepare to parse atom lines	
+			final int first = line;
+			LineIndex index = new LineIndex(xyzFile, (int) Math.min(
+					(long) first + numberOfAtoms, Integer.MAX_VALUE));
+			// The header line is reasonable; parse the atom lines in parallel
+			final int label[] = new int[numberOfAtoms];
+			final String names[] = new String[numberOfAtoms];
+			final double xyz[] = new double[3 * numberOfAtoms];
+			final int types[] = new int[numberOfAtoms];
+			final int bonds[][] = new int[numberOfAtoms][8];
+			final boolean valid[] = new boolean[numberOfAtoms];
+			index.parse(first, Math.min(first + numberOfAtoms, index.getLines()),
+					new LineIndex.LineParser() {
+						public void parse(LineTokenizer t, int from, int to)
+								throws IOException {
+							for (int l = from; l < to; l++) {
+								t.nextLine();
+								int i = l - first;
+								if (t.countTokens() < 6) {
+									continue;
+								}
+								try {
+									label[i] = t.nextInt();
+									names[i] = t.nextString();
+									xyz[3 * i] = t.nextDouble();
+									xyz[3 * i + 1] = t.nextDouble();
+									xyz[3 * i + 2] = t.nextDouble();
+									types[i] = t.nextInt();
+									for (int b = 0; b < 8; b++) {
+										if (t.hasMoreTokens()) {
+											bonds[i][b] = t.nextInt();
+										}
+									}
+									valid[i] = true;
+								} catch (NumberFormatException e) {
+									valid[i] = false;
+								}
+							}
+						}
+					});
 			Hashtable<Integer, Integer> labelHash = new Hashtable<Integer, Integer>();
-			int label[] = new int[numberOfAtoms];
-			int bonds[][] = new int[numberOfAtoms][8];
 			double d[] = new double[3];
-			double box[] = new double[6];
 			boolean renumber = false;
 			atomList = new ArrayList<Atom>();
+			CompiledForceField compiled = forceField.compile();
 			// Loop over the expected number of atoms
 			for (int i = 0; i < numberOfAtoms; i++) {
-				if (!br.ready()) {
-					return false;
-				}
-				data = br.readLine();
-				if (data == null) {
-					logger.warning("Check atom " + (i + 1) + " in "
-							+ molecularAssembly.getFile().getName());
-					return false;
-				}
-				tokens = data.trim().split("\\s+");
-				if (tokens == null || tokens.length < 6) {
+				if (!valid[i]) {
 					logger.warning("Check atom " + (i + 1) + " in "
 							+ molecularAssembly.getFile().getName());
 					return false;
 				}
-
-				// Try to parse the first line for cell dimensions
-				if (i == 0) {
-					try {
-						box[0] = Double.parseDouble(tokens[0]);
-						box[1] = Double.parseDouble(tokens[1]);
-						box[2] = Double.parseDouble(tokens[2]);
-						box[3] = Double.parseDouble(tokens[3]);
-						box[4] = Double.parseDouble(tokens[4]);
-						box[5] = Double.parseDouble(tokens[5]);
-						data = br.readLine();
-						if (data == null) {
-							logger.warning("Check atom " + (i + 1) + " in "
-									+ molecularAssembly.getFile().getName());
-							return false;
-						}
-						tokens = data.trim().split("\\s+");
-						if (tokens == null || tokens.length < 6) {
-							logger.warning("Check atom " + (i + 1) + " in "
-									+ molecularAssembly.getFile().getName());
-							return false;
-						}
-					} catch(NumberFormatException e) {
-					}
-				}
-
-                                // Parse the line to get the current atom values
-				label[i] = Integer.parseInt(tokens[0]);
 				// Check for valid atom numbering, or flag for re-numbering.
 				if (label[i] != i + 1) {
 					renumber = true;
 				}
-				String atomName = tokens[1];
-				d[0] = Double.parseDouble(tokens[2]);
-				d[1] = Double.parseDouble(tokens[3]);
-				d[2] = Double.parseDouble(tokens[4]);
-				int type = Integer.parseInt(tokens[5]);
-				AtomType atomType = (AtomType) forceField.getForceFieldType(
-						ForceFieldType.ATOM, Integer.toString(type));
+				AtomType atomType = compiled.getAtomType(types[i]);
 				if (atomType == null) {
 					logger.warning("Check Atom Type for Atom " + (i + 1)
 							+ " in " + molecularAssembly.getFile().getName());
 					return false;
 				}
-				Atom a = new Atom(i + 1, atomName, atomType, d);
+				d[0] = xyz[3 * i];
+				d[1] = xyz[3 * i + 1];
+				d[2] = xyz[3 * i + 2];
+				Atom a = new Atom(i + 1, names[i], atomType, d);
 				atomList.add(a);
-				// Bond Data
-				int numberOfBonds = tokens.length - 6;
-				for (int b = 0; b < 8; b++) {
-					if (b < numberOfBonds) {
-						int bond = Integer.parseInt(tokens[6 + b]);
-						bonds[i][b] = bond;
-					} else {
-						bonds[i][b] = 0;
-					}
-				}
 			}
-			// Check if this is an archive
-			if (br.ready()) {
-				// Read past blank lines between archive files
-				data = br.readLine().trim();
-				while (data != null && data.equals("") && br.ready()) {
-					data = br.readLine().trim();
+			// Check if this is an archive, streaming from the end of the
+			// first structure
+			InputStream rest = new FileInputStream(xyzFile);
+			long skip = index.getBytes().length;
+			while (skip > 0) {
+				long n = rest.skip(skip);
+				if (n <= 0) {
+					break;
 				}
-				if (data != null && !data.equals("")) {
-					tokens = data.split("\\s+", 2);
-					if (tokens != null && tokens.length > 0) {
-						try {
-							int archiveNumberOfAtoms = Integer
-									.parseInt(tokens[0]);
-							if (archiveNumberOfAtoms == numberOfAtoms) {
-								setType(FileType.ARC);
-							}
-						} catch (Exception e) {
-							tokens = null;
+				skip -= n;
+			}
+			t = new LineTokenizer(rest);
+			try {
+				if (skip == 0 && t.nextNonBlankLine()) {
+					try {
+						int archiveNumberOfAtoms = t.nextInt();
+						if (archiveNumberOfAtoms == numberOfAtoms) {
+							setType(FileType.ARC);
 						}
+					} catch (NumberFormatException e) {
 					}
 				}
+			} finally {
+				t.close();
 			}
-			br.close();
-			fr.close();
 			// Try to renumber
 			if (renumber) {
 				for (int i = 0; i < numberOfAtoms; i++) {
@@ -337,106 +323,17 @@ public class XYZFilter extends SystemFilter {
 	}
 
 	public boolean readtrajectory() {
-		// If the first entry was read successfully, reopen the
-		// archive file and read the rest of the coordinates
+		// If the first entry was read successfully, index the rest of the
+		// archive; frames are parsed when they are displayed
 		try {
 			Logger logger = Logger.getLogger("ffe");
 			logger.info("Trying to parse " + molecularAssembly.getFile() + " as an archive.");
-			BufferedReader bin = new BufferedReader(new FileReader(
-					molecularAssembly.getFile()));
-			String data = null;
-			int numatoms = atomList.size();
-			int cycle = 1;
-			double box[] = new double[6];
-			double coords[][] = new double[numatoms][3];
-			
-			// Read past the first coordinate set
-			for (int i = 0; i < numatoms + 1; i++) {
-				data = bin.readLine();
-				while (data != null && data.trim().equals("")) {
-					data = bin.readLine();
-				}
-				String[] tokens = data.trim().split("\\s+");
-				if (i == 1) {
-					try {
-						box[0] = Double.parseDouble(tokens[0]);
-						box[1] = Double.parseDouble(tokens[1]);
-						box[2] = Double.parseDouble(tokens[2]);
-						box[3] = Double.parseDouble(tokens[3]);
-						box[4] = Double.parseDouble(tokens[4]);
-						box[5] = Double.parseDouble(tokens[5]);
-						data = bin.readLine();
-					} catch(NumberFormatException e) {
-					}
-				}
-			}
-			
-			while (bin.ready()) {
-				data = bin.readLine();
-				// Read past blank lines
-				while (data != null && data.trim().equals("")) {
-					data = bin.readLine();
-				}
-				String[] tokens = data.trim().split("\\s+");
-				try {
-					int num = Integer.parseInt(data.trim().split("\\s+")[0]);
-					if (num != numatoms) {
-						logger.warning(num + " atoms for archive entry " + cycle + " is not equal to " + numatoms + "."
-								+ "Only the first " + (cycle - 1) + " entries were read.");
-						return true;
-					}
-				} catch (Exception e) {
-					logger.severe(e.toString());
-					return false;
-				}
-				for (int i = 0; i < numatoms; i++) {
-					data = bin.readLine();
-					// Read past blank lines
-					while (data != null && data.trim().equals("")) {
-						data = bin.readLine();
-					}	
-					tokens = data.trim().split("\\s+");
-					if (tokens == null || tokens.length < 6) {
-						logger.warning("Check atom " + (i + 1) + ", archive entry "
-								+ (cycle + 1) + " in "
-								+ molecularAssembly.getFile().getName());
-						return false;
-					}
-					if (i == 0) {
-						try {
-							box[0] = Double.parseDouble(tokens[0]);
-							box[1] = Double.parseDouble(tokens[1]);
-							box[2] = Double.parseDouble(tokens[2]);
-							box[3] = Double.parseDouble(tokens[3]);
-							box[4] = Double.parseDouble(tokens[4]);
-							box[5] = Double.parseDouble(tokens[5]);
-							data = bin.readLine();
-							while (data != null && data.trim().equals("")) {
-								data = bin.readLine();
-							}	
-							tokens = data.trim().split("\\s+");
-							if (tokens == null || tokens.length < 6) {
-								logger.warning("Check atom " + (i + 1) + ", archive entry "
-										+ (cycle + 1) + " in "
-										+ molecularAssembly.getFile().getName());
-								return false;
-							}
-						} catch(NumberFormatException e) {
-						}
-					}
-					coords[i][0] = Double.parseDouble(tokens[2]);
-					coords[i][1] = Double.parseDouble(tokens[3]);
-					coords[i][2] = Double.parseDouble(tokens[4]);
-				}
-				for (Atom a : atomList) {
-					int i = a.xyzindex - 1;
-					Vector3d v3d = new Vector3d(coords[i][0], coords[i][1],
-							coords[i][2]);
-					a.addTrajectoryCoords(v3d, cycle);
-				}
-				cycle++;
+			ArchiveFrameStore frameStore = new ArchiveFrameStore(
+					molecularAssembly.getFile(), atomList.size());
+			if (frameStore.getFrames() == 0) {
+				return false;
 			}
-			molecularAssembly.setCycles(cycle);
+			molecularAssembly.setFrameStore(frameStore);
 			molecularAssembly.setFileType(FileType.ARC);
 			setFileRead(true);
 			return true;
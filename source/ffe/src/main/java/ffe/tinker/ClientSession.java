@@ -0,0 +1,196 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.tinker;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/*
+ * The ClientSession class holds the state of one FFEClient connected to a
+ * TinkerServer: its channel, the codec that frames its messages and the
+ * requests it is waiting on. The encoded output of the codec is the send
+ * queue of the session; while it has not drained, newer TinkerUpdates
+ * are not encoded, so a slow client only ever receives the latest frame.
+ *
+ * A client that subscribes is pushed every newer TinkerUpdate, no more
+ * often than its requested frame rate, without sending further requests.
+ */
+final class ClientSession {
+
+	private SocketChannel channel;
+
+	private SelectionKey key;
+
+	private MessageCodec codec;
+
+	// The most recent UPDATE request that has not been answered
+	private FFEMessage updateRequest = null;
+
+	private FFEMessage systemRequest = null;
+
+	private boolean closing = false;
+
+	private boolean subscribed = false;
+
+	// Minimum time between pushed frames (ns)
+	private long interval = 0;
+
+	private long lastPush = 0;
+
+	ClientSession(SocketChannel c, SelectionKey k) {
+		channel = c;
+		key = k;
+		codec = new FrameCodec();
+	}
+
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	/*
+	 * True if the client is waiting for a TinkerUpdate.
+	 */
+	public boolean hasUpdateRequest() {
+		return updateRequest != null;
+	}
+
+	public boolean isClosing() {
+		return closing;
+	}
+
+	/*
+	 * Reads and decodes the requests that have arrived from the client.
+	 *
+	 * @return false if the client has gone away
+	 */
+	public boolean read() throws IOException {
+		if (codec.read(channel) < 0) {
+			return false;
+		}
+		if (codec instanceof FrameCodec
+				&& ((FrameCodec) codec).isLegacyStream()) {
+			codec = ((FrameCodec) codec).toLegacyCodec();
+			write();
+		}
+		FFEMessage message;
+		while ((message = codec.readMessage()) != null) {
+			if (message.getMessage() == FFEMessage.CLOSING) {
+				closing = true;
+				return false;
+			} else if (message.getMessage() == FFEMessage.SYSTEM) {
+				systemRequest = message;
+			} else if (message.getMessage() == FFEMessage.UPDATE) {
+				if (!subscribed) {
+					updateRequest = message;
+				}
+			} else if (message.getMessage() == FFEMessage.SUBSCRIBE) {
+				int rate = ((FrameCodec) codec).getFrameRate();
+				interval = rate > 0 ? 1000000000L / rate : 0;
+				subscribed = true;
+				// The subscription acknowledges the client's latest frame
+				updateRequest = new FFEMessage(FFEMessage.UPDATE);
+				updateRequest.setTime(message.getTime());
+				updateRequest.setStep(message.getStep());
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Encodes a response to the outstanding request, if any, provided the
+	 * previous response has been fully written.
+	 *
+	 * @return the time in milliseconds until a rate limited frame may be
+	 *         pushed, or 0 if nothing is waiting on the clock
+	 */
+	public long service(TinkerSystem system, TinkerUpdate update)
+			throws IOException {
+		if (codec.hasPendingOutput()) {
+			return 0;
+		}
+		if (systemRequest != null && system != null) {
+			synchronized (system) {
+				codec.writeSystem(systemRequest, system);
+			}
+			systemRequest = null;
+		} else if (updateRequest != null && update != null
+				&& update.isNewer(updateRequest)) {
+			if (subscribed) {
+				long wait = lastPush + interval - System.nanoTime();
+				if (wait > 0) {
+					return Math.max(1, wait / 1000000L);
+				}
+				lastPush = System.nanoTime();
+			}
+			synchronized (update) {
+				codec.writeUpdate(updateRequest, update);
+				if (subscribed) {
+					// The next push is relative to this frame
+					updateRequest.setTime(update.time);
+					updateRequest.setStep(update.step);
+				}
+			}
+			if (!subscribed) {
+				updateRequest = null;
+			}
+		}
+		write();
+		return 0;
+	}
+
+	/*
+	 * Writes as much of the send queue as the channel accepts, and
+	 * registers interest in writing until the queue has drained.
+	 */
+	public boolean write() throws IOException {
+		boolean drained = codec.write(channel);
+		if (key.isValid()) {
+			if (drained) {
+				key.interestOps(SelectionKey.OP_READ);
+			} else {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+		return drained;
+	}
+
+	/*
+	 * Queues the final system, update and closing messages sent when the
+	 * server shuts down.
+	 */
+	public void lastUpdate(TinkerSystem system, TinkerUpdate update)
+			throws IOException {
+		FFEMessage last = new FFEMessage(FFEMessage.SYSTEM);
+		if (system != null) {
+			codec.writeSystem(last, system);
+		}
+		if (update != null) {
+			last.setMessage(FFEMessage.UPDATE);
+			codec.writeUpdate(last, update);
+		}
+		last.setMessage(FFEMessage.CLOSING);
+		codec.writeMessage(last);
+		closing = true;
+	}
+
+	public void close() {
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			return;
+		}
+	}
+
+	public String toString() {
+		return channel.toString();
+	}
+}
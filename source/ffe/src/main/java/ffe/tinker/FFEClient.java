@@ -9,24 +9,47 @@
 
 package ffe.tinker;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.util.logging.Logger;
 
+import javax.swing.SwingUtilities;
+
 /*
  * The FFEClient class encapsulates a socket connection to an TinkerServer
  * started by an executing Tinker program; TinkerSystem and TinkerUpdate
- * objects are sent by the TinkerServer to the FFEClient on request
+ * objects are sent by the TinkerServer to the FFEClient on request.
+ * By default the binary frame protocol of the FrameCodec is used over a
+ * SocketChannel; setting the "ffe.tinker.legacy" property to true falls
+ * back to Java serialization for Tinker builds that predate it.
+ *
+ * Rather than requesting each update, a client may subscribe once; the
+ * server then pushes updates, which a reader thread decodes before
+ * notifying a listener on the Swing event dispatch thread.
  */
 
-public class FFEClient {
+public class FFEClient implements Runnable {
 	private static final Logger logger = Logger.getLogger("ffe");
 
-	private Socket client; // Socket connection to the server
+	private boolean legacy = Boolean.parseBoolean(System.getProperty(
+			"ffe.tinker.legacy", "false"));
+
+	// Request quantized coordinate deltas against the last update received
+	private boolean delta = Boolean.parseBoolean(System.getProperty(
+			"ffe.tinker.delta", "true"));
+
+	private SocketChannel channel; // Channel to the server
+
+	private FrameCodec codec; // Binary frame protocol
+
+	private Socket client; // Legacy socket connection to the server
 
 	private InetSocketAddress address; // Server address
 
@@ -53,7 +76,16 @@ public class FFEClient {
 
 	// closed is True if the server closes an open connection
 	// or if the retryLimit is reached
-	private boolean closed = false;
+	private volatile boolean closed = false;
+
+	// True once updates are pushed by the server
+	private volatile boolean subscribed = false;
+
+	private Thread reader;
+
+	private ActionListener listener;
+
+	private volatile boolean eventPending = false;
 
 	public FFEClient() {
 		address = new InetSocketAddress(2000);
@@ -77,6 +109,42 @@ public class FFEClient {
 		}
 		closed = false;
 		connectionMade = false;
+		if (legacy) {
+			connectLegacy();
+			return;
+		}
+		try {
+			channel = SocketChannel.open();
+			channel.socket().connect(address, 100);
+			channel.socket().setTcpNoDelay(true);
+			channel.configureBlocking(false);
+			codec = new FrameCodec();
+			if (Boolean.parseBoolean(System.getProperty("ffe.tinker.float",
+					"false"))) {
+				codec.setFlags(FrameCodec.FLOAT32);
+			}
+			if (delta) {
+				codec.setFlags(codec.getFlags() | FrameCodec.DELTA);
+			}
+			connectionMade = true;
+			logger.info("Connected to Tinker Server: " + channel);
+		} catch (Exception e) {
+			connectionMade = false;
+			logger.info("Connection to Tinker Server Failed: " + address);
+			try {
+				channel.close();
+			} catch (Exception ex) {
+				channel = null;
+			}
+			channel = null;
+		} finally {
+			if (!isConnected()) {
+				release();
+			}
+		}
+	}
+
+	private void connectLegacy() {
 		client = new Socket();
 		try {
 			client.connect(address, 100);
@@ -98,13 +166,35 @@ public class FFEClient {
 		}
 	}
 
+	/*
+	 * Notifies the listener on the event dispatch thread, unless an
+	 * earlier notification is still waiting to be delivered.
+	 */
+	private void fireUpdate() {
+		if (listener == null || eventPending) {
+			return;
+		}
+		eventPending = true;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				eventPending = false;
+				listener.actionPerformed(new ActionEvent(FFEClient.this,
+						ActionEvent.ACTION_PERFORMED, "Update"));
+			}
+		});
+	}
+
 	public TinkerSystem getSystem() {
-		readSocket();
+		if (!subscribed) {
+			readSocket();
+		}
 		return system;
 	}
 
 	public TinkerUpdate getUpdate() {
-		readSocket();
+		if (!subscribed) {
+			readSocket();
+		}
 		return update;
 	}
 
@@ -113,13 +203,28 @@ public class FFEClient {
 	}
 
 	public boolean isConnected() {
+		if (channel != null && channel.isConnected()) {
+			return true;
+		}
 		if (client != null && client.isConnected()) {
 			return true;
 		}
 		return false;
 	}
 
+	public boolean isLegacy() {
+		return legacy;
+	}
+
+	public boolean isSubscribed() {
+		return subscribed;
+	}
+
 	public void readSocket() {
+		if (!legacy) {
+			readChannel();
+			return;
+		}
 		try {
 			while (oin != null && in.available() > 0) {
 				Object o = oin.readObject();
@@ -162,7 +267,135 @@ public class FFEClient {
 		}
 	}
 
+	private void readChannel() {
+		try {
+			if (channel == null) {
+				return;
+			}
+			if (codec.read(channel) < 0) {
+				closed = true;
+				release();
+				return;
+			}
+			while (channel != null && (message = codec.readMessage()) != null) {
+				if (message.getMessage() == FFEMessage.SYSTEM) {
+					system = codec.getSystem();
+				} else if (message.getMessage() == FFEMessage.UPDATE) {
+					update = codec.getUpdate();
+				} else if (message.getMessage() == FFEMessage.CLOSING) {
+					closed = true;
+					release();
+				}
+			}
+			if (channel == null) {
+				return;
+			}
+			if (system == null) {
+				message = new FFEMessage(FFEMessage.SYSTEM);
+				codec.writeMessage(message);
+				codec.flush(channel);
+			} else if (update == null || update.read) {
+				message = new FFEMessage(FFEMessage.UPDATE);
+				if (update != null) {
+					if (update.type == TinkerUpdate.SIMULATION) {
+						message.setTime(update.time);
+					} else {
+						message.setStep(update.step);
+					}
+				}
+				codec.writeMessage(message);
+				codec.flush(channel);
+			}
+		} catch (Exception e) {
+			logger.warning("Exception reading data from Tinker\n" + e.toString());
+			release();
+		}
+	}
+
+	/*
+	 * Decodes pushed messages until the connection closes.
+	 */
+	public void run() {
+		try {
+			while (!closed) {
+				FrameCodec c = codec;
+				if (c == null || c.read(channel) < 0) {
+					break;
+				}
+				boolean received = false;
+				FFEMessage m;
+				while ((m = c.readMessage()) != null) {
+					if (m.getMessage() == FFEMessage.SYSTEM) {
+						system = c.getSystem();
+						received = true;
+					} else if (m.getMessage() == FFEMessage.UPDATE) {
+						update = c.getUpdate();
+						received = true;
+					} else if (m.getMessage() == FFEMessage.CLOSING) {
+						closed = true;
+					}
+				}
+				if (received) {
+					fireUpdate();
+				}
+			}
+		} catch (Exception e) {
+			if (!closed) {
+				logger.warning("Exception reading data from Tinker\n"
+						+ e.toString());
+			}
+		}
+		closed = true;
+		fireUpdate();
+	}
+
+	/*
+	 * Asks the server to push updates carrying the given fields no more
+	 * than rate times per second; the listener is notified on the event
+	 * dispatch thread as they arrive.
+	 *
+	 * @return false if the connection does not support subscriptions
+	 */
+	public boolean subscribe(int rate, int fields, ActionListener l) {
+		if (subscribed) {
+			return true;
+		}
+		if (legacy || channel == null) {
+			return false;
+		}
+		try {
+			FFEMessage subscribe = new FFEMessage(FFEMessage.SUBSCRIBE);
+			// Acknowledge the latest update so deltas can continue from it
+			if (update != null) {
+				if (update.type == TinkerUpdate.SIMULATION) {
+					subscribe.setTime(update.time);
+				} else {
+					subscribe.setStep(update.step);
+				}
+			}
+			listener = l;
+			codec.setMask(fields);
+			codec.writeSubscribe(subscribe, rate);
+			channel.configureBlocking(true);
+			codec.flush(channel);
+			subscribed = true;
+			reader = new Thread(this, "FFEClient Reader");
+			reader.setDaemon(true);
+			reader.start();
+		} catch (Exception e) {
+			logger.warning("Subscription to Tinker Server Failed\n"
+					+ e.toString());
+			release();
+			return false;
+		}
+		return true;
+	}
+
 	public void release() {
+		if (channel != null) {
+			releaseChannel();
+			return;
+		}
 		if (client == null) {
 			return;
 		}
@@ -206,4 +439,40 @@ public class FFEClient {
 			client = null;
 		}
 	}
+
+	private void releaseChannel() {
+		retryCount++;
+		if (retryCount > retryLimit || connectionMade) {
+			closed = true;
+		}
+		try {
+			if (channel.isConnected()) {
+				codec.writeMessage(new FFEMessage(FFEMessage.CLOSING));
+				codec.write(channel);
+			}
+		} catch (Exception e) {
+			codec = null;
+		}
+		try {
+			channel.close();
+		} catch (Exception e) {
+			channel = null;
+		} finally {
+			channel = null;
+			codec = null;
+			subscribed = false;
+		}
+	}
+
+	public void setDelta(boolean d) {
+		if (!isConnected()) {
+			delta = d;
+		}
+	}
+
+	public void setLegacy(boolean l) {
+		if (!isConnected()) {
+			legacy = l;
+		}
+	}
 }
@@ -27,6 +27,9 @@ public class FFEMessage implements Serializable {
 
 	public static int OK = 3;
 
+	// Binary protocol only; the server pushes updates until CLOSING
+	public static int SUBSCRIBE = 4;
+
 	private int message = 0;
 
 	private int step = -1;
@@ -82,6 +85,8 @@ public class FFEMessage implements Serializable {
 			return new String("UPDATE").intern();
 		} else if (message == 2) {
 			return new String("CLOSING").intern();
+		} else if (message == 4) {
+			return new String("SUBSCRIBE").intern();
 		} else {
 			return new String("OK").intern();
 		}
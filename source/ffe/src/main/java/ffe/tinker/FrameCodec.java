@@ -0,0 +1,621 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.tinker;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/*
+ * The FrameCodec class implements the binary TinkerServer/FFEClient
+ * protocol. Every frame starts with a fixed 32 byte little-endian header:
+ *
+ *   int    magic ("FFEB")
+ *   short  protocol version
+ *   short  message (FFEMessage.SYSTEM, UPDATE, CLOSING or OK)
+ *   int    flags (FLOAT32)
+ *   int    field mask (TinkerUpdate.COORDINATES, VELOCITY, ...)
+ *   int    step
+ *   int    payload length in bytes
+ *   double time
+ *
+ * Requests from a client carry no payload; their flags and field mask
+ * select the precision and the arrays the server includes in the
+ * TinkerUpdate frames it sends back. A SUBSCRIBE request carries the
+ * maximum frame rate at which the server should push updates. Arrays are packed as the x, y and z
+ * rows of their [3][numatoms] layout.
+ *
+ * A client that sets the DELTA flag acknowledges the frame it holds through
+ * the time or step of its UPDATE request. If that frame is the last one
+ * sent, coordinates are sent as per-atom zigzag varints of their change in
+ * units of QUANTUM, otherwise (and every keyframeInterval frames) a full
+ * keyframe is sent. Both ends apply the same quantized steps to the same
+ * reference coordinates, so the error never exceeds half a QUANTUM.
+ */
+final class FrameCodec extends MessageCodec {
+
+	public static final int MAGIC = 0x42454646;
+
+	public static final short VERSION = 1;
+
+	public static final int HEADER_SIZE = 32;
+
+	// Send TinkerUpdate arrays as 32-bit floats rather than doubles
+	public static final int FLOAT32 = 0x1;
+
+	// Send TinkerUpdate coordinates as quantized deltas
+	public static final int DELTA = 0x2;
+
+	// Coordinate resolution of delta frames (Angstroms)
+	public static final double QUANTUM = 1.0e-3;
+
+	private static final int UPDATE_SCALARS = 4 * 4 + 8 * 8;
+
+	// Negotiated frame options; set locally by a client and
+	// learned from the latest request by a server
+	private int flags = 0;
+
+	private int mask = TinkerUpdate.ALL_FIELDS;
+
+	private TinkerSystem system = null;
+
+	private TinkerUpdate update = null;
+
+	private boolean frameRead = false;
+
+	// Coordinates the peer holds after the last frame sent
+	private double[][] reference = null;
+
+	private double referenceTime;
+
+	private int referenceStep;
+
+	private int sinceKeyframe = 0;
+
+	// Maximum frames per second requested by a subscription
+	private int frameRate = 0;
+
+	private int keyframeInterval = 100;
+
+	public FrameCodec() {
+		super(64 * 1024);
+		try {
+			keyframeInterval = Integer.parseInt(System.getProperty(
+					"ffe.tinker.keyframe", "100"));
+		} catch (Exception e) {
+			keyframeInterval = 100;
+		}
+	}
+
+	public int getFrameRate() {
+		return frameRate;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public int getMask() {
+		return mask;
+	}
+
+	/*
+	 * Returns the TinkerSystem decoded from the most recent SYSTEM frame.
+	 */
+	public TinkerSystem getSystem() {
+		return system;
+	}
+
+	/*
+	 * Returns the TinkerUpdate decoded from the most recent UPDATE frame.
+	 * The same instance is refilled by later frames of the same shape.
+	 */
+	public TinkerUpdate getUpdate() {
+		return update;
+	}
+
+	/*
+	 * True if the bytes received so far are the start of a Java
+	 * serialization stream, i.e. the peer is a legacy FFE build.
+	 */
+	public boolean isLegacyStream() {
+		if (frameRead || in.position() < 2) {
+			return false;
+		}
+		return in.get(0) == (byte) 0xAC && in.get(1) == (byte) 0xED;
+	}
+
+	/*
+	 * Hands the bytes received so far to a LegacyCodec.
+	 */
+	public LegacyCodec toLegacyCodec() throws IOException {
+		return new LegacyCodec(in);
+	}
+
+	public void setFlags(int f) {
+		flags = f;
+	}
+
+	public void setMask(int m) {
+		mask = m;
+	}
+
+	public FFEMessage readMessage() throws IOException {
+		in.flip();
+		try {
+			int start = in.position();
+			if (in.remaining() < HEADER_SIZE) {
+				return null;
+			}
+			int magic = in.getInt(start);
+			if (magic != MAGIC) {
+				throw new IOException("Unexpected frame magic: "
+						+ Integer.toHexString(magic));
+			}
+			short version = in.getShort(start + 4);
+			if (version > VERSION) {
+				throw new IOException("Unsupported protocol version: "
+						+ version);
+			}
+			int length = in.getInt(start + 20);
+			// The length comes from the peer; the end of the frame must be
+			// an int position past the header
+			if (length < 0 || length > Integer.MAX_VALUE - HEADER_SIZE - start) {
+				throw new IOException("Invalid frame length: " + length);
+			}
+			if (in.remaining() < HEADER_SIZE + length) {
+				return null;
+			}
+			frameRead = true;
+			FFEMessage message = new FFEMessage(in.getShort(start + 6));
+			int frameFlags = in.getInt(start + 8);
+			int frameMask = in.getInt(start + 12);
+			message.setStep(in.getInt(start + 16));
+			message.setTime(in.getDouble(start + 24));
+			int end = start + HEADER_SIZE + length;
+			int limit = in.limit();
+			in.position(start + HEADER_SIZE);
+			// The payload may not read into the next frame
+			in.limit(end);
+			try {
+				if (length == 0) {
+					// A request; remember how the peer wants its updates
+					if (message.getMessage() == FFEMessage.UPDATE
+							|| message.getMessage() == FFEMessage.SYSTEM) {
+						flags = frameFlags;
+						mask = frameMask;
+					}
+				} else if (message.getMessage() == FFEMessage.SUBSCRIBE) {
+					flags = frameFlags;
+					mask = frameMask;
+					frameRate = in.getInt();
+				} else if (message.getMessage() == FFEMessage.SYSTEM) {
+					system = getSystem(in);
+				} else if (message.getMessage() == FFEMessage.UPDATE) {
+					TinkerUpdate u = update;
+					if (u == null) {
+						update = getUpdate(in, null, frameFlags, frameMask);
+					} else {
+						// The previous update may be in use by another thread
+						synchronized (u) {
+							update = getUpdate(in, u, frameFlags, frameMask);
+						}
+					}
+				}
+			} catch (BufferUnderflowException e) {
+				throw new IOException("Frame payload shorter than its contents: "
+						+ length + " bytes");
+			} finally {
+				in.limit(limit);
+			}
+			in.position(end);
+			return message;
+		} finally {
+			in.compact();
+		}
+	}
+
+	public void writeMessage(FFEMessage message) {
+		beginOutput(HEADER_SIZE);
+		putHeader(message, flags, mask);
+		endOutput();
+	}
+
+	/*
+	 * Writes a SUBSCRIBE request using the current flags and field mask.
+	 */
+	public void writeSubscribe(FFEMessage message, int rate) {
+		beginOutput(HEADER_SIZE + 4);
+		int start = putHeader(message, flags, mask);
+		out.putInt(rate);
+		out.putInt(start + 20, 4);
+		endOutput();
+	}
+
+	public void writeSystem(FFEMessage message, TinkerSystem s)
+			throws IOException {
+		beginOutput(HEADER_SIZE + 8 + 64 * s.numatoms);
+		int start = putHeader(message, 0, 0);
+		int n = s.numatoms;
+		out.putInt(n);
+		out.putInt(s.numkeys);
+		putString(s.file);
+		putString(s.forcefield);
+		for (int i = 0; i < s.numkeys; i++) {
+			putString(s.keywords[i]);
+		}
+		for (int i = 0; i < 3; i++) {
+			putArray(s.coordinates[i], n, false);
+		}
+		for (int i = 0; i < 4; i++) {
+			putArray(s.connectivity[i], n);
+		}
+		putArray(s.types, n);
+		for (int i = 0; i < n; i++) {
+			putString(s.name[i]);
+		}
+		for (int i = 0; i < n; i++) {
+			putString(s.story[i]);
+		}
+		putArray(s.charge, n, false);
+		putArray(s.mass, n, false);
+		putArray(s.atomic, n);
+		out.putInt(start + 20, out.position() - start - HEADER_SIZE);
+		endOutput();
+	}
+
+	public void writeUpdate(FFEMessage message, TinkerUpdate u) {
+		int fields = mask & u.getFields();
+		boolean single = (flags & FLOAT32) != 0;
+		boolean delta = isAcknowledged(message, u, fields);
+		int frameFlags = delta ? flags : flags & ~DELTA;
+		int n = u.numatoms;
+		int size = UPDATE_SCALARS + Integer.bitCount(fields) * 3 * n
+				* (single ? 4 : 8);
+		beginOutput(HEADER_SIZE + size);
+		int start = putHeader(message, frameFlags, fields);
+		out.putInt(u.type);
+		out.putInt(n);
+		out.putInt(u.amoeba ? 1 : 0);
+		out.putInt(u.step);
+		out.putDouble(u.time);
+		out.putDouble(u.temperature);
+		out.putDouble(u.energy);
+		out.putDouble(u.potential);
+		out.putDouble(u.kinetic);
+		out.putDouble(u.intermolecular);
+		out.putDouble(u.pressure);
+		out.putDouble(u.density);
+		if (delta) {
+			putDelta(u.coordinates, n);
+		} else {
+			putField(fields, TinkerUpdate.COORDINATES, u.coordinates, n, single);
+			if ((flags & DELTA) != 0 && (fields & TinkerUpdate.COORDINATES) != 0) {
+				setReference(u.coordinates, n, single);
+			}
+		}
+		referenceTime = u.time;
+		referenceStep = u.step;
+		putField(fields, TinkerUpdate.VELOCITY, u.velocity, n, single);
+		putField(fields, TinkerUpdate.ACCELERATION, u.acceleration, n, single);
+		putField(fields, TinkerUpdate.GRADIENTS, u.gradients, n, single);
+		putField(fields, TinkerUpdate.INDUCED, u.induced, n, single);
+		out.putInt(start + 20, out.position() - start - HEADER_SIZE);
+		endOutput();
+	}
+
+	/*
+	 * True if the request acknowledges the last frame sent, such that
+	 * the coordinates of u can be sent as deltas against it.
+	 */
+	private boolean isAcknowledged(FFEMessage request, TinkerUpdate u,
+			int fields) {
+		if ((flags & DELTA) == 0 || (fields & TinkerUpdate.COORDINATES) == 0) {
+			return false;
+		}
+		if (reference == null || reference[0].length != u.numatoms
+				|| sinceKeyframe >= keyframeInterval) {
+			return false;
+		}
+		if (u.type == TinkerUpdate.SIMULATION) {
+			return request.getTime() == referenceTime;
+		}
+		return request.getStep() == referenceStep;
+	}
+
+	private void setReference(double[][] a, int n, boolean single) {
+		if (reference == null || reference[0].length != n) {
+			reference = new double[3][n];
+		}
+		for (int i = 0; i < 3; i++) {
+			double[] r = reference[i];
+			double[] x = a[i];
+			for (int j = 0; j < n; j++) {
+				r[j] = single ? (double) (float) x[j] : x[j];
+			}
+		}
+		sinceKeyframe = 0;
+	}
+
+	private void putDelta(double[][] a, int n) {
+		out = ensureRemaining(out, 8 + 15 * n);
+		out.putDouble(QUANTUM);
+		double[] x = a[0];
+		double[] y = a[1];
+		double[] z = a[2];
+		double[] rx = reference[0];
+		double[] ry = reference[1];
+		double[] rz = reference[2];
+		for (int i = 0; i < n; i++) {
+			int dx = (int) Math.round((x[i] - rx[i]) / QUANTUM);
+			int dy = (int) Math.round((y[i] - ry[i]) / QUANTUM);
+			int dz = (int) Math.round((z[i] - rz[i]) / QUANTUM);
+			rx[i] += dx * QUANTUM;
+			ry[i] += dy * QUANTUM;
+			rz[i] += dz * QUANTUM;
+			putVarint(dx);
+			putVarint(dy);
+			putVarint(dz);
+		}
+		sinceKeyframe++;
+	}
+
+	private void putVarint(int v) {
+		int zigzag = (v << 1) ^ (v >> 31);
+		while ((zigzag & ~0x7F) != 0) {
+			out.put((byte) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		out.put((byte) zigzag);
+	}
+
+	private int putHeader(FFEMessage message, int f, int m) {
+		int start = out.position();
+		out.putInt(MAGIC);
+		out.putShort(VERSION);
+		out.putShort((short) message.getMessage());
+		out.putInt(f);
+		out.putInt(m);
+		out.putInt(message.getStep());
+		out.putInt(0);
+		out.putDouble(message.getTime());
+		return start;
+	}
+
+	private void putField(int fields, int field, double[][] a, int n,
+			boolean single) {
+		if ((fields & field) == 0) {
+			return;
+		}
+		for (int i = 0; i < 3; i++) {
+			putArray(a[i], n, single);
+		}
+	}
+
+	private void putArray(double[] a, int n, boolean single) {
+		int position = out.position();
+		if (single) {
+			out = ensureRemaining(out, 4 * n);
+			FloatBuffer f = out.asFloatBuffer();
+			for (int i = 0; i < n; i++) {
+				f.put((float) a[i]);
+			}
+			out.position(position + 4 * n);
+		} else {
+			out = ensureRemaining(out, 8 * n);
+			out.asDoubleBuffer().put(a, 0, n);
+			out.position(position + 8 * n);
+		}
+	}
+
+	private void putArray(int[] a, int n) {
+		int position = out.position();
+		out = ensureRemaining(out, 4 * n);
+		out.asIntBuffer().put(a, 0, n);
+		out.position(position + 4 * n);
+	}
+
+	private void putString(String s) throws UnsupportedEncodingException {
+		if (s == null) {
+			out = ensureRemaining(out, 4);
+			out.putInt(-1);
+			return;
+		}
+		byte[] b = s.getBytes("UTF-8");
+		out = ensureRemaining(out, 4 + b.length);
+		out.putInt(b.length);
+		out.put(b);
+	}
+
+	private static TinkerSystem getSystem(ByteBuffer b) throws IOException {
+		int n = getCount(b);
+		int k = getCount(b);
+		TinkerSystem s = new TinkerSystem(n, k);
+		s.file = getString(b);
+		s.forcefield = getString(b);
+		for (int i = 0; i < k; i++) {
+			s.keywords[i] = getString(b);
+		}
+		for (int i = 0; i < 3; i++) {
+			getArray(b, s.coordinates[i], n, false);
+		}
+		for (int i = 0; i < 4; i++) {
+			getArray(b, s.connectivity[i], n);
+		}
+		getArray(b, s.types, n);
+		for (int i = 0; i < n; i++) {
+			s.name[i] = getString(b);
+		}
+		for (int i = 0; i < n; i++) {
+			s.story[i] = getString(b);
+		}
+		getArray(b, s.charge, n, false);
+		getArray(b, s.mass, n, false);
+		getArray(b, s.atomic, n);
+		s.read = false;
+		return s;
+	}
+
+	private static TinkerUpdate getUpdate(ByteBuffer b, TinkerUpdate u,
+			int frameFlags, int fields) throws IOException {
+		int type = b.getInt();
+		int n = getCount(b);
+		boolean amoeba = b.getInt() != 0;
+		boolean delta = (frameFlags & DELTA) != 0;
+		// True if the previous frame was never consumed
+		boolean pending = u != null && !u.read;
+		if (u == null || u.type != type || u.numatoms != n
+				|| u.amoeba != amoeba) {
+			if (delta) {
+				throw new IOException("Delta frame received without a keyframe");
+			}
+			u = new TinkerUpdate(n, type, amoeba);
+		}
+		boolean single = (frameFlags & FLOAT32) != 0;
+		u.step = b.getInt();
+		u.time = b.getDouble();
+		u.temperature = b.getDouble();
+		u.energy = b.getDouble();
+		u.potential = b.getDouble();
+		u.kinetic = b.getDouble();
+		u.intermolecular = b.getDouble();
+		u.pressure = b.getDouble();
+		u.density = b.getDouble();
+		if (delta) {
+			getDelta(b, u, n, pending);
+		} else {
+			u.coordinates = getField(b, fields, TinkerUpdate.COORDINATES,
+					u.coordinates, n, single);
+		}
+		u.velocity = getField(b, fields, TinkerUpdate.VELOCITY, u.velocity, n,
+				single);
+		u.acceleration = getField(b, fields, TinkerUpdate.ACCELERATION,
+				u.acceleration, n, single);
+		u.gradients = getField(b, fields, TinkerUpdate.GRADIENTS,
+				u.gradients, n, single);
+		u.induced = getField(b, fields, TinkerUpdate.INDUCED, u.induced, n,
+				single);
+		if (!delta) {
+			u.moved = null;
+		}
+		u.read = false;
+		return u;
+	}
+
+	/*
+	 * Applies a delta frame to the coordinates of the previous frame,
+	 * marking the atoms whose quantized position changed. If the previous
+	 * frame was never consumed, its marks are kept as well.
+	 */
+	private static void getDelta(ByteBuffer b, TinkerUpdate u, int n,
+			boolean pending) {
+		double quantum = b.getDouble();
+		// An unconsumed keyframe already marks every atom as moved
+		boolean all = pending && u.moved == null;
+		if (u.moved == null || u.moved.length != n) {
+			u.moved = new boolean[n];
+			pending = false;
+		}
+		double[] x = u.coordinates[0];
+		double[] y = u.coordinates[1];
+		double[] z = u.coordinates[2];
+		boolean[] moved = u.moved;
+		for (int i = 0; i < n; i++) {
+			int dx = getVarint(b);
+			int dy = getVarint(b);
+			int dz = getVarint(b);
+			x[i] += dx * quantum;
+			y[i] += dy * quantum;
+			z[i] += dz * quantum;
+			moved[i] = (dx | dy | dz) != 0 || (pending && moved[i]);
+		}
+		if (all) {
+			u.moved = null;
+		}
+	}
+
+	private static int getVarint(ByteBuffer b) {
+		int zigzag = 0;
+		int shift = 0;
+		byte v;
+		do {
+			v = b.get();
+			zigzag |= (v & 0x7F) << shift;
+			shift += 7;
+		} while (v < 0);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	private static double[][] getField(ByteBuffer b, int fields, int field,
+			double[][] a, int n, boolean single) {
+		if ((fields & field) == 0) {
+			return a;
+		}
+		if (a == null) {
+			a = new double[3][n];
+		}
+		for (int i = 0; i < 3; i++) {
+			getArray(b, a[i], n, single);
+		}
+		return a;
+	}
+
+	private static void getArray(ByteBuffer b, double[] a, int n,
+			boolean single) {
+		int position = b.position();
+		if (single) {
+			FloatBuffer f = b.asFloatBuffer();
+			for (int i = 0; i < n; i++) {
+				a[i] = f.get();
+			}
+			b.position(position + 4 * n);
+		} else {
+			DoubleBuffer d = b.asDoubleBuffer();
+			d.get(a, 0, n);
+			b.position(position + 8 * n);
+		}
+	}
+
+	private static void getArray(ByteBuffer b, int[] a, int n) {
+		int position = b.position();
+		b.asIntBuffer().get(a, 0, n);
+		b.position(position + 4 * n);
+	}
+
+	/*
+	 * Reads a count of atoms or keywords sent by the peer. Each counted item
+	 * takes at least one byte, so a count beyond the rest of the payload
+	 * is rejected before arrays are allocated for it.
+	 */
+	private static int getCount(ByteBuffer b) throws IOException {
+		int n = b.getInt();
+		if (n < 0 || n > b.remaining()) {
+			throw new IOException("Invalid count in frame: " + n);
+		}
+		return n;
+	}
+
+	private static String getString(ByteBuffer b)
+			throws UnsupportedEncodingException {
+		int length = b.getInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > b.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		b.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
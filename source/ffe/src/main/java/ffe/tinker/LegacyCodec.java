@@ -0,0 +1,127 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.tinker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/*
+ * The LegacyCodec class speaks the original Java serialization protocol
+ * so that FFE builds predating the binary frame format can still connect
+ * to a TinkerServer. Serialized bytes are staged through the same
+ * direct buffers as the FrameCodec, so a legacy client never blocks the
+ * server.
+ */
+final class LegacyCodec extends MessageCodec {
+
+	private static final byte[] STREAM_HEADER = { (byte) 0xAC, (byte) 0xED,
+			0x00, 0x05 };
+
+	private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+	private ObjectOutputStream oout;
+
+	private boolean headerRead = false;
+
+	/*
+	 * Creates a LegacyCodec that continues from the bytes already received
+	 * by a FrameCodec, and queues the stream header the client waits for.
+	 */
+	LegacyCodec(ByteBuffer received) throws IOException {
+		super(4096);
+		received.flip();
+		in = ensureRemaining(in, received.remaining());
+		in.put(received);
+		oout = new ObjectOutputStream(bytes);
+		oout.flush();
+		drain();
+	}
+
+	public FFEMessage readMessage() throws IOException {
+		in.flip();
+		try {
+			if (!headerRead) {
+				if (in.remaining() < STREAM_HEADER.length) {
+					return null;
+				}
+				for (int i = 0; i < STREAM_HEADER.length; i++) {
+					if (in.get() != STREAM_HEADER[i]) {
+						throw new StreamCorruptedException(
+								"Invalid stream header");
+					}
+				}
+				headerRead = true;
+			}
+			while (in.hasRemaining()) {
+				// Every legacy request follows a reset, so each one can be
+				// decoded from a fresh stream; an EOF means it is incomplete
+				byte[] b = new byte[STREAM_HEADER.length + in.remaining()];
+				System.arraycopy(STREAM_HEADER, 0, b, 0, STREAM_HEADER.length);
+				in.duplicate().get(b, STREAM_HEADER.length, in.remaining());
+				ByteArrayInputStream bin = new ByteArrayInputStream(b);
+				Object o;
+				try {
+					ObjectInputStream oin = new ObjectInputStream(bin);
+					o = oin.readObject();
+				} catch (EOFException e) {
+					return null;
+				} catch (ClassNotFoundException e) {
+					throw new IOException(e.toString());
+				}
+				in.position(in.limit() - bin.available());
+				if (o instanceof FFEMessage) {
+					return (FFEMessage) o;
+				}
+			}
+			return null;
+		} finally {
+			in.compact();
+		}
+	}
+
+	public void writeMessage(FFEMessage message) throws IOException {
+		oout.reset();
+		oout.writeObject(message);
+		oout.flush();
+		drain();
+	}
+
+	public void writeSystem(FFEMessage message, TinkerSystem system)
+			throws IOException {
+		oout.reset();
+		oout.writeObject(message);
+		oout.writeObject(system);
+		oout.flush();
+		drain();
+	}
+
+	public void writeUpdate(FFEMessage message, TinkerUpdate update)
+			throws IOException {
+		oout.reset();
+		oout.writeObject(message);
+		oout.writeObject(update);
+		oout.flush();
+		drain();
+	}
+
+	private void drain() {
+		byte[] b = bytes.toByteArray();
+		bytes.reset();
+		beginOutput(b.length);
+		out.put(b);
+		endOutput();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * <p>Title: Force Field Explorer</p>
+ * <p>Description: Force Field Explorer Molecular Modeling Program</p>
+ * <p>Copyright: Copyright (c) 2004-2021 Jay William Ponder</p>
+ * <p>Institution: Jay Ponder Lab, Washington University in Saint Louis</p>
+ * @author Michael J. Schnieders
+ * @version 8.10
+ */
+
+package ffe.tinker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/*
+ * The MessageCodec class moves FFEMessage, TinkerSystem and TinkerUpdate
+ * objects between a SocketChannel and a pair of direct ByteBuffers. The
+ * FrameCodec subclass speaks the binary frame protocol, while the
+ * LegacyCodec subclass speaks Java serialization for older clients.
+ */
+abstract class MessageCodec {
+
+	// Bytes received from the channel, left in "write" mode between reads
+	protected ByteBuffer in;
+
+	// Bytes waiting to be sent, left in "read" mode between writes
+	protected ByteBuffer out;
+
+	protected MessageCodec(int capacity) {
+		in = allocate(capacity);
+		out = allocate(capacity);
+		out.flip();
+	}
+
+	protected static ByteBuffer allocate(int capacity) {
+		ByteBuffer b = ByteBuffer.allocateDirect(capacity);
+		b.order(ByteOrder.LITTLE_ENDIAN);
+		return b;
+	}
+
+	/*
+	 * Returns a buffer in "write" mode with room for at least n more bytes,
+	 * copying the contents of b if it has to grow.
+	 */
+	protected static ByteBuffer ensureRemaining(ByteBuffer b, int n) {
+		if (b.remaining() >= n) {
+			return b;
+		}
+		int capacity = b.capacity();
+		while (capacity - b.position() < n) {
+			capacity *= 2;
+		}
+		ByteBuffer g = allocate(capacity);
+		b.flip();
+		g.put(b);
+		return g;
+	}
+
+	/*
+	 * Reads whatever bytes are available from the channel.
+	 *
+	 * @return the number of bytes read, or -1 at end of stream
+	 */
+	public int read(SocketChannel channel) throws IOException {
+		in = ensureRemaining(in, 4096);
+		return channel.read(in);
+	}
+
+	/*
+	 * Writes as much pending output as the channel accepts.
+	 *
+	 * @return true if all pending output has been written
+	 */
+	public boolean write(SocketChannel channel) throws IOException {
+		if (out.hasRemaining()) {
+			channel.write(out);
+		}
+		return !out.hasRemaining();
+	}
+
+	/*
+	 * Writes all pending output, yielding while the channel is full.
+	 */
+	public void flush(SocketChannel channel) throws IOException {
+		while (!write(channel)) {
+			Thread.yield();
+		}
+	}
+
+	public boolean hasPendingOutput() {
+		return out.hasRemaining();
+	}
+
+	/*
+	 * Returns the next complete message from the input, or null if a
+	 * complete message has not arrived yet.
+	 */
+	public abstract FFEMessage readMessage() throws IOException;
+
+	public abstract void writeMessage(FFEMessage message) throws IOException;
+
+	public abstract void writeSystem(FFEMessage message, TinkerSystem system)
+			throws IOException;
+
+	public abstract void writeUpdate(FFEMessage message, TinkerUpdate update)
+			throws IOException;
+
+	/*
+	 * Opens pending output for appending a message of at least n bytes.
+	 */
+	protected void beginOutput(int n) {
+		out.compact();
+		out = ensureRemaining(out, n);
+	}
+
+	protected void endOutput() {
+		out.flip();
+	}
+}
@@ -9,134 +9,123 @@
 
 package ffe.tinker;
 
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.ListIterator;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import java.util.Vector;
 import java.util.logging.Logger;
 
 
 /*
  * The TinkerServer is launched by Tinker executables to allow
- * Force Field Explorer Clients to connect.
+ * Force Field Explorer Clients to connect. Clients speak the binary
+ * frame protocol of the FrameCodec; a client whose first bytes are a
+ * Java serialization stream header is switched to the LegacyCodec.
+ *
+ * A single Selector thread accepts, reads and writes for every client.
+ * The simulation thread only hands over new TinkerUpdates and wakes the
+ * Selector, so it is never held up by a slow client.
  */
 
 public class TinkerServer implements Runnable {
 
 	private Logger logger = Logger.getLogger("ffe");
-	
-	private static FFEMessage closing = new FFEMessage(FFEMessage.CLOSING);
 
-	private ServerSocket server;
+	private ServerSocketChannel server;
+
+	private Selector selector;
 
 	private int serverPort = 2000;
 
-	private int serverTimeout = 100;
+	// Number of selector passes allowed for final messages to drain
+	private int closeTimeout = 100;
 
 	private Thread thread;
 
-	private int sleepTime = 1;
-
-	private boolean init = true;
-
-	private int cycle = 0;
-
-	private boolean shutdown = false;
-
-	private boolean request = false;
+	private volatile boolean shutdown = false;
 
-	private Vector<Socket> clients = new Vector<Socket>();
+	private volatile boolean request = false;
 
-	private Vector<ObjectOutputStream> outputs = new Vector<ObjectOutputStream>();
-
-	private Vector<ObjectInputStream> inputs = new Vector<ObjectInputStream>();
+	private Vector<ClientSession> sessions = new Vector<ClientSession>();
 
 	private TinkerSystem system = null;
 
-	private TinkerUpdate update = null;
+	private volatile TinkerUpdate update = null;
 
 	public TinkerServer(TinkerSystem s) {
 		system = s;
 	}
 
 	private void accept() {
-		Socket client = null;
-		ObjectInputStream oin = null;
-		ObjectOutputStream oout = null;
-		if (server != null) {
-			try {
-				client = server.accept();
-				if (client != null && client.isConnected()) {
-					client.setTcpNoDelay(true);
-					clients.add(client);
-					oin = new ObjectInputStream(client.getInputStream());
-					inputs.add(oin);
-					oout = new ObjectOutputStream(client.getOutputStream());
-					outputs.add(oout);
-					Logger.getLogger("ffe").info(
-							"Client connected\n" + client.toString());
-				}
-			} catch (Exception e) {
-				if (client != null) {
-					clients.remove(client);
-				}
-				if (oout != null) {
-					outputs.remove(oout);
-				}
-				if (oin != null) {
-					inputs.remove(oin);
-				}
-			}
-		}
-	}
-
-	private void closeClient(int index) {
-		Socket client = clients.get(index);
-		ObjectOutputStream oout = outputs.get(index);
-		ObjectInputStream oin = inputs.get(index);
+		SocketChannel client = null;
 		try {
-			oout.reset();
-			oout.writeObject(closing);
-			oout.flush();
+			while ((client = server.accept()) != null) {
+				client.configureBlocking(false);
+				client.socket().setTcpNoDelay(true);
+				SelectionKey key = client.register(selector,
+						SelectionKey.OP_READ);
+				ClientSession session = new ClientSession(client, key);
+				key.attach(session);
+				sessions.add(session);
+				logger.info("Client connected\n" + client.toString());
+			}
 		} catch (Exception e) {
-			try {
-				outputs.remove(index);
-				inputs.remove(index);
-				clients.remove(index);
-				if (oout != null) {
-					oout.close();
-				}
-				if (oin != null) {
-					oin.close();
-				}
-				if (client != null) {
+			if (client != null) {
+				try {
 					client.close();
+				} catch (Exception ex) {
+					return;
 				}
-			} catch (Exception ex) {
-				return;
 			}
 		}
 	}
 
+	private void closeClient(ClientSession session) {
+		sessions.remove(session);
+		session.close();
+	}
+
 	private void closeServer() {
-		for (int i = 0; i < clients.size(); i++) {
-			lastUpdate(i);
+		for (ClientSession session : sessions.toArray(new ClientSession[0])) {
+			try {
+				session.lastUpdate(system, update);
+				session.write();
+			} catch (Exception e) {
+				logger.severe("" + e);
+				closeClient(session);
+			}
 		}
-		while (!clients.isEmpty()) {
-			closeClient(0);
+		// Give the final messages a bounded amount of time to drain
+		for (int i = 0; i < closeTimeout && !sessions.isEmpty(); i++) {
 			try {
-				synchronized (this) {
-					wait(10);
+				selector.select(10);
+			} catch (IOException e) {
+				break;
+			}
+			select();
+			for (ClientSession session : sessions
+					.toArray(new ClientSession[0])) {
+				try {
+					if (session.write()) {
+						closeClient(session);
+					}
+				} catch (Exception e) {
+					closeClient(session);
 				}
-			} catch (Exception e) {
-				Logger.getLogger("ffe").severe(e.toString());
 			}
 		}
+		while (!sessions.isEmpty()) {
+			closeClient(sessions.get(0));
+		}
 		try {
+			if (selector != null) {
+				selector.close();
+			}
 			if (server != null) {
 				server.close();
 				server = null;
@@ -156,137 +145,98 @@ public class TinkerServer implements Runnable {
 		}
 	}
 
-	private void lastUpdate(int index) {
-		try {
-			ObjectOutputStream oout = outputs.get(index);
-			Socket client = clients.get(index);
-			if (client != null && client.isConnected() && oout != null) {
-				FFEMessage last = new FFEMessage(FFEMessage.SYSTEM);
-				if (system != null) {
-					oout.reset();
-					oout.writeObject(last);
-					oout.writeObject(system);
-					oout.flush();
-				}
-				if (update != null) {
-					oout.reset();
-					last.setMessage(FFEMessage.UPDATE);
-					oout.writeObject(last);
-					oout.writeObject(update);
-					oout.flush();
-				}
-				last.setMessage(FFEMessage.CLOSING);
-				oout.reset();
-				oout.writeObject(last);
-				oout.flush();
-			}
-		} catch (Exception e) {
-			logger.severe("" + e);
-		}
-	}
-
 	public void loadUpdate(TinkerUpdate u) {
 		update = u;
+		if (selector != null) {
+			selector.wakeup();
+		}
 	}
 
 	public boolean needUpdate() {
-		if (clients.size() == 0) {
-			sleepTime = 1;
+		if (sessions.size() == 0) {
 			return false;
 		}
-		if (request != true) {
-			return false;
-		}
-		sleepTime = 1;
-		return true;
+		return request;
 	}
 
 	public void run() {
-		startServer();
+		if (!startServer()) {
+			return;
+		}
+		long timeout = 0;
 		while (!shutdown) {
-			accept();
-			send();
 			try {
-				Thread.sleep(sleepTime);
-			} catch (Exception e) {}
-			if (init) {
-				cycle++;
-				if (cycle >= 10) {
-					init = false;
-				}
+				selector.select(timeout);
+			} catch (IOException e) {
+				logger.severe("SERVER -- Select failed\n" + e.toString());
+				break;
 			}
+			select();
+			timeout = send();
 		}
-		accept();
-		send();
 		closeServer();
 	}
 
-	private void send() {
-		if (system == null) {
-			return;
+	/*
+	 * Handles the ready operations of the selected keys.
+	 */
+	private void select() {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			if (!key.isValid()) {
+				continue;
+			}
+			if (key.isAcceptable()) {
+				accept();
+				continue;
+			}
+			ClientSession session = (ClientSession) key.attachment();
+			try {
+				if (key.isReadable() && !session.read()) {
+					closeClient(session);
+					continue;
+				}
+				if (key.isValid() && key.isWritable()) {
+					session.write();
+				}
+			} catch (Exception e) {
+				closeClient(session);
+			}
 		}
-		if (clients.size() == 0) {
-			return;
+	}
+
+	/*
+	 * Answers the outstanding requests of every client whose previous
+	 * response has drained, and pushes updates to subscribed clients.
+	 *
+	 * @return the select timeout until the next rate limited push is due
+	 */
+	private long send() {
+		if (system == null) {
+			return 0;
 		}
-		ObjectInputStream oin;
-		ObjectOutputStream oout;
-		Socket client;
-		ListIterator<ObjectOutputStream> lout;
-		ListIterator<ObjectInputStream> lin;
-		ListIterator<Socket> lclient;
-		Vector<Socket> closed = new Vector<Socket>();
-		for (lout = outputs.listIterator(), lin = inputs.listIterator(), lclient = clients
-				.listIterator(); lout.hasNext();) {
-			oin = lin.next();
-			oout = lout.next();
-			client = lclient.next();
-			if (!client.isConnected() || client.isClosed()) {
-				closed.add(client);
-			} else {
-				try {
-					FFEMessage message = null;
-					while (oin != null
-							&& client.getInputStream().available() > 0) {
-						Object o = oin.readObject();
-						if (o instanceof FFEMessage) {
-							message = (FFEMessage) o;
-							if (message.getMessage() == FFEMessage.CLOSING) {
-								closed.add(client);
-								message = null;
-								break;
-							}
-						}
-					}
-					if (message != null) {
-						if (message.getMessage() == FFEMessage.SYSTEM) {
-							synchronized (system) {
-								oout.reset();
-								oout.writeObject(message);
-								oout.writeObject(system);
-								oout.flush();
-							}
-						} else if (message.getMessage() == FFEMessage.UPDATE) {
-							request = true;
-							if (update != null && update.isNewer(message)) {
-								synchronized (update) {
-									//logger.info("Sending Update");
-									oout.reset();
-									oout.writeObject(message);
-									oout.writeObject(update);
-									oout.flush();
-								}
-							}
-						}
-					}
-				} catch (Exception e) {
-					closed.add(client);
+		TinkerUpdate u = update;
+		boolean waiting = false;
+		long timeout = 0;
+		for (ClientSession session : sessions.toArray(new ClientSession[0])) {
+			try {
+				long wait = session.service(system, u);
+				if (wait > 0 && (timeout == 0 || wait < timeout)) {
+					timeout = wait;
+				}
+				if (session.hasUpdateRequest()) {
+					waiting = true;
 				}
+			} catch (Exception e) {
+				closeClient(session);
 			}
 		}
-		for (Socket s : closed) {
-			int index = closed.indexOf(s);
-			closeClient(index);
+		if (waiting) {
+			request = true;
 		}
+		return timeout;
 	}
 
 	public void setUpdated() {
@@ -301,30 +251,40 @@ public class TinkerServer implements Runnable {
 		}
 	}
 
-	private void startServer() {
+	private boolean startServer() {
 		try {
-			server = new ServerSocket();
-			server.setSoTimeout(serverTimeout);
-			server.setReuseAddress(true);
-			server.bind(new InetSocketAddress(InetAddress.getLocalHost(),
-					serverPort));
+			selector = Selector.open();
+			server = ServerSocketChannel.open();
+			server.configureBlocking(false);
+			server.socket().setReuseAddress(true);
+			server.socket().bind(
+					new InetSocketAddress(InetAddress.getLocalHost(),
+							serverPort));
 		} catch (Exception e) {
 			try {
-				server.bind(new InetSocketAddress(InetAddress.getByName(null),
-						serverPort));
+				server.socket().bind(
+						new InetSocketAddress(InetAddress.getByName(null),
+								serverPort));
 			} catch (Exception ex) {
-				Logger.getLogger("ffe").severe(
-						"SERVER -- Could not start\n" + e.toString());
-				return;
+				logger.severe("SERVER -- Could not start\n" + e.toString());
+				return false;
 			}
 		}
-		Logger.getLogger("ffe").info(
-				"Tinker Server Address: " + server.getLocalSocketAddress());
-//		 JOptionPane.showMessageDialog(null, server.getLocalSocketAddress(),
-//		 "Server Address", JOptionPane.ERROR_MESSAGE);
+		try {
+			server.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (Exception e) {
+			logger.severe("SERVER -- Could not start\n" + e.toString());
+			return false;
+		}
+		logger.info("Tinker Server Address: "
+				+ server.socket().getLocalSocketAddress());
+		return true;
 	}
 
 	public void stop() {
 		shutdown = true;
+		if (selector != null) {
+			selector.wakeup();
+		}
 	}
 }
@@ -26,6 +26,19 @@ public class TinkerUpdate implements Serializable {
 
 	public static int OPTIMIZATION = 2;
 
+	// Field mask bits used by the binary frame protocol
+	public static final int COORDINATES = 0x1;
+
+	public static final int VELOCITY = 0x2;
+
+	public static final int ACCELERATION = 0x4;
+
+	public static final int GRADIENTS = 0x8;
+
+	public static final int INDUCED = 0x10;
+
+	public static final int ALL_FIELDS = 0x1f;
+
 	public boolean read = true;
 
 	// Type
@@ -67,6 +80,10 @@ public class TinkerUpdate implements Serializable {
 
 	public double[][] induced = null;
 
+	// Atoms whose coordinates changed in a delta encoded frame;
+	// null if every atom should be considered moved
+	public transient boolean[] moved = null;
+
 	public TinkerUpdate(int n, int t, boolean a) {
 		numatoms = n;
 		amoeba = a;
@@ -83,6 +100,29 @@ public class TinkerUpdate implements Serializable {
 		}
 	}
 
+	/*
+	 * Returns the field mask of the arrays this update carries.
+	 */
+	public int getFields() {
+		int fields = 0;
+		if (coordinates != null) {
+			fields |= COORDINATES;
+		}
+		if (velocity != null) {
+			fields |= VELOCITY;
+		}
+		if (acceleration != null) {
+			fields |= ACCELERATION;
+		}
+		if (gradients != null) {
+			fields |= GRADIENTS;
+		}
+		if (induced != null) {
+			fields |= INDUCED;
+		}
+		return fields;
+	}
+
 	public boolean isNewer(FFEMessage message) {
 		if (type == SIMULATION && time > message.getTime()) {
 			return true;